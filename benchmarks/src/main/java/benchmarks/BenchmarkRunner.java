@@ -0,0 +1,59 @@
+package benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Runs the benchmarks with the usual JMH command line options.
+ * Unless a result file is given with -rff, the results are written as JSON to
+ * results/benchmarks-&lt;date&gt;-&lt;time&gt;.json, so runs can be compared with {@link CompareResults}.
+ */
+public class BenchmarkRunner {
+
+    private static final Path RESULTS_DIRECTORY = Path.of("results");
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    /**
+     * Runs the benchmarks selected on the command line, or all of them.
+     *
+     * @param args JMH command line options, e.g. "BookDAO -f 1" or "-l" to list the benchmarks
+     * @throws CommandLineOptionException if the options are invalid
+     * @throws RunnerException if a benchmark fails
+     * @throws IOException if the results directory cannot be created
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResult().hasValue()) {
+            Files.createDirectories(RESULTS_DIRECTORY);
+            Path resultFile = RESULTS_DIRECTORY.resolve("benchmarks-" + LocalDateTime.now().format(FILE_TIME) + ".json");
+            options.result(resultFile.toString());
+            if (!commandLine.getResultFormat().hasValue()) {
+                options.resultFormat(ResultFormatType.JSON);
+            }
+        }
+
+        Runner runner = new Runner(options.build());
+        if (commandLine.shouldList()) {
+            runner.list();
+        } else {
+            runner.run();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares two JSON result files of {@link BenchmarkRunner}: prints the score of every benchmark
+ * in both runs and the change in percent. Benchmarks with parameters are compared per parameter set.
+ */
+public class CompareResults {
+
+    /**
+     * Prints the comparison of two runs.
+     *
+     * @param args the result file of the earlier run and the result file of the later run
+     * @throws IOException if a file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CompareResults <earlier.json> <later.json>");
+            System.exit(2);
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, JsonNode> earlier = scores(objectMapper.readTree(new File(args[0])));
+        Map<String, JsonNode> later = scores(objectMapper.readTree(new File(args[1])));
+
+        System.out.printf(Locale.ROOT, "%-70s %14s %14s %9s  %s%n", "Benchmark", "Earlier", "Later", "Change", "Unit");
+        for (Map.Entry<String, JsonNode> entry : later.entrySet()) {
+            JsonNode laterMetric = entry.getValue();
+            JsonNode earlierMetric = earlier.get(entry.getKey());
+            double laterScore = laterMetric.path("score").asDouble();
+
+            String change = "new";
+            String earlierScore = "-";
+            if (earlierMetric != null) {
+                double earlierValue = earlierMetric.path("score").asDouble();
+                earlierScore = String.format(Locale.ROOT, "%14.3f", earlierValue);
+                change = earlierValue == 0 ? "-" : String.format(Locale.ROOT, "%+8.1f%%", (laterScore - earlierValue) * 100 / earlierValue);
+            }
+            System.out.printf(Locale.ROOT, "%-70s %14s %14.3f %9s  %s%n",
+                    entry.getKey(), earlierScore, laterScore, change, laterMetric.path("scoreUnit").asText());
+        }
+    }
+
+    /**
+     * Reads the primary metric of every benchmark of a run.
+     *
+     * @param results the parsed result file
+     * @return the primary metrics by benchmark name and parameters
+     */
+    private static Map<String, JsonNode> scores(JsonNode results) {
+        Map<String, JsonNode> scores = new LinkedHashMap<>();
+        for (JsonNode result : results) {
+            String benchmark = result.path("benchmark").asText();
+            int methodDot = benchmark.lastIndexOf('.');
+            StringBuilder name = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', methodDot - 1) + 1));
+
+            JsonNode params = result.path("params");
+            Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                name.append(' ').append(field.getKey()).append('=').append(field.getValue().asText());
+            }
+            scores.put(name.toString(), result.path("primaryMetric"));
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,120 @@
+package benchmarks;
+
+import dao.BookDAO;
+import dao.LoanDAO;
+import models.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips through the DAOs, the connection pool and its measuring proxies to the embedded stand-in database.
+ * The numbers include everything except the network and the MySQL server, so they show the overhead of the
+ * application's own data access path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoRoundTripBenchmark {
+
+    @Param({"10000"})
+    public int books;
+
+    private BookDAO bookDAO;
+    private LoanDAO loanDAO;
+    private List<Integer> idBatch;
+
+    /**
+     * Starts the embedded database and creates the DAOs.
+     *
+     * @throws SQLException if the database cannot be filled
+     * @throws IOException if the configuration cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException {
+        EmbeddedDatabase.start(books);
+        bookDAO = new BookDAO();
+        loanDAO = new LoanDAO();
+
+        idBatch = new ArrayList<>();
+        for (int id = 1; id <= books; id += books / 50) {
+            idBatch.add(id);
+        }
+    }
+
+    /**
+     * Loads one book with its author and genre by ID.
+     *
+     * @return the book
+     */
+    @Benchmark
+    public Optional<Book> bookById() {
+        return bookDAO.getById(1 + ThreadLocalRandom.current().nextInt(books));
+    }
+
+    /**
+     * Loads 50 books by their IDs in one batch.
+     *
+     * @return the books
+     */
+    @Benchmark
+    public Map<Integer, Book> booksByIds() {
+        return bookDAO.getByIds(idBatch);
+    }
+
+    /**
+     * Loads all books, as the Books tab does.
+     *
+     * @return the books
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Book> allBooks() {
+        return bookDAO.getAll();
+    }
+
+    /**
+     * Loads all loans with their books and readers, as the Loans tab does.
+     *
+     * @return the number of loans
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int allLoans() {
+        return loanDAO.getAll().size();
+    }
+
+    /**
+     * Reads a book and writes it back with a changed price.
+     *
+     * @return whether the update succeeded
+     */
+    @Benchmark
+    public boolean readAndUpdateBook() {
+        Book book = bookDAO.getById(1 + ThreadLocalRandom.current().nextInt(books)).orElseThrow();
+        book.setPrice(book.getPrice().add(BigDecimal.ONE));
+        return bookDAO.update(book);
+    }
+}
@@ -0,0 +1,206 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * An in-memory H2 database in MySQL mode that stands in for the library database.
+ * Starting it writes a configuration file pointing to it and selects that file through the library.config
+ * system property, so the DAOs use it through the regular connection pool. It must be started before
+ * anything touches {@code DatabaseConnector}. Benchmarks and tests that run MySQL-only statements (streaming
+ * exports, upserts and every unit of work) start it with {@link #start(int, boolean)} so that the pool goes through
+ * the {@link MySqlStatementsDriver}.
+ */
+public final class EmbeddedDatabase {
+
+    private static final String DATABASE = "mem:library;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;IGNORE_UNKNOWN_SETTINGS=TRUE";
+    private static final String URL = "jdbc:h2:" + DATABASE;
+    private static final String[] CONDITIONS = {"NEW", "USED", "DAMAGED", "RESTORED"};
+
+    private static boolean started;
+
+    private EmbeddedDatabase() {}
+
+    /**
+     * Creates and fills the database unless it has been started already in this JVM.
+     *
+     * @param books the number of books to create; there are a tenth as many authors and readers and half as many loans
+     * @throws SQLException if the database cannot be filled
+     * @throws IOException if the configuration file cannot be written
+     */
+    public static synchronized void start(int books) throws SQLException, IOException {
+        start(books, false);
+    }
+
+    /**
+     * Creates and fills the database unless it has been started already in this JVM.
+     *
+     * @param books the number of books to create; there are a tenth as many authors and readers and half as many loans
+     * @param mysqlStatements whether the application's connections accept MySQL-only statements,
+     *                        see {@link MySqlStatementsDriver}
+     * @throws SQLException if the database cannot be filled
+     * @throws IOException if the configuration file cannot be written
+     */
+    public static synchronized void start(int books, boolean mysqlStatements) throws SQLException, IOException {
+        if (started) {
+            return;
+        }
+        if (mysqlStatements) {
+            MySqlStatementsDriver.register();
+        }
+
+        Path config = Files.createTempFile("library-benchmark", ".json");
+        config.toFile().deleteOnExit();
+        Files.writeString(config, """
+                {
+                  "dbUrl": "%s",
+                  "dbUser": "sa",
+                  "dbPassword": "",
+                  "slowQueryMillis": 0
+                }
+                """.formatted(mysqlStatements ? MySqlStatementsDriver.PREFIX + DATABASE : URL));
+        System.setProperty("library.config", config.toString());
+
+        try (Connection connection = connect()) {
+            runScript(connection, "/h2-schema.sql");
+            fill(connection, books);
+        }
+        started = true;
+    }
+
+    /**
+     * Adds the indexes of the schema migrations, as far as H2 supports them.
+     *
+     * @throws SQLException if an index cannot be created
+     * @throws IOException if the script cannot be read
+     */
+    public static synchronized void createIndexes() throws SQLException, IOException {
+        try (Connection connection = connect()) {
+            runScript(connection, "/h2-indexes.sql");
+        }
+    }
+
+    /**
+     * Deletes all rows, so that a benchmark can fill the database again.
+     *
+     * @throws SQLException if a table cannot be emptied
+     */
+    public static synchronized void clear() throws SQLException {
+        try (Connection connection = connect();
+             Statement statement = connection.createStatement()) {
+            for (String table : new String[]{"loans", "books", "readers", "authors", "genres"}) {
+                statement.execute("delete from " + table);
+            }
+        }
+    }
+
+    /**
+     * Opens a connection to the database directly, bypassing the application's connection pool.
+     *
+     * @return the connection
+     * @throws SQLException if the database cannot be reached
+     */
+    public static Connection connect() throws SQLException {
+        return DriverManager.getConnection(URL, "sa", "");
+    }
+
+    /**
+     * Runs the statements of a script on the class path.
+     *
+     * @param connection the connection to the database
+     * @param resource the path of the script
+     * @throws SQLException if a statement fails
+     * @throws IOException if the script cannot be read
+     */
+    private static void runScript(Connection connection, String resource) throws SQLException, IOException {
+        String script;
+        try (InputStream input = EmbeddedDatabase.class.getResourceAsStream(resource)) {
+            script = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : script.replaceAll("(?m)^--.*$", "").split(";")) {
+                if (!sql.isBlank()) {
+                    statement.execute(sql);
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts deterministic test data.
+     *
+     * @param connection the connection to the database
+     * @param books the number of books
+     * @throws SQLException if an insert fails
+     */
+    private static void fill(Connection connection, int books) throws SQLException {
+        Random random = new Random(42);
+        int authors = Math.max(1, books / 10);
+        int readers = Math.max(1, books / 10);
+        int genres = 20;
+
+        try (PreparedStatement statement = connection.prepareStatement("insert into authors (first_name, last_name) values (?, ?)")) {
+            for (int index = 1; index <= authors; index++) {
+                statement.setString(1, "First" + index);
+                statement.setString(2, "Last" + index);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        try (PreparedStatement statement = connection.prepareStatement("insert into genres (name) values (?)")) {
+            for (int index = 1; index <= genres; index++) {
+                statement.setString(1, "Genre " + index);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                "insert into books (genre_id, author_id, title, price, available, `condition`) values (?, ?, ?, ?, ?, ?)")) {
+            for (int index = 1; index <= books; index++) {
+                statement.setInt(1, 1 + random.nextInt(genres));
+                statement.setInt(2, 1 + random.nextInt(authors));
+                statement.setString(3, "Book " + index);
+                statement.setBigDecimal(4, BigDecimal.valueOf(100 + random.nextInt(900)));
+                statement.setBoolean(5, random.nextBoolean());
+                statement.setString(6, CONDITIONS[random.nextInt(CONDITIONS.length)]);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                "insert into readers (first_name, last_name, phone_number) values (?, ?, ?)")) {
+            for (int index = 1; index <= readers; index++) {
+                statement.setString(1, "Reader" + index);
+                statement.setString(2, "Surname" + index);
+                statement.setString(3, String.format("+420 %09d", index));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                "insert into loans (books_id, readers_id, loan_date, return_date) values (?, ?, ?, ?)")) {
+            LocalDate today = LocalDate.now();
+            for (int index = 1; index <= books / 2; index++) {
+                LocalDate loanDate = today.minusDays(random.nextInt(60));
+                statement.setInt(1, 1 + random.nextInt(books));
+                statement.setInt(2, 1 + random.nextInt(readers));
+                statement.setDate(3, Date.valueOf(loanDate));
+                statement.setDate(4, Date.valueOf(loanDate.plusDays(30)));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package benchmarks;
+
+import conn.DatabaseConnector;
+import dao.AuthorDAO;
+import models.Author;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The queries served by the indexes of the schema migrations, with and without the indexes.
+ * Every parameter set runs in its own JVM, so {@code indexed=false} measures the schema of
+ * <i>analysis/generation-script.sql</i> and {@code indexed=true} the schema after the migrations.
+ * {@link QueryPlans} prints the plans of the same queries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexBenchmark {
+
+    /** A book by its title, the leading column of the natural key used by the upsert import. */
+    static final String BOOK_BY_TITLE = "select id from books where title = ?";
+    /** The overdue count of the library_statistics view. */
+    static final String OVERDUE_LOANS = "select count(0) from loans where return_date < curdate()";
+    /** A reader by name. */
+    static final String READER_BY_NAME = "select id from readers where last_name = ? and first_name = ?";
+    /** An author by name, as AuthorDAO.findByName looks them up for every imported book. */
+    static final String AUTHOR_BY_NAME = "select * from authors where first_name = ? and last_name = ?";
+
+    @Param({"100000"})
+    public int books;
+
+    @Param({"false", "true"})
+    public boolean indexed;
+
+    private AuthorDAO authorDAO;
+
+    /**
+     * Starts the embedded database and adds the indexes if requested.
+     *
+     * @throws SQLException if the database cannot be filled
+     * @throws IOException if the configuration or a script cannot be read or written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException {
+        EmbeddedDatabase.start(books);
+        if (indexed) {
+            EmbeddedDatabase.createIndexes();
+        }
+        authorDAO = new AuthorDAO();
+    }
+
+    /**
+     * Finds a book by its title.
+     *
+     * @return the ID of the book
+     * @throws SQLException if the query fails
+     */
+    @Benchmark
+    public int bookByTitle() throws SQLException {
+        return queryInt(BOOK_BY_TITLE, "Book " + (1 + ThreadLocalRandom.current().nextInt(books)));
+    }
+
+    /**
+     * Counts the overdue loans, as the statistics tab does.
+     *
+     * @return the number of overdue loans
+     * @throws SQLException if the query fails
+     */
+    @Benchmark
+    public int overdueLoans() throws SQLException {
+        return queryInt(OVERDUE_LOANS);
+    }
+
+    /**
+     * Finds a reader by last and first name.
+     *
+     * @return the ID of the reader
+     * @throws SQLException if the query fails
+     */
+    @Benchmark
+    public int readerByName() throws SQLException {
+        int index = 1 + ThreadLocalRandom.current().nextInt(books / 10);
+        return queryInt(READER_BY_NAME, "Surname" + index, "Reader" + index);
+    }
+
+    /**
+     * Finds an author by name through the DAO.
+     *
+     * @return the author
+     */
+    @Benchmark
+    public Optional<Author> authorByName() {
+        int index = 1 + ThreadLocalRandom.current().nextInt(books / 10);
+        return authorDAO.findByName("First" + index, "Last" + index);
+    }
+
+    /**
+     * Runs a query returning one number through the connection pool.
+     *
+     * @param sql the query
+     * @param parameters the parameter values
+     * @return the number, or 0 if no row was found
+     * @throws SQLException if the query fails
+     */
+    private static int queryInt(String sql, String... parameters) throws SQLException {
+        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            for (int index = 0; index < parameters.length; index++) {
+                preparedStatement.setString(index + 1, parameters[index]);
+            }
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        }
+    }
+}
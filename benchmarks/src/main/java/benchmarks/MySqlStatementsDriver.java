@@ -0,0 +1,193 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A JDBC driver for URLs starting with {@code jdbc:mysql-on-h2:} that opens the H2 database behind the rest of
+ * the URL and lets it accept the MySQL-only statements of the streaming exports and the upsert: the streaming
+ * fetch size {@code Integer.MIN_VALUE}, which H2 rejects, is ignored, {@code start transaction ...} is skipped,
+ * since a connection with auto-commit off is in a transaction already, the row alias of
+ * {@code insert ... as new on duplicate key update} is rewritten to the older {@code values(column)} form, and
+ * {@code innodb_lock_wait_timeout} becomes H2's lock timeout, whose expiry is reported as MySQL's error 1205.
+ * Connections start with InnoDB's default lock wait of 50 seconds instead of H2's one second.
+ * Only the benchmarks and tests of those statements use it, so the other benchmarks measure H2 without the
+ * extra proxies.
+ */
+public final class MySqlStatementsDriver implements Driver {
+
+    static final String PREFIX = "jdbc:mysql-on-h2:";
+
+    private static final Pattern UPSERT_ALIAS = Pattern.compile("(?i)\\s+as\\s+new\\s+on\\s+duplicate\\s+key\\s+update\\s+");
+    private static final Pattern ALIASED_COLUMN = Pattern.compile("(?i)\\bnew\\.(`?\\w+`?)");
+    private static final Pattern LOCK_WAIT_TIMEOUT = Pattern.compile("(?i)\\s*set\\s+session\\s+innodb_lock_wait_timeout\\s*=\\s*(\\d+)\\s*");
+    /** InnoDB's default {@code innodb_lock_wait_timeout}. */
+    private static final int INNODB_LOCK_WAIT_MILLIS = 50_000;
+    /** H2's error code of a lock timeout. */
+    private static final int H2_LOCK_TIMEOUT = 50200;
+    /** MySQL's error code of a lock wait timeout. */
+    private static final int MYSQL_LOCK_WAIT_TIMEOUT = 1205;
+
+    private static boolean registered;
+
+    /**
+     * Registers the driver with the DriverManager unless it is registered already.
+     *
+     * @throws SQLException if the driver cannot be registered
+     */
+    static synchronized void register() throws SQLException {
+        if (!registered) {
+            DriverManager.registerDriver(new MySqlStatementsDriver());
+            registered = true;
+        }
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        Connection connection = DriverManager.getConnection("jdbc:h2:" + url.substring(PREFIX.length()), info);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("set lock_timeout " + INNODB_LOCK_WAIT_MILLIS);
+        }
+        return proxy(Connection.class, connection, (method, arguments) -> {
+            if (method.getName().startsWith("prepare") && arguments[0] instanceof String sql) {
+                arguments[0] = translate(sql);
+            }
+            Object result = method.invoke(connection, arguments);
+            if (result instanceof PreparedStatement statement) {
+                return wrapStatement(PreparedStatement.class, statement);
+            }
+            if (result instanceof Statement statement) {
+                return wrapStatement(Statement.class, statement);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Wraps a statement so that it accepts the MySQL-only calls.
+     *
+     * @param type the interface of the statement
+     * @param statement the H2 statement
+     * @param <T> the statement type
+     * @return the wrapped statement
+     */
+    private static <T extends Statement> T wrapStatement(Class<T> type, T statement) {
+        return proxy(type, statement, (method, arguments) -> {
+            if (method.getName().equals("setFetchSize") && (int) arguments[0] == Integer.MIN_VALUE) {
+                return null;
+            }
+            if (method.getName().equals("execute") && arguments != null && arguments.length == 1
+                    && arguments[0] instanceof String sql && sql.strip().toLowerCase(Locale.ROOT).startsWith("start transaction")) {
+                return false;
+            }
+            if (method.getName().startsWith("execute") && arguments != null && arguments.length > 0 && arguments[0] instanceof String sql) {
+                arguments[0] = translate(sql);
+            }
+            try {
+                return method.invoke(statement, arguments);
+            } catch (InvocationTargetException invocationTargetException) {
+                if (invocationTargetException.getCause() instanceof SQLException sqlException && sqlException.getErrorCode() == H2_LOCK_TIMEOUT) {
+                    throw new InvocationTargetException(new SQLException("Lock wait timeout exceeded; try restarting transaction",
+                            "HY000", MYSQL_LOCK_WAIT_TIMEOUT, sqlException));
+                }
+                throw invocationTargetException;
+            }
+        });
+    }
+
+    /**
+     * Rewrites the row alias of an upsert, which H2 does not know, to the {@code values(column)} form,
+     * and the InnoDB lock wait timeout to H2's lock timeout.
+     *
+     * @param sql the statement
+     * @return the statement H2 accepts
+     */
+    private static String translate(String sql) {
+        Matcher lockWait = LOCK_WAIT_TIMEOUT.matcher(sql);
+        if (lockWait.matches()) {
+            return "set lock_timeout " + Long.parseLong(lockWait.group(1)) * 1000;
+        }
+        Matcher matcher = UPSERT_ALIAS.matcher(sql);
+        if (!matcher.find()) {
+            return sql;
+        }
+        String assignments = ALIASED_COLUMN.matcher(sql.substring(matcher.end())).replaceAll("values($1)");
+        return sql.substring(0, matcher.start()) + " on duplicate key update " + assignments;
+    }
+
+    /**
+     * The part of an {@link InvocationHandler} that may throw the exceptions of reflective calls.
+     */
+    @FunctionalInterface
+    private interface Handler {
+        Object invoke(Method method, Object[] arguments) throws ReflectiveOperationException;
+    }
+
+    /**
+     * Creates a proxy passing on the exceptions of the target instead of wrapping them.
+     *
+     * @param type the interface of the proxy
+     * @param target the proxied object
+     * @param handler the handler of the calls
+     * @param <T> the interface type
+     * @return the proxy
+     */
+    private static <T> T proxy(Class<T> type, T target, Handler handler) {
+        InvocationHandler invocationHandler = (proxy, method, arguments) -> {
+            try {
+                return handler.invoke(method, arguments);
+            } catch (InvocationTargetException invocationTargetException) {
+                throw invocationTargetException.getCause();
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler));
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(PREFIX);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+}
@@ -0,0 +1,69 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Prints the plans of the queries of {@link IndexBenchmark} on the embedded database before and after the
+ * indexes of the schema migrations are added, to show which queries stop scanning whole tables.
+ * The plans are H2's; on MySQL, run the queries with {@code explain} after the migrations to compare.
+ */
+public class QueryPlans {
+
+    /**
+     * Prints the plans.
+     *
+     * @param args the number of books to create (optional, default 100000)
+     * @throws SQLException if the database cannot be filled or a plan cannot be read
+     * @throws IOException if the configuration or a script cannot be read or written
+     */
+    public static void main(String[] args) throws SQLException, IOException {
+        int books = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        EmbeddedDatabase.start(books);
+
+        System.out.println("=== Without the migration indexes ===");
+        printPlans();
+        EmbeddedDatabase.createIndexes();
+        System.out.println("=== With the migration indexes ===");
+        printPlans();
+    }
+
+    /**
+     * Prints the plan of every query.
+     *
+     * @throws SQLException if a plan cannot be read
+     */
+    private static void printPlans() throws SQLException {
+        try (Connection connection = EmbeddedDatabase.connect()) {
+            printPlan(connection, IndexBenchmark.BOOK_BY_TITLE, "Book 42");
+            printPlan(connection, IndexBenchmark.OVERDUE_LOANS);
+            printPlan(connection, IndexBenchmark.READER_BY_NAME, "Surname42", "Reader42");
+            printPlan(connection, IndexBenchmark.AUTHOR_BY_NAME, "First42", "Last42");
+        }
+    }
+
+    /**
+     * Prints the plan of one query.
+     *
+     * @param connection the connection to the database
+     * @param sql the query
+     * @param parameters the parameter values
+     * @throws SQLException if the plan cannot be read
+     */
+    private static void printPlan(Connection connection, String sql, String... parameters) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement("explain " + sql)) {
+            for (int index = 0; index < parameters.length; index++) {
+                preparedStatement.setString(index + 1, parameters[index]);
+            }
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    System.out.println(resultSet.getString(1).replaceAll("\\s+", " "));
+                }
+            }
+        }
+        System.out.println();
+    }
+}
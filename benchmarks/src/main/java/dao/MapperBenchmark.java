@@ -0,0 +1,129 @@
+package dao;
+
+import models.Book;
+import models.Loan;
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps rows of a synthetic in-memory ResultSet to entities with the DAOs' row mappers,
+ * measuring the cost per row without any database work.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+
+    private static final int ROWS = 1000;
+    private static final String[] CONDITIONS = {"NEW", "USED", "DAMAGED", "RESTORED"};
+
+    private final BookDAO bookDAO = new BookDAO();
+    private final LoanDAO loanDAO = new LoanDAO();
+    private SimpleResultSet bookRows;
+    private SimpleResultSet loanRows;
+
+    /**
+     * Builds result sets shaped like the ones of BookDAO.getAll and LoanDAO.getAll.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        bookRows = new SimpleResultSet();
+        bookRows.setAutoClose(false);
+        bookRows.addColumn("id", Types.INTEGER, 10, 0);
+        bookRows.addColumn("title", Types.VARCHAR, 45, 0);
+        bookRows.addColumn("price", Types.DECIMAL, 10, 2);
+        bookRows.addColumn("available", Types.BOOLEAN, 1, 0);
+        bookRows.addColumn("condition", Types.VARCHAR, 10, 0);
+        bookRows.addColumn("author_id", Types.INTEGER, 10, 0);
+        bookRows.addColumn("first_name", Types.VARCHAR, 45, 0);
+        bookRows.addColumn("last_name", Types.VARCHAR, 45, 0);
+        bookRows.addColumn("genre_id", Types.INTEGER, 10, 0);
+        bookRows.addColumn("genre_name", Types.VARCHAR, 45, 0);
+        for (int row = 0; row < ROWS; row++) {
+            bookRows.addRow(row, "Book " + row, BigDecimal.valueOf(29900 + row, 2), row % 3 != 0,
+                    CONDITIONS[row % CONDITIONS.length], row % 100, "First" + row % 100, "Last" + row % 100,
+                    row % 20, "Genre " + row % 20);
+        }
+
+        loanRows = new SimpleResultSet();
+        loanRows.setAutoClose(false);
+        loanRows.addColumn("loan_id", Types.INTEGER, 10, 0);
+        loanRows.addColumn("loan_date", Types.DATE, 10, 0);
+        loanRows.addColumn("return_date", Types.DATE, 10, 0);
+        loanRows.addColumn("book_id", Types.INTEGER, 10, 0);
+        loanRows.addColumn("title", Types.VARCHAR, 45, 0);
+        loanRows.addColumn("price", Types.DECIMAL, 10, 2);
+        loanRows.addColumn("available", Types.BOOLEAN, 1, 0);
+        loanRows.addColumn("condition", Types.VARCHAR, 10, 0);
+        loanRows.addColumn("author_id", Types.INTEGER, 10, 0);
+        loanRows.addColumn("author_first", Types.VARCHAR, 45, 0);
+        loanRows.addColumn("author_last", Types.VARCHAR, 45, 0);
+        loanRows.addColumn("genre_id", Types.INTEGER, 10, 0);
+        loanRows.addColumn("genre_name", Types.VARCHAR, 45, 0);
+        loanRows.addColumn("reader_id", Types.INTEGER, 10, 0);
+        loanRows.addColumn("reader_first", Types.VARCHAR, 45, 0);
+        loanRows.addColumn("reader_last", Types.VARCHAR, 45, 0);
+        loanRows.addColumn("phone_number", Types.VARCHAR, 45, 0);
+        LocalDate today = LocalDate.now();
+        for (int row = 0; row < ROWS; row++) {
+            loanRows.addRow(row, Date.valueOf(today.minusDays(row % 60)), Date.valueOf(today.plusDays(30 - row % 60)),
+                    row, "Book " + row, BigDecimal.valueOf(29900 + row, 2), false, CONDITIONS[row % CONDITIONS.length],
+                    row % 100, "First" + row % 100, "Last" + row % 100, row % 20, "Genre " + row % 20,
+                    row % 500, "Reader" + row % 500, "Surname" + row % 500, "+420 600 000 000");
+        }
+    }
+
+    /**
+     * Maps all book rows.
+     *
+     * @param blackhole consumes the books
+     * @throws SQLException never, the result set is in memory
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void mapBooks(Blackhole blackhole) throws SQLException {
+        bookRows.beforeFirst();
+        while (bookRows.next()) {
+            Book book = bookDAO.mapResultSetToBook(bookRows);
+            blackhole.consume(book);
+        }
+    }
+
+    /**
+     * Maps all loan rows.
+     *
+     * @param blackhole consumes the loans
+     * @throws SQLException never, the result set is in memory
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void mapLoans(Blackhole blackhole) throws SQLException {
+        loanRows.beforeFirst();
+        while (loanRows.next()) {
+            Loan loan = loanDAO.mapResultSetToLoan(loanRows);
+            blackhole.consume(loan);
+        }
+    }
+}
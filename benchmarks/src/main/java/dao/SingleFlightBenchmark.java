@@ -0,0 +1,59 @@
+package dao;
+
+import conn.OperationClass;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * Measures the read-coalescing path the DAOs put in front of their list queries:
+ * the cost of a read that runs alone, and of reads that overlap on several threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SingleFlightBenchmark {
+
+    private static final List<String> RESULT = List.of("a", "b", "c");
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    /**
+     * A read without concurrent callers, i.e. the overhead every list query pays.
+     *
+     * @return the result
+     */
+    @Benchmark
+    public List<String> uncontended() {
+        return singleFlight.execute("books.getAll", OperationClass.LIST, () -> RESULT, UnaryOperator.identity());
+    }
+
+    /**
+     * Reads of the same key from four threads, each taking about a microsecond, so that they overlap.
+     *
+     * @return the result
+     */
+    @Benchmark
+    @Threads(4)
+    public List<String> contended() {
+        return singleFlight.execute("books.getAll", OperationClass.LIST, () -> {
+            Blackhole.consumeCPU(200);
+            return RESULT;
+        }, UnaryOperator.identity());
+    }
+}
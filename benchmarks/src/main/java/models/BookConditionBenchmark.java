@@ -0,0 +1,70 @@
+package models;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of book conditions as done for every row read from the database and every imported CSV line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookConditionBenchmark {
+
+    private final String[] columnValues = {"NEW", "USED", "DAMAGED", "RESTORED"};
+    private final String[] csvValues = {"new", " Used", "DAMAGED ", "restored"};
+
+    /**
+     * Decodes the values of the condition column, as the row mappers do.
+     *
+     * @param blackhole consumes the conditions
+     */
+    @Benchmark
+    @OperationsPerInvocation(4)
+    public void decodeColumn(Blackhole blackhole) {
+        for (String value : columnValues) {
+            blackhole.consume(BookCondition.valueOf(value));
+        }
+    }
+
+    /**
+     * Decodes conditions written by hand, as the CSV import does.
+     *
+     * @param blackhole consumes the conditions
+     */
+    @Benchmark
+    @OperationsPerInvocation(4)
+    public void decodeCsv(Blackhole blackhole) {
+        for (String value : csvValues) {
+            blackhole.consume(BookCondition.valueOf(value.trim().toUpperCase(Locale.ROOT)));
+        }
+    }
+
+    /**
+     * Turns conditions into their labels, as the tables do.
+     *
+     * @param blackhole consumes the labels
+     */
+    @Benchmark
+    @OperationsPerInvocation(4)
+    public void label(Blackhole blackhole) {
+        for (BookCondition condition : BookCondition.values()) {
+            blackhole.consume(condition.toString());
+        }
+    }
+}
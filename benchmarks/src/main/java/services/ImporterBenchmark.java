@@ -0,0 +1,104 @@
+package services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import models.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the CPU-bound stages of an import: parsing CSV and NDJSON lines into books and validating them.
+ * Scores are records per second of one thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImporterBenchmark {
+
+    private static final int RECORDS = 1024;
+    private static final String CSV_HEADER = "title,price,condition,available,author_first_name,author_last_name,genre";
+    private static final String[] CONDITIONS = {"NEW", "USED", "DAMAGED", "RESTORED"};
+
+    private final DataImporter importer = new DataImporter();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Map<String, Integer> csvHeader;
+    private final String[] csvLines = new String[RECORDS];
+    private final String[] ndjsonLines = new String[RECORDS];
+    private final Book[] books = new Book[RECORDS];
+
+    /**
+     * Generates the lines in the formats of the CSV and NDJSON exports.
+     *
+     * @throws IOException if a generated line cannot be parsed
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        csvHeader = importer.parseCsvHeader(CSV_HEADER);
+        for (int record = 0; record < RECORDS; record++) {
+            String condition = CONDITIONS[record % CONDITIONS.length];
+            csvLines[record] = "\"Book, volume " + record + "\"," + (100 + record) + ".50," + condition + ",true,First" + record % 100
+                    + ",Last" + record % 100 + ",Genre " + record % 20;
+            ndjsonLines[record] = "{\"title\":\"Book, volume " + record + "\",\"price\":" + (100 + record) + ".50,\"available\":true,"
+                    + "\"condition\":\"" + condition + "\",\"genre\":{\"name\":\"Genre " + record % 20 + "\"},"
+                    + "\"author\":{\"firstName\":\"First" + record % 100 + "\",\"lastName\":\"Last" + record % 100 + "\"}}";
+            books[record] = objectMapper.readValue(ndjsonLines[record], Book.class);
+        }
+    }
+
+    /**
+     * Parses CSV lines.
+     *
+     * @param blackhole consumes the books
+     */
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void parseCsv(Blackhole blackhole) {
+        for (String line : csvLines) {
+            blackhole.consume(importer.parseCsvBook(line, csvHeader));
+        }
+    }
+
+    /**
+     * Parses NDJSON lines with Jackson, as the line import does.
+     *
+     * @param blackhole consumes the books
+     * @throws IOException never, the lines are valid
+     */
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void parseNdjson(Blackhole blackhole) throws IOException {
+        for (String line : ndjsonLines) {
+            blackhole.consume(objectMapper.readValue(line, Book.class));
+        }
+    }
+
+    /**
+     * Validates parsed books.
+     *
+     * @param blackhole consumes the validation errors
+     */
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void validate(Blackhole blackhole) {
+        for (Book book : books) {
+            blackhole.consume(importer.validateBook(book));
+        }
+    }
+}
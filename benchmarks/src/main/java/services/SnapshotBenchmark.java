@@ -0,0 +1,179 @@
+package services;
+
+import benchmarks.EmbeddedDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ui.json.LogOutput;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole-catalog snapshot against a JSON dump of the same database, both written and read through the application.
+ * The JSON dump is the NDJSON export of books, readers and loans (every book carries its author and genre), plain
+ * and gzipped. The only way to load it back is importing its books, so restoring the snapshot, which also brings
+ * back readers and loans, is compared with importing the books file. The file sizes are printed before the first
+ * iteration. The embedded database accepts the MySQL-only statements of the exports through
+ * {@code MySqlStatementsDriver}; scores are milliseconds per export or restore.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    private static final LogOutput DISCARD = text -> {};
+    private static final String[] JSON_ENTITIES = {"books", "readers", "loans"};
+
+    @Param({"100000"})
+    public int books;
+
+    private final SnapshotService snapshotService = new SnapshotService();
+    private final DataExporter dataExporter = new DataExporter();
+    private Path directory;
+    private Path snapshot;
+    private Path booksJson;
+
+    /**
+     * An empty database for every iteration of a restore.
+     */
+    @State(Scope.Benchmark)
+    public static class EmptyDatabase {
+
+        /**
+         * Deletes all rows after the files to restore have been written.
+         *
+         * @param benchmark the benchmark state, set up first
+         * @throws SQLException if a table cannot be emptied
+         */
+        @Setup(Level.Iteration)
+        public void clear(SnapshotBenchmark benchmark) throws SQLException {
+            EmbeddedDatabase.clear();
+        }
+    }
+
+    /**
+     * Starts the embedded database, writes the snapshot and the JSON dump to restore and prints their sizes.
+     *
+     * @throws SQLException if the database cannot be filled
+     * @throws IOException if the configuration or a file cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException {
+        EmbeddedDatabase.start(books, true);
+        directory = Files.createTempDirectory("library-snapshot");
+        directory.toFile().deleteOnExit();
+        snapshot = directory.resolve("catalog.libsnap");
+        booksJson = directory.resolve("books.ndjson");
+
+        exportSnapshot(snapshot);
+        long jsonBytes = exportJson("");
+        long gzipBytes = exportJson(".gz");
+        System.out.printf("%nSnapshot: %,d bytes, NDJSON dump: %,d bytes, gzipped NDJSON dump: %,d bytes%n",
+                Files.size(snapshot), jsonBytes, gzipBytes);
+    }
+
+    /**
+     * Writes a snapshot of the whole catalog.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    @Benchmark
+    public void exportSnapshot() throws IOException {
+        exportSnapshot(directory.resolve("export.libsnap"));
+    }
+
+    /**
+     * Writes the JSON dump.
+     *
+     * @return the size of the dump
+     * @throws IOException if the dump cannot be written
+     */
+    @Benchmark
+    public long exportJson() throws IOException {
+        return exportJson("");
+    }
+
+    /**
+     * Writes the gzipped JSON dump.
+     *
+     * @return the size of the dump
+     * @throws IOException if the dump cannot be written
+     */
+    @Benchmark
+    public long exportJsonGzip() throws IOException {
+        return exportJson(".gz");
+    }
+
+    /**
+     * Restores the snapshot into the empty database.
+     *
+     * @param emptyDatabase the database emptied before the iteration
+     */
+    @Benchmark
+    public void restoreSnapshot(EmptyDatabase emptyDatabase) {
+        if (!snapshotService.restoreSnapshot(snapshot.toString(), DISCARD)) {
+            throw new IllegalStateException("The snapshot could not be restored.");
+        }
+    }
+
+    /**
+     * Imports the books of the JSON dump into the empty database, creating their authors and genres.
+     *
+     * @param emptyDatabase the database emptied before the iteration
+     */
+    @Benchmark
+    public void importJsonBooks(EmptyDatabase emptyDatabase) {
+        if (!new DataImporter().importBooksFromLines(booksJson.toString(), DataImporter.LineFormat.NDJSON, 1, DISCARD)) {
+            throw new IllegalStateException("The books could not be imported.");
+        }
+    }
+
+    /**
+     * Writes a snapshot.
+     *
+     * @param path the target file
+     * @throws IOException if the snapshot cannot be written
+     */
+    private void exportSnapshot(Path path) throws IOException {
+        if (!snapshotService.exportSnapshot(path.toString(), DISCARD)) {
+            throw new IOException("The snapshot could not be written.");
+        }
+        path.toFile().deleteOnExit();
+    }
+
+    /**
+     * Writes the JSON dump, one NDJSON file per table.
+     *
+     * @param suffix "" for plain files, ".gz" for gzipped ones
+     * @return the size of all files
+     * @throws IOException if a file cannot be written
+     */
+    private long exportJson(String suffix) throws IOException {
+        long bytes = 0;
+        for (String entity : JSON_ENTITIES) {
+            Path path = directory.resolve(entity + ".ndjson" + suffix);
+            if (!dataExporter.export(DataExporter.ExportEntity.valueOf(entity.toUpperCase()), path.toString(), DISCARD)) {
+                throw new IOException("The " + entity + " could not be exported.");
+            }
+            path.toFile().deleteOnExit();
+            bytes += Files.size(path);
+        }
+        return bytes;
+    }
+}
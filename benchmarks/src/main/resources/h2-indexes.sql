@@ -0,0 +1,8 @@
+-- Indexes of the migrations in res/db/migration for the embedded H2 stand-in.
+-- H2 has no online DDL options and no indexes on expressions, so the unique phone number index is left out;
+-- no hot query looks readers up by phone number.
+
+create unique index uq_books_title_author_condition on books (title, author_id, `condition`);
+create index idx_loans_return_date on loans (return_date);
+create index idx_authors_name on authors (last_name, first_name);
+create index idx_readers_name on readers (last_name, first_name);
@@ -0,0 +1,38 @@
+-- Schema of the library database for the embedded H2 stand-in (MySQL compatibility mode).
+-- Mirrors analysis/generation-script.sql without the MySQL-only table options.
+
+create table authors (
+  id int not null auto_increment primary key,
+  first_name varchar(45) not null,
+  last_name varchar(45) not null
+);
+
+create table genres (
+  id int not null auto_increment primary key,
+  name varchar(45) not null unique
+);
+
+create table books (
+  id int not null auto_increment primary key,
+  genre_id int not null references genres (id),
+  author_id int not null references authors (id),
+  title varchar(45) not null,
+  price decimal(10,2) not null,
+  available tinyint not null,
+  `condition` varchar(10) not null
+);
+
+create table readers (
+  id int not null auto_increment primary key,
+  first_name varchar(45) not null,
+  last_name varchar(45) not null,
+  phone_number varchar(45) not null
+);
+
+create table loans (
+  id int not null auto_increment primary key,
+  books_id int not null references books (id),
+  readers_id int not null references readers (id),
+  loan_date date not null,
+  return_date date not null
+);
@@ -0,0 +1,153 @@
+package dao;
+
+import benchmarks.EmbeddedDatabase;
+import models.Author;
+import models.Book;
+import models.BookCondition;
+import models.Genre;
+import models.Loan;
+import models.Reader;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Importing a feed again must update catalog data only: a book that is on loan stays unavailable
+ * and a shelved book stays available, whatever availability the feed carries.
+ */
+class BookUpsertTest {
+
+    private static final int BOOKS = 1000;
+
+    private final BookDAO bookDAO = new BookDAO();
+    private final LoanDAO loanDAO = new LoanDAO();
+
+    /**
+     * Starts the embedded database with the natural key index the upsert relies on.
+     *
+     * @throws Exception if the database cannot be started
+     */
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        EmbeddedDatabase.start(BOOKS, true);
+        EmbeddedDatabase.createIndexes();
+    }
+
+    /**
+     * Lends a book, then imports it again as available with a new price.
+     *
+     * @throws Exception if the database cannot be read
+     */
+    @Test
+    void keepsLentBookUnavailable() throws Exception {
+        Book stored = availableBook();
+        LocalDate today = LocalDate.now();
+        assertTrue(loanDAO.checkout(new Loan(null, stored, new Reader(1, null, null, null), today, today.plusDays(30))));
+
+        Book imported = feedCopy(stored, true);
+        UpsertResult result = bookDAO.upsertAll(List.of(imported));
+
+        assertEquals(new UpsertResult(0, 1, 0), result);
+        assertFalse(isAvailable(stored.getId()), "book " + stored.getId() + " is on loan but available");
+        assertEquals(0, imported.getPrice().compareTo(price(stored.getId())), "price of book " + stored.getId());
+    }
+
+    /**
+     * Imports a shelved book again as unavailable, the value a JSON record without the field carries.
+     *
+     * @throws Exception if the database cannot be read
+     */
+    @Test
+    void keepsShelvedBookAvailable() throws Exception {
+        Book stored = availableBook();
+
+        UpsertResult result = bookDAO.upsertAll(List.of(feedCopy(stored, false)));
+
+        assertEquals(new UpsertResult(0, 1, 0), result);
+        assertTrue(isAvailable(stored.getId()), "book " + stored.getId() + " is on the shelf but unavailable");
+    }
+
+    /**
+     * Creates the feed record of a stored book with a higher price.
+     *
+     * @param stored the stored book
+     * @param available the availability in the feed
+     * @return the feed record
+     */
+    private static Book feedCopy(Book stored, boolean available) {
+        Book book = new Book(stored);
+        book.setId(null);
+        book.setPrice(stored.getPrice().add(BigDecimal.ONE));
+        book.setAvailable(available);
+        return book;
+    }
+
+    /**
+     * Finds an available book without loans.
+     *
+     * @return the book with the IDs of its author and genre
+     * @throws SQLException if the query fails
+     */
+    private static Book availableBook() throws SQLException {
+        String query = "select id, title, price, `condition`, genre_id, author_id from books "
+                + "where available = 1 and id not in (select books_id from loans) order by id desc limit 1";
+        try (Connection connection = EmbeddedDatabase.connect();
+             PreparedStatement preparedStatement = connection.prepareStatement(query);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            if (!resultSet.next()) {
+                throw new IllegalStateException("No available book left.");
+            }
+            return new Book(resultSet.getInt("id"), resultSet.getString("title"), resultSet.getBigDecimal("price"), true,
+                    BookCondition.valueOf(resultSet.getString("condition")),
+                    new Genre(resultSet.getInt("genre_id"), null),
+                    new Author(resultSet.getInt("author_id"), null, null));
+        }
+    }
+
+    /**
+     * Reads the availability of a book.
+     *
+     * @param bookId the ID of the book
+     * @return true if the book is available
+     * @throws SQLException if the query fails
+     */
+    private static boolean isAvailable(int bookId) throws SQLException {
+        try (Connection connection = EmbeddedDatabase.connect();
+             PreparedStatement preparedStatement = connection.prepareStatement("select available from books where id = ?")) {
+            preparedStatement.setInt(1, bookId);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    /**
+     * Reads the price of a book.
+     *
+     * @param bookId the ID of the book
+     * @return the price
+     * @throws SQLException if the query fails
+     */
+    private static BigDecimal price(int bookId) throws SQLException {
+        try (Connection connection = EmbeddedDatabase.connect();
+             PreparedStatement preparedStatement = connection.prepareStatement("select price from books where id = ?")) {
+            preparedStatement.setInt(1, bookId);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getBigDecimal(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package dao;
+
+import benchmarks.EmbeddedDatabase;
+import exceptions.LoanConflictException;
+import models.Book;
+import models.Loan;
+import models.Reader;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+/**
+ * Several desks lending the same book at the same moment: exactly one checkout may succeed,
+ * the others must fail with a LoanConflictException, and the book must end up with a single loan.
+ */
+class LoanCheckoutConcurrencyTest {
+
+    private static final int BOOKS = 1000;
+    private static final int DESKS = 8;
+    private static final int ROUNDS = 50;
+
+    private final LoanDAO loanDAO = new LoanDAO();
+
+    /**
+     * Starts the embedded database through the application's connection pool, accepting the lock wait timeout
+     * that every unit of work sets.
+     *
+     * @throws Exception if the database cannot be started
+     */
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        EmbeddedDatabase.start(BOOKS, true);
+    }
+
+    /**
+     * Races the desks on one available book per round.
+     *
+     * @throws Exception if a desk fails unexpectedly
+     */
+    @Test
+    void lendsEachBookOnlyOnce() throws Exception {
+        ExecutorService desks = Executors.newFixedThreadPool(DESKS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                int bookId = availableBook();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> checkouts = new ArrayList<>();
+                for (int desk = 1; desk <= DESKS; desk++) {
+                    Loan loan = loan(bookId, desk);
+                    checkouts.add(desks.submit(() -> {
+                        start.await();
+                        return loanDAO.checkout(loan);
+                    }));
+                }
+                start.countDown();
+
+                int lent = 0;
+                for (Future<Boolean> checkout : checkouts) {
+                    try {
+                        if (checkout.get(30, TimeUnit.SECONDS)) {
+                            lent++;
+                        }
+                    } catch (ExecutionException executionException) {
+                        assertInstanceOf(LoanConflictException.class, executionException.getCause());
+                    }
+                }
+
+                assertEquals(1, lent, "successful checkouts of book " + bookId);
+                assertEquals(1, countLoans(bookId), "loans of book " + bookId);
+                assertFalse(isAvailable(bookId), "book " + bookId + " is still available");
+            }
+        } finally {
+            desks.shutdownNow();
+        }
+    }
+
+    /**
+     * Finds an available book without loans; the book of the previous round is lent out by now.
+     *
+     * @return the ID of the book
+     * @throws SQLException if the query fails
+     */
+    private static int availableBook() throws SQLException {
+        String query = "select id from books where available = 1 and id not in (select books_id from loans) order by id limit 1";
+        try (Connection connection = EmbeddedDatabase.connect();
+             PreparedStatement preparedStatement = connection.prepareStatement(query);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            if (!resultSet.next()) {
+                throw new IllegalStateException("No available book left.");
+            }
+            return resultSet.getInt(1);
+        }
+    }
+
+    /**
+     * Creates the loan one desk tries to make.
+     *
+     * @param bookId the ID of the contested book
+     * @param readerId the ID of the borrowing reader
+     * @return the loan
+     */
+    private static Loan loan(int bookId, int readerId) {
+        Book book = new Book(bookId, "Book " + bookId, null, true, null, null, null);
+        Reader reader = new Reader(readerId, null, null, null);
+        LocalDate today = LocalDate.now();
+        return new Loan(null, book, reader, today, today.plusDays(30));
+    }
+
+    /**
+     * Counts the loans of a book.
+     *
+     * @param bookId the ID of the book
+     * @return the number of loans
+     * @throws SQLException if the query fails
+     */
+    private static int countLoans(int bookId) throws SQLException {
+        try (Connection connection = EmbeddedDatabase.connect();
+             PreparedStatement preparedStatement = connection.prepareStatement("select count(*) from loans where books_id = ?")) {
+            preparedStatement.setInt(1, bookId);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            }
+        }
+    }
+
+    /**
+     * Reads the availability of a book.
+     *
+     * @param bookId the ID of the book
+     * @return true if the book is available
+     * @throws SQLException if the query fails
+     */
+    private static boolean isAvailable(int bookId) throws SQLException {
+        try (Connection connection = EmbeddedDatabase.connect();
+             PreparedStatement preparedStatement = connection.prepareStatement("select available from books where id = ?")) {
+            preparedStatement.setInt(1, bookId);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getBoolean(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package dao;
+
+import benchmarks.EmbeddedDatabase;
+import conn.RetryPolicy;
+import models.Book;
+import models.Loan;
+import models.Reader;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A checkout blocked by another transaction holding the book's row lock must end with a lock wait timeout
+ * before its statement timeout cancels it, and be retried until the lock is released.
+ */
+class LoanLockWaitRetryTest {
+
+    private static final int BOOKS = 1000;
+    /** Longer than the lock wait of a unit of work (the 5 s lookup timeout less one second). */
+    private static final long LOCK_HELD_MILLIS = 6000;
+
+    private final LoanDAO loanDAO = new LoanDAO();
+
+    /**
+     * Starts the embedded database with the lock wait timeout of MySQL.
+     *
+     * @throws Exception if the database cannot be started
+     */
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        EmbeddedDatabase.start(BOOKS, true);
+    }
+
+    /**
+     * Holds the row of a book in another transaction while a desk lends the book.
+     *
+     * @throws Exception if the database cannot be read or the checkout fails
+     */
+    @Test
+    void retriesCheckoutAfterLockWaitTimeout() throws Exception {
+        int bookId = availableBook();
+        long retriesBefore = RetryPolicy.shared().getRetryCount();
+
+        try (Connection blocker = EmbeddedDatabase.connect()) {
+            blocker.setAutoCommit(false);
+            try (PreparedStatement preparedStatement = blocker.prepareStatement("update books set price = price where id = ?")) {
+                preparedStatement.setInt(1, bookId);
+                preparedStatement.executeUpdate();
+            }
+
+            LocalDate today = LocalDate.now();
+            Loan loan = new Loan(null, new Book(bookId, "Book " + bookId, null, true, null, null, null),
+                    new Reader(1, null, null, null), today, today.plusDays(30));
+            CompletableFuture<Boolean> checkout = CompletableFuture.supplyAsync(() -> loanDAO.checkout(loan));
+
+            Thread.sleep(LOCK_HELD_MILLIS);
+            assertFalse(checkout.isDone(), "the checkout did not wait for the lock");
+            blocker.rollback();
+
+            assertTrue(checkout.get(30, TimeUnit.SECONDS));
+        }
+        assertTrue(RetryPolicy.shared().getRetryCount() > retriesBefore, "the checkout was not retried");
+        assertFalse(isAvailable(bookId), "book " + bookId + " is still available");
+    }
+
+    /**
+     * Finds an available book without loans.
+     *
+     * @return the ID of the book
+     * @throws SQLException if the query fails
+     */
+    private static int availableBook() throws SQLException {
+        String query = "select id from books where available = 1 and id not in (select books_id from loans) order by id limit 1";
+        try (Connection connection = EmbeddedDatabase.connect();
+             PreparedStatement preparedStatement = connection.prepareStatement(query);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            if (!resultSet.next()) {
+                throw new IllegalStateException("No available book left.");
+            }
+            return resultSet.getInt(1);
+        }
+    }
+
+    /**
+     * Reads the availability of a book.
+     *
+     * @param bookId the ID of the book
+     * @return true if the book is available
+     * @throws SQLException if the query fails
+     */
+    private static boolean isAvailable(int bookId) throws SQLException {
+        try (Connection connection = EmbeddedDatabase.connect();
+             PreparedStatement preparedStatement = connection.prepareStatement("select available from books where id = ?")) {
+            preparedStatement.setInt(1, bookId);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getBoolean(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,7 @@
+-- Books that keep the unique index of V1 from being added: the same title by the same author
+-- in the same condition more than once. Merge or delete the extra copies to let V1 run.
+select title, author_id, `condition`, count(*) as copies
+from books
+group by title, author_id, `condition`
+having count(*) > 1
+order by copies desc, title
@@ -0,0 +1,6 @@
+-- Natural key of a book: the same title by the same author in the same condition is the same catalog entry.
+-- Required by the upsert import (INSERT ... ON DUPLICATE KEY UPDATE).
+-- Fails if the table already contains duplicates; remove them first.
+alter table books
+    add unique index uq_books_title_author_condition (title, author_id, `condition`),
+    algorithm = inplace, lock = none;
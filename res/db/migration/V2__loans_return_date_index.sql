@@ -0,0 +1,5 @@
+-- Overdue loans: the library_statistics view counts the loans with return_date < curdate()
+-- and the overdue dashboard reads them by due date. Without an index both scan the whole loans table.
+alter table loans
+    add index idx_loans_return_date (return_date),
+    algorithm = inplace, lock = none;
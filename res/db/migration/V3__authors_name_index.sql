@@ -0,0 +1,5 @@
+-- Authors are looked up by first and last name for every imported book (AuthorDAO.findByName)
+-- and listed ordered by last name. Last name first serves both.
+alter table authors
+    add index idx_authors_name (last_name, first_name),
+    algorithm = inplace, lock = none;
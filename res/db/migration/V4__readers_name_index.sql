@@ -0,0 +1,4 @@
+-- Lets the desk find a reader by last and first name without scanning the readers table.
+alter table readers
+    add index idx_readers_name (last_name, first_name),
+    algorithm = inplace, lock = none;
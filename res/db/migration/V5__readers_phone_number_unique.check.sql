@@ -0,0 +1,8 @@
+-- Readers that keep the unique index of V5 from being added: several readers with the same phone number.
+-- Merge the readers or correct their numbers to let V5 run.
+select phone_number, count(*) as readers, min(id) as first_reader_id
+from readers
+where phone_number <> ''
+group by phone_number
+having count(*) > 1
+order by readers desc, phone_number
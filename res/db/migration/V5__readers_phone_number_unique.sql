@@ -0,0 +1,7 @@
+-- One reader per phone number. The reader form allows an empty phone number, so empty values are indexed
+-- as NULL (a functional key part) and any number of readers may have none.
+-- Fails if two readers already share a phone number; merge them first.
+-- MySQL chooses how to build the index on the expression; lock = none still keeps the table writable meanwhile.
+alter table readers
+    add unique index uq_readers_phone_number ((nullif(phone_number, ''))),
+    lock = none;
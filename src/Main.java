@@ -1,17 +1,27 @@
+import conf.AppConfiguration;
 import conf.ConfigLoader;
 import conn.DatabaseConnector;
+import exceptions.DbException;
+import metrics.EdtWatchdog;
+import metrics.QueryAnalyzer;
+import services.MetricsEndpoint;
+import services.MigrationRunner;
 import ui.MainFrame;
 
 import javax.swing.*;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
 
 /**
  * The entry point of the Library Database System application.
- * It initializes the main application window on the Event Dispatch Thread.
+ * It brings the database schema up to date and initializes the main application window on the Event Dispatch Thread.
  */
 public class Main {
 
+    private static final String EDT_STALL_REPORT = "logs/edt-stalls.txt";
+    private static final String QUERY_ANALYSIS_REPORT = "logs/query-analysis.txt";
+
     /**
      * The main method that launches the application.
      *
@@ -19,8 +29,19 @@ public class Main {
      */
     public static void main(String[] args) {
         try {
-            ConfigLoader.loadConfig();
+            AppConfiguration appConfiguration = ConfigLoader.loadConfig();
             DatabaseConnector.getInstance().checkConnection();
+            migrateSchema();
+
+            if (appConfiguration.edtStallThresholdMillis() > 0) {
+                EdtWatchdog.start(appConfiguration.edtStallThresholdMillis(), Path.of(EDT_STALL_REPORT));
+            }
+            if (appConfiguration.developmentMode()) {
+                QueryAnalyzer.enable(Path.of(QUERY_ANALYSIS_REPORT));
+            }
+            if (appConfiguration.metricsEndpointPort() > 0) {
+                startMetricsEndpoint(appConfiguration.metricsEndpointPort());
+            }
 
         } catch (SQLException sqlException) {
             JOptionPane.showMessageDialog(null,
@@ -48,4 +69,36 @@ public class Main {
             }
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * Applies the pending database migrations. The application keeps running if they fail, e.g. because
+     * the database user may not change the schema or a migration was postponed by its check; the affected
+     * features fail or are slow until the cause has been fixed and the application is started again.
+     */
+    private static void migrateSchema() {
+        try {
+            new MigrationRunner().migrate();
+        } catch (SQLException | IOException | DbException exception) {
+            JOptionPane.showMessageDialog(null,
+                    "The database schema could not be updated:\n" + exception.getMessage(),
+                    "Database migration",
+                    JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    /**
+     * Starts the Prometheus metrics endpoint. The application keeps running without it if the port is taken.
+     *
+     * @param port the port to listen on
+     */
+    private static void startMetricsEndpoint(int port) {
+        try {
+            MetricsEndpoint.start(port);
+        } catch (IOException ioException) {
+            JOptionPane.showMessageDialog(null,
+                    "The metrics endpoint could not be started on port " + port + ":\n" + ioException.getMessage(),
+                    "Metrics endpoint",
+                    JOptionPane.WARNING_MESSAGE);
+        }
+    }
+}
@@ -1,14 +1,126 @@
 package conf;
 
+import java.util.List;
+
 /**
  * A record representing the database configuration.
  *
  * @param dbUrl the JDBC URL of the database
  * @param dbUser the database username
  * @param dbPassword the database password
+ * @param dbPoolSize the maximum number of pooled connections (optional, defaults to 4)
+ * @param slowQueryMillis the duration from which statements are written to the slow-query log (optional, defaults to 1000; 0 turns the log off)
+ * @param slowQueryLog the path of the slow-query log file (optional, defaults to logs/slow-queries.log)
+ * @param edtStallMillis how long the UI thread may be blocked before the stall is reported (optional, the watchdog is off if missing or 0)
+ * @param metricsPort the port the Prometheus metrics endpoint listens on (optional, the endpoint is off if missing or 0)
+ * @param devMode turns on development checks such as the query analyzer (optional, defaults to false)
+ * @param replicaUrls the JDBC URLs of read replicas that list and lookup reads are spread over (optional, all reads go to dbUrl if missing)
+ * @param readYourWritesMillis how long reads stay on dbUrl after a write, so they see it before the replicas do (optional, defaults to 5000)
+ * @param queryTimeoutSeconds the statement timeouts per class of operation (optional, see {@link QueryTimeouts} for the defaults)
  */
 public record AppConfiguration(
         String dbUrl,
         String dbUser,
-        String dbPassword
-) {}
\ No newline at end of file
+        String dbPassword,
+        Integer dbPoolSize,
+        Integer slowQueryMillis,
+        String slowQueryLog,
+        Integer edtStallMillis,
+        Integer metricsPort,
+        Boolean devMode,
+        List<String> replicaUrls,
+        Integer readYourWritesMillis,
+        QueryTimeouts queryTimeoutSeconds
+) {
+    private static final int DEFAULT_POOL_SIZE = 4;
+    private static final int DEFAULT_SLOW_QUERY_MILLIS = 1000;
+    private static final String DEFAULT_SLOW_QUERY_LOG = "logs/slow-queries.log";
+    private static final int DEFAULT_READ_YOUR_WRITES_MILLIS = 5000;
+
+    /**
+     * Returns the configured pool size, or the default if the key is missing or not positive.
+     *
+     * @return the maximum number of pooled connections
+     */
+    public int poolSize() {
+        return dbPoolSize != null && dbPoolSize > 0 ? dbPoolSize : DEFAULT_POOL_SIZE;
+    }
+
+    /**
+     * Returns the slow-query threshold, or the default if the key is missing.
+     *
+     * @return the threshold in milliseconds, or 0 if the slow-query log is turned off
+     */
+    public int slowQueryThresholdMillis() {
+        if (slowQueryMillis == null) {
+            return DEFAULT_SLOW_QUERY_MILLIS;
+        }
+        return Math.max(0, slowQueryMillis);
+    }
+
+    /**
+     * Returns the path of the slow-query log, or the default if the key is missing.
+     *
+     * @return the path of the log file
+     */
+    public String slowQueryLogPath() {
+        return slowQueryLog != null && !slowQueryLog.isBlank() ? slowQueryLog : DEFAULT_SLOW_QUERY_LOG;
+    }
+
+    /**
+     * Returns the threshold of the EDT stall watchdog.
+     *
+     * @return the threshold in milliseconds, or 0 if the watchdog is turned off
+     */
+    public int edtStallThresholdMillis() {
+        return edtStallMillis != null ? Math.max(0, edtStallMillis) : 0;
+    }
+
+    /**
+     * Returns the port of the Prometheus metrics endpoint.
+     *
+     * @return the port, or 0 if the endpoint is turned off
+     */
+    public int metricsEndpointPort() {
+        return metricsPort != null ? Math.max(0, metricsPort) : 0;
+    }
+
+    /**
+     * Returns whether the application runs in development mode.
+     *
+     * @return true if development checks are turned on
+     */
+    public boolean developmentMode() {
+        return Boolean.TRUE.equals(devMode);
+    }
+
+    /**
+     * Returns the JDBC URLs of the read replicas.
+     *
+     * @return the URLs, empty if no replica is configured
+     */
+    public List<String> readReplicaUrls() {
+        if (replicaUrls == null) {
+            return List.of();
+        }
+        return replicaUrls.stream().filter(url -> url != null && !url.isBlank()).toList();
+    }
+
+    /**
+     * Returns how long reads stay on the primary database after a write, or the default if the key is missing.
+     *
+     * @return the window in milliseconds
+     */
+    public int readYourWritesWindowMillis() {
+        return readYourWritesMillis != null ? Math.max(0, readYourWritesMillis) : DEFAULT_READ_YOUR_WRITES_MILLIS;
+    }
+
+    /**
+     * Returns the statement timeouts, with the defaults for the classes that are not configured.
+     *
+     * @return the timeouts
+     */
+    public QueryTimeouts queryTimeouts() {
+        return queryTimeoutSeconds != null ? queryTimeoutSeconds : new QueryTimeouts(null, null, null, null);
+    }
+}
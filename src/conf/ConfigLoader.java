@@ -10,12 +10,13 @@ import java.io.IOException;
  */
 public class ConfigLoader {
 
-    private static final String CONFIG_FILE = "conf/config.json";
+    private static final String CONFIG_FILE = System.getProperty("library.config", "conf/config.json");
 
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
      * Loads the configuration settings from the JSON file.
+     * The file is conf/config.json unless the system property library.config names another one.
      *
      * @return the AppConfiguration object containing database credentials
      * @throws RuntimeException if the configuration file cannot be read
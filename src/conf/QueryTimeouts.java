@@ -0,0 +1,69 @@
+package conf;
+
+/**
+ * A record representing the statement timeouts per class of operation, in seconds.
+ * Missing values use the defaults; 0 turns the timeout of a class off.
+ *
+ * @param lookup the timeout of interactive lookups and single-row changes, e.g. getById or saving a loan (default 5)
+ * @param list the timeout of list loads such as getAll (default 30)
+ * @param report the timeout of reports such as the statistics and active loans views (default 60)
+ * @param importBatch the timeout of one database batch of an import (default 120)
+ */
+public record QueryTimeouts(
+        Integer lookup,
+        Integer list,
+        Integer report,
+        Integer importBatch
+) {
+    private static final int DEFAULT_LOOKUP_SECONDS = 5;
+    private static final int DEFAULT_LIST_SECONDS = 30;
+    private static final int DEFAULT_REPORT_SECONDS = 60;
+    private static final int DEFAULT_IMPORT_BATCH_SECONDS = 120;
+
+    /**
+     * Returns the timeout of lookups, or the default if the key is missing.
+     *
+     * @return the timeout in seconds, 0 if turned off
+     */
+    public int lookupSeconds() {
+        return orDefault(lookup, DEFAULT_LOOKUP_SECONDS);
+    }
+
+    /**
+     * Returns the timeout of list loads, or the default if the key is missing.
+     *
+     * @return the timeout in seconds, 0 if turned off
+     */
+    public int listSeconds() {
+        return orDefault(list, DEFAULT_LIST_SECONDS);
+    }
+
+    /**
+     * Returns the timeout of reports, or the default if the key is missing.
+     *
+     * @return the timeout in seconds, 0 if turned off
+     */
+    public int reportSeconds() {
+        return orDefault(report, DEFAULT_REPORT_SECONDS);
+    }
+
+    /**
+     * Returns the timeout of import batches, or the default if the key is missing.
+     *
+     * @return the timeout in seconds, 0 if turned off
+     */
+    public int importBatchSeconds() {
+        return orDefault(importBatch, DEFAULT_IMPORT_BATCH_SECONDS);
+    }
+
+    /**
+     * Returns a configured timeout, or the default if it is missing.
+     *
+     * @param seconds the configured timeout, or null
+     * @param defaultSeconds the default timeout
+     * @return the timeout in seconds, never negative
+     */
+    private static int orDefault(Integer seconds, int defaultSeconds) {
+        return seconds != null ? Math.max(0, seconds) : defaultSeconds;
+    }
+}
@@ -0,0 +1,103 @@
+package conn;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A handle for cancelling a database operation that is running on another thread.
+ * While a token is bound to a thread, every statement created on that thread through
+ * {@link DatabaseConnector} is registered with it, so {@link #cancel()} can abort the running query
+ * via {@link Statement#cancel()}.
+ */
+public class CancellationToken {
+
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+    private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    /**
+     * Returns the token bound to the current thread.
+     *
+     * @return the current token, or null if none is bound
+     */
+    public static CancellationToken current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs the given call with this token bound to the current thread.
+     *
+     * @param call the database work to run
+     * @param <T> the result type
+     * @return the result of the call
+     */
+    public <T> T run(Supplier<T> call) {
+        CancellationToken previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Cancels the operation. Statements that are currently executing are cancelled on the server,
+     * and any statement created afterwards fails immediately.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (Statement statement : statements) {
+            try {
+                statement.cancel();
+            } catch (SQLException ignored) {
+                // The statement has finished or its connection is gone; nothing left to cancel.
+            }
+        }
+    }
+
+    /**
+     * Returns whether {@link #cancel()} has been called.
+     *
+     * @return true if the operation was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Registers a newly created statement.
+     * The flag is checked again after the statement has been added: a {@link #cancel()} running at the same time
+     * either finds the statement among the registered ones or has set the flag before the second check.
+     *
+     * @param statement the statement to track
+     * @throws SQLException if the token has already been cancelled
+     */
+    void register(Statement statement) throws SQLException {
+        if (cancelled) {
+            throw new SQLException("Operation was cancelled.", "HY008");
+        }
+        statements.add(statement);
+        if (cancelled) {
+            statements.remove(statement);
+            throw new SQLException("Operation was cancelled.", "HY008");
+        }
+    }
+
+    /**
+     * Stops tracking a closed statement.
+     *
+     * @param statement the statement to forget
+     */
+    void unregister(Statement statement) {
+        statements.remove(statement);
+    }
+}
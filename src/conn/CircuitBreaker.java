@@ -0,0 +1,247 @@
+package conn;
+
+import exceptions.DatabaseUnavailableException;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops database calls from waiting for an unreachable database.
+ * The breaker watches the outcome of connection attempts and statements; only connection failures
+ * (SQLState class 08) count as failures, not errors in the SQL itself.
+ * <ul>
+ *     <li>CLOSED: calls go through. When at least half of the recent outcomes are failures, the breaker opens.</li>
+ *     <li>OPEN: calls fail at once with a {@link DatabaseUnavailableException}. A background probe tries to
+ *     connect after a delay that doubles with every failed probe (1 s up to 60 s), with random jitter
+ *     so that the desks do not all reconnect at the same moment.</li>
+ *     <li>HALF_OPEN: the probe connected. Calls go through again; a few successes close the breaker,
+ *     a single failure opens it again with a longer delay.</li>
+ * </ul>
+ */
+public final class CircuitBreaker {
+
+    private static final int WINDOW_SIZE = 10;
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final int MIN_OUTCOMES = 3;
+    private static final double FAILURE_RATE_THRESHOLD = 0.5;
+    private static final int HALF_OPEN_SUCCESSES = 3;
+    private static final long BASE_DELAY_MILLIS = 1000;
+    private static final long MAX_DELAY_MILLIS = 60_000;
+
+    private final Probe probe;
+    private final ScheduledExecutorService probeExecutor;
+
+    private final long[] outcomeTimes = new long[WINDOW_SIZE];
+    private final boolean[] outcomeFailed = new boolean[WINDOW_SIZE];
+    private int nextOutcome;
+
+    private volatile State state = State.CLOSED;
+    private volatile long retryAtMillis;
+    private volatile String lastFailure;
+    private int failedProbes;
+    private int halfOpenSuccesses;
+
+    /**
+     * Creates a closed breaker.
+     *
+     * @param probe checks whether the database can be reached again
+     */
+    public CircuitBreaker(Probe probe) {
+        this.probe = probe;
+        this.probeExecutor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "db-circuit-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The state of the breaker.
+     */
+    public enum State {
+        /** The database is reachable; calls go through. */
+        CLOSED,
+        /** The database is unreachable; calls fail at once. */
+        OPEN,
+        /** The database answered a probe; calls go through on trial. */
+        HALF_OPEN
+    }
+
+    /**
+     * Connects to the database once to see whether it is reachable.
+     */
+    @FunctionalInterface
+    public interface Probe {
+        /**
+         * Tries to reach the database.
+         *
+         * @throws SQLException if the database cannot be reached
+         */
+        void check() throws SQLException;
+    }
+
+    /**
+     * Lets a call through or rejects it while the breaker is open.
+     *
+     * @throws DatabaseUnavailableException if the breaker is open
+     */
+    public void ensureAvailable() {
+        if (state == State.OPEN) {
+            long retryInMillis = Math.max(0, retryAtMillis - System.currentTimeMillis());
+            throw new DatabaseUnavailableException("The database is unreachable. Reconnecting in "
+                    + Math.max(1, (retryInMillis + 999) / 1000) + " s.", retryInMillis);
+        }
+    }
+
+    /**
+     * Records a successful connection attempt or statement.
+     */
+    public synchronized void recordSuccess() {
+        if (state == State.HALF_OPEN && ++halfOpenSuccesses >= HALF_OPEN_SUCCESSES) {
+            state = State.CLOSED;
+            failedProbes = 0;
+            clearOutcomes();
+        }
+        recordOutcome(false);
+    }
+
+    /**
+     * Records a failed connection attempt or statement and opens the breaker if the failure rate is too high.
+     * Failures that are not connection failures are counted as successes, since the database answered.
+     *
+     * @param sqlException the failure
+     */
+    public synchronized void recordFailure(SQLException sqlException) {
+        if (!isConnectionFailure(sqlException)) {
+            recordSuccess();
+            return;
+        }
+        lastFailure = sqlException.getMessage();
+        recordOutcome(true);
+        if (state == State.HALF_OPEN) {
+            failedProbes++;
+            open();
+        } else if (state == State.CLOSED && failureRateExceeded()) {
+            open();
+        }
+    }
+
+    /**
+     * Returns the state of the breaker.
+     *
+     * @return the state
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Returns how long it takes until the next probe while the breaker is open.
+     *
+     * @return the time in milliseconds, 0 if the breaker is not open
+     */
+    public long getRetryInMillis() {
+        return state == State.OPEN ? Math.max(0, retryAtMillis - System.currentTimeMillis()) : 0;
+    }
+
+    /**
+     * Returns the message of the last connection failure.
+     *
+     * @return the message, or null if no failure occurred
+     */
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Tells whether an exception means that the database could not be reached,
+     * as opposed to an error in the statement or the data.
+     *
+     * @param sqlException the exception
+     * @return true for connection failures
+     */
+    public static boolean isConnectionFailure(SQLException sqlException) {
+        String sqlState = sqlException.getSQLState();
+        return sqlState != null && sqlState.startsWith("08");
+    }
+
+    /**
+     * Opens the breaker and schedules the next probe.
+     */
+    private void open() {
+        state = State.OPEN;
+        long delayMillis = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(failedProbes, 16));
+        long jitteredMillis = delayMillis / 2 + ThreadLocalRandom.current().nextLong(delayMillis / 2 + 1);
+        retryAtMillis = System.currentTimeMillis() + jitteredMillis;
+        probeExecutor.schedule(this::runProbe, jitteredMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Probes the database and lets calls through on trial if it answers.
+     */
+    private void runProbe() {
+        SQLException failure = null;
+        try {
+            probe.check();
+        } catch (SQLException sqlException) {
+            failure = sqlException;
+        } catch (RuntimeException runtimeException) {
+            failure = new SQLException(runtimeException.getMessage(), "08001", runtimeException);
+        }
+
+        synchronized (this) {
+            if (failure == null) {
+                state = State.HALF_OPEN;
+                halfOpenSuccesses = 0;
+            } else {
+                lastFailure = failure.getMessage();
+                failedProbes++;
+                open();
+            }
+        }
+    }
+
+    /**
+     * Adds an outcome to the window of recent outcomes.
+     *
+     * @param failed whether the call failed
+     */
+    private void recordOutcome(boolean failed) {
+        outcomeTimes[nextOutcome] = System.nanoTime();
+        outcomeFailed[nextOutcome] = failed;
+        nextOutcome = (nextOutcome + 1) % WINDOW_SIZE;
+    }
+
+    /**
+     * Tells whether enough of the recent outcomes are failures to open the breaker.
+     *
+     * @return true if the failure rate reached the threshold
+     */
+    private boolean failureRateExceeded() {
+        long now = System.nanoTime();
+        int outcomes = 0;
+        int failures = 0;
+        for (int index = 0; index < WINDOW_SIZE; index++) {
+            if (outcomeTimes[index] != 0 && now - outcomeTimes[index] <= WINDOW_NANOS) {
+                outcomes++;
+                if (outcomeFailed[index]) {
+                    failures++;
+                }
+            }
+        }
+        return outcomes >= MIN_OUTCOMES && failures >= outcomes * FAILURE_RATE_THRESHOLD;
+    }
+
+    /**
+     * Forgets the recent outcomes.
+     */
+    private void clearOutcomes() {
+        Arrays.fill(outcomeTimes, 0);
+        Arrays.fill(outcomeFailed, false);
+        nextOutcome = 0;
+    }
+}
@@ -0,0 +1,684 @@
+package conn;
+
+import conf.QueryTimeouts;
+import metrics.CallSite;
+import metrics.DaoStatementEvent;
+import metrics.QueryAnalyzer;
+import metrics.QueryMetrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * A small, bounded pool of physical JDBC connections.
+ * Connections handed out by the pool are proxies: closing them returns the physical connection
+ * to the pool instead of closing it, so DAOs can keep using try-with-resources.
+ * Physical connections keep a prepared statement cache, which pays off because they are reused.
+ * Every statement is measured: its duration and row count are recorded in {@link QueryMetrics}
+ * under the DAO method that created it, as is the time spent waiting for a connection.
+ * While Flight Recorder is recording, statements are also emitted as {@link DaoStatementEvent}s.
+ * If timeouts are set, every statement gets the timeout of its {@link OperationClass}.
+ */
+public class ConnectionPool {
+
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 30;
+    private static final long VALIDATE_AFTER_IDLE_MILLIS = 30_000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private final String url;
+    private final Properties properties;
+    private final int maxSize;
+    private final Semaphore permits;
+    private final Deque<IdleConnection> idleConnections = new ConcurrentLinkedDeque<>();
+    private volatile SlowQueryLog slowQueryLog;
+    private volatile CircuitBreaker circuitBreaker;
+    private volatile QueryTimeouts queryTimeouts;
+
+    /**
+     * Creates a pool for the given database.
+     *
+     * @param url the JDBC URL of the database
+     * @param user the database username
+     * @param password the database password
+     * @param maxSize the maximum number of connections handed out at the same time
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize) {
+        this.url = url;
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.properties = new Properties();
+        properties.setProperty("user", user);
+        properties.setProperty("password", password);
+        properties.setProperty("cachePrepStmts", "true");
+        properties.setProperty("prepStmtCacheSize", "250");
+        properties.setProperty("prepStmtCacheSqlLimit", "2048");
+        properties.setProperty("rewriteBatchedStatements", "true");
+        properties.setProperty("connectTimeout", String.valueOf(CONNECT_TIMEOUT_MILLIS));
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if no idle connection is available.
+     * Blocks while all connections are in use.
+     *
+     * @return a pooled connection; closing it returns it to the pool
+     * @throws SQLException if no connection becomes available in time or the database is unreachable
+     */
+    public Connection acquire() throws SQLException {
+        Connection connection = tryAcquire(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (connection == null) {
+            throw new SQLException("Timed out waiting for a free database connection.", "08001");
+        }
+        return connection;
+    }
+
+    /**
+     * Borrows a connection from the pool if one becomes free within the given time,
+     * opening a new one if no idle connection is available.
+     *
+     * @param timeout the longest time to wait while all connections are in use, 0 not to wait
+     * @param unit the unit of the timeout
+     * @return a pooled connection, or null if all connections stayed in use; closing it returns it to the pool
+     * @throws SQLException if the database is unreachable or the thread is interrupted while waiting
+     */
+    public Connection tryAcquire(long timeout, TimeUnit unit) throws SQLException {
+        long acquireStart = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(timeout, unit)) {
+                return null;
+            }
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", "08001", interruptedException);
+        }
+
+        try {
+            Connection physical = takeIdleConnection();
+            if (physical == null) {
+                physical = openMonitoredConnection();
+            }
+            long waitNanos = System.nanoTime() - acquireStart;
+            QueryMetrics.shared().recordAcquire(waitNanos);
+            return wrap(physical, waitNanos);
+        } catch (SQLException | RuntimeException exception) {
+            permits.release();
+            throw exception;
+        }
+    }
+
+    /**
+     * Opens a new physical connection to the database of this pool, bypassing the pool.
+     *
+     * @return the physical connection
+     * @throws SQLException if the database is unreachable
+     */
+    Connection openPhysicalConnection() throws SQLException {
+        return DriverManager.getConnection(url, properties);
+    }
+
+    /**
+     * Opens a new physical connection and reports the outcome to the circuit breaker.
+     *
+     * @return the physical connection
+     * @throws SQLException if the database is unreachable
+     */
+    private Connection openMonitoredConnection() throws SQLException {
+        CircuitBreaker breaker = circuitBreaker;
+        if (breaker == null) {
+            return openPhysicalConnection();
+        }
+        try {
+            Connection physical = openPhysicalConnection();
+            breaker.recordSuccess();
+            return physical;
+        } catch (SQLException sqlException) {
+            breaker.recordFailure(sqlException);
+            throw sqlException;
+        }
+    }
+
+    /**
+     * Sets the circuit breaker that connection attempts and statements report their outcome to.
+     *
+     * @param circuitBreaker the circuit breaker, or null to report nothing
+     */
+    void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Sets the statement timeouts per class of operation.
+     *
+     * @param queryTimeouts the timeouts, or null to set none
+     */
+    void setQueryTimeouts(QueryTimeouts queryTimeouts) {
+        this.queryTimeouts = queryTimeouts;
+    }
+
+    /**
+     * Sets the log that statements exceeding its threshold are written to.
+     *
+     * @param slowQueryLog the slow-query log, or null to log nothing
+     */
+    void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    /**
+     * Returns the maximum number of connections of this pool.
+     *
+     * @return the pool size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of connections currently borrowed.
+     *
+     * @return the number of active connections
+     */
+    public int getActiveCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    /**
+     * Takes the most recently returned idle connection, validating it if it has been idle for a while.
+     *
+     * @return a usable physical connection, or null if none is idle
+     */
+    private Connection takeIdleConnection() {
+        IdleConnection idle;
+        while ((idle = idleConnections.pollFirst()) != null) {
+            try {
+                boolean stale = System.currentTimeMillis() - idle.returnedAt() > VALIDATE_AFTER_IDLE_MILLIS;
+                if (!stale || idle.connection().isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    return idle.connection();
+                }
+            } catch (SQLException ignored) {
+                // Treated as a broken connection below.
+            }
+            closeQuietly(idle.connection());
+        }
+        return null;
+    }
+
+    /**
+     * Returns a physical connection to the pool, resetting any transaction left open by the borrower.
+     *
+     * @param physical the connection to return
+     */
+    private void release(Connection physical) {
+        try {
+            if (physical.isClosed()) {
+                return;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            idleConnections.offerFirst(new IdleConnection(physical, System.currentTimeMillis()));
+        } catch (SQLException sqlException) {
+            closeQuietly(physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Wraps a physical connection into a pooled proxy.
+     *
+     * @param physical the physical connection
+     * @param waitNanos the time the borrower waited for the connection
+     * @return the proxy handed out to DAOs
+     */
+    private Connection wrap(Connection physical, long waitNanos) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new PooledConnectionHandler(physical, waitNanos)
+        );
+    }
+
+    /**
+     * Closes a connection and ignores any error.
+     *
+     * @param connection the connection to close
+     */
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // The connection is being discarded anyway.
+        }
+    }
+
+    /**
+     * Invokes a method on the target and unwraps the reflective exception.
+     *
+     * @param target the real JDBC object
+     * @param method the method to invoke
+     * @param args the arguments
+     * @return the result of the invocation
+     * @throws Throwable the exception thrown by the target
+     */
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException invocationTargetException) {
+            throw invocationTargetException.getCause();
+        }
+    }
+
+    /**
+     * An idle physical connection and the time it was returned.
+     *
+     * @param connection the physical connection
+     * @param returnedAt the time of return in epoch milliseconds
+     */
+    private record IdleConnection(Connection connection, long returnedAt) {}
+
+    /**
+     * Proxy handler of a borrowed connection. Returns the connection to the pool on close and
+     * registers created statements with the cancellation token of the current thread.
+     */
+    private class PooledConnectionHandler implements InvocationHandler {
+
+        private final Connection physical;
+        private final long waitNanos;
+        private boolean closed;
+
+        PooledConnectionHandler(Connection physical, long waitNanos) {
+            this.physical = physical;
+            this.waitNanos = waitNanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        release(physical);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed || physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled" + physical;
+                }
+            }
+
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool.", "08003");
+            }
+
+            Object result = invokeTarget(physical, method, args);
+            if (method.getName().equals("commit")) {
+                WriteTracker.recordWrite();
+            }
+            if (result instanceof Statement statement) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                return wrapStatement(statement, method.getReturnType(), (Connection) proxy, sql);
+            }
+            return result;
+        }
+
+        /**
+         * Wraps a statement so it is tracked by the current cancellation token until it is closed
+         * and its executions are measured, and sets the timeout of the DAO method's operation class.
+         *
+         * @param statement the real statement
+         * @param type the statement interface returned by the called method
+         * @param connectionProxy the pooled connection the statement belongs to
+         * @param sql the SQL of a prepared statement, or null for a plain statement
+         * @return the statement proxy
+         * @throws SQLException if the current operation has already been cancelled
+         */
+        private Statement wrapStatement(Statement statement, Class<?> type, Connection connectionProxy, String sql) throws SQLException {
+            CancellationToken token = CancellationToken.current();
+            if (token != null) {
+                try {
+                    token.register(statement);
+                } catch (SQLException cancelledException) {
+                    statement.close();
+                    throw cancelledException;
+                }
+            }
+
+            PooledStatementHandler handler = new PooledStatementHandler(statement, connectionProxy, token, sql, slowQueryLog, circuitBreaker, waitNanos);
+            QueryTimeouts timeouts = queryTimeouts;
+            if (timeouts != null) {
+                OperationClass operationClass = OperationClass.of(handler.caller);
+                statement.setQueryTimeout(operationClass != null ? operationClass.timeoutSeconds(timeouts) : 0);
+            }
+
+            return (Statement) Proxy.newProxyInstance(
+                    Statement.class.getClassLoader(),
+                    new Class<?>[]{type},
+                    handler
+            );
+        }
+    }
+
+    /**
+     * Proxy handler of a statement created by a pooled connection. Measures every execution,
+     * counts the rows of returned result sets and records writes for {@link WriteTracker}.
+     * While the slow-query log or the query analyzer is on, it also remembers the bind values so that slow executions
+     * can be logged and repeated executions recognized.
+     */
+    private static class PooledStatementHandler implements InvocationHandler {
+
+        private final Statement statement;
+        private final Connection connectionProxy;
+        private final CancellationToken token;
+        private final String caller = CallSite.find();
+        private final String preparedSql;
+        private final QueryMetrics.QueryStats preparedStats;
+        private final SlowQueryLog slowQueryLog;
+        private final CircuitBreaker circuitBreaker;
+        private final long connectionWaitNanos;
+        private QueryMetrics.QueryStats lastStats;
+        private CountingResultSetHandler openResultSet;
+        private Object[] binds;
+        private int bindCount;
+
+        PooledStatementHandler(Statement statement, Connection connectionProxy, CancellationToken token, String sql,
+                               SlowQueryLog slowQueryLog, CircuitBreaker circuitBreaker, long connectionWaitNanos) {
+            this.statement = statement;
+            this.connectionProxy = connectionProxy;
+            this.token = token;
+            this.preparedSql = sql;
+            this.preparedStats = sql != null ? QueryMetrics.shared().statsFor(caller, sql) : null;
+            this.slowQueryLog = slowQueryLog;
+            this.circuitBreaker = circuitBreaker;
+            this.connectionWaitNanos = connectionWaitNanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ((slowQueryLog != null || QueryAnalyzer.isEnabled()) && preparedSql != null) {
+                rememberBind(method, args);
+            }
+
+            return switch (method.getName()) {
+                case "close" -> {
+                    flushResultSet();
+                    if (token != null) {
+                        token.unregister(statement);
+                    }
+                    yield invokeTarget(statement, method, args);
+                }
+                case "executeQuery", "execute", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch" ->
+                        execute((Statement) proxy, method, args);
+                case "getResultSet" -> {
+                    QueryMetrics.QueryStats stats = lastStats != null ? lastStats : statsFor(null);
+                    yield wrapResultSet((Statement) proxy, (ResultSet) invokeTarget(statement, method, args), stats::recordRows);
+                }
+                case "getConnection" -> connectionProxy;
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                default -> invokeTarget(statement, method, args);
+            };
+        }
+
+        /**
+         * Runs an execute method of the statement and records its duration and row count.
+         *
+         * @param proxy the statement proxy
+         * @param method the execute method
+         * @param args the arguments; the SQL for a plain statement
+         * @return the result of the execution, with result sets wrapped
+         * @throws Throwable the exception thrown by the statement
+         */
+        private Object execute(Statement proxy, Method method, Object[] args) throws Throwable {
+            flushResultSet();
+            String executedSql = args != null && args.length > 0 && args[0] instanceof String sql ? sql : null;
+            QueryMetrics.QueryStats stats = statsFor(executedSql);
+            lastStats = stats;
+
+            QueryAnalyzer.Scope analyzerScope = QueryAnalyzer.current();
+            if (analyzerScope != null && !method.getName().endsWith("Batch")) {
+                analyzerScope.record(caller, stats.getTemplate(), executedSql != null ? executedSql : currentBinds());
+            }
+
+            long start = System.nanoTime();
+            DaoStatementEvent event = new DaoStatementEvent();
+            event.begin();
+            boolean failed = true;
+            boolean rowsPending = false;
+            long rows = 0;
+            try {
+                Object result = invokeStatement(method, args);
+                failed = false;
+
+                switch (method.getName()) {
+                    case "executeQuery" -> {
+                        rowsPending = true;
+                        return wrapResultSet(proxy, (ResultSet) result, rowsRead -> {
+                            stats.recordRows(rowsRead);
+                            commitEvent(event, stats, rowsRead, false);
+                        });
+                    }
+                    case "execute" -> {
+                        return result;
+                    }
+                    case "executeUpdate", "executeLargeUpdate" -> rows = ((Number) result).longValue();
+                    case "executeBatch" -> {
+                        for (int count : (int[]) result) {
+                            rows += Math.max(0, count);
+                        }
+                    }
+                    case "executeLargeBatch" -> {
+                        for (long count : (long[]) result) {
+                            rows += Math.max(0, count);
+                        }
+                    }
+                }
+                stats.recordRows(rows);
+                WriteTracker.recordWrite();
+                return result;
+            } finally {
+                event.end();
+                if (!rowsPending) {
+                    commitEvent(event, stats, rows, failed);
+                }
+                long durationNanos = System.nanoTime() - start;
+                stats.recordExecution(durationNanos, failed);
+                if (slowQueryLog != null && durationNanos >= slowQueryLog.getThresholdNanos()) {
+                    slowQueryLog.record(new SlowQueryLog.SlowQuery(Instant.now(), durationNanos, caller, Thread.currentThread().getName(),
+                            stats.getTemplate(), executedSql != null ? executedSql : preparedSql,
+                            executedSql == null && binds != null ? Arrays.copyOf(binds, bindCount + 1) : null, failed));
+                }
+            }
+        }
+
+        /**
+         * Invokes an execute method on the statement and reports the outcome to the circuit breaker.
+         *
+         * @param method the execute method
+         * @param args the arguments
+         * @return the result of the execution
+         * @throws Throwable the exception thrown by the statement
+         */
+        private Object invokeStatement(Method method, Object[] args) throws Throwable {
+            CircuitBreaker breaker = circuitBreaker;
+            if (breaker == null) {
+                return invokeTarget(statement, method, args);
+            }
+            try {
+                Object result = invokeTarget(statement, method, args);
+                breaker.recordSuccess();
+                return result;
+            } catch (SQLException sqlException) {
+                breaker.recordFailure(sqlException);
+                throw sqlException;
+            }
+        }
+
+        /**
+         * Records a statement event if Flight Recorder is recording and the statement exceeded the event threshold.
+         *
+         * @param event the ended event
+         * @param stats the statistics of the statement
+         * @param rows the rows returned or changed
+         * @param failed whether the statement threw an exception
+         */
+        private void commitEvent(DaoStatementEvent event, QueryMetrics.QueryStats stats, long rows, boolean failed) {
+            if (event.shouldCommit()) {
+                event.describe(caller, stats.getTemplate(), rows, connectionWaitNanos, failed);
+                event.commit();
+            }
+        }
+
+        /**
+         * Remembers the value passed to a parameter setter of a prepared statement, such as setString(1, "x").
+         *
+         * @param method the called method
+         * @param args the arguments of the call
+         */
+        private void rememberBind(Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("clearParameters")) {
+                binds = null;
+                bindCount = 0;
+                return;
+            }
+            if (!name.startsWith("set") || args == null || args.length < 2 || !(args[0] instanceof Integer index) || index < 1) {
+                return;
+            }
+            if (binds == null || binds.length <= index) {
+                binds = Arrays.copyOf(binds != null ? binds : new Object[0], Math.max(index + 1, 8));
+            }
+            binds[index] = name.equals("setNull") ? null : args[1];
+            bindCount = Math.max(bindCount, index);
+        }
+
+        /**
+         * Returns the bind values of the next execution of the prepared statement.
+         *
+         * @return the values by parameter index, starting at 1
+         */
+        private List<Object> currentBinds() {
+            return binds != null ? Arrays.asList(Arrays.copyOfRange(binds, 1, bindCount + 1)) : List.of();
+        }
+
+        /**
+         * Returns the statistics an execution is recorded into.
+         *
+         * @param sql the SQL passed to the execute method of a plain statement, or null
+         * @return the statistics of the prepared SQL, of the passed SQL, or of unnamed batches
+         */
+        private QueryMetrics.QueryStats statsFor(String sql) {
+            if (sql != null) {
+                return QueryMetrics.shared().statsFor(caller, sql);
+            }
+            return preparedStats != null ? preparedStats : QueryMetrics.shared().statsFor(caller, "(statement batch)");
+        }
+
+        /**
+         * Wraps a result set so that the rows read from it are counted.
+         *
+         * @param proxy the statement proxy the result set belongs to
+         * @param resultSet the real result set, or null
+         * @param onClose receives the number of rows read once the result set is closed
+         * @return the result set proxy, or null if there is no result set
+         */
+        private ResultSet wrapResultSet(Statement proxy, ResultSet resultSet, LongConsumer onClose) {
+            if (resultSet == null) {
+                return null;
+            }
+            flushResultSet();
+            openResultSet = new CountingResultSetHandler(resultSet, proxy, onClose);
+            return (ResultSet) Proxy.newProxyInstance(
+                    ResultSet.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class},
+                    openResultSet
+            );
+        }
+
+        /**
+         * Records the rows of the last result set, in case it was not closed explicitly.
+         */
+        private void flushResultSet() {
+            if (openResultSet != null) {
+                openResultSet.flush();
+                openResultSet = null;
+            }
+        }
+    }
+
+    /**
+     * Proxy handler of a result set that counts the rows read and reports them when it is closed.
+     */
+    private static class CountingResultSetHandler implements InvocationHandler {
+
+        private final ResultSet resultSet;
+        private final Statement statementProxy;
+        private final LongConsumer onClose;
+        private long rows;
+        private boolean flushed;
+
+        CountingResultSetHandler(ResultSet resultSet, Statement statementProxy, LongConsumer onClose) {
+            this.resultSet = resultSet;
+            this.statementProxy = statementProxy;
+            this.onClose = onClose;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return switch (method.getName()) {
+                case "next" -> {
+                    boolean hasRow = resultSet.next();
+                    if (hasRow) {
+                        rows++;
+                    }
+                    yield hasRow;
+                }
+                case "close" -> {
+                    flush();
+                    yield invokeTarget(resultSet, method, args);
+                }
+                case "getStatement" -> statementProxy;
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                default -> invokeTarget(resultSet, method, args);
+            };
+        }
+
+        /**
+         * Reports the counted rows once.
+         */
+        void flush() {
+            if (!flushed) {
+                flushed = true;
+                onClose.accept(rows);
+            }
+        }
+    }
+}
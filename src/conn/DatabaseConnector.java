@@ -2,29 +2,93 @@ package conn;
 
 import conf.AppConfiguration;
 import conf.ConfigLoader;
+import conf.QueryTimeouts;
+import exceptions.DatabaseUnavailableException;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
 
 /**
- * Singleton class responsible for managing the database connection.
- * It loads the configuration and provides a connection instance.
+ * Singleton class responsible for managing the database connections.
+ * It loads the configuration and hands out connections from a shared pool.
+ * If read replicas are configured, read-only DAO calls borrow from their pools instead, taking turns;
+ * writes, transactions and reads shortly after a write stay on the primary database.
+ * A circuit breaker guards the primary database: while it is unreachable, calls fail at once with a
+ * {@link DatabaseUnavailableException} instead of each waiting for the connect timeout.
+ * While a transaction is bound to the current thread, every connection handed out on that thread is the
+ * transaction's connection, so DAO calls made inside a unit of work join its transaction.
  */
 public class DatabaseConnector {
 
+    private static final long REPLICA_RETRY_NANOS = TimeUnit.SECONDS.toNanos(30);
+    /** How long a read waits for a free connection of a busy replica before trying the next one. */
+    private static final long REPLICA_ACQUIRE_MILLIS = 100;
+    private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = ThreadLocal.withInitial(() -> false);
+    private static final ThreadLocal<Connection> TRANSACTION = new ThreadLocal<>();
+
     private static DatabaseConnector instance;
-    private Connection connection;
 
     private final AppConfiguration appConfiguration;
+    private final ConnectionPool connectionPool;
+    private final CircuitBreaker circuitBreaker;
+    private final List<ConnectionPool> replicaPools = new ArrayList<>();
+    private final AtomicLongArray replicaUnavailableUntil;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final long readYourWritesNanos;
 
     /**
      * Private constructor to prevent direct instantiation.
-     * Loads the application configuration.
+     * Loads the application configuration and creates the connection pools, with the slow-query log if it is turned on.
      */
     private DatabaseConnector() throws IOException {
         this.appConfiguration = ConfigLoader.loadConfig();
+        this.connectionPool = new ConnectionPool(
+                appConfiguration.dbUrl(),
+                appConfiguration.dbUser(),
+                appConfiguration.dbPassword(),
+                appConfiguration.poolSize()
+        );
+        this.circuitBreaker = new CircuitBreaker(() -> {
+            try (Connection probeConnection = connectionPool.openPhysicalConnection()) {
+                probeConnection.isValid(2);
+            }
+        });
+        connectionPool.setCircuitBreaker(circuitBreaker);
+        connectionPool.setQueryTimeouts(appConfiguration.queryTimeouts());
+        for (String replicaUrl : appConfiguration.readReplicaUrls()) {
+            replicaPools.add(new ConnectionPool(
+                    replicaUrl,
+                    appConfiguration.dbUser(),
+                    appConfiguration.dbPassword(),
+                    appConfiguration.poolSize()
+            ));
+        }
+        replicaPools.forEach(replicaPool -> replicaPool.setQueryTimeouts(appConfiguration.queryTimeouts()));
+        this.replicaUnavailableUntil = new AtomicLongArray(replicaPools.size());
+        this.readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(appConfiguration.readYourWritesWindowMillis());
+
+        if (appConfiguration.slowQueryThresholdMillis() > 0) {
+            SlowQueryLog slowQueryLog = new SlowQueryLog(
+                    appConfiguration.slowQueryThresholdMillis(),
+                    Path.of(appConfiguration.slowQueryLogPath()),
+                    connectionPool::openPhysicalConnection
+            );
+            connectionPool.setSlowQueryLog(slowQueryLog);
+            replicaPools.forEach(replicaPool -> replicaPool.setSlowQueryLog(slowQueryLog));
+        }
     }
 
     /**
@@ -32,7 +96,7 @@ public class DatabaseConnector {
      *
      * @return The singleton instance.
      */
-    public static DatabaseConnector getInstance() {
+    public static synchronized DatabaseConnector getInstance() {
         if (instance == null) {
             try{
                 instance = new DatabaseConnector();
@@ -42,23 +106,192 @@ public class DatabaseConnector {
     }
 
     /**
-     * Retrieves the active database connection.
-     * Creates a new connection if one does not exist or is closed.
+     * Borrows a connection from the pool.
+     * Closing the returned connection gives it back to the pool, so it can be used with try-with-resources.
+     * Inside a transaction bound to the current thread, the transaction's connection is returned instead;
+     * closing it then does nothing, and it cannot be committed or rolled back by the caller.
      *
      * @return The Connection object.
-     * @throws SQLException If the connection is closed or invalid.
+     * @throws SQLException If no connection can be obtained.
+     * @throws DatabaseUnavailableException If the database is known to be unreachable.
      */
     public Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            connection = DriverManager.getConnection(
-                    appConfiguration.dbUrl(),
-                    appConfiguration.dbUser(),
-                    appConfiguration.dbPassword()
-            );
+        Connection transaction = TRANSACTION.get();
+        if (transaction != null) {
+            return joinTransaction(transaction);
+        }
+        circuitBreaker.ensureAvailable();
+        return connectionPool.acquire();
+    }
+
+    /**
+     * Borrows a connection from the pool, turns auto-commit off and binds it to the current thread as its transaction.
+     * Until {@link #unbindTransaction()} is called, {@link #getConnection()} and {@link #getReadConnection()}
+     * return this connection on the current thread. The caller commits or rolls back and closes it.
+     *
+     * @return The connection of the transaction.
+     * @throws SQLException If no connection can be obtained.
+     * @throws IllegalStateException If a transaction is already bound to the current thread.
+     * @throws DatabaseUnavailableException If the database is known to be unreachable.
+     */
+    public Connection bindTransaction() throws SQLException {
+        if (TRANSACTION.get() != null) {
+            throw new IllegalStateException("A transaction is already bound to this thread.");
+        }
+        Connection connection = getConnection();
+        try {
+            connection.setAutoCommit(false);
+        } catch (SQLException sqlException) {
+            connection.close();
+            throw sqlException;
         }
+        TRANSACTION.set(connection);
         return connection;
     }
 
+    /**
+     * Unbinds the transaction from the current thread. Its connection is not closed.
+     */
+    public static void unbindTransaction() {
+        TRANSACTION.remove();
+    }
+
+    /**
+     * Tells whether a transaction is bound to the current thread.
+     *
+     * @return true inside a unit of work
+     */
+    public static boolean inTransaction() {
+        return TRANSACTION.get() != null;
+    }
+
+    /**
+     * Borrows a connection for a read-only query, from a replica if one is configured and usable.
+     * The primary database is used instead within the read-your-writes window after a write,
+     * inside {@link #onPrimary(Supplier)} or a transaction, and while no replica can be reached. A replica that fails
+     * to connect is skipped for 30 seconds. A replica whose connections are all in use is only skipped for this read:
+     * after a short wait the next replica is tried, and the primary database when all of them are busy.
+     *
+     * @return The Connection object; it must only be used for reading.
+     * @throws SQLException If no connection can be obtained.
+     * @throws DatabaseUnavailableException If the primary database is needed and known to be unreachable.
+     */
+    public Connection getReadConnection() throws SQLException {
+        if (replicaPools.isEmpty() || TRANSACTION.get() != null || PINNED_TO_PRIMARY.get() || WriteTracker.wroteWithin(readYourWritesNanos)) {
+            return getConnection();
+        }
+
+        int first = Math.floorMod(nextReplica.getAndIncrement(), replicaPools.size());
+        for (int offset = 0; offset < replicaPools.size(); offset++) {
+            int index = (first + offset) % replicaPools.size();
+            if (System.nanoTime() - replicaUnavailableUntil.get(index) < 0) {
+                continue;
+            }
+            try {
+                Connection connection = replicaPools.get(index).tryAcquire(REPLICA_ACQUIRE_MILLIS, TimeUnit.MILLISECONDS);
+                if (connection != null) {
+                    return connection;
+                }
+            } catch (SQLException sqlException) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw sqlException;
+                }
+                if (CircuitBreaker.isConnectionFailure(sqlException)) {
+                    replicaUnavailableUntil.set(index, System.nanoTime() + REPLICA_RETRY_NANOS);
+                }
+            }
+        }
+        return getConnection();
+    }
+
+    /**
+     * Runs a call whose reads must see the latest data, such as a lookup deciding whether to insert a row.
+     * Reads of the current thread go to the primary database until the call returns.
+     *
+     * @param call the call to run
+     * @param <T> the result type
+     * @return the result of the call
+     */
+    public static <T> T onPrimary(Supplier<T> call) {
+        if (PINNED_TO_PRIMARY.get()) {
+            return call.get();
+        }
+        PINNED_TO_PRIMARY.set(true);
+        try {
+            return call.get();
+        } finally {
+            PINNED_TO_PRIMARY.remove();
+        }
+    }
+
+    /**
+     * Returns the configured statement timeouts per class of operation.
+     *
+     * @return The timeouts.
+     */
+    public QueryTimeouts getQueryTimeouts() {
+        return appConfiguration.queryTimeouts();
+    }
+
+    /**
+     * Returns the circuit breaker guarding the primary database, e.g. to show its state.
+     *
+     * @return The circuit breaker.
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Returns the number of configured read replicas.
+     *
+     * @return The number of replicas, 0 if all reads go to the primary database.
+     */
+    public int getReplicaCount() {
+        return replicaPools.size();
+    }
+
+    /**
+     * Returns the maximum number of connections that can be in use at the same time.
+     *
+     * @return The size of the connection pool.
+     */
+    public int getPoolSize() {
+        return connectionPool.getMaxSize();
+    }
+
+    /**
+     * Returns the number of pooled connections that are currently borrowed.
+     *
+     * @return The number of connections in use.
+     */
+    public int getActiveConnections() {
+        return connectionPool.getActiveCount();
+    }
+
+    /**
+     * Returns the number of connections to read replicas that are currently borrowed.
+     *
+     * @return The number of replica connections in use.
+     */
+    public int getActiveReplicaConnections() {
+        return replicaPools.stream().mapToInt(ConnectionPool::getActiveCount).sum();
+    }
+
+    /**
+     * Wraps the connection of a transaction for a caller that joins it.
+     *
+     * @param transaction the connection of the transaction
+     * @return a view of the connection that ignores close
+     */
+    private static Connection joinTransaction(Connection transaction) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new JoinedConnectionHandler(transaction)
+        );
+    }
+
     /**
      * Checks if the application can connect to the database server.
      * @throws SQLException If the connection to the database server fails.
@@ -70,4 +303,44 @@ public class DatabaseConnector {
                 appConfiguration.dbPassword())) {
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Proxy handler of a connection joining a transaction. Closing it leaves the transaction open, and
+     * committing, rolling back or turning auto-commit on is refused, since the unit of work that bound the
+     * transaction decides its outcome.
+     */
+    private static final class JoinedConnectionHandler implements InvocationHandler {
+
+        private final Connection transaction;
+
+        JoinedConnectionHandler(Connection transaction) {
+            this.transaction = transaction;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    return null;
+                }
+                case "setAutoCommit" -> {
+                    if (!(Boolean) args[0]) {
+                        return null;
+                    }
+                    throw new SQLException("The transaction is committed by the unit of work that started it.");
+                }
+                case "commit" -> throw new SQLException("The transaction is committed by the unit of work that started it.");
+                case "rollback" -> {
+                    if (args == null) {
+                        throw new SQLException("The transaction is rolled back by the unit of work that started it; throw an exception instead.");
+                    }
+                }
+            }
+            try {
+                return method.invoke(transaction, args);
+            } catch (InvocationTargetException invocationTargetException) {
+                throw invocationTargetException.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package conn;
+
+import conf.QueryTimeouts;
+
+/**
+ * The class of a database operation, which decides the timeout of its statements.
+ * The class is derived from the DAO method running the statement.
+ */
+public enum OperationClass {
+    /** An interactive lookup or change of single rows, such as getById, findByName or saving a loan. */
+    LOOKUP,
+    /** Loading a whole list, such as getAll or streamAll. */
+    LIST,
+    /** A report over aggregating views, such as the library statistics. */
+    REPORT,
+    /** A database batch of an import, such as saveAll or upsertAll. */
+    IMPORT_BATCH;
+
+    /**
+     * Classifies a statement by the DAO method that runs it.
+     *
+     * @param caller the method as "Class.method", e.g. "BookDAO.getAll"
+     * @return the class, or null if the statement does not come from a DAO and has no timeout
+     */
+    public static OperationClass of(String caller) {
+        int dot = caller.indexOf('.');
+        if (dot < 0 || !caller.substring(0, dot).endsWith("DAO")) {
+            return null;
+        }
+        String className = caller.substring(0, dot);
+        String methodName = caller.substring(dot + 1);
+
+        if (className.equals("ActiveLoansDAO") || className.equals("LibraryStatisticsDAO")) {
+            return REPORT;
+        }
+        return switch (methodName) {
+            case "getAll", "loadAll", "streamAll" -> LIST;
+            case "saveAll", "upsertAll" -> IMPORT_BATCH;
+            default -> LOOKUP;
+        };
+    }
+
+    /**
+     * Returns the configured timeout of this class.
+     *
+     * @param queryTimeouts the configured timeouts
+     * @return the timeout in seconds, 0 if turned off
+     */
+    public int timeoutSeconds(QueryTimeouts queryTimeouts) {
+        return switch (this) {
+            case LOOKUP -> queryTimeouts.lookupSeconds();
+            case LIST -> queryTimeouts.listSeconds();
+            case REPORT -> queryTimeouts.reportSeconds();
+            case IMPORT_BATCH -> queryTimeouts.importBatchSeconds();
+        };
+    }
+}
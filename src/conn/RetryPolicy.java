@@ -0,0 +1,137 @@
+package conn;
+
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether a failed transaction may simply be run again, and how long to wait before doing so.
+ * Deadlocks and lock wait timeouts are caused by another desk holding the same rows; the database
+ * rolls the victim back, so running the whole transaction again usually succeeds. Other failures,
+ * such as constraint violations or connection failures, are not retried.
+ * The wait doubles with every attempt up to a limit, with random jitter so that the desks that
+ * deadlocked with each other do not collide again. Retries are counted for the metrics endpoint.
+ */
+public final class RetryPolicy {
+
+    private static final RetryPolicy SHARED = new RetryPolicy(4, 50, 1000);
+
+    /** SQLState of a serialization failure, which MySQL also reports for deadlocks. */
+    private static final String SERIALIZATION_FAILURE = "40001";
+    /** MySQL error ER_LOCK_DEADLOCK. */
+    private static final int MYSQL_DEADLOCK = 1213;
+    /** MySQL error ER_LOCK_WAIT_TIMEOUT. */
+    private static final int MYSQL_LOCK_WAIT_TIMEOUT = 1205;
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    /**
+     * Creates a policy.
+     *
+     * @param maxAttempts how often a transaction is run at most, including the first attempt
+     * @param baseDelayMillis the wait before the first retry
+     * @param maxDelayMillis the longest wait before a retry
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Returns the policy used by the DAOs.
+     *
+     * @return the shared RetryPolicy
+     */
+    public static RetryPolicy shared() {
+        return SHARED;
+    }
+
+    /**
+     * Tells whether a transaction that failed with an exception may be run again.
+     * The exception and its chained exceptions are checked, since drivers may wrap the cause.
+     *
+     * @param sqlException the failure
+     * @return true for deadlocks and lock wait timeouts
+     */
+    public static boolean isRetryable(SQLException sqlException) {
+        for (Throwable throwable = sqlException; throwable != null; throwable = next(throwable)) {
+            if (throwable instanceof SQLTransactionRollbackException) {
+                return true;
+            }
+            if (throwable instanceof SQLException exception
+                    && (SERIALIZATION_FAILURE.equals(exception.getSQLState())
+                    || exception.getErrorCode() == MYSQL_DEADLOCK
+                    || exception.getErrorCode() == MYSQL_LOCK_WAIT_TIMEOUT)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decides whether to run a transaction again after a failure, and counts the retry.
+     *
+     * @param sqlException the failure
+     * @param attempt the number of the attempt that failed, starting at 1
+     * @return true if the transaction should be run again
+     */
+    public boolean shouldRetry(SQLException sqlException, int attempt) {
+        if (!isRetryable(sqlException)) {
+            return false;
+        }
+        if (attempt >= maxAttempts) {
+            exhausted.increment();
+            return false;
+        }
+        retries.increment();
+        return true;
+    }
+
+    /**
+     * Returns how long to wait before the next attempt.
+     *
+     * @param attempt the number of the attempt that failed, starting at 1
+     * @return the wait in milliseconds, between half and all of the exponential delay
+     */
+    public long backoffMillis(int attempt) {
+        long delayMillis = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 16));
+        return delayMillis / 2 + ThreadLocalRandom.current().nextLong(delayMillis / 2 + 1);
+    }
+
+    /**
+     * Returns how many times transactions were run again.
+     *
+     * @return the number of retries
+     */
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    /**
+     * Returns how many transactions still failed with a retryable error after the last attempt.
+     *
+     * @return the number of transactions that ran out of attempts
+     */
+    public long getExhaustedCount() {
+        return exhausted.sum();
+    }
+
+    /**
+     * Returns the next exception in the chain of a failure.
+     *
+     * @param throwable the failure
+     * @return the chained SQLException or the cause, or null at the end of the chain
+     */
+    private static Throwable next(Throwable throwable) {
+        if (throwable instanceof SQLException sqlException && sqlException.getNextException() != null) {
+            return sqlException.getNextException();
+        }
+        return throwable.getCause() != throwable ? throwable.getCause() : null;
+    }
+}
@@ -0,0 +1,265 @@
+package conn;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes statements that ran longer than a threshold into a local log file.
+ * Statements are handed over to a background thread, so the thread that ran the statement never waits for the disk.
+ * For every SELECT template, the plan from EXPLAIN FORMAT=JSON is captured the first time the template is slow,
+ * using a separate connection outside the pool. Bind values are redacted except for numbers, booleans and nulls.
+ * The log file is rotated when it grows too large.
+ */
+final class SlowQueryLog {
+
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final long MAX_FILE_BYTES = 10L * 1024 * 1024;
+    private static final int KEPT_FILES = 5;
+    private static final int EXPLAIN_TIMEOUT_SECONDS = 10;
+
+    private final long thresholdNanos;
+    private final Path logFile;
+    private final ConnectionSource explainConnections;
+    private final BlockingQueue<SlowQuery> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Set<String> explainedTemplates = ConcurrentHashMap.newKeySet();
+    private final LongAdder dropped = new LongAdder();
+    private BufferedWriter writer;
+
+    /**
+     * Opens physical connections used to capture query plans.
+     */
+    @FunctionalInterface
+    interface ConnectionSource {
+        /**
+         * Opens a new connection that is not part of the pool.
+         *
+         * @return the connection; the caller closes it
+         * @throws SQLException if the database is unreachable
+         */
+        Connection open() throws SQLException;
+    }
+
+    /**
+     * A statement that exceeded the threshold.
+     *
+     * @param finishedAt the time the statement finished
+     * @param durationNanos the duration of the statement
+     * @param caller the DAO method that ran the statement
+     * @param threadName the thread that ran the statement
+     * @param template the SQL template
+     * @param sql the SQL as prepared
+     * @param binds the bind values by parameter index (index 0 is unused), or null for a plain statement
+     * @param failed whether the statement threw an exception
+     */
+    record SlowQuery(Instant finishedAt, long durationNanos, String caller, String threadName,
+                     String template, String sql, Object[] binds, boolean failed) {}
+
+    /**
+     * Creates the log and starts its writer thread.
+     *
+     * @param thresholdMillis the duration from which statements are logged
+     * @param logFile the path of the log file
+     * @param explainConnections opens connections for EXPLAIN
+     */
+    SlowQueryLog(long thresholdMillis, Path logFile, ConnectionSource explainConnections) {
+        this.thresholdNanos = thresholdMillis * 1_000_000;
+        this.logFile = logFile;
+        this.explainConnections = explainConnections;
+
+        Thread writerThread = new Thread(this::writeLoop, "slow-query-log");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Returns the duration from which statements are logged.
+     *
+     * @return the threshold in nanoseconds
+     */
+    long getThresholdNanos() {
+        return thresholdNanos;
+    }
+
+    /**
+     * Queues a slow statement for writing. If the writer cannot keep up, the statement is dropped and counted.
+     *
+     * @param slowQuery the statement
+     */
+    void record(SlowQuery slowQuery) {
+        if (!queue.offer(slowQuery)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Takes queued statements and writes them until the application exits.
+     */
+    private void writeLoop() {
+        while (true) {
+            SlowQuery slowQuery;
+            try {
+                slowQuery = queue.take();
+            } catch (InterruptedException interruptedException) {
+                return;
+            }
+
+            try {
+                write(slowQuery);
+            } catch (IOException ioException) {
+                closeWriter();
+            }
+        }
+    }
+
+    /**
+     * Writes one statement, with its plan if it is the first slow SELECT of its template.
+     *
+     * @param slowQuery the statement
+     * @throws IOException if the log cannot be written
+     */
+    private void write(SlowQuery slowQuery) throws IOException {
+        StringBuilder entry = new StringBuilder();
+        entry.append(slowQuery.finishedAt())
+                .append(String.format(Locale.ROOT, " %.1f ms ", slowQuery.durationNanos() / 1e6))
+                .append(slowQuery.caller())
+                .append(" [").append(slowQuery.threadName()).append(']');
+        if (slowQuery.failed()) {
+            entry.append(" FAILED");
+        }
+        long droppedCount = dropped.sumThenReset();
+        if (droppedCount > 0) {
+            entry.append(" (").append(droppedCount).append(" earlier entries dropped)");
+        }
+        entry.append("\n  sql: ").append(slowQuery.template()).append('\n');
+        if (slowQuery.binds() != null) {
+            entry.append("  binds: ").append(redact(slowQuery.binds())).append('\n');
+        }
+
+        if (slowQuery.template().regionMatches(true, 0, "select", 0, 6) && explainedTemplates.add(slowQuery.template())) {
+            entry.append("  plan: ").append(explain(slowQuery).replace("\n", "\n  ")).append('\n');
+        }
+
+        BufferedWriter logWriter = openWriter();
+        logWriter.write(entry.toString());
+        logWriter.flush();
+    }
+
+    /**
+     * Runs EXPLAIN FORMAT=JSON for a statement with its original bind values.
+     *
+     * @param slowQuery the statement
+     * @return the plan, or the reason it could not be captured
+     */
+    private String explain(SlowQuery slowQuery) {
+        try (Connection connection = explainConnections.open();
+             PreparedStatement statement = connection.prepareStatement("explain format=json " + slowQuery.sql())) {
+            statement.setQueryTimeout(EXPLAIN_TIMEOUT_SECONDS);
+            Object[] binds = slowQuery.binds();
+            if (binds != null) {
+                for (int index = 1; index < binds.length; index++) {
+                    statement.setObject(index, binds[index]);
+                }
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString(1) : "(no plan)";
+            }
+        } catch (SQLException sqlException) {
+            return "(not available: " + sqlException.getMessage() + ")";
+        }
+    }
+
+    /**
+     * Describes bind values without revealing personal data: numbers, booleans and nulls are shown,
+     * any other value only by its type and length.
+     *
+     * @param binds the bind values by parameter index
+     * @return the description
+     */
+    private static String redact(Object[] binds) {
+        StringBuilder description = new StringBuilder();
+        for (int index = 1; index < binds.length; index++) {
+            if (index > 1) {
+                description.append(", ");
+            }
+            Object value = binds[index];
+            description.append(index).append('=');
+            if (value == null || value instanceof Number || value instanceof Boolean) {
+                description.append(value);
+            } else {
+                description.append(value.getClass().getSimpleName()).append('(').append(String.valueOf(value).length()).append(')');
+            }
+        }
+        return description.toString();
+    }
+
+    /**
+     * Returns the writer of the log file, rotating the file first if it has grown too large.
+     *
+     * @return the writer
+     * @throws IOException if the file cannot be opened or rotated
+     */
+    private BufferedWriter openWriter() throws IOException {
+        if (writer != null && Files.size(logFile) < MAX_FILE_BYTES) {
+            return writer;
+        }
+        closeWriter();
+
+        Path directory = logFile.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        if (Files.exists(logFile) && Files.size(logFile) >= MAX_FILE_BYTES) {
+            for (int index = KEPT_FILES - 1; index >= 1; index--) {
+                Path older = rotated(index);
+                if (Files.exists(older)) {
+                    Files.move(older, rotated(index + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(logFile, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        writer = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return writer;
+    }
+
+    /**
+     * Returns the path of a rotated log file.
+     *
+     * @param index the age of the file, 1 being the most recent
+     * @return the path, e.g. "slow-queries.log.1"
+     */
+    private Path rotated(int index) {
+        return logFile.resolveSibling(logFile.getFileName() + "." + index);
+    }
+
+    /**
+     * Closes the writer of the log file and ignores any error.
+     */
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException ignored) {
+            // The writer is reopened for the next entry.
+        }
+        writer = null;
+    }
+}
@@ -0,0 +1,44 @@
+package conn;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the writes made through pooled connections.
+ * Layers that share or reuse query results compare generations to make sure a result loaded
+ * before a write is never handed to a caller that asks after it.
+ * The time of the last write decides whether reads may go to a replica that could still lag behind.
+ */
+public final class WriteTracker {
+
+    private static final AtomicLong generation = new AtomicLong();
+    private static volatile long lastWriteNanos = System.nanoTime() - Long.MAX_VALUE / 2;
+
+    private WriteTracker() {}
+
+    /**
+     * Returns the current write generation. It changes after every executed update and every commit.
+     *
+     * @return the write generation
+     */
+    public static long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Tells whether data was written recently.
+     *
+     * @param windowNanos the length of the window in nanoseconds
+     * @return true if the last write happened within the window
+     */
+    public static boolean wroteWithin(long windowNanos) {
+        return System.nanoTime() - lastWriteNanos < windowNanos;
+    }
+
+    /**
+     * Records that data may have changed.
+     */
+    static void recordWrite() {
+        generation.incrementAndGet();
+        lastWriteNanos = System.nanoTime();
+    }
+}
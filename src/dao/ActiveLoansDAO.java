@@ -1,6 +1,7 @@
 package dao;
 
 import conn.DatabaseConnector;
+import conn.OperationClass;
 import exceptions.DbException;
 import models.ActiveLoans;
 
@@ -10,6 +11,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.UnaryOperator;
 
 /**
  * Data Access Object for retrieving details about active loans.
@@ -23,10 +25,19 @@ public class ActiveLoansDAO {
      * @return a list of ActiveLoans records
      */
     public List<ActiveLoans> getActiveLoansDetails() {
+        return SingleFlight.shared().executeList("activeLoans.getActiveLoansDetails", OperationClass.REPORT, this::loadActiveLoansDetails, UnaryOperator.identity());
+    }
+
+    /**
+     * Loads all active loans from the database view.
+     *
+     * @return a list of ActiveLoans records
+     */
+    private List<ActiveLoans> loadActiveLoansDetails() {
         List<ActiveLoans> loans = new ArrayList<>();
         String query = "select * from active_loans";
 
-        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+        try (Connection connection = DatabaseConnector.getInstance().getReadConnection();
              Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(query)) {
 
@@ -0,0 +1,253 @@
+package dao;
+
+import conn.CancellationToken;
+import conn.DatabaseConnector;
+import conn.OperationClass;
+import metrics.QueryAnalyzer;
+import models.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous facade over the DAOs.
+ * Every call runs on a shared executor that has as many threads as the connection pool has connections,
+ * so queued calls wait for a thread instead of for a connection. The returned futures time out
+ * (the DAO calls after the configured timeout of their operation class, plus a few seconds of queueing),
+ * and cancelling a future (or letting it time out) cancels the running statement on the server.
+ * Lending and returning books are the exception, see {@link #submitWrite(Supplier)}.
+ */
+public class AsyncDAO {
+
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration QUEUE_ALLOWANCE = Duration.ofSeconds(5);
+
+    private static AsyncDAO instance;
+
+    private final ExecutorService executor;
+
+    private final BookDAO bookDAO = new BookDAO();
+    private final AuthorDAO authorDAO = new AuthorDAO();
+    private final GenreDAO genreDAO = new GenreDAO();
+    private final ReaderDAO readerDAO = new ReaderDAO();
+    private final LoanDAO loanDAO = new LoanDAO();
+    private final ActiveLoansDAO activeLoansDAO = new ActiveLoansDAO();
+    private final LibraryStatisticsDAO statisticsDAO = new LibraryStatisticsDAO();
+
+    /**
+     * Private constructor to prevent direct instantiation.
+     * Creates an executor bounded by the size of the connection pool.
+     */
+    private AsyncDAO() {
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(DatabaseConnector.getInstance().getPoolSize(), runnable -> {
+            Thread thread = new Thread(runnable, "dao-async-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the singleton instance of the AsyncDAO.
+     *
+     * @return The singleton instance.
+     */
+    public static synchronized AsyncDAO getInstance() {
+        if (instance == null) {
+            instance = new AsyncDAO();
+        }
+        return instance;
+    }
+
+    /**
+     * Runs a DAO call asynchronously with the default timeout.
+     *
+     * @param call the DAO call to run
+     * @param <T> the result type
+     * @return a future completed with the result of the call
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> call) {
+        return submit(call, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Runs a DAO call asynchronously.
+     * The call belongs to the query analyzer scope of the calling thread, if any.
+     * If the returned future is cancelled or times out, the statement currently executed by the call is cancelled
+     * and the call fails; if the call has not started yet, it is dropped.
+     *
+     * @param call the DAO call to run
+     * @param timeout the maximum time until the future completes with a TimeoutException, or null for no limit
+     * @param <T> the result type
+     * @return a future completed with the result of the call
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> call, Duration timeout) {
+        CancellationToken token = new CancellationToken();
+        QueryAnalyzer.Scope analyzerScope = QueryAnalyzer.current();
+        Supplier<T> scopedCall = analyzerScope != null ? () -> analyzerScope.run(call) : call;
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        Future<?> task = executor.submit(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(token.run(scopedCall));
+            } catch (Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+        });
+
+        future.whenComplete((result, throwable) -> {
+            if (throwable instanceof CancellationException || throwable instanceof TimeoutException) {
+                task.cancel(false);
+                token.cancel();
+            }
+        });
+
+        return timeout != null ? future.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS) : future;
+    }
+
+    /**
+     * Runs a DAO call asynchronously with the configured timeout of its operation class.
+     *
+     * @param call the DAO call to run
+     * @param operationClass the class of the call
+     * @param <T> the result type
+     * @return a future completed with the result of the call
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> call, OperationClass operationClass) {
+        int timeoutSeconds = operationClass.timeoutSeconds(DatabaseConnector.getInstance().getQueryTimeouts());
+        return submit(call, timeoutSeconds > 0 ? Duration.ofSeconds(timeoutSeconds).plus(QUEUE_ALLOWANCE) : null);
+    }
+
+    /**
+     * Runs a transactional write asynchronously. A write is never cancelled once it has been queued:
+     * a cancel arriving after the commit would report a failed write that has in fact been made.
+     * The future has no timeout of its own; the statements of the write keep their timeouts, so the future
+     * completes with the result once the transaction has committed, or with the exception after it has been
+     * rolled back. Cancelling the returned future only stops waiting for it.
+     *
+     * @param call the DAO call to run in a transaction
+     * @param <T> the result type
+     * @return a future completed with the result of the call
+     */
+    private <T> CompletableFuture<T> submitWrite(Supplier<T> call) {
+        return submit(call, (Duration) null).copy();
+    }
+
+    /**
+     * Retrieves all books asynchronously.
+     *
+     * @return a future list of all books
+     */
+    public CompletableFuture<List<Book>> getAllBooks() {
+        return submit(bookDAO::getAll, OperationClass.LIST);
+    }
+
+    /**
+     * Finds a book by its ID asynchronously.
+     *
+     * @param id the ID of the book
+     * @return a future Optional containing the book if found
+     */
+    public CompletableFuture<Optional<Book>> getBookById(int id) {
+        return submit(() -> bookDAO.getById(id), OperationClass.LOOKUP);
+    }
+
+    /**
+     * Retrieves all authors asynchronously.
+     *
+     * @return a future list of all authors
+     */
+    public CompletableFuture<List<Author>> getAllAuthors() {
+        return submit(authorDAO::getAll, OperationClass.LIST);
+    }
+
+    /**
+     * Retrieves all genres asynchronously.
+     *
+     * @return a future list of all genres
+     */
+    public CompletableFuture<List<Genre>> getAllGenres() {
+        return submit(genreDAO::getAll, OperationClass.LIST);
+    }
+
+    /**
+     * Retrieves all readers asynchronously.
+     *
+     * @return a future list of all readers
+     */
+    public CompletableFuture<List<Reader>> getAllReaders() {
+        return submit(readerDAO::getAll, OperationClass.LIST);
+    }
+
+    /**
+     * Finds a reader by their ID asynchronously.
+     *
+     * @param id the ID of the reader
+     * @return a future Optional containing the reader if found
+     */
+    public CompletableFuture<Optional<Reader>> getReaderById(int id) {
+        return submit(() -> readerDAO.getById(id), OperationClass.LOOKUP);
+    }
+
+    /**
+     * Retrieves all loans asynchronously.
+     *
+     * @return a future list of all loans
+     */
+    public CompletableFuture<List<Loan>> getAllLoans() {
+        return submit(loanDAO::getAll, OperationClass.LIST);
+    }
+
+    /**
+     * Lends a book asynchronously.
+     *
+     * @param loan the loan to create
+     * @return a future completed with true if the loan was created
+     * @see LoanDAO#checkout(Loan)
+     */
+    public CompletableFuture<Boolean> checkout(Loan loan) {
+        return submitWrite(() -> loanDAO.checkout(loan));
+    }
+
+    /**
+     * Returns a borrowed book asynchronously.
+     *
+     * @param loanId the ID of the loan to close
+     * @return a future completed with true if the book was returned
+     * @see LoanDAO#returnBook(int)
+     */
+    public CompletableFuture<Boolean> returnBook(int loanId) {
+        return submitWrite(() -> loanDAO.returnBook(loanId));
+    }
+
+    /**
+     * Retrieves the details of all active loans asynchronously.
+     *
+     * @return a future list of active loans
+     */
+    public CompletableFuture<List<ActiveLoans>> getActiveLoansDetails() {
+        return submit(activeLoansDAO::getActiveLoansDetails, OperationClass.REPORT);
+    }
+
+    /**
+     * Retrieves the library statistics asynchronously.
+     *
+     * @return a future Optional containing the statistics if available
+     */
+    public CompletableFuture<Optional<LibraryStatistics>> getLibraryStatistics() {
+        return submit(statisticsDAO::getLibraryStatistics, OperationClass.REPORT);
+    }
+}
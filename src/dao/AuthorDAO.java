@@ -1,12 +1,15 @@
 package dao;
 
 import conn.DatabaseConnector;
+import conn.OperationClass;
 import exceptions.DbException;
 import models.*;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -22,10 +25,19 @@ public class AuthorDAO implements GenericDAO<Author> {
      */
     @Override
     public List<Author> getAll() {
+        return SingleFlight.shared().executeList("authors.getAll", OperationClass.LIST, this::loadAll, Author::new);
+    }
+
+    /**
+     * Loads all authors from the database.
+     *
+     * @return a list of all authors
+     */
+    private List<Author> loadAll() {
         List<Author> authors = new ArrayList<>();
         String query = "select * from authors order by last_name";
 
-        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+        try (Connection connection = DatabaseConnector.getInstance().getReadConnection();
              Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(query)) {
 
@@ -52,7 +64,7 @@ public class AuthorDAO implements GenericDAO<Author> {
     public Optional<Author> getById(int id) {
         String query = "select * from authors where id = ?";
 
-        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+        try (Connection connection = DatabaseConnector.getInstance().getReadConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(query)) {
 
             preparedStatement.setInt(1, id);
@@ -72,6 +84,23 @@ public class AuthorDAO implements GenericDAO<Author> {
         return Optional.empty();
     }
 
+    /**
+     * Finds the authors with the given IDs, loading them in batches.
+     *
+     * @param ids the IDs of the authors
+     * @return the found authors keyed by ID
+     */
+    @Override
+    public Map<Integer, Author> getByIds(Collection<Integer> ids) {
+        String query = "select * from authors where id in (%s)";
+
+        try {
+            return IdBatchLoader.load(query, ids, "id", this::mapResultSetToAuthor);
+        } catch (SQLException sqlException) {
+            throw new DbException("Error finding authors by IDs: " + sqlException.getMessage(), sqlException);
+        }
+    }
+
     /**
      * Finds an author by their first and last name.
      *
@@ -81,7 +110,7 @@ public class AuthorDAO implements GenericDAO<Author> {
      */
     public Optional<Author> findByName(String firstName, String lastName) {
         String query = "select * from authors where first_name = ? and last_name = ?";
-        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+        try (Connection connection = DatabaseConnector.getInstance().getReadConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(query)) {
 
             preparedStatement.setString(1, firstName);
@@ -175,4 +204,19 @@ public class AuthorDAO implements GenericDAO<Author> {
             throw new DbException("Cannot delete author. They are likely assigned to a book.", sqlException);
         }
     }
+
+    /**
+     * Maps a current row in the ResultSet to an Author object.
+     *
+     * @param resultSet the ResultSet cursor
+     * @return the mapped Author object
+     * @throws SQLException if a database access error occurs
+     */
+    private Author mapResultSetToAuthor(ResultSet resultSet) throws SQLException {
+        return new Author(
+                resultSet.getInt("id"),
+                resultSet.getString("first_name"),
+                resultSet.getString("last_name")
+        );
+    }
 }
\ No newline at end of file
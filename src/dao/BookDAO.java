@@ -1,13 +1,14 @@
 package dao;
 
 import conn.DatabaseConnector;
+import conn.OperationClass;
 import exceptions.DbException;
 import models.*;
 
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Data Access Object for managing Book entities.
@@ -15,6 +16,9 @@ import java.util.Optional;
  */
 public class BookDAO implements GenericDAO<Book> {
 
+    /** The unique index on title, author and condition that {@link #upsertAll(List)} relies on. */
+    public static final String NATURAL_KEY_INDEX = "uq_books_title_author_condition";
+
     /**
      * Retrieves all books from the database with their associated authors and genres.
      *
@@ -22,6 +26,15 @@ public class BookDAO implements GenericDAO<Book> {
      */
     @Override
     public List<Book> getAll() {
+        return SingleFlight.shared().executeList("books.getAll", OperationClass.LIST, this::loadAll, Book::new);
+    }
+
+    /**
+     * Loads all books from the database.
+     *
+     * @return a list of all books
+     */
+    private List<Book> loadAll() {
         List<Book> books = new ArrayList<>();
         String query = """
             select book.id, book.title, book.price, book.available, book.condition,
@@ -32,7 +45,7 @@ public class BookDAO implements GenericDAO<Book> {
             join genres genre on book.genre_id = genre.id
             """;
 
-        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+        try (Connection connection = DatabaseConnector.getInstance().getReadConnection();
              Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(query)) {
 
@@ -45,6 +58,36 @@ public class BookDAO implements GenericDAO<Book> {
         return books;
     }
 
+    /**
+     * Streams all books from the database to the consumer one row at a time, without loading them into memory.
+     *
+     * @param consumer the consumer receiving each book
+     */
+    public void streamAll(Consumer<Book> consumer) {
+        String query = """
+            select book.id, book.title, book.price, book.available, book.condition,
+                   author.id as author_id, author.first_name, author.last_name,
+                   genre.id as genre_id, genre.name as genre_name
+            from books book
+            join authors author on book.author_id = author.id
+            join genres genre on book.genre_id = genre.id
+            order by book.id
+            """;
+
+        try (Connection connection = DatabaseConnector.getInstance().getReadConnection();
+             Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            statement.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet resultSet = statement.executeQuery(query)) {
+                while (resultSet.next()) {
+                    consumer.accept(mapResultSetToBook(resultSet));
+                }
+            }
+        } catch (SQLException sqlException) {
+            throw new DbException("Error streaming books: " + sqlException.getMessage(), sqlException);
+        }
+    }
+
     /**
      * Saves a new book to the database.
      *
@@ -83,6 +126,173 @@ public class BookDAO implements GenericDAO<Book> {
         return false;
     }
 
+    /**
+     * Saves several new books to the database in one batch and one transaction.
+     * Either all books are saved or none of them.
+     *
+     * @param books the book entities to save; their IDs are set on success
+     * @return the number of saved books
+     * @throws DbException if the batch fails
+     */
+    public int saveAll(List<Book> books) {
+        String query = """
+            insert into books (title, price, available, `condition`, genre_id, author_id)
+            values (?, ?, ?, ?, ?, ?)
+            """;
+
+        return UnitOfWork.execute("saving books", connection -> {
+            try (PreparedStatement preparedStatement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+                for (Book book : books) {
+                    preparedStatement.setString(1, book.getTitle());
+                    preparedStatement.setBigDecimal(2, book.getPrice());
+                    preparedStatement.setBoolean(3, book.isAvailable());
+                    preparedStatement.setString(4, book.getCondition().name());
+                    preparedStatement.setInt(5, book.getGenre().getId());
+                    preparedStatement.setInt(6, book.getAuthor().getId());
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+
+                try (ResultSet generatedKeys = preparedStatement.getGeneratedKeys()) {
+                    for (Book book : books) {
+                        if (generatedKeys.next()) {
+                            book.setId(generatedKeys.getInt(1));
+                        }
+                    }
+                }
+            }
+            return books.size();
+        });
+    }
+
+    /**
+     * Tells whether the unique index on the natural key of books exists. Migration V1 adds it, but postpones it
+     * while the table contains duplicates. Without it {@link #upsertAll(List)} would insert every book again.
+     *
+     * @return true if the index exists
+     * @throws DbException if the schema cannot be read
+     */
+    public boolean hasNaturalKeyIndex() {
+        String query = "select 1 from information_schema.statistics where table_schema = database() and table_name = 'books' and index_name = ? limit 1";
+
+        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+            preparedStatement.setString(1, NATURAL_KEY_INDEX);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next();
+            }
+        } catch (SQLException sqlException) {
+            throw new DbException("Error checking the index " + NATURAL_KEY_INDEX + ": " + sqlException.getMessage(), sqlException);
+        }
+    }
+
+    /**
+     * Inserts new books and updates existing ones, matching them by their natural key:
+     * title, author and condition (unique index uq_books_title_author_condition).
+     * Existing rows are read first in one query to tell updated rows from unchanged ones; only new and changed
+     * rows are then written with a single {@code insert ... on duplicate key update} statement.
+     * When the batch contains the same key more than once, the last occurrence wins.
+     * Availability is only set for new books: for stored ones it is circulation state kept by {@link LoanDAO},
+     * so a feed never returns a lent book to the shelf or takes a shelved one off it.
+     *
+     * The index must exist, see {@link #hasNaturalKeyIndex()}.
+     *
+     * @param books the book entities to upsert; authors and genres must already have IDs
+     * @return the numbers of inserted, updated and unchanged books
+     * @throws DbException if the upsert fails
+     */
+    public UpsertResult upsertAll(List<Book> books) {
+        Map<String, Book> booksByKey = new LinkedHashMap<>();
+        for (Book book : books) {
+            booksByKey.put(naturalKey(book.getTitle(), book.getAuthor().getId(), book.getCondition().name()), book);
+        }
+        List<Book> uniqueBooks = new ArrayList<>(booksByKey.values());
+        if (uniqueBooks.isEmpty()) {
+            return new UpsertResult(0, 0, 0);
+        }
+
+        String selectQuery = "select id, title, author_id, `condition`, price, genre_id from books where (title, author_id, `condition`) in ("
+                + String.join(", ", Collections.nCopies(uniqueBooks.size(), "(?, ?, ?)")) + ")";
+
+        return UnitOfWork.execute("upserting books", connection -> {
+            Map<String, Book> existingBooks = new HashMap<>();
+            try (PreparedStatement preparedStatement = connection.prepareStatement(selectQuery)) {
+                int parameter = 1;
+                for (Book book : uniqueBooks) {
+                    preparedStatement.setString(parameter++, book.getTitle());
+                    preparedStatement.setInt(parameter++, book.getAuthor().getId());
+                    preparedStatement.setString(parameter++, book.getCondition().name());
+                }
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        Book existing = new Book();
+                        existing.setId(resultSet.getInt("id"));
+                        existing.setPrice(resultSet.getBigDecimal("price"));
+                        existing.setGenre(new Genre(resultSet.getInt("genre_id"), null));
+                        existingBooks.put(naturalKey(resultSet.getString("title"), resultSet.getInt("author_id"), resultSet.getString("condition")), existing);
+                    }
+                }
+            }
+
+            List<Book> changedBooks = new ArrayList<>();
+            int inserted = 0;
+            int updated = 0;
+            for (Map.Entry<String, Book> entry : booksByKey.entrySet()) {
+                Book book = entry.getValue();
+                Book existing = existingBooks.get(entry.getKey());
+
+                if (existing == null) {
+                    inserted++;
+                    changedBooks.add(book);
+                } else {
+                    book.setId(existing.getId());
+                    if (existing.getPrice().compareTo(book.getPrice()) != 0
+                            || !existing.getGenre().getId().equals(book.getGenre().getId())) {
+                        updated++;
+                        changedBooks.add(book);
+                    }
+                }
+            }
+
+            if (!changedBooks.isEmpty()) {
+                String upsertQuery = "insert into books (title, price, available, `condition`, genre_id, author_id) values "
+                        + String.join(", ", Collections.nCopies(changedBooks.size(), "(?, ?, ?, ?, ?, ?)"))
+                        + " as new on duplicate key update price = new.price, genre_id = new.genre_id";
+
+                try (PreparedStatement preparedStatement = connection.prepareStatement(upsertQuery)) {
+                    int parameter = 1;
+                    for (Book book : changedBooks) {
+                        preparedStatement.setString(parameter++, book.getTitle());
+                        preparedStatement.setBigDecimal(parameter++, book.getPrice());
+                        preparedStatement.setBoolean(parameter++, book.isAvailable());
+                        preparedStatement.setString(parameter++, book.getCondition().name());
+                        preparedStatement.setInt(parameter++, book.getGenre().getId());
+                        preparedStatement.setInt(parameter++, book.getAuthor().getId());
+                    }
+                    preparedStatement.executeUpdate();
+                }
+            }
+
+            return new UpsertResult(inserted, updated, uniqueBooks.size() - inserted - updated);
+        });
+    }
+
+    /**
+     * Builds the natural key of a book for matching incoming rows with stored ones.
+     * Titles are compared case- and accent-insensitively, like the default utf8mb4_0900_ai_ci collation does.
+     *
+     * @param title the title of the book
+     * @param authorId the ID of the author
+     * @param condition the name of the condition
+     * @return the natural key
+     */
+    private static String naturalKey(String title, int authorId, String condition) {
+        String foldedTitle = Normalizer.normalize(title, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+        return foldedTitle + "\u0000" + authorId + "\u0000" + condition;
+    }
+
     /**
      * Maps a current row in the ResultSet to a Book object.
      *
@@ -90,7 +300,7 @@ public class BookDAO implements GenericDAO<Book> {
      * @return the mapped Book object
      * @throws SQLException if a database access error occurs
      */
-    private Book mapResultSetToBook(ResultSet resultSet) throws SQLException {
+    Book mapResultSetToBook(ResultSet resultSet) throws SQLException {
         Author author = new Author(
                 resultSet.getInt("author_id"),
                 resultSet.getString("first_name"),
@@ -131,7 +341,7 @@ public class BookDAO implements GenericDAO<Book> {
         where book.id = ?
         """;
 
-        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+        try (Connection connection = DatabaseConnector.getInstance().getReadConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(query)) {
 
             preparedStatement.setInt(1, id);
@@ -147,6 +357,31 @@ public class BookDAO implements GenericDAO<Book> {
         return Optional.empty();
     }
 
+    /**
+     * Finds the books with the given IDs, loading them in batches.
+     *
+     * @param ids the IDs of the books
+     * @return the found books keyed by ID
+     */
+    @Override
+    public Map<Integer, Book> getByIds(Collection<Integer> ids) {
+        String query = """
+        select book.id, book.title, book.price, book.available, book.condition,
+               author.id as author_id, author.first_name, author.last_name,
+               genre.id as genre_id, genre.name as genre_name
+        from books book
+        join authors author on book.author_id = author.id
+        join genres genre on book.genre_id = genre.id
+        where book.id in (%s)
+        """;
+
+        try {
+            return IdBatchLoader.load(query, ids, "id", this::mapResultSetToBook);
+        } catch (SQLException sqlException) {
+            throw new DbException("Error finding books by IDs: " + sqlException.getMessage(), sqlException);
+        }
+    }
+
     /**
      * Updates an existing book in the database.
      *
@@ -1,6 +1,8 @@
 package dao;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -17,6 +19,13 @@ public interface GenericDAO<T> {
      */
     Optional<T> getById(int id);
 
+    /**
+     * Retrieves the entities with the given IDs using as few queries as possible.
+     * @param ids the unique identifiers
+     * @return the found entities keyed by ID; IDs that do not exist are absent
+     */
+    Map<Integer, T> getByIds(Collection<Integer> ids);
+
     /**
      * Retrieves all entities of type T.
      * @return a list of entities
@@ -1,12 +1,15 @@
 package dao;
 
 import conn.DatabaseConnector;
+import conn.OperationClass;
 import exceptions.DbException;
 import models.*;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -22,10 +25,19 @@ public class GenreDAO implements GenericDAO<Genre> {
      */
     @Override
     public List<Genre> getAll() {
+        return SingleFlight.shared().executeList("genres.getAll", OperationClass.LIST, this::loadAll, Genre::new);
+    }
+
+    /**
+     * Loads all genres from the database.
+     *
+     * @return a list of all genres
+     */
+    private List<Genre> loadAll() {
         List<Genre> genres = new ArrayList<>();
         String query = "select * from genres order by name";
 
-        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+        try (Connection connection = DatabaseConnector.getInstance().getReadConnection();
              Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(query)) {
 
@@ -48,7 +60,7 @@ public class GenreDAO implements GenericDAO<Genre> {
     public Optional<Genre> getById(int id) {
         String query = "select * from genres where id = ?";
 
-        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+        try (Connection connection = DatabaseConnector.getInstance().getReadConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(query)) {
 
             preparedStatement.setInt(1, id);
@@ -67,6 +79,23 @@ public class GenreDAO implements GenericDAO<Genre> {
         return Optional.empty();
     }
 
+    /**
+     * Finds the genres with the given IDs, loading them in batches.
+     *
+     * @param ids the IDs of the genres
+     * @return the found genres keyed by ID
+     */
+    @Override
+    public Map<Integer, Genre> getByIds(Collection<Integer> ids) {
+        String query = "select * from genres where id in (%s)";
+
+        try {
+            return IdBatchLoader.load(query, ids, "id", this::mapResultSetToGenre);
+        } catch (SQLException sqlException) {
+            throw new DbException("Error finding genres by IDs: " + sqlException.getMessage(), sqlException);
+        }
+    }
+
     /**
      * Finds a genre by its name.
      *
@@ -75,7 +104,7 @@ public class GenreDAO implements GenericDAO<Genre> {
      */
     public Optional<Genre> findByName(String name) {
         String query = "select * from genres where name = ?";
-        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+        try (Connection connection = DatabaseConnector.getInstance().getReadConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(query)) {
 
             preparedStatement.setString(1, name);
@@ -162,4 +191,18 @@ public class GenreDAO implements GenericDAO<Genre> {
             throw new DbException("Cannot delete genre. It is likely used by some books.", sqlException);
         }
     }
+
+    /**
+     * Maps a current row in the ResultSet to a Genre object.
+     *
+     * @param resultSet the ResultSet cursor
+     * @return the mapped Genre object
+     * @throws SQLException if a database access error occurs
+     */
+    private Genre mapResultSetToGenre(ResultSet resultSet) throws SQLException {
+        return new Genre(
+                resultSet.getInt("id"),
+                resultSet.getString("name")
+        );
+    }
 }
\ No newline at end of file
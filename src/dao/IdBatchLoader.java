@@ -0,0 +1,99 @@
+package dao;
+
+import conn.DatabaseConnector;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Loads entities for a set of IDs with as few queries as possible.
+ * IDs are sent in {@code IN (...)} lists of a few fixed sizes; the last list is padded by repeating an ID.
+ * Keeping the number of distinct SQL strings small lets each prepared statement be reused for every chunk
+ * of the same size, and lets the driver's statement cache hit across calls.
+ */
+final class IdBatchLoader {
+
+    private static final int[] IN_LIST_SIZES = {1, 8, 32, 128};
+
+    private IdBatchLoader() {}
+
+    /**
+     * Loads the entities with the given IDs.
+     *
+     * @param queryTemplate the query with a {@code %s} placeholder for the parameter list of the IN clause
+     * @param ids the IDs to load; nulls and duplicates are ignored
+     * @param idColumn the name of the result column holding the ID the results are keyed by
+     * @param rowMapper the mapper of a result row to an entity
+     * @param <T> the type of the model entity
+     * @return the found entities keyed by ID, in the order the IDs were given; missing IDs are absent
+     * @throws SQLException if a database access error occurs
+     */
+    static <T> Map<Integer, T> load(String queryTemplate, Collection<Integer> ids, String idColumn, RowMapper<T> rowMapper) throws SQLException {
+        List<Integer> uniqueIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        uniqueIds.removeIf(Objects::isNull);
+        if (uniqueIds.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+
+        Map<Integer, T> found = new HashMap<>();
+        Map<Integer, PreparedStatement> statements = new HashMap<>();
+
+        try (Connection connection = DatabaseConnector.getInstance().getReadConnection()) {
+            try {
+                int offset = 0;
+                while (offset < uniqueIds.size()) {
+                    int size = inListSize(uniqueIds.size() - offset);
+                    PreparedStatement preparedStatement = statements.get(size);
+                    if (preparedStatement == null) {
+                        String placeholders = String.join(", ", Collections.nCopies(size, "?"));
+                        preparedStatement = connection.prepareStatement(String.format(queryTemplate, placeholders));
+                        statements.put(size, preparedStatement);
+                    }
+
+                    int last = Math.min(offset + size, uniqueIds.size()) - 1;
+                    for (int parameter = 0; parameter < size; parameter++) {
+                        preparedStatement.setInt(parameter + 1, uniqueIds.get(Math.min(offset + parameter, last)));
+                    }
+
+                    try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                        while (resultSet.next()) {
+                            found.put(resultSet.getInt(idColumn), rowMapper.map(resultSet));
+                        }
+                    }
+                    offset += size;
+                }
+            } finally {
+                for (PreparedStatement preparedStatement : statements.values()) {
+                    preparedStatement.close();
+                }
+            }
+        }
+
+        Map<Integer, T> result = new LinkedHashMap<>();
+        for (Integer id : uniqueIds) {
+            T entity = found.get(id);
+            if (entity != null) {
+                result.put(id, entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Picks the smallest IN-list size that fits the remaining IDs, or the largest size if none does.
+     *
+     * @param remaining the number of IDs still to load
+     * @return the number of parameters of the next query
+     */
+    private static int inListSize(int remaining) {
+        for (int size : IN_LIST_SIZES) {
+            if (size >= remaining) {
+                return size;
+            }
+        }
+        return IN_LIST_SIZES[IN_LIST_SIZES.length - 1];
+    }
+}
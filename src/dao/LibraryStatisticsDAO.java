@@ -1,9 +1,11 @@
 package dao;
 
 import conn.DatabaseConnector;
+import conn.OperationClass;
 import models.LibraryStatistics;
 import java.sql.*;
 import java.util.Optional;
+import java.util.function.UnaryOperator;
 
 /**
  * Data Access Object for retrieving library statistics.
@@ -17,9 +19,19 @@ public class LibraryStatisticsDAO {
      * @return an Optional containing the LibraryStatistics object if available
      */
     public Optional<LibraryStatistics> getLibraryStatistics() {
+        return SingleFlight.shared().execute("libraryStatistics.getLibraryStatistics", OperationClass.REPORT,
+                this::loadLibraryStatistics, UnaryOperator.identity());
+    }
+
+    /**
+     * Loads the library statistics from the database view.
+     *
+     * @return an Optional containing the LibraryStatistics object if available
+     */
+    private Optional<LibraryStatistics> loadLibraryStatistics() {
         String query = "select * from library_statistics";
 
-        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+        try (Connection connection = DatabaseConnector.getInstance().getReadConnection();
              Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(query)) {
 
@@ -1,12 +1,17 @@
 package dao;
 
 import conn.DatabaseConnector;
+import conn.OperationClass;
 import exceptions.DbException;
+import exceptions.LoanConflictException;
 import models.*;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Data Access Object for managing Loan entities.
@@ -20,6 +25,15 @@ public class LoanDAO {
      * @return a list of all loans
      */
     public List<Loan> getAll() {
+        return SingleFlight.shared().executeList("loans.getAll", OperationClass.LIST, this::loadAll, Loan::new);
+    }
+
+    /**
+     * Loads all loans from the database.
+     *
+     * @return a list of all loans
+     */
+    private List<Loan> loadAll() {
         List<Loan> loans = new ArrayList<>();
         String query = """
             select loans.id as loan_id, loans.loan_date, loans.return_date,
@@ -34,7 +48,7 @@ public class LoanDAO {
             join readers on loans.readers_id = readers.id
             """;
 
-        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+        try (Connection connection = DatabaseConnector.getInstance().getReadConnection();
              Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(query)) {
 
@@ -48,6 +62,40 @@ public class LoanDAO {
         return loans;
     }
 
+    /**
+     * Streams all loans from the database to the consumer one row at a time, without loading them into memory.
+     *
+     * @param consumer the consumer receiving each loan
+     */
+    public void streamAll(Consumer<Loan> consumer) {
+        String query = """
+            select loans.id as loan_id, loans.loan_date, loans.return_date,
+                   books.id as book_id, books.title, books.price, books.available, books.condition,
+                   authors.id as author_id, authors.first_name as author_first, authors.last_name as author_last,
+                   genres.id as genre_id, genres.name as genre_name,
+                   readers.id as reader_id, readers.first_name as reader_first, readers.last_name as reader_last, readers.phone_number
+            from loans
+            join books on loans.books_id = books.id
+            join authors on books.author_id = authors.id
+            join genres on books.genre_id = genres.id
+            join readers on loans.readers_id = readers.id
+            order by loans.id
+            """;
+
+        try (Connection connection = DatabaseConnector.getInstance().getReadConnection();
+             Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            statement.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet resultSet = statement.executeQuery(query)) {
+                while (resultSet.next()) {
+                    consumer.accept(mapResultSetToLoan(resultSet));
+                }
+            }
+        } catch (SQLException sqlException) {
+            throw new DbException("Error while streaming loans: " + sqlException.getMessage(), sqlException);
+        }
+    }
+
     /**
      * Finds a loan by its unique identifier.
      *
@@ -69,7 +117,7 @@ public class LoanDAO {
             where loans.id = ?
             """;
 
-        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+        try (Connection connection = DatabaseConnector.getInstance().getReadConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(query)) {
 
             preparedStatement.setInt(1, id);
@@ -85,22 +133,71 @@ public class LoanDAO {
         return Optional.empty();
     }
 
+    /**
+     * Finds the loans with the given IDs, loading them in batches.
+     *
+     * @param ids the IDs of the loans
+     * @return the found loans keyed by ID
+     */
+    public Map<Integer, Loan> getByIds(Collection<Integer> ids) {
+        String query = """
+            select loans.id as loan_id, loans.loan_date, loans.return_date,
+                   books.id as book_id, books.title, books.price, books.available, books.condition,
+                   authors.id as author_id, authors.first_name as author_first, authors.last_name as author_last,
+                   genres.id as genre_id, genres.name as genre_name,
+                   readers.id as reader_id, readers.first_name as reader_first, readers.last_name as reader_last, readers.phone_number
+            from loans
+            join books on loans.books_id = books.id
+            join authors on books.author_id = authors.id
+            join genres on books.genre_id = genres.id
+            join readers on loans.readers_id = readers.id
+            where loans.id in (%s)
+            """;
+
+        try {
+            return IdBatchLoader.load(query, ids, "loan_id", this::mapResultSetToLoan);
+        } catch (SQLException sqlException) {
+            throw new DbException("Error while finding loans by IDs: " + sqlException.getMessage(), sqlException);
+        }
+    }
+
     /**
      * Saves a new loan to the database.
-     * This operation runs in a transaction: it inserts the loan record and updates the book's availability to false.
+     * Delegates to {@link #checkout(Loan)}, so the book is only lent out if it is still available.
      *
      * @param loan the loan entity to save
      * @return true if the operation was successful
+     * @throws LoanConflictException if the book is no longer available
      * @throws DbException if the transaction fails
      */
     public boolean save(Loan loan) {
-        Connection connection = null;
+        return checkout(loan);
+    }
+
+    /**
+     * Lends a book to a reader.
+     * This operation runs in a transaction of two statements: a conditional update claims the book
+     * only if it is still available, then the loan record is inserted. If another desk has already
+     * claimed the book, the transaction is rolled back and the call fails immediately.
+     * A transaction lost to a deadlock or lock wait timeout is run again, see {@link UnitOfWork}.
+     *
+     * @param loan the loan entity to save
+     * @return true if the operation was successful
+     * @throws LoanConflictException if the book is no longer available
+     * @throws DbException if the transaction fails
+     */
+    public boolean checkout(Loan loan) {
+        String claimBookQuery = "update books set available = 0 where id = ? and available = 1";
         String insertLoanQuery = "insert into loans (books_id, readers_id, loan_date, return_date) values (?, ?, ?, ?)";
-        String updateBookQuery = "update books set available = 0 where id = ?";
 
-        try {
-            connection = DatabaseConnector.getInstance().getConnection();
-            connection.setAutoCommit(false);
+        Integer loanId = UnitOfWork.execute("saving loan", connection -> {
+            try (PreparedStatement preparedStatement = connection.prepareStatement(claimBookQuery)) {
+                preparedStatement.setInt(1, loan.getBook().getId());
+
+                if (preparedStatement.executeUpdate() == 0) {
+                    throw new LoanConflictException("Book '" + loan.getBook().getTitle() + "' is no longer available. It was probably lent out at another desk.");
+                }
+            }
 
             try (PreparedStatement preparedStatement = connection.prepareStatement(insertLoanQuery, Statement.RETURN_GENERATED_KEYS)) {
                 preparedStatement.setInt(1, loan.getBook().getId());
@@ -108,43 +205,16 @@ public class LoanDAO {
                 preparedStatement.setDate(3, Date.valueOf(loan.getLoanDate()));
                 preparedStatement.setDate(4, Date.valueOf(loan.getReturnDate()));
 
-                int affectedRows = preparedStatement.executeUpdate();
-                if (affectedRows > 0) {
-                    try (ResultSet generatedKeys = preparedStatement.getGeneratedKeys()) {
-                        if (generatedKeys.next()) {
-                            loan.setId(generatedKeys.getInt(1));
-                        }
-                    }
-                }
-            }
-
-            try (PreparedStatement preparedStatement = connection.prepareStatement(updateBookQuery)) {
-                preparedStatement.setInt(1, loan.getBook().getId());
                 preparedStatement.executeUpdate();
-            }
-
-            connection.commit();
-            return true;
-
-        } catch (SQLException sqlException) {
-            if (connection != null) {
-                try {
-                    connection.rollback();
-                } catch (SQLException rollbackException) {
-                    throw new DbException("Error during rollback: " + rollbackException.getMessage(), rollbackException);
-                }
-            }
-            throw new DbException("Error while saving loan: " + sqlException.getMessage(), sqlException);
-        } finally {
-            if (connection != null) {
-                try {
-                    connection.setAutoCommit(true);
-                    connection.close();
-                } catch (SQLException sqlException) {
-                    throw new DbException("Error closing connection: " + sqlException.getMessage(), sqlException);
+                try (ResultSet generatedKeys = preparedStatement.getGeneratedKeys()) {
+                    return generatedKeys.next() ? generatedKeys.getInt(1) : loan.getId();
                 }
             }
-        }
+        });
+
+        loan.setId(loanId);
+        loan.getBook().setAvailable(false);
+        return true;
     }
 
     /**
@@ -173,68 +243,44 @@ public class LoanDAO {
 
     /**
      * Deletes a loan (returns a book).
-     * This operation runs in a transaction: it deletes the loan record and updates the book's availability to true.
+     * Delegates to {@link #returnBook(int)}.
      *
      * @param id the ID of the loan to delete
-     * @return true if the operation was successful
+     * @return true if the operation was successful, false if the loan does not exist
      * @throws DbException if the transaction fails
      */
     public boolean delete(int id) {
-        Connection connection = null;
-        String selectBookIdQuery = "select books_id from loans where id = ?";
-        String deleteLoanQuery = "delete from loans where id = ?";
-        String updateBookQuery = "update books set available = 1 where id = ?";
-
-        try {
-            connection = DatabaseConnector.getInstance().getConnection();
-            connection.setAutoCommit(false);
-
-            int bookId = -1;
-            try (PreparedStatement preparedStatement = connection.prepareStatement(selectBookIdQuery)) {
-                preparedStatement.setInt(1, id);
-                try (ResultSet resultSet = preparedStatement.executeQuery()) {
-                    if (resultSet.next()) {
-                        bookId = resultSet.getInt("books_id");
-                    }
-                }
-            }
-
-            if (bookId == -1) {
-                return false;
-            }
+        return returnBook(id);
+    }
 
-            try (PreparedStatement preparedStatement = connection.prepareStatement(deleteLoanQuery)) {
-                preparedStatement.setInt(1, id);
-                preparedStatement.executeUpdate();
-            }
+    /**
+     * Returns a borrowed book.
+     * This operation runs in a transaction of two statements: the book of the loan is marked as available
+     * through a join on the loan, then the loan record is deleted. If the loan was already returned
+     * at another desk, nothing is changed.
+     * A transaction lost to a deadlock or lock wait timeout is run again, see {@link UnitOfWork}.
+     *
+     * @param loanId the ID of the loan to close
+     * @return true if the book was returned, false if the loan does not exist
+     * @throws DbException if the transaction fails
+     */
+    public boolean returnBook(int loanId) {
+        String releaseBookQuery = "update books join loans on loans.books_id = books.id set books.available = 1 where loans.id = ?";
+        String deleteLoanQuery = "delete from loans where id = ?";
 
-            try (PreparedStatement preparedStatement = connection.prepareStatement(updateBookQuery)) {
-                preparedStatement.setInt(1, bookId);
+        return UnitOfWork.execute("deleting loan", connection -> {
+            try (PreparedStatement preparedStatement = connection.prepareStatement(releaseBookQuery)) {
+                preparedStatement.setInt(1, loanId);
                 preparedStatement.executeUpdate();
             }
 
-            connection.commit();
-            return true;
+            try (PreparedStatement preparedStatement = connection.prepareStatement(deleteLoanQuery)) {
+                preparedStatement.setInt(1, loanId);
 
-        } catch (SQLException sqlException) {
-            if (connection != null) {
-                try {
-                    connection.rollback();
-                } catch (SQLException rollbackExcepption) {
-                    throw new DbException("Error during rollback: " + rollbackExcepption.getMessage(), rollbackExcepption);
-                }
+                // The join above found no loan either, so nothing was changed.
+                return preparedStatement.executeUpdate() > 0;
             }
-            throw new DbException("Error while deleting loan: " + sqlException.getMessage(), sqlException);
-        } finally {
-            if (connection != null) {
-                try {
-                    connection.setAutoCommit(true);
-                    connection.close();
-                } catch (SQLException sqlException) {
-                    throw new DbException("Error closing connection: " + sqlException.getMessage(), sqlException);
-                }
-            }
-        }
+        });
     }
 
     /**
@@ -244,7 +290,7 @@ public class LoanDAO {
      * @return the mapped Loan object
      * @throws SQLException if a database access error occurs
      */
-    private Loan mapResultSetToLoan(ResultSet resultSet) throws SQLException {
+    Loan mapResultSetToLoan(ResultSet resultSet) throws SQLException {
         Author author = new Author(
                 resultSet.getInt("author_id"),
                 resultSet.getString("author_first"),
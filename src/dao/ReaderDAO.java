@@ -1,13 +1,18 @@
 package dao;
 
 import conn.DatabaseConnector;
+import conn.OperationClass;
 import exceptions.DbException;
+import exceptions.DuplicatePhoneNumberException;
 import models.*;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Data Access Object for managing Reader entities.
@@ -15,6 +20,9 @@ import java.util.Optional;
  */
 public class ReaderDAO implements GenericDAO<Reader> {
 
+    /** MySQL error ER_DUP_ENTRY, raised here by the unique index on the phone number. */
+    private static final int MYSQL_DUPLICATE_ENTRY = 1062;
+
     /**
      * Retrieves all readers from the database.
      *
@@ -22,10 +30,19 @@ public class ReaderDAO implements GenericDAO<Reader> {
      */
     @Override
     public List<Reader> getAll() {
+        return SingleFlight.shared().executeList("readers.getAll", OperationClass.LIST, this::loadAll, Reader::new);
+    }
+
+    /**
+     * Loads all readers from the database.
+     *
+     * @return a list of all readers
+     */
+    private List<Reader> loadAll() {
         List<Reader> readers = new ArrayList<>();
         String query = "select * from readers";
 
-        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+        try (Connection connection = DatabaseConnector.getInstance().getReadConnection();
              Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(query)) {
 
@@ -43,6 +60,28 @@ public class ReaderDAO implements GenericDAO<Reader> {
         return readers;
     }
 
+    /**
+     * Streams all readers from the database to the consumer one row at a time, without loading them into memory.
+     *
+     * @param consumer the consumer receiving each reader
+     */
+    public void streamAll(Consumer<Reader> consumer) {
+        String query = "select * from readers order by id";
+
+        try (Connection connection = DatabaseConnector.getInstance().getReadConnection();
+             Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            statement.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet resultSet = statement.executeQuery(query)) {
+                while (resultSet.next()) {
+                    consumer.accept(mapResultSetToReader(resultSet));
+                }
+            }
+        } catch (SQLException sqlException) {
+            throw new DbException("Error streaming readers: " + sqlException.getMessage(), sqlException);
+        }
+    }
+
     /**
      * Finds a reader by their unique identifier.
      *
@@ -53,7 +92,7 @@ public class ReaderDAO implements GenericDAO<Reader> {
     public Optional<Reader> getById(int id) {
         String query = "select * from readers where id = ?";
 
-        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+        try (Connection connection = DatabaseConnector.getInstance().getReadConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(query)) {
 
             preparedStatement.setInt(1, id);
@@ -74,11 +113,29 @@ public class ReaderDAO implements GenericDAO<Reader> {
         return Optional.empty();
     }
 
+    /**
+     * Finds the readers with the given IDs, loading them in batches.
+     *
+     * @param ids the IDs of the readers
+     * @return the found readers keyed by ID
+     */
+    @Override
+    public Map<Integer, Reader> getByIds(Collection<Integer> ids) {
+        String query = "select * from readers where id in (%s)";
+
+        try {
+            return IdBatchLoader.load(query, ids, "id", this::mapResultSetToReader);
+        } catch (SQLException sqlException) {
+            throw new DbException("Error finding readers by IDs: " + sqlException.getMessage(), sqlException);
+        }
+    }
+
     /**
      * Saves a new reader to the database.
      *
      * @param reader the reader entity to save
      * @return true if the operation was successful, false otherwise
+     * @throws DuplicatePhoneNumberException if another reader has the same phone number
      */
     @Override
     public boolean save(Reader reader) {
@@ -100,6 +157,9 @@ public class ReaderDAO implements GenericDAO<Reader> {
                 return true;
             }
         } catch (SQLException sqlException) {
+            if (sqlException.getErrorCode() == MYSQL_DUPLICATE_ENTRY) {
+                throw new DuplicatePhoneNumberException(reader.getPhoneNumber(), sqlException);
+            }
             throw new DbException("Error saving reader: " + sqlException.getMessage(), sqlException);
         }
         return false;
@@ -110,6 +170,7 @@ public class ReaderDAO implements GenericDAO<Reader> {
      *
      * @param reader the reader entity with updated values
      * @return true if the update was successful, false otherwise
+     * @throws DuplicatePhoneNumberException if another reader has the same phone number
      */
     @Override
     public boolean update(Reader reader) {
@@ -127,6 +188,9 @@ public class ReaderDAO implements GenericDAO<Reader> {
             return affectedRows > 0;
 
         } catch (SQLException sqlException) {
+            if (sqlException.getErrorCode() == MYSQL_DUPLICATE_ENTRY) {
+                throw new DuplicatePhoneNumberException(reader.getPhoneNumber(), sqlException);
+            }
             throw new DbException("Error updating reader: " + sqlException.getMessage(), sqlException);
         }
     }
@@ -149,4 +213,20 @@ public class ReaderDAO implements GenericDAO<Reader> {
             throw new DbException("Cannot delete reader. They might have active loans.", sqlException);
         }
     }
+
+    /**
+     * Maps a current row in the ResultSet to a Reader object.
+     *
+     * @param resultSet the ResultSet cursor
+     * @return the mapped Reader object
+     * @throws SQLException if a database access error occurs
+     */
+    private Reader mapResultSetToReader(ResultSet resultSet) throws SQLException {
+        return new Reader(
+                resultSet.getInt("id"),
+                resultSet.getString("first_name"),
+                resultSet.getString("last_name"),
+                resultSet.getString("phone_number")
+        );
+    }
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a ResultSet to an entity.
+ *
+ * @param <T> the type of the model entity
+ */
+@FunctionalInterface
+interface RowMapper<T> {
+    /**
+     * Maps the current row.
+     *
+     * @param resultSet the ResultSet cursor
+     * @return the mapped entity
+     * @throws SQLException if a database access error occurs
+     */
+    T map(ResultSet resultSet) throws SQLException;
+}
@@ -0,0 +1,230 @@
+package dao;
+
+import conn.CancellationToken;
+import conn.DatabaseConnector;
+import conn.OperationClass;
+import conn.WriteTracker;
+import exceptions.DbException;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Coalesces identical reads that run at the same time.
+ * The first caller for a key executes the query; callers that arrive while it is still running wait for it
+ * and receive the same result (or the same exception) instead of running the query again.
+ * Every caller gets its own copy of the result, so one panel changing a loaded entity does not change
+ * the entities shown by another.
+ * <p>
+ * A waiting caller keeps its own limits: it gives up after the timeout of the read's operation class and when its
+ * own {@link CancellationToken} is cancelled. If the executing caller was cancelled or its query timed out, that
+ * failure is its own, so the waiting callers run the read again instead of failing with it.
+ * <p>
+ * Nothing is cached: once the query finishes, the next caller runs it anew. A read never joins a query
+ * that started before the latest write, so callers always see their own changes. Reads inside a
+ * {@link UnitOfWork} are never coalesced: they may see the transaction's uncommitted rows, which other callers
+ * must not receive.
+ */
+public final class SingleFlight {
+
+    private static final SingleFlight SHARED = new SingleFlight();
+    /** How often a waiting caller checks whether it has been cancelled or has waited too long. */
+    private static final long WAIT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * The failure of a read whose caller was cancelled or timed out, which the waiting callers do not share.
+     */
+    private static final class AbandonedException extends RuntimeException {
+        AbandonedException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Returns the instance shared by all DAOs.
+     *
+     * @return the shared SingleFlight
+     */
+    public static SingleFlight shared() {
+        return SHARED;
+    }
+
+    /**
+     * Runs a read of a list, or joins an identical read that is already running.
+     *
+     * @param key the identity of the read, such as the DAO and method name
+     * @param operationClass the class of the read, which limits how long a joining caller waits
+     * @param call the read to run
+     * @param copyElement creates an independent copy of an element of the list
+     * @param <E> the element type
+     * @return a new list with copies of the elements read
+     */
+    public <E> List<E> executeList(String key, OperationClass operationClass, Supplier<List<E>> call, UnaryOperator<E> copyElement) {
+        return execute(key, operationClass, call, list -> {
+            List<E> copy = new ArrayList<>(list.size());
+            for (E element : list) {
+                copy.add(copyElement.apply(element));
+            }
+            return copy;
+        });
+    }
+
+    /**
+     * Runs the read, or joins an identical read that is already running.
+     *
+     * @param key the identity of the read, such as the DAO and method name
+     * @param operationClass the class of the read, which limits how long a joining caller waits
+     * @param call the read to run
+     * @param copy creates an independent copy of the result; the identity for immutable results
+     * @param <T> the result type
+     * @return a copy of the result of the read, or the result itself inside a transaction
+     * @throws DbException if the read fails, or a joining caller times out or is cancelled while waiting
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, OperationClass operationClass, Supplier<T> call, UnaryOperator<T> copy) {
+        if (DatabaseConnector.inTransaction()) {
+            return call.get();
+        }
+
+        while (true) {
+            String flightKey = key + "@" + WriteTracker.generation();
+            CompletableFuture<Object> flight = new CompletableFuture<>();
+            CompletableFuture<Object> running = inFlight.putIfAbsent(flightKey, flight);
+
+            if (running == null) {
+                return copy.apply(lead(flightKey, flight, call));
+            }
+
+            try {
+                T result = (T) await(running, key, operationClass);
+                coalesced.increment();
+                return copy.apply(result);
+            } catch (AbandonedException abandonedException) {
+                // The running read was cancelled for its own caller; run it again.
+            }
+        }
+    }
+
+    /**
+     * Executes the read for all callers of a flight.
+     *
+     * @param flightKey the key of the flight
+     * @param flight the future of the flight, completed with the result
+     * @param call the read to run
+     * @param <T> the result type
+     * @return the result of the read, shared with the joining callers
+     */
+    private <T> T lead(String flightKey, CompletableFuture<Object> flight, Supplier<T> call) {
+        executions.increment();
+        try {
+            T result = call.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error exception) {
+            flight.completeExceptionally(isAbandoned(exception) ? new AbandonedException(exception) : exception);
+            throw exception;
+        } finally {
+            inFlight.remove(flightKey, flight);
+        }
+    }
+
+    /**
+     * Waits for a running read within the limits of the calling thread.
+     *
+     * @param running the future of the running read
+     * @param key the identity of the read
+     * @param operationClass the class of the read
+     * @return the result of the read
+     * @throws AbandonedException if the executing caller was cancelled or timed out
+     * @throws DbException if the read failed, or the wait timed out or was cancelled
+     */
+    private Object await(CompletableFuture<Object> running, String key, OperationClass operationClass) {
+        long startNanos = System.nanoTime();
+        long timeoutNanos = -1;
+        CancellationToken token = CancellationToken.current();
+
+        while (true) {
+            if (token != null && token.isCancelled()) {
+                throw new DbException("Error loading " + key + ": Operation was cancelled.",
+                        new SQLException("Operation was cancelled.", "HY008"));
+            }
+
+            try {
+                return running.get(WAIT_SLICE_NANOS, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException timeoutException) {
+                if (timeoutNanos < 0) {
+                    timeoutNanos = TimeUnit.SECONDS.toNanos(operationClass.timeoutSeconds(DatabaseConnector.getInstance().getQueryTimeouts()));
+                }
+                if (timeoutNanos > 0 && System.nanoTime() - startNanos >= timeoutNanos) {
+                    throw new DbException("Error loading " + key + ": Timed out after " + TimeUnit.NANOSECONDS.toSeconds(timeoutNanos) + " s.",
+                            new SQLTimeoutException("Timed out waiting for a running read."));
+                }
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                throw new DbException("Error loading " + key + ": Operation was interrupted.",
+                        new SQLException("Operation was interrupted.", "HY008"));
+            } catch (ExecutionException executionException) {
+                if (executionException.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                if (executionException.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw new DbException("Error loading " + key + ": " + executionException.getMessage(), executionException);
+            }
+        }
+    }
+
+    /**
+     * Tells whether a failed read failed only for its own caller: because the caller's token was cancelled,
+     * the thread was interrupted, or the query ran into its timeout.
+     *
+     * @param exception the failure of the read
+     * @return true if joining callers should run the read again
+     */
+    private static boolean isAbandoned(Throwable exception) {
+        CancellationToken token = CancellationToken.current();
+        if ((token != null && token.isCancelled()) || Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable cause = exception; cause != null; cause = cause.getCause() != cause ? cause.getCause() : null) {
+            if (cause instanceof SQLTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns how many reads were actually executed.
+     *
+     * @return the number of executed reads
+     */
+    public long getExecutionCount() {
+        return executions.sum();
+    }
+
+    /**
+     * Returns how many reads were served by joining a read that was already running.
+     *
+     * @return the number of coalesced reads
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+}
@@ -0,0 +1,162 @@
+package dao;
+
+import conn.DatabaseConnector;
+import conn.RetryPolicy;
+import exceptions.DbException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Runs a group of statements as one transaction on the primary database.
+ * The outermost unit of work borrows one pooled connection, turns auto-commit off and binds it to the current
+ * thread; every DAO call made on that thread until the unit ends uses this connection and joins the transaction,
+ * as does a nested unit of work. The transaction is committed when the outermost work returns and rolled back
+ * when it throws. DAO calls handed to other threads, such as those of {@link AsyncDAO}, do not join it.
+ * If the database rolled the transaction back because of a deadlock or a lock wait timeout, the whole work runs
+ * again on a fresh connection, as decided by the {@link RetryPolicy}. Row lock waits are limited to a second less
+ * than the lookup timeout of the statements, so a transaction blocked by another desk ends with a lock wait timeout,
+ * which is retried, rather than with the statement timeout, which is not. The work must therefore be safe to repeat:
+ * it may only change the database, and Java state only once the transaction has been committed.
+ */
+public final class UnitOfWork {
+
+    /** How much earlier than the lookup timeout a row lock wait gives up. */
+    private static final int LOCK_WAIT_MARGIN_SECONDS = 1;
+
+    private UnitOfWork() {}
+
+    /**
+     * The statements of a transaction.
+     *
+     * @param <T> the result type
+     */
+    @FunctionalInterface
+    public interface Work<T> {
+        /**
+         * Runs the statements on the given connection, or through DAO calls that join the transaction.
+         * The connection must not be committed, rolled back or closed; throwing rolls the transaction back.
+         *
+         * @param connection the connection of the transaction
+         * @return the result of the transaction
+         * @throws SQLException if a statement fails
+         */
+        T run(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Runs the work in a transaction, retrying it after deadlocks and lock wait timeouts.
+     * Inside another unit of work, the work joins the running transaction and is neither committed nor retried
+     * on its own.
+     *
+     * @param description what the work does, used in error messages, e.g. "saving loan"
+     * @param work the statements of the transaction
+     * @param <T> the result type
+     * @return the result of the work
+     * @throws DbException if the transaction fails for good; exceptions thrown by the work are passed on
+     */
+    public static <T> T execute(String description, Work<T> work) {
+        if (DatabaseConnector.inTransaction()) {
+            return join(description, work);
+        }
+
+        RetryPolicy retryPolicy = RetryPolicy.shared();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return runOnce(work);
+            } catch (SQLException sqlException) {
+                if (!retryPolicy.shouldRetry(sqlException, attempt)) {
+                    throw new DbException("Error while " + description + ": " + sqlException.getMessage(), sqlException);
+                }
+                pause(retryPolicy.backoffMillis(attempt), description, sqlException);
+            } catch (DbException dbException) {
+                if (!(dbException.getCause() instanceof SQLException sqlException) || !retryPolicy.shouldRetry(sqlException, attempt)) {
+                    throw dbException;
+                }
+                pause(retryPolicy.backoffMillis(attempt), description, sqlException);
+            }
+        }
+    }
+
+    /**
+     * Runs the work within the transaction bound to the current thread.
+     *
+     * @param description what the work does
+     * @param work the statements
+     * @param <T> the result type
+     * @return the result of the work
+     */
+    private static <T> T join(String description, Work<T> work) {
+        try (Connection connection = DatabaseConnector.getInstance().getConnection()) {
+            return work.run(connection);
+        } catch (SQLException sqlException) {
+            throw new DbException("Error while " + description + ": " + sqlException.getMessage(), sqlException);
+        }
+    }
+
+    /**
+     * Runs the work once in a transaction bound to the current thread.
+     * Auto-commit is turned back on by the pool when the connection is returned.
+     *
+     * @param work the statements of the transaction
+     * @param <T> the result type
+     * @return the result of the work
+     * @throws SQLException if a statement, the commit or the rollback fails
+     */
+    private static <T> T runOnce(Work<T> work) throws SQLException {
+        DatabaseConnector connector = DatabaseConnector.getInstance();
+        try (Connection connection = connector.bindTransaction()) {
+            try (Connection joined = connector.getConnection()) {
+                limitLockWait(joined, connector.getQueryTimeouts().lookupSeconds());
+                T result = work.run(joined);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException exception) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackException) {
+                    exception.addSuppressed(rollbackException);
+                }
+                throw exception;
+            } finally {
+                DatabaseConnector.unbindTransaction();
+            }
+        }
+    }
+
+    /**
+     * Makes row lock waits of the connection end before the lookup timeout cancels a waiting statement.
+     * InnoDB waits 50 seconds by default, so without this a blocked checkout would always be cancelled by its
+     * statement timeout first. The setting stays on the pooled connection, where every transaction sets it again.
+     *
+     * @param connection the connection of the transaction
+     * @param lookupSeconds the configured lookup timeout, 0 if turned off
+     * @throws SQLException if the setting cannot be changed
+     */
+    private static void limitLockWait(Connection connection, int lookupSeconds) throws SQLException {
+        if (lookupSeconds == 0) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("set session innodb_lock_wait_timeout = " + Math.max(1, lookupSeconds - LOCK_WAIT_MARGIN_SECONDS));
+        }
+    }
+
+    /**
+     * Waits before the next attempt.
+     *
+     * @param millis the time to wait
+     * @param description what the work does
+     * @param sqlException the failure that is retried
+     * @throws DbException if the thread is interrupted while waiting
+     */
+    private static void pause(long millis, String description, SQLException sqlException) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new DbException("Error while " + description + ": " + sqlException.getMessage(), sqlException);
+        }
+    }
+}
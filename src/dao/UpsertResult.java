@@ -0,0 +1,14 @@
+package dao;
+
+/**
+ * A record representing the outcome of an upsert.
+ *
+ * @param inserted the number of new rows
+ * @param updated the number of existing rows whose values changed
+ * @param unchanged the number of existing rows that already had the same values
+ */
+public record UpsertResult(
+        int inserted,
+        int updated,
+        int unchanged
+) {}
@@ -0,0 +1,31 @@
+package exceptions;
+
+/**
+ * Exception thrown instead of waiting for a database that is known to be unreachable.
+ * It is thrown at once while the connection circuit breaker is open, so the UI stays responsive;
+ * the UI can catch it as a regular DbException.
+ */
+public class DatabaseUnavailableException extends DbException {
+
+    private final long retryInMillis;
+
+    /**
+     * Constructs a new DatabaseUnavailableException.
+     *
+     * @param message The detail message.
+     * @param retryInMillis The time until the next attempt to reconnect, in milliseconds.
+     */
+    public DatabaseUnavailableException(String message, long retryInMillis) {
+        super(message);
+        this.retryInMillis = retryInMillis;
+    }
+
+    /**
+     * Returns the time until the next attempt to reconnect.
+     *
+     * @return The time in milliseconds.
+     */
+    public long getRetryInMillis() {
+        return retryInMillis;
+    }
+}
@@ -0,0 +1,18 @@
+package exceptions;
+
+/**
+ * Exception thrown when a reader is saved with a phone number that another reader already has.
+ * The UI can catch it as a regular DbException and let the user correct the number.
+ */
+public class DuplicatePhoneNumberException extends DbException {
+
+    /**
+     * Constructs a new DuplicatePhoneNumberException for the given phone number.
+     *
+     * @param phoneNumber The phone number that is already used.
+     * @param cause       The cause (the violation of the unique index).
+     */
+    public DuplicatePhoneNumberException(String phoneNumber, Throwable cause) {
+        super("The phone number " + phoneNumber + " is already used by another reader.", cause);
+    }
+}
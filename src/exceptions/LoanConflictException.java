@@ -0,0 +1,18 @@
+package exceptions;
+
+/**
+ * Exception thrown when a loan operation loses a race against another desk,
+ * for example when the book was lent out after it was offered in the loan dialog.
+ * The UI can catch it as a regular DbException; the caller may refresh its data and retry.
+ */
+public class LoanConflictException extends DbException {
+
+    /**
+     * Constructs a new LoanConflictException with the specified detail message.
+     *
+     * @param message The detail message.
+     */
+    public LoanConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,113 @@
+package metrics;
+
+import java.util.Optional;
+
+/**
+ * Finds the application method that caused a database call.
+ * DAO methods are preferred, so a query run through a shared helper is attributed to the DAO method using it.
+ */
+public final class CallSite {
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+    private static final int MAX_DEPTH = 64;
+
+    private CallSite() {}
+
+    /**
+     * Returns the innermost DAO method on the stack of the current thread,
+     * or the innermost application method if no DAO is involved.
+     *
+     * @return the method as "Class.method", or "unknown" if no application frame is found
+     */
+    public static String find() {
+        return STACK_WALKER.walk(frames -> {
+            String firstApplicationFrame = null;
+            for (StackWalker.StackFrame frame : (Iterable<StackWalker.StackFrame>) frames.limit(MAX_DEPTH)::iterator) {
+                String className = frame.getClassName();
+                if (isInfrastructure(className)) {
+                    continue;
+                }
+                String method = describe(className, frame.getMethodName());
+
+                if (isDao(className)) {
+                    return Optional.of(method);
+                }
+                if (firstApplicationFrame == null && !className.startsWith("dao.")) {
+                    firstApplicationFrame = method;
+                }
+            }
+            return Optional.ofNullable(firstApplicationFrame);
+        }).orElse("unknown");
+    }
+
+    /**
+     * Returns the innermost application method outside the DAO layer on the stack of the current thread,
+     * i.e. the code that called the DAO.
+     *
+     * @return the method and line as "Class.method:line", or "unknown" if the DAO was not called from application code
+     */
+    public static String findOutsideDao() {
+        return STACK_WALKER.walk(frames -> frames.limit(MAX_DEPTH)
+                .filter(frame -> !isInfrastructure(frame.getClassName()) && !frame.getClassName().startsWith("dao."))
+                .findFirst()
+                .map(frame -> describe(frame.getClassName(), frame.getMethodName()) + ":" + frame.getLineNumber()))
+                .orElse("unknown");
+    }
+
+    /**
+     * Describes a method by its class and name, e.g. "BookDAO.getAll" for a lambda inside BookDAO.getAll.
+     *
+     * @param className the fully qualified class name
+     * @param methodName the name of the method
+     * @return the simple class name and the method name
+     */
+    static String describe(String className, String methodName) {
+        String simpleName = className.substring(className.lastIndexOf('.') + 1);
+        int nestedIndex = simpleName.indexOf('$');
+        if (nestedIndex >= 0) {
+            simpleName = simpleName.substring(0, nestedIndex);
+        }
+        return simpleName + "." + methodName(methodName);
+    }
+
+    /**
+     * Tells whether a class is one of the DAOs, as opposed to their helpers.
+     *
+     * @param className the fully qualified class name
+     * @return true for DAO classes
+     */
+    static boolean isDao(String className) {
+        String simpleName = className.substring(className.lastIndexOf('.') + 1);
+        int nestedIndex = simpleName.indexOf('$');
+        if (nestedIndex >= 0) {
+            simpleName = simpleName.substring(0, nestedIndex);
+        }
+        return className.startsWith("dao.") && simpleName.endsWith("DAO") && !simpleName.equals("AsyncDAO");
+    }
+
+    /**
+     * Tells whether a class belongs to the JDK, the drivers or the measuring code itself.
+     *
+     * @param className the fully qualified class name
+     * @return true if frames of the class are never reported
+     */
+    static boolean isInfrastructure(String className) {
+        return className.startsWith("java.") || className.startsWith("javax.") || className.startsWith("jdk.")
+                || className.startsWith("sun.") || className.startsWith("com.sun.") || className.startsWith("com.mysql.")
+                || className.startsWith("conn.") || className.startsWith("metrics.");
+    }
+
+    /**
+     * Turns the name of a lambda body, such as "lambda$streamAll$0", into the name of the method declaring it.
+     *
+     * @param methodName the name of the frame's method
+     * @return the name of the declaring method
+     */
+    private static String methodName(String methodName) {
+        if (methodName.startsWith("lambda$")) {
+            int end = methodName.indexOf('$', "lambda$".length());
+            return methodName.substring("lambda$".length(), end > 0 ? end : methodName.length());
+        }
+        return methodName;
+    }
+}
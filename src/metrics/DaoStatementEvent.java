@@ -0,0 +1,68 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one SQL statement run through the connection pool, attributed to the DAO method that ran it.
+ * The event covers the execution of the statement; rows of a query are counted until its result set is closed.
+ * Statements shorter than the threshold (1 ms unless the recording settings say otherwise) are not recorded.
+ */
+@Name("library.DaoStatement")
+@Label("DAO Statement")
+@Category({"Library", "Database"})
+@Description("Execution of an SQL statement by a DAO method")
+@StackTrace(false)
+@Threshold("1 ms")
+public class DaoStatementEvent extends Event {
+
+    @Label("Entity")
+    @Description("Entity of the DAO, e.g. Book for BookDAO")
+    public String entity;
+
+    @Label("Operation")
+    @Description("Method that ran the statement")
+    public String operation;
+
+    @Label("SQL")
+    @Description("SQL template of the statement")
+    public String sql;
+
+    @Label("Rows")
+    @Description("Rows returned by a query or changed by an update")
+    public long rows;
+
+    @Label("Connection Wait")
+    @Description("Time spent waiting for the pooled connection that ran the statement")
+    @Timespan(Timespan.NANOSECONDS)
+    public long connectionWait;
+
+    @Label("Failed")
+    public boolean failed;
+
+    /**
+     * Fills the fields describing the statement.
+     *
+     * @param caller the method that ran the statement, e.g. "BookDAO.getAll"
+     * @param template the SQL template
+     * @param rows the rows returned or changed
+     * @param connectionWaitNanos the time spent waiting for the connection
+     * @param failed whether the statement threw an exception
+     */
+    public void describe(String caller, String template, long rows, long connectionWaitNanos, boolean failed) {
+        int dot = caller.indexOf('.');
+        String owner = dot >= 0 ? caller.substring(0, dot) : caller;
+        this.entity = owner.endsWith("DAO") ? owner.substring(0, owner.length() - 3) : owner;
+        this.operation = dot >= 0 ? caller.substring(dot + 1) : caller;
+        this.sql = template;
+        this.rows = rows;
+        this.connectionWait = connectionWaitNanos;
+        this.failed = failed;
+    }
+}
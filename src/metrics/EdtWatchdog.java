@@ -0,0 +1,290 @@
+package metrics;
+
+import javax.swing.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Watches the responsiveness of the Event Dispatch Thread.
+ * A background thread regularly posts a heartbeat to the EDT; when a heartbeat waits longer than the threshold,
+ * the EDT is considered stalled and its stack is sampled until it responds again. Every stall is attributed to
+ * the call that blocked it, preferably a DAO method or a JDBC call, and to the UI method that made that call.
+ * Stalls with the same attribution are aggregated, and the aggregate is written to a report file after every stall.
+ */
+public final class EdtWatchdog {
+
+    private static final int MAX_SAMPLES_PER_STALL = 64;
+    private static final int MAX_TRACKED_STALLS = 200;
+    private static final int MAX_REPORTED_FRAMES = 40;
+
+    private static volatile EdtWatchdog instance;
+
+    private final long thresholdNanos;
+    private final long intervalMillis;
+    private final Path reportFile;
+    private final ConcurrentMap<StallKey, StallStats> stalls = new ConcurrentHashMap<>();
+
+    private volatile Thread eventDispatchThread;
+    private volatile long heartbeatPostedAt;
+    private volatile long heartbeatHandledAt;
+    private volatile boolean heartbeatPending;
+
+    private EdtWatchdog(long thresholdMillis, Path reportFile) {
+        this.thresholdNanos = thresholdMillis * 1_000_000;
+        this.intervalMillis = Math.max(10, thresholdMillis / 4);
+        this.reportFile = reportFile;
+    }
+
+    /**
+     * Starts the watchdog unless it is already running.
+     *
+     * @param thresholdMillis how long the EDT may be blocked before it counts as a stall
+     * @param reportFile the file the aggregated stalls are written to
+     * @return the running watchdog
+     */
+    public static synchronized EdtWatchdog start(long thresholdMillis, Path reportFile) {
+        if (instance == null) {
+            EdtWatchdog watchdog = new EdtWatchdog(thresholdMillis, reportFile);
+            Thread thread = new Thread(watchdog::watch, "edt-watchdog");
+            thread.setDaemon(true);
+            thread.start();
+            instance = watchdog;
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the running watchdog.
+     *
+     * @return the watchdog, or null if it has not been started
+     */
+    public static EdtWatchdog get() {
+        return instance;
+    }
+
+    /**
+     * Returns the file the aggregated stalls are written to.
+     *
+     * @return the report file
+     */
+    public Path getReportFile() {
+        return reportFile;
+    }
+
+    /**
+     * Returns the aggregated stalls, the longest in total first.
+     *
+     * @return the stalls
+     */
+    public List<StallSummary> getStalls() {
+        List<StallSummary> summaries = new ArrayList<>();
+        for (Map.Entry<StallKey, StallStats> entry : stalls.entrySet()) {
+            summaries.add(entry.getValue().summarize(entry.getKey()));
+        }
+        summaries.sort(Comparator.comparingLong(StallSummary::totalMillis).reversed());
+        return summaries;
+    }
+
+    /**
+     * Forgets all stalls recorded so far.
+     */
+    public void reset() {
+        stalls.clear();
+    }
+
+    /**
+     * Writes the aggregated stalls, with an example stack of each, to the report file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void dump() throws IOException {
+        Path directory = reportFile.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+            writer.write("EDT stalls longer than " + thresholdNanos / 1_000_000 + " ms, written " + Instant.now() + "\n");
+            for (StallSummary stall : getStalls()) {
+                writer.write(String.format(Locale.ROOT, "%n%s called from %s: %d stalls, %d ms in total, longest %d ms, last at %s%n",
+                        stall.blockingCall(), stall.uiCaller(), stall.count(), stall.totalMillis(), stall.maxMillis(), stall.lastSeen()));
+                writer.write(stall.stack());
+            }
+        }
+    }
+
+    /**
+     * Posts heartbeats and samples the EDT while it does not respond. Runs until the application exits.
+     */
+    private void watch() {
+        List<StackTraceElement[]> samples = new ArrayList<>();
+        while (true) {
+            if (!heartbeatPending) {
+                if (!samples.isEmpty()) {
+                    recordStall(heartbeatHandledAt - heartbeatPostedAt, samples);
+                    samples = new ArrayList<>();
+                }
+                postHeartbeat();
+            }
+
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException interruptedException) {
+                return;
+            }
+
+            Thread edt = eventDispatchThread;
+            if (heartbeatPending && edt != null && System.nanoTime() - heartbeatPostedAt >= thresholdNanos
+                    && samples.size() < MAX_SAMPLES_PER_STALL) {
+                samples.add(edt.getStackTrace());
+            }
+        }
+    }
+
+    /**
+     * Posts a heartbeat that marks the EDT as responsive once it runs.
+     */
+    private void postHeartbeat() {
+        heartbeatPostedAt = System.nanoTime();
+        heartbeatPending = true;
+        SwingUtilities.invokeLater(() -> {
+            eventDispatchThread = Thread.currentThread();
+            heartbeatHandledAt = System.nanoTime();
+            heartbeatPending = false;
+        });
+    }
+
+    /**
+     * Attributes a finished stall and adds it to the aggregate. The attribution that most samples agree on wins.
+     *
+     * @param durationNanos roughly how long the EDT did not respond
+     * @param samples the stacks of the EDT taken during the stall
+     */
+    private void recordStall(long durationNanos, List<StackTraceElement[]> samples) {
+        Map<StallKey, Integer> votes = new HashMap<>();
+        Map<StallKey, StackTraceElement[]> examples = new HashMap<>();
+        for (StackTraceElement[] sample : samples) {
+            StallKey key = attribute(sample);
+            votes.merge(key, 1, Integer::sum);
+            examples.putIfAbsent(key, sample);
+        }
+        StallKey key = votes.entrySet().stream().max(Map.Entry.comparingByValue()).orElseThrow().getKey();
+
+        if (stalls.size() >= MAX_TRACKED_STALLS && !stalls.containsKey(key)) {
+            key = new StallKey("other", "(too many distinct stalls)");
+        }
+        stalls.computeIfAbsent(key, ignored -> new StallStats()).add(durationNanos, examples.getOrDefault(key, samples.get(0)));
+
+        try {
+            dump();
+        } catch (IOException ignored) {
+            // The stalls stay available in the diagnostics view.
+        }
+    }
+
+    /**
+     * Finds the call that blocks the EDT in a stack sample, and the UI method that made it.
+     * The innermost DAO method is preferred, then the innermost JDBC call, then the innermost application method.
+     *
+     * @param stack the stack of the EDT, innermost frame first
+     * @return the attribution
+     */
+    private static StallKey attribute(StackTraceElement[] stack) {
+        int blockingIndex = -1;
+        int jdbcIndex = -1;
+        int applicationIndex = -1;
+        for (int index = 0; index < stack.length; index++) {
+            String className = stack[index].getClassName();
+            if (CallSite.isDao(className)) {
+                blockingIndex = index;
+                break;
+            }
+            if (jdbcIndex < 0 && (className.startsWith("java.sql.") || className.startsWith("com.mysql."))) {
+                jdbcIndex = index;
+            }
+            if (applicationIndex < 0 && !CallSite.isInfrastructure(className)) {
+                applicationIndex = index;
+            }
+        }
+        if (blockingIndex < 0) {
+            blockingIndex = jdbcIndex >= 0 ? jdbcIndex : Math.max(0, applicationIndex);
+        }
+        if (stack.length == 0) {
+            return new StallKey("unknown", "unknown");
+        }
+
+        String blockingCall = blockingIndex == jdbcIndex && blockingIndex >= 0
+                ? "JDBC " + CallSite.describe(stack[blockingIndex].getClassName(), stack[blockingIndex].getMethodName())
+                : CallSite.describe(stack[blockingIndex].getClassName(), stack[blockingIndex].getMethodName());
+
+        String uiCaller = "unknown";
+        for (int index = blockingIndex + 1; index < stack.length; index++) {
+            if (stack[index].getClassName().startsWith("ui.")) {
+                uiCaller = CallSite.describe(stack[index].getClassName(), stack[index].getMethodName());
+                break;
+            }
+        }
+        return new StallKey(blockingCall, uiCaller);
+    }
+
+    /**
+     * Identifies a kind of stall: the blocking call and the UI method that made it.
+     *
+     * @param blockingCall the call that blocked the EDT, e.g. "BookDAO.getAll"
+     * @param uiCaller the UI method that made the call, e.g. "BookPanel.refreshTableData"
+     */
+    private record StallKey(String blockingCall, String uiCaller) {}
+
+    /**
+     * The aggregate of all stalls with the same attribution.
+     */
+    private static final class StallStats {
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+        private Instant lastSeen;
+        private StackTraceElement[] example;
+
+        synchronized void add(long durationNanos, StackTraceElement[] stack) {
+            count++;
+            totalNanos += durationNanos;
+            maxNanos = Math.max(maxNanos, durationNanos);
+            lastSeen = Instant.now();
+            example = stack;
+        }
+
+        synchronized StallSummary summarize(StallKey key) {
+            StringBuilder stack = new StringBuilder();
+            for (int index = 0; index < Math.min(example.length, MAX_REPORTED_FRAMES); index++) {
+                stack.append("    at ").append(example[index]).append('\n');
+            }
+            return new StallSummary(key.blockingCall(), key.uiCaller(), count,
+                    totalNanos / 1_000_000, maxNanos / 1_000_000, lastSeen, stack.toString());
+        }
+    }
+
+    /**
+     * The aggregate of all stalls with the same attribution.
+     *
+     * @param blockingCall the call that blocked the EDT, e.g. "BookDAO.getAll"
+     * @param uiCaller the UI method that made the call, e.g. "BookPanel.refreshTableData"
+     * @param count the number of stalls
+     * @param totalMillis the total duration of the stalls
+     * @param maxMillis the duration of the longest stall
+     * @param lastSeen when the last stall ended
+     * @param stack the stack of the EDT during the last stall
+     */
+    public record StallSummary(String blockingCall, String uiCaller, long count, long totalMillis, long maxMillis,
+                               Instant lastSeen, String stack) {}
+}
@@ -0,0 +1,30 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one database batch of an import.
+ */
+@Name("library.ImportBatch")
+@Label("Import Batch")
+@Category({"Library", "Import"})
+@Description("Storing a batch of imported books")
+@StackTrace(false)
+public class ImportBatchEvent extends Event {
+
+    @Label("Mode")
+    @Description("INSERT or UPSERT")
+    public String mode;
+
+    @Label("Records")
+    @Description("Number of books in the batch")
+    public int records;
+
+    @Label("Failed")
+    public boolean failed;
+}
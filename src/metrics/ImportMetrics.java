@@ -0,0 +1,188 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measurements of one running or finished import.
+ * Every stage counts the records it handled and the time it spent on them, summed over all threads,
+ * so comparing the stages shows whether an import is bound by parsing, by lookups or by the database.
+ * Batches that wait for a worker and batches being processed are counted as queue depths;
+ * the duration of every database batch goes into a histogram.
+ */
+public final class ImportMetrics {
+
+    /**
+     * The stages every imported record passes through.
+     */
+    public enum Stage {
+        PARSE, VALIDATE, RESOLVE, INSERT
+    }
+
+    private static volatile ImportMetrics latest;
+
+    private final long startNanos = System.nanoTime();
+    private volatile long finishNanos;
+    private final LongAdder[] stageRecords = new LongAdder[Stage.values().length];
+    private final LongAdder[] stageNanos = new LongAdder[Stage.values().length];
+    private final AtomicInteger queuedBatches = new AtomicInteger();
+    private final AtomicInteger activeBatches = new AtomicInteger();
+    private final LatencyHistogram batchLatency = new LatencyHistogram();
+
+    private ImportMetrics() {
+        for (int index = 0; index < stageRecords.length; index++) {
+            stageRecords[index] = new LongAdder();
+            stageNanos[index] = new LongAdder();
+        }
+    }
+
+    /**
+     * Starts measuring a new import. The new metrics become the latest ones.
+     *
+     * @return the metrics of the new import
+     */
+    public static ImportMetrics start() {
+        ImportMetrics metrics = new ImportMetrics();
+        latest = metrics;
+        return metrics;
+    }
+
+    /**
+     * Returns the metrics of the most recently started import.
+     *
+     * @return the metrics, or null if no import has been started
+     */
+    public static ImportMetrics latest() {
+        return latest;
+    }
+
+    /**
+     * Adds the work done in a stage.
+     *
+     * @param stage the stage
+     * @param records the number of records handled
+     * @param nanos the time spent on them in nanoseconds
+     */
+    public void recordStage(Stage stage, long records, long nanos) {
+        stageRecords[stage.ordinal()].add(records);
+        stageNanos[stage.ordinal()].add(nanos);
+    }
+
+    /**
+     * Records one database batch. The batch also counts towards the INSERT stage.
+     *
+     * @param records the number of records written by the batch
+     * @param nanos the duration of the batch in nanoseconds
+     */
+    public void recordBatch(long records, long nanos) {
+        batchLatency.record(nanos);
+        recordStage(Stage.INSERT, records, nanos);
+    }
+
+    /**
+     * Records that a batch of records waits for a worker.
+     */
+    public void batchQueued() {
+        queuedBatches.incrementAndGet();
+    }
+
+    /**
+     * Records that a worker took a waiting batch.
+     */
+    public void batchStarted() {
+        queuedBatches.decrementAndGet();
+        activeBatches.incrementAndGet();
+    }
+
+    /**
+     * Records that a worker finished a batch.
+     */
+    public void batchFinished() {
+        activeBatches.decrementAndGet();
+    }
+
+    /**
+     * Marks the import as finished, which stops its clock.
+     */
+    public void finish() {
+        finishNanos = System.nanoTime();
+    }
+
+    /**
+     * Copies the current values.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long finish = finishNanos;
+        long elapsedNanos = (finish != 0 ? finish : System.nanoTime()) - startNanos;
+
+        long totalNanos = 0;
+        for (LongAdder nanos : stageNanos) {
+            totalNanos += nanos.sum();
+        }
+
+        List<StageSnapshot> stages = new ArrayList<>();
+        for (Stage stage : Stage.values()) {
+            long nanos = stageNanos[stage.ordinal()].sum();
+            stages.add(new StageSnapshot(stage, stageRecords[stage.ordinal()].sum(), nanos,
+                    totalNanos == 0 ? 0 : (double) nanos / totalNanos));
+        }
+        return new Snapshot(elapsedNanos, finish != 0, stages, queuedBatches.get(), activeBatches.get(), batchLatency.snapshot());
+    }
+
+    /**
+     * The values of one stage.
+     *
+     * @param stage the stage
+     * @param records the number of records handled
+     * @param busyNanos the time spent on them, summed over all threads
+     * @param shareOfTime the part of the time of all stages spent in this stage, from 0 to 1
+     */
+    public record StageSnapshot(Stage stage, long records, long busyNanos, double shareOfTime) {
+
+        /**
+         * Returns how many records one thread handles per second in this stage.
+         *
+         * @return the records per second of busy time, or 0 if the stage has not run yet
+         */
+        public double recordsPerSecond() {
+            return busyNanos == 0 ? 0 : records * 1e9 / busyNanos;
+        }
+    }
+
+    /**
+     * A point-in-time copy of the metrics of an import.
+     *
+     * @param elapsedNanos the time since the import started, or its total duration if it has finished
+     * @param finished whether the import has finished
+     * @param stages the values of every stage
+     * @param queuedBatches the number of batches waiting for a worker
+     * @param activeBatches the number of batches being processed
+     * @param batchLatency the durations of the database batches
+     */
+    public record Snapshot(long elapsedNanos, boolean finished, List<StageSnapshot> stages,
+                           int queuedBatches, int activeBatches, LatencyHistogram.Snapshot batchLatency) {
+
+        /**
+         * Returns the values of one stage.
+         *
+         * @param stage the stage
+         * @return the values of the stage
+         */
+        public StageSnapshot stage(Stage stage) {
+            return stages.get(stage.ordinal());
+        }
+
+        /**
+         * Returns how many records were stored per second of the import so far.
+         *
+         * @return the overall records per second
+         */
+        public double recordsPerSecond() {
+            return elapsedNanos == 0 ? 0 : stage(Stage.INSERT).records() * 1e9 / elapsedNanos;
+        }
+    }
+}
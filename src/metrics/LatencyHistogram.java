@@ -0,0 +1,204 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations in nanoseconds.
+ * Values are counted in log-linear buckets: every power of two is split into 16 buckets,
+ * so a reported percentile is at most about 6 % off the real value while the histogram stays a fixed 8 KB.
+ * Recording is safe from any number of threads at once.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos the duration in nanoseconds; negative values are counted as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the sum of the recorded values.
+     *
+     * @return the sum in nanoseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Adds, for every limit, the number of recorded values at most that limit, without copying the histogram.
+     * Values in the bucket containing a limit are counted as below it.
+     *
+     * @param limitsNanos the limits in nanoseconds, in ascending order
+     * @param counts receives the counts; counts[i] is increased by the number of values at most limitsNanos[i]
+     */
+    public void addCountsAtOrBelow(long[] limitsNanos, long[] counts) {
+        long seen = 0;
+        int bucket = 0;
+        for (int limit = 0; limit < limitsNanos.length; limit++) {
+            int lastBucket = bucketOf(Math.max(0, limitsNanos[limit]));
+            for (; bucket <= lastBucket; bucket++) {
+                seen += buckets.get(bucket);
+            }
+            counts[limit] += seen;
+        }
+    }
+
+    /**
+     * Copies the current state of the histogram. Values recorded while copying may be partly included.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            counts[index] = buckets.get(index);
+        }
+        return new Snapshot(counts, count.sum(), sum.sum(), max.get());
+    }
+
+    /**
+     * Returns the bucket a value is counted in.
+     *
+     * @param value the value, not negative
+     * @return the index of the bucket
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the largest value that is counted in a bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the upper bound of the bucket
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+
+    /**
+     * A point-in-time copy of a histogram.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @return the number of recorded values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the sum of all recorded values in nanoseconds
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * @return the largest recorded value in nanoseconds
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return the average of the recorded values in nanoseconds, or 0 if nothing was recorded
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Returns the value below which the given share of the recorded values lies.
+         *
+         * @param quantile the share, from 0 to 1 (e.g. 0.99 for the 99th percentile)
+         * @return the value in nanoseconds, or 0 if nothing was recorded
+         */
+        public long getValueAtQuantile(double quantile) {
+            long total = 0;
+            for (long bucketCount : counts) {
+                total += bucketCount;
+            }
+            if (total == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int index = 0; index < counts.length; index++) {
+                seen += counts[index];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(index), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Returns how many recorded values are at most the given value.
+         * Values in the bucket containing the limit are counted as below it.
+         *
+         * @param nanos the limit in nanoseconds
+         * @return the number of values
+         */
+        public long getCountAtOrBelow(long nanos) {
+            int lastBucket = bucketOf(Math.max(0, nanos));
+            long seen = 0;
+            for (int index = 0; index <= lastBucket; index++) {
+                seen += counts[index];
+            }
+            return seen;
+        }
+    }
+}
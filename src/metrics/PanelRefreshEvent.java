@@ -0,0 +1,60 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for one refresh of a panel, from the start of loading until its table is filled.
+ * Refreshes shorter than the threshold (10 ms unless the recording settings say otherwise) are not recorded.
+ */
+@Name("library.PanelRefresh")
+@Label("Panel Refresh")
+@Category({"Library", "UI"})
+@Description("Reloading the data shown by a panel")
+@StackTrace(false)
+@Threshold("10 ms")
+public class PanelRefreshEvent extends Event {
+
+    @Label("Panel")
+    public String panel;
+
+    @Label("Rows")
+    @Description("Rows shown after the refresh")
+    public int rows;
+
+    @Label("Failed")
+    public boolean failed;
+
+    /**
+     * Starts timing a refresh.
+     *
+     * @param panel the name of the panel
+     * @return the started event
+     */
+    public static PanelRefreshEvent start(String panel) {
+        PanelRefreshEvent event = new PanelRefreshEvent();
+        event.panel = panel;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the refresh and records it if Flight Recorder is recording and the refresh exceeded the threshold.
+     *
+     * @param rows the rows shown after the refresh
+     * @param failed whether loading the data failed
+     */
+    public void finish(int rows, boolean failed) {
+        end();
+        if (shouldCommit()) {
+            this.rows = rows;
+            this.failed = failed;
+            commit();
+        }
+    }
+}
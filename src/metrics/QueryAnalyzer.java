@@ -0,0 +1,388 @@
+package metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Development-mode analysis of the queries issued by one logical operation, such as an import or a panel refresh.
+ * While a {@link Scope} is bound to a thread, every statement that thread runs through the connection pool is
+ * recorded with its SQL template and parameters. When the scope is closed, two patterns are reported:
+ * <ul>
+ *     <li>N+1: the same SELECT of the same DAO method ran many times with different parameters,
+ *     typically once per row or record instead of once for all of them;</li>
+ *     <li>duplicates: the same statement ran more than once with exactly the same parameters.</li>
+ * </ul>
+ * Findings are aggregated per operation, DAO method and template, printed to the error stream when they
+ * first occur and written to a report file. The analyzer is off unless {@link #enable(Path)} is called;
+ * tracking per scope is bounded, so even a long import uses little memory.
+ */
+public final class QueryAnalyzer {
+
+    private static final int N_PLUS_ONE_MIN_EXECUTIONS = 10;
+    private static final int MAX_QUERIES_PER_SCOPE = 256;
+    private static final int MAX_PARAMETER_SETS_PER_QUERY = 1024;
+    private static final int MAX_TRACKED_FINDINGS = 200;
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+    private static final ConcurrentMap<FindingKey, FindingStats> FINDINGS = new ConcurrentHashMap<>();
+
+    private static volatile boolean enabled;
+    private static volatile Path reportFile;
+
+    private QueryAnalyzer() {}
+
+    /**
+     * Turns the analyzer on.
+     *
+     * @param report the file the findings are written to
+     */
+    public static void enable(Path report) {
+        reportFile = report;
+        enabled = true;
+    }
+
+    /**
+     * Returns whether the analyzer is on.
+     *
+     * @return true in development mode
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts analyzing a logical operation. The scope records nothing until it is bound to a thread with
+     * {@link Scope#run(Supplier)}, and it reports its findings when it is closed.
+     *
+     * @param operation a description of the operation, e.g. "Books refresh"
+     * @return the new scope, or a scope that records nothing if the analyzer is off
+     */
+    public static Scope open(String operation) {
+        return enabled ? new Scope(operation) : Scope.NONE;
+    }
+
+    /**
+     * Runs a call as one logical operation and reports its findings afterwards.
+     *
+     * @param operation a description of the operation
+     * @param call the operation
+     * @param <T> the result type
+     * @return the result of the call
+     */
+    public static <T> T analyze(String operation, Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        try (Scope scope = open(operation)) {
+            return scope.run(call);
+        }
+    }
+
+    /**
+     * Returns the scope bound to the current thread.
+     *
+     * @return the current scope, or null if none is bound
+     */
+    public static Scope current() {
+        return enabled ? CURRENT.get() : null;
+    }
+
+    /**
+     * Returns the findings so far, the most frequent first.
+     *
+     * @return the findings
+     */
+    public static List<Finding> getFindings() {
+        List<Finding> findings = new ArrayList<>();
+        FINDINGS.forEach((key, stats) -> findings.add(stats.summarize(key)));
+        findings.sort(Comparator.comparingLong(Finding::occurrences).reversed());
+        return findings;
+    }
+
+    /**
+     * Writes the findings to the report file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public static void dump() throws IOException {
+        Path report = reportFile;
+        if (report == null) {
+            return;
+        }
+        Path directory = report.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+            writer.write("Query analysis, written " + Instant.now() + "\n");
+            for (Finding finding : getFindings()) {
+                writer.write("\n" + finding.describe() + "\n");
+                writer.write(String.format(Locale.ROOT, "  seen %d times, last at %s%n", finding.occurrences(), finding.lastSeen()));
+            }
+        }
+    }
+
+    /**
+     * Adds the findings of a closed scope to the aggregate and reports new ones.
+     *
+     * @param operation the operation of the scope
+     * @param query the analyzed query
+     */
+    private static void report(String operation, TrackedQuery query) {
+        boolean repeatedLookup = query.template.regionMatches(true, 0, "select", 0, 6)
+                && query.parameterSets.size() >= N_PLUS_ONE_MIN_EXECUTIONS;
+        long duplicates = query.overflowed ? 0 : query.executions - query.parameterSets.size();
+
+        boolean changed = false;
+        if (repeatedLookup) {
+            changed |= addFinding(new FindingKey(Kind.N_PLUS_ONE, operation, query.caller, query.template), query);
+        }
+        if (duplicates > 0) {
+            changed |= addFinding(new FindingKey(Kind.DUPLICATE, operation, query.caller, query.template), query);
+        }
+
+        if (changed) {
+            try {
+                dump();
+            } catch (IOException ignored) {
+                // The findings were printed already.
+            }
+        }
+    }
+
+    /**
+     * Adds one finding to the aggregate and prints it if it has not been seen before.
+     *
+     * @param key the finding
+     * @param query the analyzed query
+     * @return true if the finding is new
+     */
+    private static boolean addFinding(FindingKey key, TrackedQuery query) {
+        if (FINDINGS.size() >= MAX_TRACKED_FINDINGS && !FINDINGS.containsKey(key)) {
+            return false;
+        }
+        FindingStats stats = FINDINGS.computeIfAbsent(key, ignored -> new FindingStats());
+        boolean first = stats.add(query.executions, query.parameterSets.size(), query.callSite);
+        if (first) {
+            System.err.println("Query analysis: " + stats.summarize(key).describe());
+        }
+        return first;
+    }
+
+    /**
+     * The kind of a finding.
+     */
+    public enum Kind {
+        /** The same SELECT ran many times with different parameters. */
+        N_PLUS_ONE,
+        /** The same statement ran more than once with the same parameters. */
+        DUPLICATE
+    }
+
+    /**
+     * The queries of one logical operation. A scope can be bound to several threads at once.
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private static final Scope NONE = new Scope(null);
+
+        private final String operation;
+        private final ConcurrentMap<QueryKey, TrackedQuery> queries = new ConcurrentHashMap<>();
+        private volatile boolean closed;
+
+        private Scope(String operation) {
+            this.operation = operation;
+        }
+
+        /**
+         * Runs a call with this scope bound to the current thread.
+         *
+         * @param call the database work to run
+         * @param <T> the result type
+         * @return the result of the call
+         */
+        public <T> T run(Supplier<T> call) {
+            if (this == NONE) {
+                return call.get();
+            }
+            Scope previous = CURRENT.get();
+            CURRENT.set(this);
+            try {
+                return call.get();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        }
+
+        /**
+         * Runs a task with this scope bound to the current thread.
+         *
+         * @param task the database work to run
+         */
+        public void run(Runnable task) {
+            run(() -> {
+                task.run();
+                return null;
+            });
+        }
+
+        /**
+         * Records one execution of a statement.
+         *
+         * @param caller the DAO method that ran the statement
+         * @param template the SQL template
+         * @param parameters the SQL and parameter values identifying the exact execution
+         */
+        public void record(String caller, String template, Object parameters) {
+            if (this == NONE || closed) {
+                return;
+            }
+            QueryKey key = new QueryKey(caller, template);
+            TrackedQuery query = queries.get(key);
+            if (query == null) {
+                if (queries.size() >= MAX_QUERIES_PER_SCOPE) {
+                    return;
+                }
+                query = queries.computeIfAbsent(key, ignored -> new TrackedQuery(caller, template, CallSite.findOutsideDao()));
+            }
+            query.add(parameters);
+        }
+
+        /**
+         * Ends the operation and reports its findings.
+         */
+        @Override
+        public void close() {
+            if (this == NONE || closed) {
+                return;
+            }
+            closed = true;
+            for (TrackedQuery query : queries.values()) {
+                synchronized (query) {
+                    report(operation, query);
+                }
+            }
+            queries.clear();
+        }
+    }
+
+    /**
+     * Identifies a query within a scope.
+     *
+     * @param caller the DAO method
+     * @param template the SQL template
+     */
+    private record QueryKey(String caller, String template) {}
+
+    /**
+     * The executions of one query within a scope.
+     */
+    private static final class TrackedQuery {
+        private final String caller;
+        private final String template;
+        private final String callSite;
+        private final Set<Object> parameterSets = new HashSet<>();
+        private long executions;
+        private boolean overflowed;
+
+        TrackedQuery(String caller, String template, String callSite) {
+            this.caller = caller;
+            this.template = template;
+            this.callSite = callSite;
+        }
+
+        synchronized void add(Object parameters) {
+            executions++;
+            if (parameterSets.size() < MAX_PARAMETER_SETS_PER_QUERY) {
+                parameterSets.add(parameters);
+            } else {
+                overflowed = true;
+            }
+        }
+    }
+
+    /**
+     * Identifies a finding.
+     *
+     * @param kind the kind of the finding
+     * @param operation the operation it was found in
+     * @param caller the DAO method running the query
+     * @param template the SQL template
+     */
+    private record FindingKey(Kind kind, String operation, String caller, String template) {}
+
+    /**
+     * The aggregate of all occurrences of a finding.
+     */
+    private static final class FindingStats {
+        private long occurrences;
+        private long maxExecutions;
+        private long maxParameterSets;
+        private String callSite;
+        private Instant lastSeen;
+
+        synchronized boolean add(long executions, long parameterSets, String site) {
+            occurrences++;
+            if (executions >= maxExecutions) {
+                maxExecutions = executions;
+                maxParameterSets = parameterSets;
+            }
+            callSite = site;
+            lastSeen = Instant.now();
+            return occurrences == 1;
+        }
+
+        synchronized Finding summarize(FindingKey key) {
+            return new Finding(key.kind(), key.operation(), key.caller(), key.template(), callSite,
+                    occurrences, maxExecutions, maxParameterSets, lastSeen);
+        }
+    }
+
+    /**
+     * The aggregate of all occurrences of a finding.
+     *
+     * @param kind the kind of the finding
+     * @param operation the operation it was found in, e.g. "Books refresh"
+     * @param caller the DAO method running the query, e.g. "AuthorDAO.findByName"
+     * @param template the SQL template
+     * @param callSite the application method that called the DAO, e.g. "DataImporter.processAuthorForBook:704"
+     * @param occurrences the number of operations the finding occurred in
+     * @param executions the most executions of the query within one operation
+     * @param parameterSets the number of different parameter sets in that operation (capped at 1024)
+     * @param lastSeen when the finding last occurred
+     */
+    public record Finding(Kind kind, String operation, String caller, String template, String callSite,
+                          long occurrences, long executions, long parameterSets, Instant lastSeen) {
+
+        /**
+         * Describes the finding in one line.
+         *
+         * @return the description
+         */
+        public String describe() {
+            String pattern = kind == Kind.N_PLUS_ONE
+                    ? String.format(Locale.ROOT, "N+1 in %s: %s ran %d times with %d different parameters",
+                            operation, caller, executions, parameterSets)
+                    : String.format(Locale.ROOT, "Duplicate query in %s: %s ran %d times, %d of them with parameters already used",
+                            operation, caller, executions, executions - parameterSets);
+            return pattern + ", called from " + callSite + "\n  sql: " + template;
+        }
+    }
+}
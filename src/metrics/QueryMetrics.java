@@ -0,0 +1,257 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Measurements of the SQL statements run through the connection pool.
+ * Statements are grouped by the method that ran them and by their SQL template, in which
+ * lists of placeholders of any length are collapsed, so that batch inserts and IN lists of different
+ * sizes count as one query. For every group it keeps a latency histogram, the number of executions,
+ * failures and rows returned or changed. The time spent waiting for a pooled connection is kept as well.
+ */
+public final class QueryMetrics {
+
+    private static final QueryMetrics SHARED = new QueryMetrics();
+
+    private static final int MAX_TRACKED_QUERIES = 1000;
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+    private static final Pattern ROW_LIST = Pattern.compile("(\\((?:\\?|\\?\\.\\.\\.)\\))(\\s*,\\s*\\1)+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final QueryKey OVERFLOW_KEY = new QueryKey("other", "(too many distinct queries)");
+
+    private final ConcurrentMap<QueryKey, QueryStats> queries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> templates = new ConcurrentHashMap<>();
+    private volatile LatencyHistogram acquireLatency = new LatencyHistogram();
+
+    private QueryMetrics() {}
+
+    /**
+     * Returns the instance used by the connection pool.
+     *
+     * @return the shared QueryMetrics
+     */
+    public static QueryMetrics shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the statistics a statement is recorded into.
+     *
+     * @param caller the method that runs the statement, see {@link CallSite#find()}
+     * @param sql the SQL of the statement
+     * @return the statistics of the caller and the template of the SQL
+     */
+    public QueryStats statsFor(String caller, String sql) {
+        QueryKey key = new QueryKey(caller, templateOf(sql));
+        QueryStats stats = queries.get(key);
+        if (stats != null) {
+            return stats;
+        }
+        if (queries.size() >= MAX_TRACKED_QUERIES) {
+            return queries.computeIfAbsent(OVERFLOW_KEY, QueryStats::new);
+        }
+        return queries.computeIfAbsent(key, QueryStats::new);
+    }
+
+    /**
+     * Records the time a caller waited for a pooled connection.
+     *
+     * @param nanos the waiting time in nanoseconds
+     */
+    public void recordAcquire(long nanos) {
+        acquireLatency.record(nanos);
+    }
+
+    /**
+     * Returns the times callers waited for a pooled connection.
+     *
+     * @return the snapshot of the waiting times
+     */
+    public LatencyHistogram.Snapshot acquireSnapshot() {
+        return acquireLatency.snapshot();
+    }
+
+    /**
+     * Copies the statistics of all queries, the slowest in total first.
+     *
+     * @return the statistics of every query
+     */
+    public List<QuerySnapshot> snapshot() {
+        List<QuerySnapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<QueryKey, QueryStats> entry : queries.entrySet()) {
+            snapshots.add(entry.getValue().snapshot());
+        }
+        snapshots.sort(Comparator.comparingLong((QuerySnapshot snapshot) -> snapshot.latency().getSum()).reversed());
+        return snapshots;
+    }
+
+    /**
+     * Passes the statistics of every query to an action without copying them.
+     *
+     * @param action receives the statistics of each query
+     */
+    public void forEachQuery(Consumer<QueryStats> action) {
+        queries.values().forEach(action);
+    }
+
+    /**
+     * Returns the histogram of the times callers waited for a pooled connection.
+     *
+     * @return the live histogram
+     */
+    public LatencyHistogram getAcquireLatency() {
+        return acquireLatency;
+    }
+
+    /**
+     * Forgets all statistics collected so far.
+     */
+    public void reset() {
+        queries.clear();
+        acquireLatency = new LatencyHistogram();
+    }
+
+    /**
+     * Turns SQL into its template: whitespace is collapsed and lists of placeholders are shortened,
+     * e.g. "in (?, ?, ?)" becomes "in (?...)" and "values (?), (?), (?)" becomes "values (?), ...".
+     *
+     * @param sql the SQL
+     * @return the template
+     */
+    public String templateOf(String sql) {
+        String template = templates.get(sql);
+        if (template != null) {
+            return template;
+        }
+
+        template = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        template = PLACEHOLDER_LIST.matcher(template).replaceAll("?...");
+        template = ROW_LIST.matcher(template).replaceAll("$1, ...");
+        if (templates.size() < MAX_TRACKED_QUERIES) {
+            templates.put(sql, template);
+        }
+        return template;
+    }
+
+    /**
+     * Identifies a query: the method running it and its SQL template.
+     *
+     * @param caller the method, e.g. "BookDAO.getAll"
+     * @param template the SQL template
+     */
+    private record QueryKey(String caller, String template) {}
+
+    /**
+     * The statistics of one query. Recording is safe from any number of threads at once.
+     */
+    public static final class QueryStats {
+        private final QueryKey key;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+
+        private QueryStats(QueryKey key) {
+            this.key = key;
+        }
+
+        /**
+         * Returns the SQL template of the query.
+         *
+         * @return the template
+         */
+        public String getTemplate() {
+            return key.template();
+        }
+
+        /**
+         * Returns the method running the query.
+         *
+         * @return the method, e.g. "BookDAO.getAll"
+         */
+        public String getCaller() {
+            return key.caller();
+        }
+
+        /**
+         * Returns the histogram of the execution durations.
+         *
+         * @return the live histogram
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * Returns the number of failed executions.
+         *
+         * @return the number of failures
+         */
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        /**
+         * Returns the number of rows returned or changed.
+         *
+         * @return the number of rows
+         */
+        public long getRows() {
+            return rows.sum();
+        }
+
+        /**
+         * Records one execution.
+         *
+         * @param nanos the duration of the execution in nanoseconds
+         * @param failed whether the execution threw an exception
+         */
+        public void recordExecution(long nanos, boolean failed) {
+            latency.record(nanos);
+            if (failed) {
+                errors.increment();
+            }
+        }
+
+        /**
+         * Adds rows returned by a query or changed by an update.
+         *
+         * @param count the number of rows
+         */
+        public void recordRows(long count) {
+            rows.add(count);
+        }
+
+        private QuerySnapshot snapshot() {
+            return new QuerySnapshot(key.caller(), key.template(), errors.sum(), rows.sum(), latency.snapshot());
+        }
+    }
+
+    /**
+     * A point-in-time copy of the statistics of one query.
+     *
+     * @param caller the method running the query
+     * @param template the SQL template
+     * @param errors the number of failed executions
+     * @param rows the number of rows returned or changed
+     * @param latency the durations of the executions
+     */
+    public record QuerySnapshot(String caller, String template, long errors, long rows, LatencyHistogram.Snapshot latency) {
+
+        /**
+         * Returns the number of executions.
+         *
+         * @return the number of executions
+         */
+        public long executions() {
+            return latency.getCount();
+        }
+    }
+}
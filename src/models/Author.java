@@ -26,6 +26,15 @@ public class Author {
         this.lastName = lastName;
     }
 
+    /**
+     * Constructs a copy of another author.
+     *
+     * @param other the author to copy
+     */
+    public Author(Author other) {
+        this(other.id, other.firstName, other.lastName);
+    }
+
     public Integer getId() { return id; }
     public void setId(Integer id) { this.id = id; }
 
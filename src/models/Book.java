@@ -42,6 +42,17 @@ public class Book {
         this.author = author;
     }
 
+    /**
+     * Constructs a copy of another book, including copies of its genre and author.
+     *
+     * @param other the book to copy
+     */
+    public Book(Book other) {
+        this(other.id, other.title, other.price, other.available, other.condition,
+                other.genre != null ? new Genre(other.genre) : null,
+                other.author != null ? new Author(other.author) : null);
+    }
+
     public Integer getId() { return id; }
     public void setId(Integer id) { this.id = id; }
 
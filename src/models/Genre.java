@@ -23,6 +23,15 @@ public class Genre {
         this.name = name;
     }
 
+    /**
+     * Constructs a copy of another genre.
+     *
+     * @param other the genre to copy
+     */
+    public Genre(Genre other) {
+        this(other.id, other.name);
+    }
+
     public Integer getId(){
         return id;
     }
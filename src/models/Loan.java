@@ -36,6 +36,16 @@ public class Loan {
         this.returnDate = returnDate;
     }
 
+    /**
+     * Constructs a copy of another loan, including copies of its book and reader.
+     *
+     * @param other the loan to copy
+     */
+    public Loan(Loan other) {
+        this(other.id, other.book != null ? new Book(other.book) : null,
+                other.reader != null ? new Reader(other.reader) : null, other.loanDate, other.returnDate);
+    }
+
     public Integer getId() { return id; }
     public void setId(Integer id) { this.id = id; }
 
@@ -30,6 +30,15 @@ public class Reader {
         this.phoneNumber = phoneNumber;
     }
 
+    /**
+     * Constructs a copy of another reader.
+     *
+     * @param other the reader to copy
+     */
+    public Reader(Reader other) {
+        this(other.id, other.firstName, other.lastName, other.phoneNumber);
+    }
+
     public Integer getId() {
         return id;
     }
@@ -0,0 +1,263 @@
+package services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import dao.BookDAO;
+import dao.LoanDAO;
+import dao.ReaderDAO;
+import exceptions.DbException;
+import models.Book;
+import models.Loan;
+import models.Reader;
+import ui.json.LogOutput;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Service class responsible for exporting books, readers and loans into CSV or NDJSON files.
+ * Rows are streamed from the database straight into a buffered file channel, so memory use does not grow
+ * with the size of the table. File names ending with ".gz" are gzip-compressed.
+ * Exported books use the same shape as the import, so an export can be imported again.
+ */
+public class DataExporter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The kinds of records that can be exported.
+     */
+    public enum ExportEntity {
+        BOOKS("Books"),
+        READERS("Readers"),
+        LOANS("Loans");
+
+        private final String label;
+
+        ExportEntity(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * The supported file formats.
+     */
+    public enum ExportFormat {
+        CSV, NDJSON
+    }
+
+    /**
+     * A CSV column: its header and how to get its value from a record.
+     *
+     * @param header the column header
+     * @param extractor the function reading the value from a record
+     * @param <T> the type of the exported record
+     */
+    private record Column<T>(String header, Function<T, Object> extractor) {}
+
+    private static final List<Column<Book>> BOOK_COLUMNS = List.of(
+            new Column<>("id", Book::getId),
+            new Column<>("title", Book::getTitle),
+            new Column<>("author_first_name", book -> book.getAuthor().getFirstName()),
+            new Column<>("author_last_name", book -> book.getAuthor().getLastName()),
+            new Column<>("genre", book -> book.getGenre().getName()),
+            new Column<>("price", Book::getPrice),
+            new Column<>("condition", book -> book.getCondition().name()),
+            new Column<>("available", Book::isAvailable)
+    );
+
+    private static final List<Column<Reader>> READER_COLUMNS = List.of(
+            new Column<>("id", Reader::getId),
+            new Column<>("first_name", Reader::getFirstName),
+            new Column<>("last_name", Reader::getLastName),
+            new Column<>("phone_number", Reader::getPhoneNumber)
+    );
+
+    private static final List<Column<Loan>> LOAN_COLUMNS = List.of(
+            new Column<>("id", Loan::getId),
+            new Column<>("book_id", loan -> loan.getBook().getId()),
+            new Column<>("book_title", loan -> loan.getBook().getTitle()),
+            new Column<>("reader_id", loan -> loan.getReader().getId()),
+            new Column<>("reader_first_name", loan -> loan.getReader().getFirstName()),
+            new Column<>("reader_last_name", loan -> loan.getReader().getLastName()),
+            new Column<>("loan_date", Loan::getLoanDate),
+            new Column<>("return_date", Loan::getReturnDate)
+    );
+
+    private final BookDAO bookDAO = new BookDAO();
+    private final ReaderDAO readerDAO = new ReaderDAO();
+    private final LoanDAO loanDAO = new LoanDAO();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Initializes the DataExporter and configures the Jackson ObjectMapper.
+     */
+    public DataExporter() {
+        objectMapper.registerModule(new SimpleModule().addSerializer(LocalDate.class, ToStringSerializer.instance));
+        objectMapper.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        objectMapper.getFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        objectMapper.getFactory().setRootValueSeparator(null);
+    }
+
+    /**
+     * Determines the export format from a file name, ignoring a trailing ".gz".
+     *
+     * @param filePath the path of the target file
+     * @return NDJSON for ".ndjson" and ".jsonl" files, CSV otherwise
+     */
+    public static ExportFormat formatOf(String filePath) {
+        String name = filePath.toLowerCase();
+        if (name.endsWith(".gz")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        return name.endsWith(".ndjson") || name.endsWith(".jsonl") ? ExportFormat.NDJSON : ExportFormat.CSV;
+    }
+
+    /**
+     * Exports all records of the given kind into a file.
+     *
+     * @param entity the kind of records to export
+     * @param filePath the path of the target file; the format is taken from its extension
+     * @param logOutput the interface for writing progress logs to the GUI
+     * @return true if the export finished, false if it failed
+     */
+    public boolean export(ExportEntity entity, String filePath, LogOutput logOutput) {
+        ExportFormat format = formatOf(filePath);
+        boolean gzip = filePath.toLowerCase().endsWith(".gz");
+        long startNanos = System.nanoTime();
+        long rows;
+
+        try (Writer writer = openWriter(Path.of(filePath), gzip)) {
+            rows = switch (entity) {
+                case BOOKS -> writeAll(writer, format, BOOK_COLUMNS, bookDAO::streamAll);
+                case READERS -> writeAll(writer, format, READER_COLUMNS, readerDAO::streamAll);
+                case LOANS -> writeAll(writer, format, LOAN_COLUMNS, loanDAO::streamAll);
+            };
+        } catch (IOException | UncheckedIOException | DbException exception) {
+            logOutput.append("Critical error: The export could not be completed.\n");
+            logOutput.append("Details: " + exception.getMessage() + "\n");
+            return false;
+        }
+
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        logOutput.append("Exported " + rows + " " + entity.toString().toLowerCase() + " as " + format
+                + (gzip ? " (gzip)" : "") + " in " + elapsedMillis + " ms.\n");
+        return true;
+    }
+
+    /**
+     * Opens a buffered UTF-8 writer on a file channel, optionally compressing the output.
+     *
+     * @param path the target file
+     * @param gzip whether to gzip the output
+     * @return the writer
+     * @throws IOException if the file cannot be opened
+     */
+    private Writer openWriter(Path path, boolean gzip) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        OutputStream outputStream = Channels.newOutputStream(channel);
+        if (gzip) {
+            outputStream = new GZIPOutputStream(outputStream, BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Streams all records from a DAO into the writer.
+     *
+     * @param writer the target writer
+     * @param format the output format
+     * @param columns the CSV columns of the record type
+     * @param source the streaming DAO method
+     * @param <T> the type of the exported record
+     * @return the number of written records
+     * @throws IOException if writing fails
+     */
+    private <T> long writeAll(Writer writer, ExportFormat format, List<Column<T>> columns, Consumer<Consumer<T>> source) throws IOException {
+        long[] count = {0};
+
+        if (format == ExportFormat.CSV) {
+            writer.write(String.join(",", columns.stream().map(Column::header).toList()));
+            writer.write('\n');
+            source.accept(record -> {
+                try {
+                    writeCsvRow(writer, columns, record);
+                    count[0]++;
+                } catch (IOException ioException) {
+                    throw new UncheckedIOException(ioException);
+                }
+            });
+        } else {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)) {
+                source.accept(record -> {
+                    try {
+                        objectMapper.writeValue(generator, record);
+                        generator.writeRaw('\n');
+                        count[0]++;
+                    } catch (IOException ioException) {
+                        throw new UncheckedIOException(ioException);
+                    }
+                });
+            }
+        }
+        return count[0];
+    }
+
+    /**
+     * Writes one record as a CSV line.
+     *
+     * @param writer the target writer
+     * @param columns the columns to write
+     * @param record the record
+     * @param <T> the type of the exported record
+     * @throws IOException if writing fails
+     */
+    private <T> void writeCsvRow(Writer writer, List<Column<T>> columns, T record) throws IOException {
+        for (int index = 0; index < columns.size(); index++) {
+            if (index > 0) {
+                writer.write(',');
+            }
+            Object value = columns.get(index).extractor().apply(record);
+            if (value != null) {
+                writeCsvValue(writer, value.toString());
+            }
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Writes a CSV value, quoting it if it contains a separator, a quote or a line break.
+     *
+     * @param writer the target writer
+     * @param value the value to write
+     * @throws IOException if writing fails
+     */
+    public static void writeCsvValue(Writer writer, String value) throws IOException {
+        boolean needsQuotes = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!needsQuotes) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
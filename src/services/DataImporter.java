@@ -1,37 +1,93 @@
 package services;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import conn.DatabaseConnector;
 import dao.*;
+import metrics.ImportBatchEvent;
+import metrics.ImportMetrics;
+import metrics.QueryAnalyzer;
 import models.*;
 import ui.json.LogOutput;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
 
 /**
- * Service class responsible for parsing JSON files and importing books, authors, and genres into the database.
+ * Service class responsible for parsing JSON, NDJSON and CSV files and importing books, authors, and genres into the database.
  * It handles validation and prevents duplicate entries.
  */
 public class DataImporter {
 
+    private static final int LINES_PER_CHUNK = 500;
+    private static final int RECORDS_PER_VALIDATION_BATCH = 8192;
+
+    /**
+     * How imported books are stored.
+     * INSERT always adds new rows; UPSERT matches books by title, author and condition
+     * and updates the price and genre of books that already exist, so a file can be imported repeatedly.
+     * The availability of a file only applies to new books; loans decide it for existing ones.
+     */
+    public enum ImportMode {
+        INSERT, UPSERT
+    }
+
+    /**
+     * Line-delimited import formats: one book per line.
+     */
+    public enum LineFormat {
+        NDJSON, CSV
+    }
+
     private final BookDAO bookDAO = new BookDAO();
     private final AuthorDAO authorDAO = new AuthorDAO();
     private final GenreDAO genreDAO = new GenreDAO();
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ImportMode mode;
+    private volatile ImportMetrics metrics;
+
+    private final ConcurrentMap<String, CompletableFuture<Author>> authorCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Genre>> genreCache = new ConcurrentHashMap<>();
 
     /**
-     * Initializes the DataImporter and configures the Jackson ObjectMapper.
+     * Initializes the DataImporter in insert mode and configures the Jackson ObjectMapper.
      */
     public DataImporter() {
+        this(ImportMode.INSERT);
+    }
+
+    /**
+     * Initializes the DataImporter and configures the Jackson ObjectMapper.
+     *
+     * @param mode how imported books are stored
+     */
+    public DataImporter(ImportMode mode) {
+        this.mode = mode;
         objectMapper.enable(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY);
     }
 
+    /**
+     * Returns the measurements of the import that is running or ran last on this importer.
+     *
+     * @return the metrics, or null if no import has been started
+     */
+    public ImportMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Reads a JSON file and attempts to import the books contained within.
      *
@@ -40,22 +96,46 @@ public class DataImporter {
      * @return true if the file was processed successfully (even with partial import failures), false if the file could not be read
      */
     public boolean importBooksFromJson(String filePath, LogOutput logOutput) {
+        return QueryAnalyzer.analyze("JSON import of " + new File(filePath).getName(), () -> importJson(filePath, logOutput));
+    }
+
+    /**
+     * Imports the books of a JSON file, see {@link #importBooksFromJson(String, LogOutput)}.
+     *
+     * @param filePath the absolute path to the JSON file
+     * @param logOutput the interface for writing progress logs to the GUI
+     * @return true if the file was processed, false if it could not be read
+     */
+    private boolean importJson(String filePath, LogOutput logOutput) {
         File file = new File(filePath);
         if (!file.exists()) {
             logOutput.append("Error: File not found: " + filePath + "\n");
             return false;
         }
+        if (mode == ImportMode.UPSERT && !canUpsert(logOutput)) {
+            return false;
+        }
 
+        ImportMetrics importMetrics = ImportMetrics.start();
+        metrics = importMetrics;
         try {
+            long parseStart = System.nanoTime();
             List<Book> books = objectMapper.readValue(file, new TypeReference<>() {});
+            importMetrics.recordStage(ImportMetrics.Stage.PARSE, books.size(), System.nanoTime() - parseStart);
 
             logOutput.append("Found " + books.size() + " books in JSON file. Starting import...\n");
 
+            if (mode == ImportMode.UPSERT) {
+                return upsertBooks(books, logOutput);
+            }
+
             int successCount = 0;
             int failCount = 0;
 
             for (Book book : books) {
+                long validateStart = System.nanoTime();
                 List<String> validationErrors = validateBook(book);
+                importMetrics.recordStage(ImportMetrics.Stage.VALIDATE, 1, System.nanoTime() - validateStart);
 
                 if (!validationErrors.isEmpty()) {
                     String title = (book.getTitle() != null ? book.getTitle() : "UNKNOWN");
@@ -68,9 +148,11 @@ public class DataImporter {
                 }
 
                 try {
+                    long resolveStart = System.nanoTime();
                     processAuthorForBook(book);
                     processGenreForBook(book);
-                    bookDAO.save(book);
+                    importMetrics.recordStage(ImportMetrics.Stage.RESOLVE, 1, System.nanoTime() - resolveStart);
+                    storeBatch(1, () -> bookDAO.save(book));
                     logOutput.append("Imported book: " + book.getTitle() + "\n");
                     successCount++;
                 } catch (Exception exception) {
@@ -89,16 +171,604 @@ public class DataImporter {
             logOutput.append("Critical error: The JSON file is invalid or unreadable.\n");
             logOutput.append("Details: " + ioException.getMessage() + "\n");
             return false;
+        } finally {
+            importMetrics.finish();
         }
     }
 
+    /**
+     * Checks that books can be matched by their natural key before anything is upserted.
+     * Without the unique index, the upsert would add every existing book again as a duplicate.
+     *
+     * @param logOutput the interface for writing progress logs to the GUI
+     * @return true if the index exists, false if the import must not start
+     */
+    private boolean canUpsert(LogOutput logOutput) {
+        try {
+            if (bookDAO.hasNaturalKeyIndex()) {
+                return true;
+            }
+            logOutput.append("Critical error: Existing books cannot be updated, because the unique index "
+                    + BookDAO.NATURAL_KEY_INDEX + " is missing.\n");
+            logOutput.append("Migration V1 adds it on startup, but postpones it while the books table contains duplicates. "
+                    + "Remove the duplicates reported at startup and restart the application. Nothing was imported.\n");
+        } catch (Exception exception) {
+            logOutput.append("Database error: " + exception.getMessage() + "\n");
+        }
+        return false;
+    }
+
+    /**
+     * Upserts already parsed books in chunks, matching them by their natural key.
+     *
+     * @param books the parsed books
+     * @param logOutput the interface for writing progress logs to the GUI
+     * @return true if the books were processed (even with partial failures), false if the database could not be read
+     */
+    private boolean upsertBooks(List<Book> books, LogOutput logOutput) {
+        try {
+            preloadCaches();
+        } catch (Exception exception) {
+            logOutput.append("Database error: " + exception.getMessage() + "\n");
+            return false;
+        }
+        int[] counts = new int[4];
+
+        for (int from = 0; from < books.size(); from += LINES_PER_CHUNK) {
+            List<Book> validBooks = new ArrayList<>();
+            for (Book book : books.subList(from, Math.min(from + LINES_PER_CHUNK, books.size()))) {
+                long validateStart = System.nanoTime();
+                List<String> validationErrors = validateBook(book);
+                metrics.recordStage(ImportMetrics.Stage.VALIDATE, 1, System.nanoTime() - validateStart);
+                String title = (book.getTitle() != null ? book.getTitle() : "UNKNOWN");
+
+                if (!validationErrors.isEmpty()) {
+                    logOutput.append("Skipping book '" + title + "' due to errors: " + String.join(" ", validationErrors) + "\n");
+                    counts[3]++;
+                    continue;
+                }
+                try {
+                    long resolveStart = System.nanoTime();
+                    resolveAuthorAndGenre(book);
+                    metrics.recordStage(ImportMetrics.Stage.RESOLVE, 1, System.nanoTime() - resolveStart);
+                    validBooks.add(book);
+                } catch (Exception exception) {
+                    logOutput.append("Database error for book " + title + ": " + exception.getMessage() + "\n");
+                    counts[3]++;
+                }
+            }
+
+            try {
+                UpsertResult result = storeBatch(validBooks.size(), () -> bookDAO.upsertAll(validBooks));
+                counts[0] += result.inserted();
+                counts[1] += result.updated();
+                counts[2] += result.unchanged();
+            } catch (Exception exception) {
+                logOutput.append("Database error for " + validBooks.size() + " books: " + exception.getMessage() + "\n");
+                counts[3] += validBooks.size();
+            }
+        }
+
+        logOutput.append("\n--- IMPORT SUMMARY ---\n");
+        logOutput.append("Inserted: " + counts[0] + "\n");
+        logOutput.append("Updated: " + counts[1] + "\n");
+        logOutput.append("Unchanged: " + counts[2] + "\n");
+        logOutput.append("Failed: " + counts[3] + "\n");
+        return true;
+    }
+
+    /**
+     * Runs one database batch of the import, recording its duration in the import metrics
+     * and as a Flight Recorder event.
+     *
+     * @param records the number of books in the batch
+     * @param store writes the batch
+     * @param <T> the result type of the batch
+     * @return the result of the batch
+     */
+    private <T> T storeBatch(int records, Supplier<T> store) {
+        ImportBatchEvent event = new ImportBatchEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = store.get();
+            metrics.recordBatch(records, System.nanoTime() - start);
+            failed = false;
+            return result;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.mode = mode.name();
+                event.records = records;
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Fills the author and genre caches with all records from the database,
+     * so that only names which are not in the database yet need a lookup.
+     */
+    private void preloadCaches() {
+        for (Author author : authorDAO.getAll()) {
+            authorCache.putIfAbsent(authorKey(author), CompletableFuture.completedFuture(author));
+        }
+        for (Genre genre : genreDAO.getAll()) {
+            genreCache.putIfAbsent(genreKey(genre), CompletableFuture.completedFuture(genre));
+        }
+    }
+
+    /**
+     * Determines the line-delimited format of a file from its name, ignoring a trailing ".gz".
+     *
+     * @param filePath the path of the file
+     * @return the line format, or null for a JSON file
+     */
+    public static LineFormat lineFormatOf(String filePath) {
+        String name = filePath.toLowerCase();
+        if (name.endsWith(".gz")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return LineFormat.NDJSON;
+        }
+        return name.endsWith(".csv") ? LineFormat.CSV : null;
+    }
+
+    /**
+     * Imports books from a line-delimited file (NDJSON or CSV, optionally gzip-compressed).
+     * Records are read one at a time (a CSV record spans several lines when a quoted value contains line breaks)
+     * and grouped into chunks; chunks are parsed, validated and inserted in parallel,
+     * each chunk with one batch insert. The log reports the line up to which everything has been processed,
+     * so an interrupted import can be resumed from there.
+     *
+     * @param filePath the absolute path to the file
+     * @param format the format of the lines
+     * @param startLine the first line to import (1 for the whole file); for CSV the header is always read
+     * @param logOutput the interface for writing progress logs to the GUI
+     * @return true if the file was processed successfully (even with partial import failures), false if the file could not be read
+     */
+    public boolean importBooksFromLines(String filePath, LineFormat format, long startLine, LogOutput logOutput) {
+        return QueryAnalyzer.analyze(format + " import of " + new File(filePath).getName(),
+                () -> importLines(filePath, format, startLine, logOutput));
+    }
+
+    /**
+     * Imports the books of a line-delimited file, see {@link #importBooksFromLines(String, LineFormat, long, LogOutput)}.
+     *
+     * @param filePath the absolute path to the file
+     * @param format the format of the lines
+     * @param startLine the first line to import
+     * @param logOutput the interface for writing progress logs to the GUI
+     * @return true if the file was processed, false if it could not be read
+     */
+    private boolean importLines(String filePath, LineFormat format, long startLine, LogOutput logOutput) {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            logOutput.append("Error: File not found: " + filePath + "\n");
+            return false;
+        }
+        if (mode == ImportMode.UPSERT && !canUpsert(logOutput)) {
+            return false;
+        }
+
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), DatabaseConnector.getInstance().getPoolSize() - 1));
+        logOutput.append("Importing " + format + " file from line " + startLine + " using " + threads + " threads...\n");
+
+        ImportMetrics importMetrics = ImportMetrics.start();
+        metrics = importMetrics;
+        LineImport lineImport = new LineImport(format, threads, startLine, logOutput, importMetrics);
+        try (BufferedReader reader = openReader(file)) {
+            preloadCaches();
+            RecordReader recordReader = new RecordReader(reader, format);
+
+            if (format == LineFormat.CSV) {
+                String headerLine = recordReader.next();
+                if (headerLine == null) {
+                    logOutput.append("Critical error: The CSV file is empty.\n");
+                    return false;
+                }
+                lineImport.csvHeader = parseCsvHeader(headerLine);
+            }
+
+            List<NumberedLine> chunk = new ArrayList<>(LINES_PER_CHUNK);
+            String record;
+            while ((record = recordReader.next()) != null) {
+                if (recordReader.recordLine() < startLine || record.isBlank()) {
+                    continue;
+                }
+                chunk.add(new NumberedLine(recordReader.recordLine(), record));
+
+                if (chunk.size() == LINES_PER_CHUNK) {
+                    lineImport.submit(chunk, recordReader.lineNumber());
+                    chunk = new ArrayList<>(LINES_PER_CHUNK);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                lineImport.submit(chunk, recordReader.lineNumber());
+            }
+        } catch (IOException ioException) {
+            logOutput.append("Critical error: The file is unreadable.\n");
+            logOutput.append("Details: " + ioException.getMessage() + "\n");
+            return false;
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            logOutput.append("Import was interrupted.\n");
+            return false;
+        } catch (Exception exception) {
+            logOutput.append("Database error: " + exception.getMessage() + "\n");
+            return false;
+        } finally {
+            long completedThroughLine = lineImport.awaitCompletion();
+            importMetrics.finish();
+            logOutput.append("All lines up to " + completedThroughLine + " have been processed. "
+                    + "To resume, import again from line " + (completedThroughLine + 1) + ".\n");
+        }
+
+        logOutput.append("\n--- IMPORT SUMMARY ---\n");
+        if (mode == ImportMode.UPSERT) {
+            logOutput.append("Inserted: " + lineImport.successCount.get() + "\n");
+            logOutput.append("Updated: " + lineImport.updatedCount.get() + "\n");
+            logOutput.append("Unchanged: " + lineImport.unchangedCount.get() + "\n");
+        } else {
+            logOutput.append("Successfully imported: " + lineImport.successCount.get() + "\n");
+        }
+        logOutput.append("Failed: " + lineImport.failCount.get() + "\n");
+        return true;
+    }
+
+    /**
+     * Checks a JSON, NDJSON or CSV file without writing anything to the database.
+     * The file is streamed in batches; each batch is parsed and validated in parallel, and authors and genres
+     * are looked up in a snapshot of the database taken once at the start. Every problem is written to a CSV report
+     * with the line number (line-delimited files) or the position in the array (JSON files) of the record.
+     *
+     * @param filePath the absolute path to the file
+     * @param reportPath the path of the CSV report to write
+     * @param logOutput the interface for writing progress logs to the GUI
+     * @return true if the whole file was checked (even if it contains invalid records), false if it could not be read
+     */
+    public boolean dryRun(String filePath, String reportPath, LogOutput logOutput) {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            logOutput.append("Error: File not found: " + filePath + "\n");
+            return false;
+        }
+
+        long startNanos = System.nanoTime();
+        DryRun dryRun;
+        try {
+            dryRun = new DryRun(authorDAO.getAll(), genreDAO.getAll());
+        } catch (Exception exception) {
+            logOutput.append("Database error: " + exception.getMessage() + "\n");
+            return false;
+        }
+
+        LineFormat format = lineFormatOf(file.getName());
+        logOutput.append("Checking " + (format != null ? format : "JSON") + " file without importing...\n");
+
+        try (BufferedReader reader = openReader(file);
+             Writer report = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(new File(reportPath).toPath()), StandardCharsets.UTF_8), 1 << 16)) {
+            report.write("record,severity,title,message\n");
+
+            if (format == null) {
+                dryRunJson(reader, dryRun, report);
+            } else {
+                dryRunLines(reader, format, dryRun, report);
+            }
+        } catch (IOException ioException) {
+            logOutput.append("Critical error: The file is invalid or unreadable.\n");
+            logOutput.append("Details: " + ioException.getMessage() + "\n");
+            return false;
+        }
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        logOutput.append("\n--- DRY RUN SUMMARY ---\n");
+        logOutput.append("Records checked: " + dryRun.recordCount + "\n");
+        logOutput.append("Valid: " + (dryRun.recordCount - dryRun.invalidCount) + "\n");
+        logOutput.append("Invalid: " + dryRun.invalidCount + "\n");
+        logOutput.append("New authors: " + dryRun.newAuthors.size() + "\n");
+        logOutput.append("New genres: " + dryRun.newGenres.size() + "\n");
+        logOutput.append("Checked in " + elapsedMillis + " ms (" + dryRun.recordCount * 1000 / elapsedMillis + " records/s).\n");
+        logOutput.append("Report written to " + reportPath + "\n");
+        return true;
+    }
+
+    /**
+     * Streams the books of a line-delimited file through the dry run.
+     *
+     * @param reader the reader of the file
+     * @param format the format of the lines
+     * @param dryRun the state of the dry run
+     * @param report the writer of the report
+     * @throws IOException if the file cannot be read or the report cannot be written
+     */
+    private void dryRunLines(BufferedReader reader, LineFormat format, DryRun dryRun, Writer report) throws IOException {
+        RecordReader recordReader = new RecordReader(reader, format);
+        Map<String, Integer> header = null;
+
+        if (format == LineFormat.CSV) {
+            String headerLine = recordReader.next();
+            if (headerLine == null) {
+                throw new IOException("The CSV file is empty.");
+            }
+            header = parseCsvHeader(headerLine);
+        }
+
+        Map<String, Integer> csvHeader = header;
+        List<PendingRecord> batch = new ArrayList<>(RECORDS_PER_VALIDATION_BATCH);
+        String record;
+        while ((record = recordReader.next()) != null) {
+            if (record.isBlank()) {
+                continue;
+            }
+            String text = record;
+            batch.add(new PendingRecord(recordReader.recordLine(), format == LineFormat.NDJSON
+                    ? () -> objectMapper.readValue(text, Book.class)
+                    : () -> parseCsvBook(text, csvHeader)));
+
+            if (batch.size() == RECORDS_PER_VALIDATION_BATCH) {
+                dryRun.check(batch, report);
+                batch.clear();
+            }
+        }
+        dryRun.check(batch, report);
+    }
+
+    /**
+     * Streams the books of a JSON file through the dry run. The file is tokenized sequentially;
+     * binding the records to books happens in parallel, so one malformed record does not stop the check.
+     *
+     * @param reader the reader of the file
+     * @param dryRun the state of the dry run
+     * @param report the writer of the report
+     * @throws IOException if the file is not valid JSON or the report cannot be written
+     */
+    private void dryRunJson(BufferedReader reader, DryRun dryRun, Writer report) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(reader)) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+
+            long recordNumber = 0;
+            List<PendingRecord> batch = new ArrayList<>(RECORDS_PER_VALIDATION_BATCH);
+            while (token != null && token != JsonToken.END_ARRAY) {
+                JsonNode node = objectMapper.readTree(parser);
+                batch.add(new PendingRecord(++recordNumber, () -> objectMapper.treeToValue(node, Book.class)));
+
+                if (batch.size() == RECORDS_PER_VALIDATION_BATCH) {
+                    dryRun.check(batch, report);
+                    batch.clear();
+                }
+                token = array ? parser.nextToken() : null;
+            }
+            dryRun.check(batch, report);
+        }
+    }
+
+    /**
+     * Opens a UTF-8 reader on a file, decompressing it if its name ends with ".gz".
+     *
+     * @param file the file to read
+     * @return the reader
+     * @throws IOException if the file cannot be opened
+     */
+    private BufferedReader openReader(File file) throws IOException {
+        InputStream inputStream = Files.newInputStream(file.toPath());
+        if (file.getName().toLowerCase().endsWith(".gz")) {
+            inputStream = new GZIPInputStream(inputStream, 1 << 16);
+        }
+        return new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    /**
+     * Links the book to existing author and genre records, creating them if needed.
+     * Lookups are cached for the whole import and are safe to run from several threads at once.
+     * They read the primary database, since a replica lagging behind would cause duplicates.
+     *
+     * @param book the validated book
+     */
+    private void resolveAuthorAndGenre(Book book) {
+        Author author = book.getAuthor();
+        book.setAuthor(resolve(authorCache, authorKey(author), () ->
+                DatabaseConnector.onPrimary(() -> authorDAO.findByName(author.getFirstName(), author.getLastName())).orElseGet(() -> {
+                    authorDAO.save(author);
+                    return author;
+                })));
+
+        Genre genre = book.getGenre();
+        book.setGenre(resolve(genreCache, genreKey(genre), () ->
+                DatabaseConnector.onPrimary(() -> genreDAO.findByName(genre.getName())).orElseGet(() -> {
+                    genreDAO.save(genre);
+                    return genre;
+                })));
+    }
+
+    /**
+     * Returns the cached record for a key, or looks it up once for all threads asking for the same key.
+     * The lookup runs outside the map, so threads resolving other names are never blocked by its queries;
+     * threads asking for the same name wait for its result. A failed lookup is removed from the cache,
+     * so the next record with that name tries again.
+     *
+     * @param cache the cache of lookups by key
+     * @param key the folded name
+     * @param lookup finds or creates the record
+     * @param <T> the record type
+     * @return the record
+     * @throws exceptions.DbException if the lookup fails
+     */
+    private static <T> T resolve(ConcurrentMap<String, CompletableFuture<T>> cache, String key, Supplier<T> lookup) {
+        CompletableFuture<T> resolution = new CompletableFuture<>();
+        CompletableFuture<T> running = cache.putIfAbsent(key, resolution);
+        if (running == null) {
+            try {
+                resolution.complete(lookup.get());
+            } catch (RuntimeException | Error exception) {
+                cache.remove(key, resolution);
+                resolution.completeExceptionally(exception);
+                throw exception;
+            }
+            return resolution.join();
+        }
+
+        try {
+            return running.join();
+        } catch (CompletionException completionException) {
+            if (completionException.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw completionException;
+        }
+    }
+
+    /**
+     * Builds the key of an author in the author cache.
+     * Names that MySQL considers equal get the same key, see {@link #foldName(String)}.
+     *
+     * @param author the author
+     * @return the folded first and last name of the author
+     */
+    private static String authorKey(Author author) {
+        return foldName(author.getFirstName()) + "\u0000" + foldName(author.getLastName());
+    }
+
+    /**
+     * Builds the key of a genre in the genre cache.
+     *
+     * @param genre the genre
+     * @return the folded name of the genre
+     */
+    private static String genreKey(Genre genre) {
+        return foldName(genre.getName());
+    }
+
+    /**
+     * Folds a name the way the accent- and case-insensitive collation of the database compares it,
+     * like the natural key of {@link BookDAO}: "Émile" and "emile" name the same author.
+     *
+     * @param name the name
+     * @return the name without accents, in lower case
+     */
+    private static String foldName(String name) {
+        return Normalizer.normalize(name, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Reads the CSV header and maps column names to their positions.
+     *
+     * @param headerLine the first line of the file
+     * @return the column positions by lower-case name
+     */
+    Map<String, Integer> parseCsvHeader(String headerLine) {
+        Map<String, Integer> header = new HashMap<>();
+        List<String> names = parseCsvLine(headerLine);
+        for (int index = 0; index < names.size(); index++) {
+            header.put(names.get(index).trim().toLowerCase(), index);
+        }
+        return header;
+    }
+
+    /**
+     * Builds a book from a CSV line. The columns are those of the CSV export:
+     * title, price, condition, available, author_first_name, author_last_name and genre.
+     *
+     * @param line the CSV line
+     * @param header the column positions
+     * @return the parsed book, not yet validated
+     * @throws IllegalArgumentException if the price or condition is malformed
+     */
+    Book parseCsvBook(String line, Map<String, Integer> header) {
+        List<String> values = parseCsvLine(line);
+
+        Book book = new Book();
+        book.setTitle(csvValue(values, header, "title"));
+
+        String price = csvValue(values, header, "price");
+        if (price != null) {
+            try {
+                book.setPrice(new BigDecimal(price.trim()));
+            } catch (NumberFormatException numberFormatException) {
+                throw new IllegalArgumentException("Price '" + price + "' is not a number.");
+            }
+        }
+
+        String condition = csvValue(values, header, "condition");
+        if (condition != null) {
+            try {
+                book.setCondition(BookCondition.valueOf(condition.trim().toUpperCase()));
+            } catch (IllegalArgumentException illegalArgumentException) {
+                throw new IllegalArgumentException("Condition '" + condition + "' is unknown.");
+            }
+        }
+
+        book.setAvailable(!"false".equalsIgnoreCase(csvValue(values, header, "available")));
+        book.setAuthor(new Author(null, csvValue(values, header, "author_first_name"), csvValue(values, header, "author_last_name")));
+        book.setGenre(new Genre(null, csvValue(values, header, "genre")));
+        return book;
+    }
+
+    /**
+     * Returns the value of a named CSV column.
+     *
+     * @param values the values of the line
+     * @param header the column positions
+     * @param column the name of the column
+     * @return the value, or null if the column is missing or empty
+     */
+    private String csvValue(List<String> values, Map<String, Integer> header, String column) {
+        Integer index = header.get(column);
+        if (index == null || index >= values.size() || values.get(index).isEmpty()) {
+            return null;
+        }
+        return values.get(index);
+    }
+
+    /**
+     * Splits a CSV line into values. Values may be quoted; a doubled quote inside quotes is an escaped quote.
+     *
+     * @param line the CSV line
+     * @return the values of the line
+     */
+    private List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+
+        for (int index = 0; index < line.length(); index++) {
+            char character = line.charAt(index);
+            if (quoted) {
+                if (character == '"' && index + 1 < line.length() && line.charAt(index + 1) == '"') {
+                    value.append('"');
+                    index++;
+                } else if (character == '"') {
+                    quoted = false;
+                } else {
+                    value.append(character);
+                }
+            } else if (character == '"') {
+                quoted = true;
+            } else if (character == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(character);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
     /**
      * Validates the mandatory fields of a book object.
      *
      * @param book the book object to validate
      * @return a list of error messages, empty if valid
      */
-    private List<String> validateBook(Book book) {
+    List<String> validateBook(Book book) {
         List<String> errors = new ArrayList<>();
 
         if (book.getTitle() == null || book.getTitle().trim().isEmpty()) {
@@ -144,7 +814,8 @@ public class DataImporter {
      */
     private void processAuthorForBook(Book book) {
         Author jsonAuthor = book.getAuthor();
-        Optional<Author> existingAuthor = authorDAO.findByName(jsonAuthor.getFirstName(), jsonAuthor.getLastName());
+        Optional<Author> existingAuthor = DatabaseConnector.onPrimary(
+                () -> authorDAO.findByName(jsonAuthor.getFirstName(), jsonAuthor.getLastName()));
 
         if (existingAuthor.isPresent()) {
             book.setAuthor(existingAuthor.get());
@@ -160,7 +831,7 @@ public class DataImporter {
      */
     private void processGenreForBook(Book book) {
         Genre jsonGenre = book.getGenre();
-        Optional<Genre> existingGenre = genreDAO.findByName(jsonGenre.getName());
+        Optional<Genre> existingGenre = DatabaseConnector.onPrimary(() -> genreDAO.findByName(jsonGenre.getName()));
 
         if (existingGenre.isPresent()) {
             book.setGenre(existingGenre.get());
@@ -168,4 +839,398 @@ public class DataImporter {
             genreDAO.save(jsonGenre);
         }
     }
+
+    /**
+     * A record of the input file and its line number.
+     *
+     * @param number the line number where the record starts, starting at 1
+     * @param text the content of the record
+     */
+    private record NumberedLine(long number, String text) {}
+
+    /**
+     * Reads the records of a line-delimited file. An NDJSON record is one line; a CSV record continues
+     * on the next lines while a quoted value is open, since values may contain line breaks
+     * (the CSV export quotes them). The line breaks inside a value are read back as {@code \n}.
+     */
+    private static final class RecordReader {
+        private final BufferedReader reader;
+        private final boolean csv;
+        private long lineNumber;
+        private long recordLine;
+
+        RecordReader(BufferedReader reader, LineFormat format) {
+            this.reader = reader;
+            this.csv = format == LineFormat.CSV;
+        }
+
+        /**
+         * Reads the next record.
+         *
+         * @return the record, or null at the end of the file
+         * @throws IOException if the file cannot be read
+         */
+        String next() throws IOException {
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+            recordLine = lineNumber;
+            if (!csv || !hasOddQuotes(line)) {
+                return line;
+            }
+
+            StringBuilder record = new StringBuilder(line);
+            boolean quoted = true;
+            while (quoted && (line = reader.readLine()) != null) {
+                lineNumber++;
+                record.append('\n').append(line);
+                quoted = hasOddQuotes(line) != quoted;
+            }
+            return record.toString();
+        }
+
+        /**
+         * Returns the line number where the last record read starts.
+         *
+         * @return the line number, starting at 1
+         */
+        long recordLine() {
+            return recordLine;
+        }
+
+        /**
+         * Returns the number of lines read so far, which is the line where the last record read ends.
+         *
+         * @return the line number, starting at 1
+         */
+        long lineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * Tells whether a line leaves the quoting state changed. An escaped quote is two quotes,
+         * so only an odd number of quotes opens or closes a quoted value.
+         *
+         * @param line the line
+         * @return true if the line contains an odd number of quotes
+         */
+        private static boolean hasOddQuotes(String line) {
+            int quotes = 0;
+            for (int index = 0; index < line.length(); index++) {
+                if (line.charAt(index) == '"') {
+                    quotes++;
+                }
+            }
+            return quotes % 2 != 0;
+        }
+    }
+
+    /**
+     * A record of a dry run that has been read but not yet parsed.
+     *
+     * @param number the line number or position of the record in the file
+     * @param parser parses the record into a book
+     */
+    private record PendingRecord(long number, Callable<Book> parser) {}
+
+    /**
+     * The outcome of checking one record.
+     *
+     * @param number the line number or position of the record in the file
+     * @param title the title of the book, or null if the record could not be parsed
+     * @param errors the problems found, empty if the record is valid
+     * @param newAuthor the author if it is not in the database, otherwise null
+     * @param newGenre the genre if it is not in the database, otherwise null
+     */
+    private record CheckedRecord(long number, String title, List<String> errors, Author newAuthor, Genre newGenre) {}
+
+    /**
+     * The state of one dry run: the snapshot of known authors and genres and the running totals.
+     * Authors and genres are compared by their folded names, as the database compares them.
+     * Batches are checked in parallel; the report is written afterwards in file order.
+     */
+    private class DryRun {
+        private final Set<String> knownAuthors = new HashSet<>();
+        private final Set<String> knownGenres = new HashSet<>();
+        private final Set<String> newAuthors = new HashSet<>();
+        private final Set<String> newGenres = new HashSet<>();
+        private long recordCount;
+        private long invalidCount;
+
+        /**
+         * Takes the snapshot of known authors and genres.
+         *
+         * @param authors all authors in the database
+         * @param genres all genres in the database
+         */
+        private DryRun(List<Author> authors, List<Genre> genres) {
+            for (Author author : authors) {
+                knownAuthors.add(authorKey(author));
+            }
+            for (Genre genre : genres) {
+                knownGenres.add(genreKey(genre));
+            }
+        }
+
+        /**
+         * Parses and validates a batch of records in parallel and writes their problems to the report.
+         * Authors and genres that are not in the database yet are reported once, at their first record.
+         *
+         * @param batch the records to check
+         * @param report the writer of the report
+         * @throws IOException if the report cannot be written
+         */
+        private void check(List<PendingRecord> batch, Writer report) throws IOException {
+            List<CheckedRecord> checkedRecords = batch.parallelStream().map(this::checkRecord).toList();
+
+            for (CheckedRecord checkedRecord : checkedRecords) {
+                recordCount++;
+                if (!checkedRecord.errors().isEmpty()) {
+                    invalidCount++;
+                    for (String error : checkedRecord.errors()) {
+                        writeReportLine(report, checkedRecord, "ERROR", error);
+                    }
+                    continue;
+                }
+                Author newAuthor = checkedRecord.newAuthor();
+                if (newAuthor != null && newAuthors.add(authorKey(newAuthor))) {
+                    writeReportLine(report, checkedRecord, "INFO",
+                            "Author '" + newAuthor.getFirstName() + " " + newAuthor.getLastName() + "' does not exist and will be created.");
+                }
+                Genre newGenre = checkedRecord.newGenre();
+                if (newGenre != null && newGenres.add(genreKey(newGenre))) {
+                    writeReportLine(report, checkedRecord, "INFO",
+                            "Genre '" + newGenre.getName() + "' does not exist and will be created.");
+                }
+            }
+        }
+
+        /**
+         * Parses and validates one record. Runs on the common fork-join pool and only reads shared state.
+         *
+         * @param pendingRecord the record to check
+         * @return the outcome of the check
+         */
+        private CheckedRecord checkRecord(PendingRecord pendingRecord) {
+            Book book;
+            try {
+                book = pendingRecord.parser().call();
+            } catch (Exception parseException) {
+                String message = parseException instanceof JsonProcessingException jsonProcessingException
+                        ? jsonProcessingException.getOriginalMessage()
+                        : parseException.getMessage();
+                return new CheckedRecord(pendingRecord.number(), null, List.of("Cannot be parsed: " + message), null, null);
+            }
+
+            List<String> errors = validateBook(book);
+            if (!errors.isEmpty()) {
+                return new CheckedRecord(pendingRecord.number(), book.getTitle(), errors, null, null);
+            }
+
+            return new CheckedRecord(pendingRecord.number(), book.getTitle(), errors,
+                    knownAuthors.contains(authorKey(book.getAuthor())) ? null : book.getAuthor(),
+                    knownGenres.contains(genreKey(book.getGenre())) ? null : book.getGenre());
+        }
+
+        /**
+         * Writes one line of the report.
+         *
+         * @param report the writer of the report
+         * @param checkedRecord the record the line is about
+         * @param severity ERROR for records that would be skipped, INFO for notes
+         * @param message the description of the problem
+         * @throws IOException if the report cannot be written
+         */
+        private void writeReportLine(Writer report, CheckedRecord checkedRecord, String severity, String message) throws IOException {
+            report.write(Long.toString(checkedRecord.number()));
+            report.write(',');
+            report.write(severity);
+            report.write(',');
+            DataExporter.writeCsvValue(report, checkedRecord.title() != null ? checkedRecord.title() : "");
+            report.write(',');
+            DataExporter.writeCsvValue(report, message);
+            report.write('\n');
+        }
+    }
+
+    /**
+     * State of one line-delimited import: the worker threads, the chunk queue, the counters and the progress mark.
+     * At most two chunks per thread are queued at a time, so memory use does not grow with the file size.
+     */
+    private class LineImport {
+        private final LineFormat format;
+        private final LogOutput logOutput;
+        private final ImportMetrics importMetrics;
+        private final QueryAnalyzer.Scope analyzerScope = QueryAnalyzer.current();
+        private final ExecutorService executor;
+        private final Semaphore chunksInFlight;
+        private final AtomicInteger successCount = new AtomicInteger();
+        private final AtomicInteger updatedCount = new AtomicInteger();
+        private final AtomicInteger unchangedCount = new AtomicInteger();
+        private final AtomicInteger failCount = new AtomicInteger();
+        private Map<String, Integer> csvHeader;
+
+        private final Map<Integer, Long> finishedChunks = new HashMap<>();
+        private int submittedChunks;
+        private int nextChunk;
+        private long completedThroughLine;
+
+        LineImport(LineFormat format, int threads, long startLine, LogOutput logOutput, ImportMetrics importMetrics) {
+            this.format = format;
+            this.logOutput = logOutput;
+            this.importMetrics = importMetrics;
+            this.executor = Executors.newFixedThreadPool(threads);
+            this.chunksInFlight = new Semaphore(threads * 2);
+            this.completedThroughLine = startLine - 1;
+        }
+
+        /**
+         * Queues a chunk for processing, waiting while too many chunks are already queued.
+         *
+         * @param chunk the records of the chunk
+         * @param lastLine the line where the last record of the chunk ends
+         * @throws InterruptedException if interrupted while waiting
+         */
+        void submit(List<NumberedLine> chunk, long lastLine) throws InterruptedException {
+            int chunkIndex = submittedChunks++;
+
+            chunksInFlight.acquire();
+            importMetrics.batchQueued();
+            executor.execute(() -> {
+                importMetrics.batchStarted();
+                try {
+                    if (analyzerScope != null) {
+                        analyzerScope.run(() -> importChunk(chunk));
+                    } else {
+                        importChunk(chunk);
+                    }
+                } finally {
+                    importMetrics.batchFinished();
+                    chunkDone(chunkIndex, lastLine);
+                    chunksInFlight.release();
+                }
+            });
+        }
+
+        /**
+         * Waits for all queued chunks to finish.
+         *
+         * @return the line up to which the whole file has been processed
+         */
+        long awaitCompletion() {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                return completedThroughLine;
+            }
+        }
+
+        /**
+         * Records a finished chunk. Chunks complete out of order, so the progress mark only advances
+         * once all earlier chunks are done as well.
+         *
+         * @param chunkIndex the index of the finished chunk
+         * @param lastLine the last line number of the chunk
+         */
+        private synchronized void chunkDone(int chunkIndex, long lastLine) {
+            finishedChunks.put(chunkIndex, lastLine);
+            Long line;
+            while ((line = finishedChunks.remove(nextChunk)) != null) {
+                completedThroughLine = line;
+                nextChunk++;
+            }
+        }
+
+        /**
+         * Inserts or upserts validated books in one batch, according to the import mode, and counts the outcome.
+         *
+         * @param books the validated books with resolved authors and genres
+         */
+        private void storeBooks(List<Book> books) {
+            if (mode == ImportMode.UPSERT) {
+                UpsertResult result = storeBatch(books.size(), () -> bookDAO.upsertAll(books));
+                successCount.addAndGet(result.inserted());
+                updatedCount.addAndGet(result.updated());
+                unchangedCount.addAndGet(result.unchanged());
+            } else {
+                successCount.addAndGet(storeBatch(books.size(), () -> bookDAO.saveAll(books)));
+            }
+        }
+
+        /**
+         * Parses, validates and stores one chunk of lines.
+         * Valid books are stored in one batch; if the batch fails, they are stored one by one
+         * so that the failing lines can be reported.
+         *
+         * @param chunk the lines of the chunk
+         */
+        private void importChunk(List<NumberedLine> chunk) {
+            List<Book> validBooks = new ArrayList<>(chunk.size());
+            List<Long> validLines = new ArrayList<>(chunk.size());
+            long[] stageNanos = new long[ImportMetrics.Stage.values().length];
+            int[] stageRecords = new int[ImportMetrics.Stage.values().length];
+
+            for (NumberedLine numberedLine : chunk) {
+                try {
+                    long parseStart = System.nanoTime();
+                    Book book = format == LineFormat.NDJSON
+                            ? objectMapper.readValue(numberedLine.text(), Book.class)
+                            : parseCsvBook(numberedLine.text(), csvHeader);
+                    long validateStart = System.nanoTime();
+                    stageNanos[ImportMetrics.Stage.PARSE.ordinal()] += validateStart - parseStart;
+                    stageRecords[ImportMetrics.Stage.PARSE.ordinal()]++;
+
+                    List<String> validationErrors = validateBook(book);
+                    long resolveStart = System.nanoTime();
+                    stageNanos[ImportMetrics.Stage.VALIDATE.ordinal()] += resolveStart - validateStart;
+                    stageRecords[ImportMetrics.Stage.VALIDATE.ordinal()]++;
+                    if (!validationErrors.isEmpty()) {
+                        logOutput.append("Line " + numberedLine.number() + ": skipping book due to errors: " + String.join(" ", validationErrors) + "\n");
+                        failCount.incrementAndGet();
+                        continue;
+                    }
+
+                    resolveAuthorAndGenre(book);
+                    stageNanos[ImportMetrics.Stage.RESOLVE.ordinal()] += System.nanoTime() - resolveStart;
+                    stageRecords[ImportMetrics.Stage.RESOLVE.ordinal()]++;
+                    validBooks.add(book);
+                    validLines.add(numberedLine.number());
+                } catch (IOException | IllegalArgumentException parseException) {
+                    logOutput.append("Line " + numberedLine.number() + ": cannot be parsed: " + parseException.getMessage() + "\n");
+                    failCount.incrementAndGet();
+                } catch (Exception exception) {
+                    logOutput.append("Line " + numberedLine.number() + ": database error: " + exception.getMessage() + "\n");
+                    failCount.incrementAndGet();
+                }
+            }
+
+            for (ImportMetrics.Stage stage : List.of(ImportMetrics.Stage.PARSE, ImportMetrics.Stage.VALIDATE, ImportMetrics.Stage.RESOLVE)) {
+                importMetrics.recordStage(stage, stageRecords[stage.ordinal()], stageNanos[stage.ordinal()]);
+            }
+
+            if (validBooks.isEmpty()) {
+                return;
+            }
+
+            try {
+                storeBooks(validBooks);
+            } catch (Exception batchException) {
+                for (int index = 0; index < validBooks.size(); index++) {
+                    try {
+                        storeBooks(List.of(validBooks.get(index)));
+                    } catch (Exception exception) {
+                        logOutput.append("Line " + validLines.get(index) + ": database error: " + exception.getMessage() + "\n");
+                        failCount.incrementAndGet();
+                    }
+                }
+            }
+            logOutput.append("Processed lines " + chunk.get(0).number() + "-" + chunk.get(chunk.size() - 1).number() + ".\n");
+        }
+    }
 }
\ No newline at end of file
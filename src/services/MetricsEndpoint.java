@@ -0,0 +1,404 @@
+package services;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import conn.DatabaseConnector;
+import conn.RetryPolicy;
+import dao.SingleFlight;
+import metrics.ImportMetrics;
+import metrics.LatencyHistogram;
+import metrics.QueryMetrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the application's metrics in the Prometheus text format on {@code /metrics}.
+ * Exposed are the usage of the connection pool, the latencies of the DAO methods, the coalesced reads,
+ * the throughput of the latest import and the memory and garbage collection of the JVM.
+ * Scrapes are answered one at a time on a background thread; the values are read from the live counters
+ * into buffers that are reused between scrapes, so a scrape allocates little and never touches the UI.
+ */
+public final class MetricsEndpoint {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] BUCKET_SECONDS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    private static final long[] BUCKET_NANOS = new long[BUCKET_SECONDS.length];
+    private static final String[] BUCKET_LABELS = new String[BUCKET_SECONDS.length];
+
+    static {
+        for (int index = 0; index < BUCKET_SECONDS.length; index++) {
+            BUCKET_NANOS[index] = Math.round(BUCKET_SECONDS[index] * 1e9);
+            BUCKET_LABELS[index] = Double.toString(BUCKET_SECONDS[index]);
+        }
+    }
+
+    private static MetricsEndpoint instance;
+
+    private final HttpServer server;
+    private final StringBuilder text = new StringBuilder(16 * 1024);
+    private final long[] bucketCounts = new long[BUCKET_SECONDS.length];
+    private final Map<String, MethodTotals> methodTotals = new HashMap<>();
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final List<GarbageCollectorMXBean> garbageCollectorBeans = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private MetricsEndpoint(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-endpoint");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+    }
+
+    /**
+     * Starts serving the metrics unless the endpoint is already running.
+     *
+     * @param port the TCP port to listen on
+     * @return the running endpoint
+     * @throws IOException if the port cannot be opened
+     */
+    public static synchronized MetricsEndpoint start(int port) throws IOException {
+        if (instance == null) {
+            instance = new MetricsEndpoint(port);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the port the endpoint listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Answers one scrape.
+     *
+     * @param exchange the HTTP request and its response
+     * @throws IOException if the response cannot be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body;
+            synchronized (this) {
+                text.setLength(0);
+                writeMetrics();
+                body = text.toString().getBytes(StandardCharsets.UTF_8);
+            }
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        }
+    }
+
+    /**
+     * Writes all metrics into the text buffer.
+     */
+    private void writeMetrics() {
+        writePool();
+        writeQueries();
+        writeSingleFlight();
+        writeRetries();
+        writeImport();
+        writeJvm();
+    }
+
+    /**
+     * Writes the size and usage of the connection pool and the waiting times for a connection.
+     */
+    private void writePool() {
+        DatabaseConnector connector = DatabaseConnector.getInstance();
+        if (connector != null) {
+            header("library_db_pool_connections_max", "gauge", "Maximum number of pooled database connections.");
+            sample("library_db_pool_connections_max", connector.getPoolSize());
+            header("library_db_pool_connections_active", "gauge", "Pooled database connections currently borrowed.");
+            sample("library_db_pool_connections_active", connector.getActiveConnections());
+            if (connector.getReplicaCount() > 0) {
+                header("library_db_replica_connections_active", "gauge", "Connections to read replicas currently borrowed.");
+                sample("library_db_replica_connections_active", connector.getActiveReplicaConnections());
+            }
+        }
+
+        LatencyHistogram acquireLatency = QueryMetrics.shared().getAcquireLatency();
+        Arrays.fill(bucketCounts, 0);
+        acquireLatency.addCountsAtOrBelow(BUCKET_NANOS, bucketCounts);
+        header("library_db_pool_acquire_seconds", "histogram", "Time spent waiting for a pooled connection.");
+        histogram("library_db_pool_acquire_seconds", null, null, bucketCounts,
+                acquireLatency.getCount(), acquireLatency.getSum());
+    }
+
+    /**
+     * Writes the latencies, rows and errors of the statements, summed per DAO method.
+     */
+    private void writeQueries() {
+        for (MethodTotals totals : methodTotals.values()) {
+            totals.clear();
+        }
+        QueryMetrics.shared().forEachQuery(stats -> {
+            MethodTotals totals = methodTotals.computeIfAbsent(stats.getCaller(), ignored -> new MethodTotals());
+            LatencyHistogram latency = stats.getLatency();
+            latency.addCountsAtOrBelow(BUCKET_NANOS, totals.buckets);
+            totals.count += latency.getCount();
+            totals.sumNanos += latency.getSum();
+            totals.errors += stats.getErrors();
+            totals.rows += stats.getRows();
+        });
+        methodTotals.values().removeIf(totals -> totals.count == 0);
+
+        header("library_dao_statement_seconds", "histogram", "Duration of the SQL statements run by a DAO method.");
+        methodTotals.forEach((method, totals) ->
+                histogram("library_dao_statement_seconds", "method", method, totals.buckets, totals.count, totals.sumNanos));
+        header("library_dao_statement_errors_total", "counter", "SQL statements of a DAO method that failed.");
+        methodTotals.forEach((method, totals) -> sample("library_dao_statement_errors_total", "method", method, totals.errors));
+        header("library_dao_statement_rows_total", "counter", "Rows returned or changed by the statements of a DAO method.");
+        methodTotals.forEach((method, totals) -> sample("library_dao_statement_rows_total", "method", method, totals.rows));
+    }
+
+    /**
+     * Writes how many reads were executed and how many joined a read that was already running.
+     */
+    private void writeSingleFlight() {
+        SingleFlight singleFlight = SingleFlight.shared();
+        header("library_dao_reads_executed_total", "counter", "Coalescable DAO reads that ran a query.");
+        sample("library_dao_reads_executed_total", singleFlight.getExecutionCount());
+        header("library_dao_reads_coalesced_total", "counter", "Coalescable DAO reads served by joining a running query.");
+        sample("library_dao_reads_coalesced_total", singleFlight.getCoalescedCount());
+    }
+
+    /**
+     * Writes how often transactions were run again after a deadlock or lock wait timeout.
+     */
+    private void writeRetries() {
+        RetryPolicy retryPolicy = RetryPolicy.shared();
+        header("library_db_transaction_retries_total", "counter", "Transactions run again after a deadlock or lock wait timeout.");
+        sample("library_db_transaction_retries_total", retryPolicy.getRetryCount());
+        header("library_db_transaction_retries_exhausted_total", "counter", "Transactions that still failed with a deadlock or lock wait timeout after the last attempt.");
+        sample("library_db_transaction_retries_exhausted_total", retryPolicy.getExhaustedCount());
+    }
+
+    /**
+     * Writes the progress and throughput of the latest import, if there has been one.
+     */
+    private void writeImport() {
+        ImportMetrics importMetrics = ImportMetrics.latest();
+        if (importMetrics == null) {
+            return;
+        }
+        ImportMetrics.Snapshot snapshot = importMetrics.snapshot();
+
+        header("library_import_running", "gauge", "Whether an import is running.");
+        sample("library_import_running", snapshot.finished() ? 0 : 1);
+        header("library_import_elapsed_seconds", "gauge", "Duration of the latest import so far.");
+        sample("library_import_elapsed_seconds", snapshot.elapsedNanos() / 1e9);
+        header("library_import_records", "gauge", "Records handled by a stage of the latest import.");
+        for (ImportMetrics.StageSnapshot stage : snapshot.stages()) {
+            sample("library_import_records", "stage", stage.stage().name().toLowerCase(Locale.ROOT), stage.records());
+        }
+        header("library_import_stage_busy_seconds", "gauge", "Time spent in a stage of the latest import, summed over all threads.");
+        for (ImportMetrics.StageSnapshot stage : snapshot.stages()) {
+            sample("library_import_stage_busy_seconds", "stage", stage.stage().name().toLowerCase(Locale.ROOT), stage.busyNanos() / 1e9);
+        }
+        header("library_import_records_per_second", "gauge", "Records stored per second by the latest import.");
+        sample("library_import_records_per_second", snapshot.recordsPerSecond());
+        header("library_import_batches_queued", "gauge", "Batches of the latest import waiting for a worker.");
+        sample("library_import_batches_queued", snapshot.queuedBatches());
+        header("library_import_batches_active", "gauge", "Batches of the latest import being stored.");
+        sample("library_import_batches_active", snapshot.activeBatches());
+
+        LatencyHistogram.Snapshot batchLatency = snapshot.batchLatency();
+        for (int index = 0; index < BUCKET_NANOS.length; index++) {
+            bucketCounts[index] = batchLatency.getCountAtOrBelow(BUCKET_NANOS[index]);
+        }
+        header("library_import_batch_seconds", "histogram", "Duration of the database batches of the latest import.");
+        histogram("library_import_batch_seconds", null, null, bucketCounts, batchLatency.getCount(), batchLatency.getSum());
+    }
+
+    /**
+     * Writes the memory, garbage collection and threads of the JVM.
+     */
+    private void writeJvm() {
+        MemoryUsage heap = memoryBean.getHeapMemoryUsage();
+        MemoryUsage nonHeap = memoryBean.getNonHeapMemoryUsage();
+        header("jvm_memory_used_bytes", "gauge", "Used memory of the JVM.");
+        sample("jvm_memory_used_bytes", "area", "heap", heap.getUsed());
+        sample("jvm_memory_used_bytes", "area", "nonheap", nonHeap.getUsed());
+        header("jvm_memory_committed_bytes", "gauge", "Memory committed by the JVM.");
+        sample("jvm_memory_committed_bytes", "area", "heap", heap.getCommitted());
+        sample("jvm_memory_committed_bytes", "area", "nonheap", nonHeap.getCommitted());
+        header("jvm_memory_max_bytes", "gauge", "Maximum memory of the JVM, or -1 if undefined.");
+        sample("jvm_memory_max_bytes", "area", "heap", heap.getMax());
+        sample("jvm_memory_max_bytes", "area", "nonheap", nonHeap.getMax());
+
+        header("jvm_gc_collections_total", "counter", "Garbage collections run by a collector.");
+        for (GarbageCollectorMXBean garbageCollector : garbageCollectorBeans) {
+            sample("jvm_gc_collections_total", "gc", garbageCollector.getName(), garbageCollector.getCollectionCount());
+        }
+        header("jvm_gc_collection_seconds_total", "counter", "Time spent in garbage collections of a collector.");
+        for (GarbageCollectorMXBean garbageCollector : garbageCollectorBeans) {
+            sample("jvm_gc_collection_seconds_total", "gc", garbageCollector.getName(), garbageCollector.getCollectionTime() / 1e3);
+        }
+
+        header("jvm_threads_live", "gauge", "Live threads of the JVM.");
+        sample("jvm_threads_live", threadBean.getThreadCount());
+    }
+
+    /**
+     * Writes the HELP and TYPE lines of a metric.
+     *
+     * @param name the metric name
+     * @param type the metric type, e.g. "counter"
+     * @param help the description
+     */
+    private void header(String name, String type, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Writes one sample without labels.
+     *
+     * @param name the metric name
+     * @param value the value
+     */
+    private void sample(String name, long value) {
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Writes one sample without labels.
+     *
+     * @param name the metric name
+     * @param value the value
+     */
+    private void sample(String name, double value) {
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Writes one sample with a label.
+     *
+     * @param name the metric name
+     * @param label the label name
+     * @param labelValue the label value
+     * @param value the value
+     */
+    private void sample(String name, String label, String labelValue, long value) {
+        text.append(name).append('{');
+        label(label, labelValue);
+        text.append("} ").append(value).append('\n');
+    }
+
+    /**
+     * Writes one sample with a label.
+     *
+     * @param name the metric name
+     * @param label the label name
+     * @param labelValue the label value
+     * @param value the value
+     */
+    private void sample(String name, String label, String labelValue, double value) {
+        text.append(name).append('{');
+        label(label, labelValue);
+        text.append("} ").append(value).append('\n');
+    }
+
+    /**
+     * Writes the buckets, sum and count of a histogram.
+     *
+     * @param name the metric name
+     * @param label the label name, or null for none
+     * @param labelValue the label value
+     * @param cumulativeCounts the number of values at most each of the bucket limits
+     * @param count the number of values
+     * @param sumNanos the sum of the values in nanoseconds
+     */
+    private void histogram(String name, String label, String labelValue, long[] cumulativeCounts, long count, long sumNanos) {
+        for (int index = 0; index <= BUCKET_LABELS.length; index++) {
+            text.append(name).append("_bucket{");
+            if (label != null) {
+                label(label, labelValue);
+                text.append(',');
+            }
+            text.append("le=\"").append(index < BUCKET_LABELS.length ? BUCKET_LABELS[index] : "+Inf").append("\"} ")
+                    .append(index < BUCKET_LABELS.length ? Math.min(cumulativeCounts[index], count) : count).append('\n');
+        }
+        text.append(name).append("_sum");
+        if (label != null) {
+            text.append('{');
+            label(label, labelValue);
+            text.append('}');
+        }
+        text.append(' ').append(sumNanos / 1e9).append('\n');
+        text.append(name).append("_count");
+        if (label != null) {
+            text.append('{');
+            label(label, labelValue);
+            text.append('}');
+        }
+        text.append(' ').append(count).append('\n');
+    }
+
+    /**
+     * Writes a label, escaping its value.
+     *
+     * @param label the label name
+     * @param value the label value
+     */
+    private void label(String label, String value) {
+        text.append(label).append("=\"");
+        for (int index = 0; index < value.length(); index++) {
+            char character = value.charAt(index);
+            switch (character) {
+                case '\\' -> text.append("\\\\");
+                case '"' -> text.append("\\\"");
+                case '\n' -> text.append("\\n");
+                default -> text.append(character);
+            }
+        }
+        text.append('"');
+    }
+
+    /**
+     * The statistics of all statements of one DAO method, reused between scrapes.
+     */
+    private static final class MethodTotals {
+        private final long[] buckets = new long[BUCKET_SECONDS.length];
+        private long count;
+        private long sumNanos;
+        private long errors;
+        private long rows;
+
+        private void clear() {
+            Arrays.fill(buckets, 0);
+            count = 0;
+            sumNanos = 0;
+            errors = 0;
+            rows = 0;
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package services;
+
+import conn.DatabaseConnector;
+import conn.RetryPolicy;
+import exceptions.DbException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Brings the database schema up to date when the application starts.
+ * Migrations are SQL scripts named {@code V<version>__<description>.sql} in <i>db/migration</i> on the class path
+ * (<i>res/db/migration</i> in the sources). They run in the order of their versions, and every applied version is
+ * recorded in the table {@code schema_migrations} with a checksum of its script, so it runs only once per database.
+ * An applied script must never be changed; add a new version instead.
+ * <p>
+ * A migration that cannot succeed on some databases, such as a unique index on data that may contain duplicates,
+ * can come with a check: a query in {@code V<version>__<description>.check.sql} that returns the rows standing in
+ * its way. If it returns any, the migration is postponed and reported with these rows, and the later migrations are
+ * applied nevertheless; it is applied on a later start once the rows have been cleaned up. A migration with a check
+ * must therefore not be needed by later ones.
+ * <p>
+ * Desks starting at the same time take turns through a MySQL named lock: the first one applies the pending
+ * migrations, the others wait and then find them applied. Migrations are written to be online-friendly: index
+ * changes use {@code algorithm = inplace, lock = none}, so MySQL refuses a change that would block writes instead
+ * of quietly locking the table. Every statement also runs with a short {@code lock_wait_timeout}; a change that has
+ * to wait for a long transaction gives up quickly instead of making every desk's queries queue behind it, and is
+ * tried again a little later.
+ */
+public class MigrationRunner {
+
+    private static final String LOCATION = "db/migration";
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final String CHECK_SUFFIX = ".check.sql";
+    /** How many of the rows returned by a check are reported. */
+    private static final int REPORTED_CHECK_ROWS = 10;
+    private static final String LOCK_NAME = "library.schema_migrations";
+    private static final int LOCK_TIMEOUT_SECONDS = 300;
+    private static final int DDL_LOCK_WAIT_SECONDS = 5;
+    /** MySQL error ER_DUP_KEYNAME: an index of that name exists already. */
+    private static final int MYSQL_DUPLICATE_KEY_NAME = 1061;
+
+    private final RetryPolicy lockWaitRetryPolicy = new RetryPolicy(6, 1000, 15_000);
+
+    /**
+     * A migration script.
+     *
+     * @param version the version from the file name
+     * @param description the description from the file name, with spaces instead of underscores
+     * @param script the file name
+     * @param sql the content of the script
+     * @param check the query returning the rows that prevent the migration, or null if it has no check
+     */
+    public record Migration(int version, String description, String script, String sql, String check) {
+
+        /**
+         * Returns the checksum of the script, to detect scripts changed after they were applied.
+         *
+         * @return the CRC32 of the script
+         */
+        public long checksum() {
+            CRC32 crc = new CRC32();
+            crc.update(sql.getBytes(StandardCharsets.UTF_8));
+            return crc.getValue();
+        }
+
+        @Override
+        public String toString() {
+            return "V" + version + " " + description;
+        }
+    }
+
+    /**
+     * Applies the migrations that have not been applied to the database yet.
+     *
+     * @return the migrations applied by this call, empty if the schema was up to date
+     * @throws SQLException if the migrations cannot be recorded or a migration fails
+     * @throws IOException if the scripts cannot be read
+     * @throws DbException if an applied script has been changed since, the lock is not granted in time, or a migration
+     *                     was postponed by its check; the other migrations have been applied then
+     */
+    public List<Migration> migrate() throws SQLException, IOException {
+        List<Migration> migrations = loadMigrations();
+        if (migrations.isEmpty()) {
+            return List.of();
+        }
+
+        try (Connection connection = DatabaseConnector.getInstance().getConnection()) {
+            if (pending(migrations, readAppliedChecksums(connection)).isEmpty()) {
+                return List.of();
+            }
+
+            acquireLock(connection);
+            try {
+                createHistoryTable(connection);
+                List<Migration> applied = new ArrayList<>();
+                List<String> postponed = new ArrayList<>();
+                for (Migration migration : pending(migrations, readAppliedChecksums(connection))) {
+                    String problem = runCheck(connection, migration);
+                    if (problem != null) {
+                        postponed.add(problem);
+                        continue;
+                    }
+                    apply(connection, migration);
+                    applied.add(migration);
+                }
+                if (!postponed.isEmpty()) {
+                    throw new DbException(String.join("\n\n", postponed));
+                }
+                return applied;
+            } finally {
+                restoreSession(connection);
+            }
+        }
+    }
+
+    /**
+     * Returns the migrations that have not been applied, and checks that the applied ones are unchanged.
+     *
+     * @param migrations all migrations, ordered by version
+     * @param appliedChecksums the checksums of the applied versions
+     * @return the pending migrations, ordered by version
+     * @throws DbException if an applied script has been changed
+     */
+    private static List<Migration> pending(List<Migration> migrations, Map<Integer, Long> appliedChecksums) {
+        List<Migration> pending = new ArrayList<>();
+        for (Migration migration : migrations) {
+            Long appliedChecksum = appliedChecksums.get(migration.version());
+            if (appliedChecksum == null) {
+                pending.add(migration);
+            } else if (appliedChecksum != migration.checksum()) {
+                throw new DbException("The migration " + migration.script() + " was changed after it had been applied. "
+                        + "Restore the original script and add the change as a new version.");
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Runs the check of a migration.
+     *
+     * @param connection the connection holding the lock
+     * @param migration the migration to check
+     * @return a description of the rows preventing the migration, or null if it can be applied
+     * @throws SQLException if the check fails
+     */
+    private static String runCheck(Connection connection, Migration migration) throws SQLException {
+        if (migration.check() == null) {
+            return null;
+        }
+
+        List<String> rows = new ArrayList<>();
+        int rowCount = 0;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(splitStatements(migration.check()).get(0))) {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            while (resultSet.next()) {
+                if (++rowCount > REPORTED_CHECK_ROWS) {
+                    continue;
+                }
+                List<String> values = new ArrayList<>();
+                for (int column = 1; column <= metaData.getColumnCount(); column++) {
+                    values.add(metaData.getColumnLabel(column) + " = " + resultSet.getString(column));
+                }
+                rows.add("  " + String.join(", ", values));
+            }
+        }
+        if (rowCount == 0) {
+            return null;
+        }
+
+        return "The migration " + migration + " was postponed, because " + (rowCount == 1 ? "a row stands" : rowCount + " rows stand") + " in its way"
+                + (rowCount > REPORTED_CHECK_ROWS ? " (the first " + REPORTED_CHECK_ROWS + " are listed)" : "") + ":\n"
+                + String.join("\n", rows) + "\n"
+                + "Clean them up and restart the application to apply it.";
+    }
+
+    /**
+     * Runs the statements of a migration and records it.
+     * A statement adding an index that already exists is skipped, since databases set up before this runner
+     * existed may have had the first scripts applied by hand.
+     *
+     * @param connection the connection holding the lock
+     * @param migration the migration to apply
+     * @throws SQLException if a statement fails
+     */
+    private void apply(Connection connection, Migration migration) throws SQLException {
+        long start = System.nanoTime();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("set session lock_wait_timeout = " + DDL_LOCK_WAIT_SECONDS);
+            for (String sql : splitStatements(migration.sql())) {
+                try {
+                    executeWithRetry(statement, sql);
+                } catch (SQLException sqlException) {
+                    if (sqlException.getErrorCode() != MYSQL_DUPLICATE_KEY_NAME) {
+                        throw new SQLException("Migration " + migration.script() + " failed: " + sqlException.getMessage(),
+                                sqlException.getSQLState(), sqlException.getErrorCode(), sqlException);
+                    }
+                }
+            }
+        }
+
+        String insert = "insert into schema_migrations (version, description, script, checksum, execution_millis) values (?, ?, ?, ?, ?)";
+        try (PreparedStatement preparedStatement = connection.prepareStatement(insert)) {
+            preparedStatement.setInt(1, migration.version());
+            preparedStatement.setString(2, migration.description());
+            preparedStatement.setString(3, migration.script());
+            preparedStatement.setLong(4, migration.checksum());
+            preparedStatement.setLong(5, (System.nanoTime() - start) / 1_000_000);
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    /**
+     * Executes a statement, running it again while it fails because it had to wait too long for a lock.
+     *
+     * @param statement the statement to execute it with
+     * @param sql the SQL
+     * @throws SQLException if the statement fails for another reason or keeps waiting
+     */
+    private void executeWithRetry(Statement statement, String sql) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                statement.execute(sql);
+                return;
+            } catch (SQLException sqlException) {
+                if (!lockWaitRetryPolicy.shouldRetry(sqlException, attempt)) {
+                    throw sqlException;
+                }
+                try {
+                    Thread.sleep(lockWaitRetryPolicy.backoffMillis(attempt));
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw sqlException;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the applied versions and their checksums.
+     *
+     * @param connection the connection to the database
+     * @return the checksums keyed by version, empty if the history table does not exist yet
+     * @throws SQLException if the history table cannot be read
+     */
+    private static Map<Integer, Long> readAppliedChecksums(Connection connection) throws SQLException {
+        Map<Integer, Long> checksums = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select version, checksum from schema_migrations")) {
+            while (resultSet.next()) {
+                checksums.put(resultSet.getInt("version"), resultSet.getLong("checksum"));
+            }
+        } catch (SQLException sqlException) {
+            if (!"42S02".equals(sqlException.getSQLState())) {
+                throw sqlException;
+            }
+        }
+        return checksums;
+    }
+
+    /**
+     * Creates the table recording the applied migrations, unless it exists.
+     *
+     * @param connection the connection to the database
+     * @throws SQLException if the table cannot be created
+     */
+    private static void createHistoryTable(Connection connection) throws SQLException {
+        String query = """
+            create table if not exists schema_migrations (
+              version int not null primary key,
+              description varchar(200) not null,
+              script varchar(200) not null,
+              checksum bigint not null,
+              applied_at timestamp not null default current_timestamp,
+              execution_millis bigint not null
+            )
+            """;
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(query);
+        }
+    }
+
+    /**
+     * Takes the named lock that lets only one desk migrate at a time. The lock belongs to the connection's session.
+     *
+     * @param connection the connection to hold the lock with
+     * @throws SQLException if the lock cannot be requested
+     * @throws DbException if another desk holds the lock for too long
+     */
+    private static void acquireLock(Connection connection) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement("select get_lock(?, ?)")) {
+            preparedStatement.setString(1, LOCK_NAME);
+            preparedStatement.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (!resultSet.next() || resultSet.getInt(1) != 1) {
+                    throw new DbException("Another desk has been updating the database schema for more than "
+                            + LOCK_TIMEOUT_SECONDS + " seconds.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the named lock and resets the lock wait timeout before the connection goes back to the pool.
+     * Failures are ignored so that they do not hide the outcome of the migrations; a broken connection
+     * loses its lock anyway.
+     *
+     * @param connection the connection holding the lock
+     */
+    private static void restoreSession(Connection connection) {
+        try (Statement statement = connection.createStatement();
+             PreparedStatement preparedStatement = connection.prepareStatement("select release_lock(?)")) {
+            statement.execute("set session lock_wait_timeout = default");
+            preparedStatement.setString(1, LOCK_NAME);
+            preparedStatement.executeQuery().close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /**
+     * Splits a script into its statements, dropping comment lines.
+     *
+     * @param sql the script
+     * @return the statements without the terminating semicolons
+     */
+    private static List<String> splitStatements(String sql) {
+        List<String> statements = new ArrayList<>();
+        for (String statement : sql.replaceAll("(?m)^\\s*--.*$", "").split(";")) {
+            if (!statement.isBlank()) {
+                statements.add(statement.strip());
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * Finds and reads the migration scripts on the class path, from a directory or from the application's jar.
+     *
+     * @return the migrations ordered by version
+     * @throws IOException if the scripts cannot be listed or read
+     * @throws DbException if two scripts have the same version
+     */
+    private static List<Migration> loadMigrations() throws IOException {
+        ClassLoader classLoader = MigrationRunner.class.getClassLoader();
+        URL location = classLoader.getResource(LOCATION);
+        if (location == null) {
+            return List.of();
+        }
+
+        List<Migration> migrations = new ArrayList<>();
+        for (String script : listScripts(location)) {
+            Matcher matcher = SCRIPT_NAME.matcher(script);
+            if (!matcher.matches()) {
+                continue;
+            }
+            String checkScript = script.substring(0, script.length() - ".sql".length()) + CHECK_SUFFIX;
+            migrations.add(new Migration(
+                    Integer.parseInt(matcher.group(1)),
+                    matcher.group(2).replace('_', ' '),
+                    script,
+                    readScript(classLoader, script),
+                    classLoader.getResource(LOCATION + "/" + checkScript) != null ? readScript(classLoader, checkScript) : null
+            ));
+        }
+
+        migrations.sort(Comparator.comparingInt(Migration::version));
+        for (int index = 1; index < migrations.size(); index++) {
+            if (migrations.get(index).version() == migrations.get(index - 1).version()) {
+                throw new DbException("Two migrations have the version " + migrations.get(index).version() + ": "
+                        + migrations.get(index - 1).script() + " and " + migrations.get(index).script());
+            }
+        }
+        return migrations;
+    }
+
+    /**
+     * Reads a script from the migration location.
+     *
+     * @param classLoader the class loader to read it with
+     * @param script the file name
+     * @return the content of the script
+     * @throws IOException if the script cannot be read
+     */
+    private static String readScript(ClassLoader classLoader, String script) throws IOException {
+        try (InputStream input = classLoader.getResourceAsStream(LOCATION + "/" + script)) {
+            if (input == null) {
+                throw new IOException("Migration script " + script + " not found.");
+            }
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Lists the file names in the migration location.
+     *
+     * @param location the URL of the location, a directory or a directory in a jar
+     * @return the file names
+     * @throws IOException if the location cannot be listed
+     */
+    private static List<String> listScripts(URL location) throws IOException {
+        List<String> scripts = new ArrayList<>();
+        if (location.getProtocol().equals("jar")) {
+            JarURLConnection jarConnection = (JarURLConnection) location.openConnection();
+            jarConnection.setUseCaches(false);
+            try (JarFile jarFile = jarConnection.getJarFile()) {
+                Enumeration<JarEntry> entries = jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (name.startsWith(LOCATION + "/") && name.indexOf('/', LOCATION.length() + 1) < 0) {
+                        scripts.add(name.substring(LOCATION.length() + 1));
+                    }
+                }
+            }
+            return scripts;
+        }
+
+        try (Stream<Path> files = Files.list(Path.of(location.toURI()))) {
+            files.forEach(file -> scripts.add(file.getFileName().toString()));
+        } catch (URISyntaxException uriSyntaxException) {
+            throw new IOException("Invalid migration location " + location, uriSyntaxException);
+        }
+        return scripts;
+    }
+}
@@ -0,0 +1,515 @@
+package services;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import conn.DatabaseConnector;
+import models.BookCondition;
+import ui.json.LogOutput;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.CRC32;
+
+/**
+ * Service class responsible for exporting the whole catalog into a compact binary snapshot and restoring it.
+ * Rows are encoded as protobuf messages (see doc/snapshot.proto) and written in chunks,
+ * each followed by a CRC32 checksum of its payload. The export reads all tables in one read-only transaction with a
+ * consistent snapshot, so the file holds the catalog of a single point in time and its foreign keys always resolve.
+ * Restoring verifies every chunk before it is inserted with batched inserts, all in one transaction: a corrupted
+ * or truncated file leaves the database empty, ready for another attempt.
+ */
+public class SnapshotService {
+
+    private static final byte[] MAGIC = {'L', 'S', 'N', 'P'};
+    private static final int FORMAT_VERSION = 1;
+    private static final int ROWS_PER_CHUNK = 4096;
+    private static final int END_OF_SNAPSHOT = 0;
+
+    /**
+     * Types of the snapshot columns and their protobuf encoding.
+     */
+    private enum ColumnType {
+        INT, STRING, DECIMAL, BOOL, DATE, CONDITION
+    }
+
+    /**
+     * A column of a table in the snapshot. Its field number is its position in the table, starting at 1.
+     *
+     * @param name the column name in the database
+     * @param type the type of the column
+     */
+    private record Column(String name, ColumnType type) {}
+
+    /**
+     * The tables of the snapshot, in an order which satisfies the foreign keys on restore.
+     */
+    private enum Table {
+        AUTHORS(1, "authors",
+                new Column("id", ColumnType.INT),
+                new Column("first_name", ColumnType.STRING),
+                new Column("last_name", ColumnType.STRING)),
+        GENRES(2, "genres",
+                new Column("id", ColumnType.INT),
+                new Column("name", ColumnType.STRING)),
+        READERS(3, "readers",
+                new Column("id", ColumnType.INT),
+                new Column("first_name", ColumnType.STRING),
+                new Column("last_name", ColumnType.STRING),
+                new Column("phone_number", ColumnType.STRING)),
+        BOOKS(4, "books",
+                new Column("id", ColumnType.INT),
+                new Column("genre_id", ColumnType.INT),
+                new Column("author_id", ColumnType.INT),
+                new Column("title", ColumnType.STRING),
+                new Column("price", ColumnType.DECIMAL),
+                new Column("available", ColumnType.BOOL),
+                new Column("condition", ColumnType.CONDITION)),
+        LOANS(5, "loans",
+                new Column("id", ColumnType.INT),
+                new Column("books_id", ColumnType.INT),
+                new Column("readers_id", ColumnType.INT),
+                new Column("loan_date", ColumnType.DATE),
+                new Column("return_date", ColumnType.DATE));
+
+        private final int code;
+        private final String name;
+        private final Column[] columns;
+
+        Table(int code, String name, Column... columns) {
+            this.code = code;
+            this.name = name;
+            this.columns = columns;
+        }
+
+        String selectQuery() {
+            return "select " + columnList() + " from " + name + " order by id";
+        }
+
+        String insertQuery() {
+            String placeholders = String.join(", ", Collections.nCopies(columns.length, "?"));
+            return "insert into " + name + " (" + columnList() + ") values (" + placeholders + ")";
+        }
+
+        private String columnList() {
+            return String.join(", ", Arrays.stream(columns).map(column -> "`" + column.name() + "`").toList());
+        }
+
+        static Table byCode(int code) {
+            for (Table table : values()) {
+                if (table.code == code) {
+                    return table;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Exports all tables into a snapshot file.
+     *
+     * @param filePath the path of the snapshot file to write
+     * @param logOutput the interface for writing progress logs to the GUI
+     * @return true if the snapshot was written completely, false otherwise
+     */
+    public boolean exportSnapshot(String filePath, LogOutput logOutput) {
+        long startNanos = System.nanoTime();
+
+        try (OutputStream fileStream = new BufferedOutputStream(Files.newOutputStream(Path.of(filePath)), 1 << 16);
+             Connection connection = DatabaseConnector.getInstance().getConnection()) {
+
+            int isolation = connection.getTransactionIsolation();
+            try {
+                beginConsistentRead(connection);
+                writeSnapshot(connection, fileStream, logOutput);
+                connection.commit();
+            } finally {
+                endConsistentRead(connection, isolation);
+            }
+        } catch (IOException | SQLException exception) {
+            logOutput.append("Critical error: The snapshot could not be written.\n");
+            logOutput.append("Details: " + exception.getMessage() + "\n");
+            return false;
+        }
+
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        logOutput.append("Snapshot size: " + new File(filePath).length() + " bytes, written in " + elapsedMillis + " ms.\n");
+        return true;
+    }
+
+    /**
+     * Starts a read-only transaction at REPEATABLE READ whose snapshot is taken right away,
+     * so all tables are read as of the same moment.
+     *
+     * @param connection the connection to read with
+     * @throws SQLException if the transaction cannot be started
+     */
+    private void beginConsistentRead(Connection connection) throws SQLException {
+        connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("start transaction with consistent snapshot, read only");
+        }
+    }
+
+    /**
+     * Ends the read transaction and restores the isolation level, which the connection pool does not reset.
+     *
+     * @param connection the connection read with
+     * @param isolation the isolation level the connection had before the export
+     * @throws SQLException if the connection cannot be reset
+     */
+    private void endConsistentRead(Connection connection, int isolation) throws SQLException {
+        connection.rollback();
+        connection.setAutoCommit(true);
+        connection.setTransactionIsolation(isolation);
+    }
+
+    /**
+     * Writes the header, all tables and the end marker of a snapshot.
+     *
+     * @param connection the connection to read from, within the transaction of the export
+     * @param outputStream the snapshot output
+     * @param logOutput the interface for writing progress logs to the GUI
+     * @throws SQLException if a database access error occurs
+     * @throws IOException if the snapshot cannot be written
+     */
+    private void writeSnapshot(Connection connection, OutputStream outputStream, LogOutput logOutput) throws SQLException, IOException {
+        CodedOutputStream fileOut = CodedOutputStream.newInstance(outputStream);
+        fileOut.writeRawBytes(MAGIC);
+        fileOut.writeUInt32NoTag(FORMAT_VERSION);
+
+        for (Table table : Table.values()) {
+            long rows = exportTable(connection, table, fileOut);
+            logOutput.append("Exported " + rows + " rows of " + table.name + ".\n");
+        }
+
+        fileOut.writeUInt32NoTag(END_OF_SNAPSHOT);
+        fileOut.flush();
+    }
+
+    /**
+     * Streams one table into chunks of the snapshot.
+     *
+     * @param connection the connection to read from
+     * @param table the table to export
+     * @param fileOut the snapshot output
+     * @return the number of exported rows
+     * @throws SQLException if a database access error occurs
+     * @throws IOException if the snapshot cannot be written
+     */
+    private long exportTable(Connection connection, Table table, CodedOutputStream fileOut) throws SQLException, IOException {
+        ByteArrayOutputStream chunkBytes = new ByteArrayOutputStream(1 << 16);
+        CodedOutputStream chunkOut = CodedOutputStream.newInstance(chunkBytes);
+        Object[] values = new Object[table.columns.length];
+        long totalRows = 0;
+        int chunkRows = 0;
+
+        try (Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(Integer.MIN_VALUE);
+
+            try (ResultSet resultSet = statement.executeQuery(table.selectQuery())) {
+                while (resultSet.next()) {
+                    readRow(resultSet, table, values);
+                    writeRow(chunkOut, table, values);
+                    chunkRows++;
+                    totalRows++;
+
+                    if (chunkRows == ROWS_PER_CHUNK) {
+                        writeChunk(fileOut, table, chunkRows, chunkOut, chunkBytes);
+                        chunkRows = 0;
+                    }
+                }
+            }
+        }
+
+        if (chunkRows > 0) {
+            writeChunk(fileOut, table, chunkRows, chunkOut, chunkBytes);
+        }
+        return totalRows;
+    }
+
+    /**
+     * Writes the buffered rows as one chunk: table code, row count, payload length, payload and its CRC32.
+     *
+     * @param fileOut the snapshot output
+     * @param table the table the rows belong to
+     * @param rowCount the number of buffered rows
+     * @param chunkOut the encoder of the buffered rows
+     * @param chunkBytes the buffer with the encoded rows, reset afterwards
+     * @throws IOException if the snapshot cannot be written
+     */
+    private void writeChunk(CodedOutputStream fileOut, Table table, int rowCount, CodedOutputStream chunkOut, ByteArrayOutputStream chunkBytes) throws IOException {
+        chunkOut.flush();
+        byte[] payload = chunkBytes.toByteArray();
+        chunkBytes.reset();
+
+        CRC32 checksum = new CRC32();
+        checksum.update(payload);
+
+        fileOut.writeUInt32NoTag(table.code);
+        fileOut.writeUInt32NoTag(rowCount);
+        fileOut.writeUInt32NoTag(payload.length);
+        fileOut.writeRawBytes(payload);
+        fileOut.writeFixed32NoTag((int) checksum.getValue());
+    }
+
+    /**
+     * Restores a snapshot into an empty database.
+     *
+     * @param filePath the path of the snapshot file to read
+     * @param logOutput the interface for writing progress logs to the GUI
+     * @return true if the whole snapshot was restored, false otherwise
+     */
+    public boolean restoreSnapshot(String filePath, LogOutput logOutput) {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            logOutput.append("Error: File not found: " + filePath + "\n");
+            return false;
+        }
+
+        long startNanos = System.nanoTime();
+        long restoredRows;
+
+        try (InputStream fileStream = new BufferedInputStream(Files.newInputStream(file.toPath()), 1 << 16);
+             Connection connection = DatabaseConnector.getInstance().getConnection()) {
+
+            CodedInputStream fileIn = CodedInputStream.newInstance(fileStream);
+            if (!Arrays.equals(fileIn.readRawBytes(MAGIC.length), MAGIC) || fileIn.readUInt32() != FORMAT_VERSION) {
+                logOutput.append("Critical error: The file is not a library snapshot or has an unsupported version.\n");
+                return false;
+            }
+
+            if (!isDatabaseEmpty(connection)) {
+                logOutput.append("Critical error: A snapshot can only be restored into an empty database.\n");
+                return false;
+            }
+
+            connection.setAutoCommit(false);
+            try {
+                restoredRows = restoreChunks(connection, fileIn);
+                connection.commit();
+            } catch (IOException | SQLException exception) {
+                connection.rollback();
+                throw exception;
+            }
+        } catch (IOException | SQLException exception) {
+            logOutput.append("Critical error: The snapshot could not be restored. Nothing was restored.\n");
+            logOutput.append("Details: " + exception.getMessage() + "\n");
+            return false;
+        }
+
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        logOutput.append("Restored " + restoredRows + " rows in " + elapsedMillis + " ms.\n");
+        return true;
+    }
+
+    /**
+     * Verifies and inserts the chunks of a snapshot up to its end marker.
+     *
+     * @param connection the connection of the restore transaction
+     * @param fileIn the snapshot input, positioned after the header
+     * @return the number of inserted rows
+     * @throws IOException if the file is truncated or a chunk is corrupted
+     * @throws SQLException if a database access error occurs
+     */
+    private long restoreChunks(Connection connection, CodedInputStream fileIn) throws IOException, SQLException {
+        long restoredRows = 0;
+        int code;
+        int chunkNumber = 0;
+        while ((code = fileIn.readUInt32()) != END_OF_SNAPSHOT) {
+            chunkNumber++;
+            Table table = Table.byCode(code);
+            int rowCount = fileIn.readUInt32();
+            byte[] payload = fileIn.readRawBytes(fileIn.readUInt32());
+            int expectedChecksum = fileIn.readFixed32();
+            fileIn.resetSizeCounter();
+
+            CRC32 checksum = new CRC32();
+            checksum.update(payload);
+            if (table == null || (int) checksum.getValue() != expectedChecksum) {
+                throw new IOException("Chunk " + chunkNumber + " is corrupted.");
+            }
+
+            insertChunk(connection, table, rowCount, payload);
+            restoredRows += rowCount;
+        }
+        return restoredRows;
+    }
+
+    /**
+     * Checks that none of the snapshot tables contains data.
+     *
+     * @param connection the connection to use
+     * @return true if all tables are empty
+     * @throws SQLException if a database access error occurs
+     */
+    private boolean isDatabaseEmpty(Connection connection) throws SQLException {
+        for (Table table : Table.values()) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("select exists(select 1 from " + table.name + ")")) {
+                if (resultSet.next() && resultSet.getBoolean(1)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the rows of a verified chunk and inserts them as one batch.
+     *
+     * @param connection the connection to insert with
+     * @param table the table of the rows
+     * @param rowCount the number of rows in the chunk
+     * @param payload the encoded rows
+     * @throws IOException if the payload cannot be decoded
+     * @throws SQLException if a database access error occurs
+     */
+    private void insertChunk(Connection connection, Table table, int rowCount, byte[] payload) throws IOException, SQLException {
+        CodedInputStream chunkIn = CodedInputStream.newInstance(payload);
+        Object[] values = new Object[table.columns.length];
+
+        try (PreparedStatement preparedStatement = connection.prepareStatement(table.insertQuery())) {
+            for (int row = 0; row < rowCount; row++) {
+                readMessage(chunkIn, table, values);
+                for (int index = 0; index < values.length; index++) {
+                    bindValue(preparedStatement, index + 1, table.columns[index].type(), values[index]);
+                }
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+        }
+    }
+
+    /**
+     * Reads the columns of the current row.
+     *
+     * @param resultSet the ResultSet cursor
+     * @param table the table being exported
+     * @param values the array to fill
+     * @throws SQLException if a database access error occurs
+     */
+    private void readRow(ResultSet resultSet, Table table, Object[] values) throws SQLException {
+        for (int index = 0; index < values.length; index++) {
+            Column column = table.columns[index];
+            values[index] = switch (column.type()) {
+                case INT -> resultSet.getInt(column.name());
+                case STRING -> resultSet.getString(column.name());
+                case DECIMAL -> resultSet.getBigDecimal(column.name());
+                case BOOL -> resultSet.getBoolean(column.name());
+                case DATE -> resultSet.getDate(column.name()).toLocalDate();
+                case CONDITION -> BookCondition.valueOf(resultSet.getString(column.name()));
+            };
+        }
+    }
+
+    /**
+     * Encodes a row as a length-delimited protobuf message.
+     *
+     * @param out the chunk encoder
+     * @param table the table of the row
+     * @param values the column values
+     * @throws IOException if the row cannot be encoded
+     */
+    private void writeRow(CodedOutputStream out, Table table, Object[] values) throws IOException {
+        int size = 0;
+        for (int index = 0; index < values.length; index++) {
+            int field = index + 1;
+            Object value = values[index];
+            size += switch (table.columns[index].type()) {
+                case INT -> CodedOutputStream.computeInt32Size(field, (Integer) value);
+                case STRING -> CodedOutputStream.computeStringSize(field, (String) value);
+                case DECIMAL -> CodedOutputStream.computeSInt64Size(field, toCents((BigDecimal) value));
+                case BOOL -> CodedOutputStream.computeBoolSize(field, (Boolean) value);
+                case DATE -> CodedOutputStream.computeInt32Size(field, (int) ((LocalDate) value).toEpochDay());
+                case CONDITION -> CodedOutputStream.computeEnumSize(field, ((BookCondition) value).ordinal());
+            };
+        }
+
+        out.writeUInt32NoTag(size);
+        for (int index = 0; index < values.length; index++) {
+            int field = index + 1;
+            Object value = values[index];
+            switch (table.columns[index].type()) {
+                case INT -> out.writeInt32(field, (Integer) value);
+                case STRING -> out.writeString(field, (String) value);
+                case DECIMAL -> out.writeSInt64(field, toCents((BigDecimal) value));
+                case BOOL -> out.writeBool(field, (Boolean) value);
+                case DATE -> out.writeInt32(field, (int) ((LocalDate) value).toEpochDay());
+                case CONDITION -> out.writeEnum(field, ((BookCondition) value).ordinal());
+            }
+        }
+    }
+
+    /**
+     * Decodes a length-delimited protobuf message into column values. Unknown fields are skipped.
+     *
+     * @param in the chunk decoder
+     * @param table the table of the row
+     * @param values the array to fill
+     * @throws IOException if the message is malformed
+     */
+    private void readMessage(CodedInputStream in, Table table, Object[] values) throws IOException {
+        Arrays.fill(values, null);
+        int oldLimit = in.pushLimit(in.readUInt32());
+
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            int index = WireFormat.getTagFieldNumber(tag) - 1;
+            if (index < 0 || index >= values.length) {
+                in.skipField(tag);
+                continue;
+            }
+            values[index] = switch (table.columns[index].type()) {
+                case INT -> in.readInt32();
+                case STRING -> in.readString();
+                case DECIMAL -> BigDecimal.valueOf(in.readSInt64(), 2);
+                case BOOL -> in.readBool();
+                case DATE -> LocalDate.ofEpochDay(in.readInt32());
+                case CONDITION -> BookCondition.values()[in.readEnum()];
+            };
+        }
+
+        in.popLimit(oldLimit);
+    }
+
+    /**
+     * Binds a decoded value to an insert parameter.
+     *
+     * @param preparedStatement the insert statement
+     * @param parameter the parameter index
+     * @param type the type of the column
+     * @param value the decoded value
+     * @throws SQLException if a database access error occurs
+     */
+    private void bindValue(PreparedStatement preparedStatement, int parameter, ColumnType type, Object value) throws SQLException {
+        if (value == null) {
+            throw new SQLException("Snapshot row is missing column " + parameter + ".");
+        }
+        switch (type) {
+            case INT -> preparedStatement.setInt(parameter, (Integer) value);
+            case STRING -> preparedStatement.setString(parameter, (String) value);
+            case DECIMAL -> preparedStatement.setBigDecimal(parameter, (BigDecimal) value);
+            case BOOL -> preparedStatement.setBoolean(parameter, (Boolean) value);
+            case DATE -> preparedStatement.setDate(parameter, Date.valueOf((LocalDate) value));
+            case CONDITION -> preparedStatement.setString(parameter, ((BookCondition) value).name());
+        }
+    }
+
+    /**
+     * Converts a price to whole cents, matching the decimal(10,2) column.
+     *
+     * @param price the price
+     * @return the price in cents
+     */
+    private static long toCents(BigDecimal price) {
+        return price.movePointRight(2).longValueExact();
+    }
+}
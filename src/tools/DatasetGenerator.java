@@ -0,0 +1,726 @@
+package tools;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import conn.DatabaseConnector;
+import models.Author;
+import models.Book;
+import models.BookCondition;
+import models.Genre;
+import services.DataExporter;
+import services.DataImporter;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generates a large, realistic library for scale testing.
+ * Popularity is skewed with Zipf distributions: a few authors wrote many of the books, a few genres hold most of them,
+ * a few readers borrow most often and popular books are much more likely to be on loan. A share of the loans is overdue.
+ * <p>
+ * The output is deterministic: the same seed and settings produce the same data regardless of the number of threads,
+ * because every chunk of rows has its own random generator derived from the seed. Chunks are generated in parallel
+ * and written as they are finished, so memory use does not depend on the size of the dataset.
+ * <p>
+ * Usage: {@code java -cp "library-database-manager.jar:lib/*" tools.DatasetGenerator [options]} with
+ * <ul>
+ *     <li>{@code --out=books.ndjson.gz} writes the books as NDJSON or CSV (by the extension, optionally gzip-compressed)
+ *     for the line import of {@link DataImporter}, or</li>
+ *     <li>{@code --database} inserts authors, genres, readers, books and loans into the database from conf/config.json
+ *     in batches, after the rows already there;</li>
+ *     <li>{@code --seed=42 --books=2000000 --authors=20000 --genres=2000 --readers=300000} set the size,</li>
+ *     <li>{@code --on-loan=0.3 --overdue=0.15} the share of books on loan and of loans that are overdue,</li>
+ *     <li>{@code --skew=1.0} the Zipf exponent, {@code --threads=8} the parallelism and
+ *     {@code --today=2026-01-31} the date loans are relative to (default: today).</li>
+ * </ul>
+ * The loans table holds only current loans, one per lent book, so there are at most as many loans as books.
+ */
+public class DatasetGenerator {
+
+    private static final int CHUNK_ROWS = 50_000;
+    private static final int BATCH_ROWS = 1_000;
+    private static final int LOAN_DAYS = 30;
+    private static final String BOOK_CSV_HEADER = "title,author_first_name,author_last_name,genre,price,condition,available\n";
+
+    private static final String[] FIRST_NAMES = {
+            "Adam", "Alena", "Anna", "Barbora", "David", "Eva", "Filip", "Hana", "Jakub", "Jan", "Jana", "Jiří", "Karel",
+            "Kateřina", "Lucie", "Lukáš", "Marek", "Marie", "Martin", "Michal", "Monika", "Ondřej", "Pavel", "Petr",
+            "Petra", "Tereza", "Tomáš", "Vojtěch", "Zdeněk", "Zuzana", "Agatha", "Arthur", "Charles", "Emily", "Frank",
+            "George", "Isaac", "Jane", "Mary", "Oscar", "Ray", "Terry", "Ursula", "Virginia", "William"
+    };
+    private static final String[] LAST_NAMES = {
+            "Novák", "Svoboda", "Novotný", "Dvořák", "Černý", "Procházka", "Kučera", "Veselý", "Horák", "Němec",
+            "Marek", "Pospíšil", "Pokorný", "Hájek", "Král", "Jelínek", "Růžička", "Beneš", "Fiala", "Sedláček",
+            "Doležal", "Zeman", "Kolář", "Navrátil", "Čermák", "Christie", "Orwell", "Herbert", "Asimov", "Bradbury",
+            "Le Guin", "Pratchett", "Tolkien", "Austen", "Brontë", "Dickens", "Woolf", "Wilde", "Shelley", "Twain"
+    };
+    private static final String[] GENRES = {
+            "Fantasy", "Sci-Fi", "Horror", "Detective", "Thriller", "Romance", "Historic", "Biography", "Poetry", "Drama",
+            "Humor", "Travel", "Cooking", "History", "Science", "Philosophy", "Psychology", "Economics", "Art", "Music",
+            "Children", "Young Adult", "Comics", "Classics", "Adventure", "War", "Religion", "Sports", "Nature", "Technology"
+    };
+    private static final String[] TITLE_ADJECTIVES = {
+            "Silent", "Last", "Golden", "Hidden", "Broken", "Distant", "Forgotten", "Red", "Dark", "Lost", "Secret",
+            "Little", "Endless", "Winter", "Burning", "Quiet", "Wild", "Iron", "Glass", "Northern"
+    };
+    private static final String[] TITLE_NOUNS = {
+            "River", "Garden", "Kingdom", "Letter", "Witness", "Journey", "Island", "Empire", "Shadow", "Storm", "House",
+            "Road", "Harbor", "Castle", "Forest", "Mirror", "Voyage", "Orchard", "Bridge", "Promise"
+    };
+
+    private final long seed;
+    private final int books;
+    private final int authors;
+    private final int genres;
+    private final int readers;
+    private final double overdueShare;
+    private final double skew;
+    private final int threads;
+    private final LocalDate today;
+
+    private final ZipfDistribution authorPopularity;
+    private final ZipfDistribution genrePopularity;
+    private final ZipfDistribution readerActivity;
+    private final double loanScale;
+    private final long bookRankStep;
+    private final long authorRankStep;
+    private final long genreRankStep;
+    private final long readerRankStep;
+
+    /**
+     * Creates a generator.
+     *
+     * @param seed the seed all random values are derived from
+     * @param books the number of books
+     * @param authors the number of authors
+     * @param genres the number of genres
+     * @param readers the number of readers
+     * @param onLoanShare the expected share of books on loan, from 0 to 1
+     * @param overdueShare the expected share of loans that are overdue, from 0 to 1
+     * @param skew the Zipf exponent of all popularity distributions
+     * @param threads the number of threads generating in parallel
+     * @param today the date loans are relative to
+     */
+    public DatasetGenerator(long seed, int books, int authors, int genres, int readers,
+                            double onLoanShare, double overdueShare, double skew, int threads, LocalDate today) {
+        this.seed = seed;
+        this.books = books;
+        this.authors = authors;
+        this.genres = genres;
+        this.readers = readers;
+        this.overdueShare = overdueShare;
+        this.skew = skew;
+        this.threads = threads;
+        this.today = today;
+
+        this.authorPopularity = new ZipfDistribution(authors, skew);
+        this.genrePopularity = new ZipfDistribution(genres, skew);
+        this.readerActivity = new ZipfDistribution(readers, skew);
+        this.loanScale = ZipfDistribution.scaleForExpectedPicks(books, skew, onLoanShare * books);
+        this.bookRankStep = coprimeStep(books);
+        this.authorRankStep = coprimeStep(authors);
+        this.genreRankStep = coprimeStep(genres);
+        this.readerRankStep = coprimeStep(readers);
+    }
+
+    /**
+     * Runs the generator from the command line. See the class description for the options.
+     *
+     * @param args the options
+     */
+    public static void main(String[] args) {
+        long seed = 42;
+        int books = 1_000_000;
+        int authors = 10_000;
+        int genres = 1_000;
+        int readers = 100_000;
+        double onLoanShare = 0.3;
+        double overdueShare = 0.15;
+        double skew = 1.0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        LocalDate today = LocalDate.now();
+        Path output = null;
+        boolean database = false;
+
+        try {
+            for (String arg : args) {
+                String name = arg.contains("=") ? arg.substring(0, arg.indexOf('=')) : arg;
+                String value = arg.contains("=") ? arg.substring(arg.indexOf('=') + 1) : "";
+                switch (name) {
+                    case "--seed" -> seed = Long.parseLong(value);
+                    case "--books" -> books = Integer.parseInt(value);
+                    case "--authors" -> authors = Integer.parseInt(value);
+                    case "--genres" -> genres = Integer.parseInt(value);
+                    case "--readers" -> readers = Integer.parseInt(value);
+                    case "--on-loan" -> onLoanShare = Double.parseDouble(value);
+                    case "--overdue" -> overdueShare = Double.parseDouble(value);
+                    case "--skew" -> skew = Double.parseDouble(value);
+                    case "--threads" -> threads = Integer.parseInt(value);
+                    case "--today" -> today = LocalDate.parse(value);
+                    case "--out" -> output = Path.of(value);
+                    case "--database" -> database = true;
+                    default -> throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            if ((output == null) == !database) {
+                throw new IllegalArgumentException("Give either --out=<file> or --database.");
+            }
+            if (books < 1 || authors < 1 || genres < 1 || readers < 1 || threads < 1 || skew <= 0
+                    || onLoanShare < 0 || onLoanShare > 1 || overdueShare < 0 || overdueShare > 1) {
+                throw new IllegalArgumentException("Counts must be positive, shares between 0 and 1 and the skew above 0.");
+            }
+            if (output != null && DataImporter.lineFormatOf(output.toString()) == null) {
+                throw new IllegalArgumentException("The output file must end with .ndjson, .jsonl or .csv, optionally followed by .gz.");
+            }
+        } catch (IllegalArgumentException | java.time.format.DateTimeParseException invalidArgument) {
+            System.err.println(invalidArgument.getMessage());
+            System.err.println("Usage: DatasetGenerator (--out=<books.ndjson|books.csv>[.gz] | --database) [--seed=42] [--books=1000000]"
+                    + " [--authors=10000] [--genres=1000] [--readers=100000] [--on-loan=0.3] [--overdue=0.15] [--skew=1.0]"
+                    + " [--threads=<cores>] [--today=<yyyy-mm-dd>]");
+            System.exit(2);
+            return;
+        }
+
+        DatasetGenerator generator = new DatasetGenerator(seed, books, authors, genres, readers,
+                onLoanShare, overdueShare, skew, threads, today);
+        long start = System.nanoTime();
+        try {
+            if (database) {
+                generator.insertIntoDatabase();
+            } else {
+                generator.writeBooks(output);
+            }
+        } catch (IOException | SQLException | ExecutionException exception) {
+            System.err.println("Generation failed: " + exception.getMessage());
+            System.exit(1);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+        System.out.printf(Locale.ROOT, "Done in %.1f s.%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Writes the books to a file the line import can read. Authors and genres are given by name,
+     * and all books are available because a file cannot carry loans.
+     *
+     * @param output the file; NDJSON or CSV by its extension, gzip-compressed if it ends with .gz
+     * @throws IOException if the file cannot be written
+     * @throws ExecutionException if generating a chunk fails
+     * @throws InterruptedException if interrupted while waiting for a chunk
+     */
+    public void writeBooks(Path output) throws IOException, ExecutionException, InterruptedException {
+        boolean csv = DataImporter.lineFormatOf(output.toString()) == DataImporter.LineFormat.CSV;
+        ObjectWriter jsonWriter = new ObjectMapper().writerFor(Book.class);
+
+        Path directory = output.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (OutputStream stream = openOutput(output)) {
+            if (csv) {
+                stream.write(BOOK_CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+            }
+
+            Deque<Future<byte[]>> pending = new ArrayDeque<>();
+            long chunks = chunkCount(books);
+            for (long chunk = 0; chunk < chunks; chunk++) {
+                long chunkIndex = chunk;
+                pending.add(executor.submit(() -> formatBooks(generateBooks(chunkIndex), csv, jsonWriter)));
+                if (pending.size() >= threads * 2) {
+                    stream.write(pending.poll().get());
+                    report("books", (chunk - pending.size() + 1) * CHUNK_ROWS, books);
+                }
+            }
+            while (!pending.isEmpty()) {
+                stream.write(pending.poll().get());
+            }
+            report("books", books, books);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Inserts the whole dataset into the configured database. New rows get IDs after the highest existing ones,
+     * so the generator can run against a database that already holds data.
+     *
+     * @throws SQLException if the existing IDs cannot be read
+     * @throws ExecutionException if inserting a chunk fails
+     * @throws InterruptedException if interrupted while waiting for a chunk
+     */
+    public void insertIntoDatabase() throws SQLException, ExecutionException, InterruptedException {
+        int authorOffset = maxId("authors");
+        int genreOffset = maxId("genres");
+        int readerOffset = maxId("readers");
+        int bookOffset = maxId("books");
+        int loanOffset = maxId("loans");
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, DatabaseConnector.getInstance().getPoolSize()));
+        try {
+            runChunks(executor, "authors", authors, chunk -> insertAuthors(chunk, authorOffset));
+            runChunks(executor, "genres", genres, chunk -> insertGenres(chunk, genreOffset));
+            runChunks(executor, "readers", readers, chunk -> insertReaders(chunk, readerOffset));
+            runChunks(executor, "books and loans", books,
+                    chunk -> insertBooksAndLoans(chunk, bookOffset, authorOffset, genreOffset, readerOffset, loanOffset));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A generated book and, if it is on loan, its loan. Authors, genres and readers are given by their index from 0.
+     *
+     * @param index the index of the book from 0
+     * @param title the title
+     * @param price the price
+     * @param condition the condition
+     * @param authorIndex the author
+     * @param genreIndex the genre
+     * @param readerIndex the borrowing reader, or -1 if the book is not on loan
+     * @param returnDate the date the loan is due, or null if the book is not on loan
+     */
+    private record GeneratedBook(long index, String title, BigDecimal price, BookCondition condition,
+                                 int authorIndex, int genreIndex, int readerIndex, LocalDate returnDate) {
+
+        boolean onLoan() {
+            return readerIndex >= 0;
+        }
+    }
+
+    /**
+     * Work on one chunk of rows.
+     */
+    @FunctionalInterface
+    private interface ChunkTask {
+        /**
+         * Processes a chunk.
+         *
+         * @param chunk the index of the chunk
+         * @throws SQLException if a database operation fails
+         */
+        void run(long chunk) throws SQLException;
+    }
+
+    /**
+     * Generates the books of one chunk.
+     *
+     * @param chunk the index of the chunk
+     * @return the books, in index order
+     */
+    private List<GeneratedBook> generateBooks(long chunk) {
+        SplittableRandom random = randomFor(4, chunk);
+        long first = chunk * CHUNK_ROWS;
+        long last = Math.min(books, first + CHUNK_ROWS);
+        List<GeneratedBook> generated = new ArrayList<>((int) (last - first));
+
+        for (long index = first; index < last; index++) {
+            String title = TITLE_ADJECTIVES[random.nextInt(TITLE_ADJECTIVES.length)] + " "
+                    + TITLE_NOUNS[random.nextInt(TITLE_NOUNS.length)] + " " + (index + 1);
+            double price = Math.min(5000, Math.max(20, Math.exp(Math.log(300) + 0.6 * random.nextGaussian())));
+            BookCondition condition = conditionOf(random.nextDouble());
+            int authorIndex = spread(authorPopularity.sample(random), authors, authorRankStep);
+            int genreIndex = spread(genrePopularity.sample(random), genres, genreRankStep);
+
+            long popularityRank = spreadRank(index, books, bookRankStep);
+            int readerIndex = -1;
+            LocalDate returnDate = null;
+            if (random.nextDouble() < loanScale / Math.pow(popularityRank, skew)) {
+                readerIndex = spread(readerActivity.sample(random), readers, readerRankStep);
+                returnDate = random.nextDouble() < overdueShare
+                        ? today.minusDays(1 + random.nextInt(90))
+                        : today.plusDays(random.nextInt(LOAN_DAYS + 1));
+            }
+
+            generated.add(new GeneratedBook(index, title, BigDecimal.valueOf(price).setScale(2, RoundingMode.HALF_UP),
+                    condition, authorIndex, genreIndex, readerIndex, returnDate));
+        }
+        return generated;
+    }
+
+    /**
+     * Formats books as NDJSON or CSV lines of the line import.
+     *
+     * @param generated the books
+     * @param csv true for CSV, false for NDJSON
+     * @param jsonWriter writes a book as JSON
+     * @return the lines encoded as UTF-8
+     * @throws IOException if a book cannot be written
+     */
+    private byte[] formatBooks(List<GeneratedBook> generated, boolean csv, ObjectWriter jsonWriter) throws IOException {
+        StringWriter lines = new StringWriter(generated.size() * 160);
+        for (GeneratedBook generatedBook : generated) {
+            Author author = new Author(null, firstNameOf(generatedBook.authorIndex()), lastNameOf(generatedBook.authorIndex()));
+            Genre genre = new Genre(null, genreNameOf(generatedBook.genreIndex() + 1));
+            if (csv) {
+                for (String value : new String[]{generatedBook.title(), author.getFirstName(), author.getLastName(), genre.getName()}) {
+                    DataExporter.writeCsvValue(lines, value);
+                    lines.write(',');
+                }
+                lines.write(generatedBook.price().toPlainString() + "," + generatedBook.condition().name() + ",true");
+            } else {
+                Book book = new Book(null, generatedBook.title(), generatedBook.price(), true, generatedBook.condition(), genre, author);
+                lines.write(jsonWriter.writeValueAsString(book));
+            }
+            lines.write('\n');
+        }
+        return lines.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Inserts one chunk of authors.
+     *
+     * @param chunk the index of the chunk
+     * @param idOffset the highest author ID before the generation
+     * @throws SQLException if an insert fails
+     */
+    private void insertAuthors(long chunk, int idOffset) throws SQLException {
+        String query = "insert into authors (id, first_name, last_name) values (?, ?, ?)";
+        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            connection.setAutoCommit(false);
+            int batched = 0;
+            for (long index = chunk * CHUNK_ROWS; index < Math.min(authors, (chunk + 1) * CHUNK_ROWS); index++) {
+                preparedStatement.setInt(1, idOffset + (int) index + 1);
+                preparedStatement.setString(2, firstNameOf((int) index));
+                preparedStatement.setString(3, lastNameOf((int) index));
+                preparedStatement.addBatch();
+                batched = executeBatchIfFull(preparedStatement, batched + 1);
+            }
+            preparedStatement.executeBatch();
+            connection.commit();
+        }
+    }
+
+    /**
+     * Inserts one chunk of genres. Names are numbered by ID, so they do not collide with earlier runs.
+     *
+     * @param chunk the index of the chunk
+     * @param idOffset the highest genre ID before the generation
+     * @throws SQLException if an insert fails
+     */
+    private void insertGenres(long chunk, int idOffset) throws SQLException {
+        String query = "insert into genres (id, name) values (?, ?)";
+        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            connection.setAutoCommit(false);
+            int batched = 0;
+            for (long index = chunk * CHUNK_ROWS; index < Math.min(genres, (chunk + 1) * CHUNK_ROWS); index++) {
+                int id = idOffset + (int) index + 1;
+                preparedStatement.setInt(1, id);
+                preparedStatement.setString(2, genreNameOf(id));
+                preparedStatement.addBatch();
+                batched = executeBatchIfFull(preparedStatement, batched + 1);
+            }
+            preparedStatement.executeBatch();
+            connection.commit();
+        }
+    }
+
+    /**
+     * Inserts one chunk of readers. Phone numbers are derived from the ID, so they are unique.
+     *
+     * @param chunk the index of the chunk
+     * @param idOffset the highest reader ID before the generation
+     * @throws SQLException if an insert fails
+     */
+    private void insertReaders(long chunk, int idOffset) throws SQLException {
+        String query = "insert into readers (id, first_name, last_name, phone_number) values (?, ?, ?, ?)";
+        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            connection.setAutoCommit(false);
+            int batched = 0;
+            for (long index = chunk * CHUNK_ROWS; index < Math.min(readers, (chunk + 1) * CHUNK_ROWS); index++) {
+                int id = idOffset + (int) index + 1;
+                long number = 600_000_000L + id;
+                preparedStatement.setInt(1, id);
+                preparedStatement.setString(2, FIRST_NAMES[(int) (mix(index) % FIRST_NAMES.length)]);
+                preparedStatement.setString(3, LAST_NAMES[(int) (mix(index + readers) % LAST_NAMES.length)]);
+                preparedStatement.setString(4, String.format(Locale.ROOT, "+420 %03d %03d %03d",
+                        number / 1_000_000 % 1000, number / 1000 % 1000, number % 1000));
+                preparedStatement.addBatch();
+                batched = executeBatchIfFull(preparedStatement, batched + 1);
+            }
+            preparedStatement.executeBatch();
+            connection.commit();
+        }
+    }
+
+    /**
+     * Inserts one chunk of books and the loans of those that are lent, in one transaction.
+     *
+     * @param chunk the index of the chunk
+     * @param bookOffset the highest book ID before the generation
+     * @param authorOffset the highest author ID before the generation
+     * @param genreOffset the highest genre ID before the generation
+     * @param readerOffset the highest reader ID before the generation
+     * @param loanOffset the highest loan ID before the generation
+     * @throws SQLException if an insert fails
+     */
+    private void insertBooksAndLoans(long chunk, int bookOffset, int authorOffset, int genreOffset,
+                                     int readerOffset, int loanOffset) throws SQLException {
+        List<GeneratedBook> generated = generateBooks(chunk);
+        String bookQuery = "insert into books (id, title, price, available, `condition`, genre_id, author_id) values (?, ?, ?, ?, ?, ?, ?)";
+        String loanQuery = "insert into loans (id, books_id, readers_id, loan_date, return_date) values (?, ?, ?, ?, ?)";
+
+        try (Connection connection = DatabaseConnector.getInstance().getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(bookQuery)) {
+                int batched = 0;
+                for (GeneratedBook book : generated) {
+                    preparedStatement.setInt(1, bookOffset + (int) book.index() + 1);
+                    preparedStatement.setString(2, book.title());
+                    preparedStatement.setBigDecimal(3, book.price());
+                    preparedStatement.setBoolean(4, !book.onLoan());
+                    preparedStatement.setString(5, book.condition().name());
+                    preparedStatement.setInt(6, genreOffset + book.genreIndex() + 1);
+                    preparedStatement.setInt(7, authorOffset + book.authorIndex() + 1);
+                    preparedStatement.addBatch();
+                    batched = executeBatchIfFull(preparedStatement, batched + 1);
+                }
+                preparedStatement.executeBatch();
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement(loanQuery)) {
+                int batched = 0;
+                for (GeneratedBook book : generated) {
+                    if (!book.onLoan()) {
+                        continue;
+                    }
+                    preparedStatement.setInt(1, loanOffset + (int) book.index() + 1);
+                    preparedStatement.setInt(2, bookOffset + (int) book.index() + 1);
+                    preparedStatement.setInt(3, readerOffset + book.readerIndex() + 1);
+                    preparedStatement.setDate(4, Date.valueOf(book.returnDate().minusDays(LOAN_DAYS)));
+                    preparedStatement.setDate(5, Date.valueOf(book.returnDate()));
+                    preparedStatement.addBatch();
+                    batched = executeBatchIfFull(preparedStatement, batched + 1);
+                }
+                preparedStatement.executeBatch();
+            }
+            connection.commit();
+        }
+    }
+
+    /**
+     * Runs a task for every chunk of a table in parallel and waits for all of them.
+     *
+     * @param executor the threads
+     * @param table the name of the table for the progress output
+     * @param rows the number of rows
+     * @param task the work on one chunk
+     * @throws ExecutionException if a chunk fails
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private void runChunks(ExecutorService executor, String table, long rows, ChunkTask task)
+            throws ExecutionException, InterruptedException {
+        AtomicLong doneRows = new AtomicLong();
+        List<Future<?>> futures = new ArrayList<>();
+        for (long chunk = 0; chunk < chunkCount(rows); chunk++) {
+            long chunkIndex = chunk;
+            long chunkRows = Math.min(rows, (chunk + 1) * CHUNK_ROWS) - chunk * CHUNK_ROWS;
+            futures.add(executor.submit(() -> {
+                task.run(chunkIndex);
+                report(table, doneRows.addAndGet(chunkRows), rows);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    /**
+     * Executes the batch of a statement once it holds enough rows.
+     *
+     * @param preparedStatement the statement
+     * @param batched the number of rows in the batch
+     * @return the number of rows left in the batch
+     * @throws SQLException if the batch fails
+     */
+    private static int executeBatchIfFull(PreparedStatement preparedStatement, int batched) throws SQLException {
+        if (batched < BATCH_ROWS) {
+            return batched;
+        }
+        preparedStatement.executeBatch();
+        return 0;
+    }
+
+    /**
+     * Returns the highest ID of a table.
+     *
+     * @param table the table
+     * @return the highest ID, or 0 if the table is empty
+     * @throws SQLException if the query fails
+     */
+    private static int maxId(String table) throws SQLException {
+        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select coalesce(max(id), 0) from " + table)) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    /**
+     * Opens the output file, compressing it if its name ends with .gz.
+     *
+     * @param output the file
+     * @return the stream to write to
+     * @throws IOException if the file cannot be created
+     */
+    private static OutputStream openOutput(Path output) throws IOException {
+        OutputStream stream = Files.newOutputStream(output);
+        if (output.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz")) {
+            return new GZIPOutputStream(stream, 1 << 16);
+        }
+        return new BufferedOutputStream(stream, 1 << 16);
+    }
+
+    /**
+     * Prints the progress of a table.
+     *
+     * @param table the table
+     * @param done the rows generated so far
+     * @param total the rows to generate
+     */
+    private static void report(String table, long done, long total) {
+        System.out.printf(Locale.ROOT, "%s: %,d of %,d%n", table, Math.min(done, total), total);
+    }
+
+    /**
+     * Returns the random generator of a chunk. It depends only on the seed, the kind of rows and the chunk,
+     * so the output does not depend on the order in which chunks are generated.
+     *
+     * @param stream the kind of rows
+     * @param chunk the index of the chunk
+     * @return the random generator
+     */
+    private SplittableRandom randomFor(int stream, long chunk) {
+        return new SplittableRandom(mix(seed ^ mix(stream * 0x1_0000_0000L + chunk)));
+    }
+
+    /**
+     * Picks a condition: mostly new and used, sometimes damaged or restored.
+     *
+     * @param uniform a random number from 0 to 1
+     * @return the condition
+     */
+    private static BookCondition conditionOf(double uniform) {
+        if (uniform < 0.4) return BookCondition.NEW;
+        if (uniform < 0.8) return BookCondition.USED;
+        if (uniform < 0.9) return BookCondition.DAMAGED;
+        return BookCondition.RESTORED;
+    }
+
+    private static String firstNameOf(int authorIndex) {
+        return FIRST_NAMES[authorIndex % FIRST_NAMES.length];
+    }
+
+    /**
+     * Returns the last name of an author. Together with the first name it is unique,
+     * so the import does not merge generated authors.
+     *
+     * @param authorIndex the index of the author
+     * @return the last name
+     */
+    private static String lastNameOf(int authorIndex) {
+        int combinations = FIRST_NAMES.length * LAST_NAMES.length;
+        String lastName = LAST_NAMES[authorIndex / FIRST_NAMES.length % LAST_NAMES.length];
+        return authorIndex < combinations ? lastName : lastName + " " + (authorIndex / combinations + 1);
+    }
+
+    /**
+     * Returns the unique name of a genre.
+     *
+     * @param id the ID of the genre
+     * @return the name, e.g. "Horror 3"
+     */
+    private static String genreNameOf(int id) {
+        return GENRES[(id - 1) % GENRES.length] + " " + ((id - 1) / GENRES.length + 1);
+    }
+
+    /**
+     * Maps a popularity rank to an index so that popular rows are spread over the table instead of at its start.
+     *
+     * @param rank the rank from 1
+     * @param count the number of rows
+     * @param step a step coprime to the count
+     * @return the index from 0
+     */
+    private static int spread(int rank, int count, long step) {
+        return (int) ((rank - 1) * step % count);
+    }
+
+    /**
+     * Returns the popularity rank of a row, the inverse direction of {@link #spread(int, int, long)}.
+     *
+     * @param index the index from 0
+     * @param count the number of rows
+     * @param step a step coprime to the count
+     * @return the rank from 1
+     */
+    private static long spreadRank(long index, int count, long step) {
+        return index * step % count + 1;
+    }
+
+    /**
+     * Returns a large step that is coprime to the count, so that multiplying by it permutes 0 to count - 1.
+     *
+     * @param count the number of rows
+     * @return the step
+     */
+    private static long coprimeStep(int count) {
+        long step = 2_654_435_761L % Math.max(1, count);
+        while (count > 1 && gcd(step, count) != 1) {
+            step = (step + 1) % count;
+        }
+        return Math.max(1, step);
+    }
+
+    private static long gcd(long first, long second) {
+        return second == 0 ? first : gcd(second, first % second);
+    }
+
+    /**
+     * Scrambles a number (SplitMix64 finalizer).
+     *
+     * @param value the number
+     * @return the scrambled number, not negative
+     */
+    private static long mix(long value) {
+        long mixed = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        mixed = (mixed ^ (mixed >>> 27)) * 0x94D049BB133111EBL;
+        return (mixed ^ (mixed >>> 31)) & Long.MAX_VALUE;
+    }
+
+    private static long chunkCount(long rows) {
+        return (rows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+    }
+}
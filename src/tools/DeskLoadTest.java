@@ -0,0 +1,607 @@
+package tools;
+
+import conn.DatabaseConnector;
+import dao.BookDAO;
+import dao.LibraryStatisticsDAO;
+import dao.LoanDAO;
+import dao.ReaderDAO;
+import exceptions.LoanConflictException;
+import metrics.LatencyHistogram;
+import models.Book;
+import models.Loan;
+import models.Reader;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Simulates circulation desks working against the configured database through the real DAO classes,
+ * to measure how many desks one database can serve.
+ * <p>
+ * Requests arrive at a fixed average rate no matter how fast they are served (an open model with Poisson arrivals),
+ * each at a random desk. Every desk serves each request on its own thread, so a slow database makes requests queue
+ * up as they would at real desks. Latency is measured from the moment a request was due, not from when a thread
+ * picked it up, so queueing is included. The mix of requests is:
+ * <ul>
+ *     <li>{@code book}: look up a book by ID,</li>
+ *     <li>{@code reader}: look up a reader by ID,</li>
+ *     <li>{@code checkout}: look up a book and a reader and lend the book if it is available,
+ *     popular books more often than others,</li>
+ *     <li>{@code return}: return one of the books this test lent,</li>
+ *     <li>{@code stats}: poll the library statistics.</li>
+ * </ul>
+ * The report shows the throughput, latency percentiles and outcomes of every kind of request, and the anomalies
+ * found: a book lent twice at the same time, a loan that disappeared before it was returned, and books whose
+ * availability does not match their loans (lost updates). The last are counted in the whole database before and after
+ * the run. Loans still open at the end are returned unless {@code --keep-loans} is given.
+ * <p>
+ * Usage: {@code java -cp "library-database-manager.jar:lib/*" tools.DeskLoadTest [options]} with
+ * {@code --desks=8 --rate=50} (requests per second of all desks), {@code --duration=60 --warmup=10} (seconds),
+ * {@code --mix=book:40,reader:20,checkout:15,return:15,stats:10}, {@code --skew=1.0} (Zipf exponent of book popularity),
+ * {@code --seed=1}, {@code --max-in-flight=2000} and {@code --keep-loans}.
+ */
+public class DeskLoadTest {
+
+    private static final int LOAN_DAYS = 30;
+
+    private final int desks;
+    private final double rate;
+    private final long durationNanos;
+    private final long warmupNanos;
+    private final Map<Operation, Integer> mix;
+    private final double skew;
+    private final long seed;
+    private final int maxInFlight;
+
+    private final BookDAO bookDAO = new BookDAO();
+    private final ReaderDAO readerDAO = new ReaderDAO();
+    private final LoanDAO loanDAO = new LoanDAO();
+    private final LibraryStatisticsDAO libraryStatisticsDAO = new LibraryStatisticsDAO();
+
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private final ConcurrentLinkedQueue<Loan> openLoans = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<Integer, AtomicInteger> lentByTest = new ConcurrentHashMap<>();
+    private final LongAdder doubleLends = new LongAdder();
+    private final LongAdder vanishedLoans = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+    private volatile long measureFrom;
+
+    /**
+     * Creates a load test.
+     *
+     * @param desks the number of desks
+     * @param rate the average number of requests per second of all desks together
+     * @param durationSeconds how long requests are measured
+     * @param warmupSeconds how long requests run before the measurement starts
+     * @param mix the relative weight of every kind of request
+     * @param skew the Zipf exponent of book popularity for checkouts, 0 for uniform
+     * @param seed the seed of the request sequence
+     * @param maxInFlight the most requests served at once; requests arriving beyond it are dropped and counted
+     */
+    public DeskLoadTest(int desks, double rate, int durationSeconds, int warmupSeconds,
+                        Map<Operation, Integer> mix, double skew, long seed, int maxInFlight) {
+        this.desks = desks;
+        this.rate = rate;
+        this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(warmupSeconds);
+        this.mix = mix;
+        this.skew = skew;
+        this.seed = seed;
+        this.maxInFlight = maxInFlight;
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    /**
+     * Runs the load test from the command line. See the class description for the options.
+     *
+     * @param args the options
+     */
+    public static void main(String[] args) {
+        int desks = 8;
+        double rate = 50;
+        int duration = 60;
+        int warmup = 10;
+        String mix = "book:40,reader:20,checkout:15,return:15,stats:10";
+        double skew = 1.0;
+        long seed = 1;
+        int maxInFlight = 2000;
+        boolean keepLoans = false;
+        Map<Operation, Integer> weights;
+
+        try {
+            for (String arg : args) {
+                String name = arg.contains("=") ? arg.substring(0, arg.indexOf('=')) : arg;
+                String value = arg.contains("=") ? arg.substring(arg.indexOf('=') + 1) : "";
+                switch (name) {
+                    case "--desks" -> desks = Integer.parseInt(value);
+                    case "--rate" -> rate = Double.parseDouble(value);
+                    case "--duration" -> duration = Integer.parseInt(value);
+                    case "--warmup" -> warmup = Integer.parseInt(value);
+                    case "--mix" -> mix = value;
+                    case "--skew" -> skew = Double.parseDouble(value);
+                    case "--seed" -> seed = Long.parseLong(value);
+                    case "--max-in-flight" -> maxInFlight = Integer.parseInt(value);
+                    case "--keep-loans" -> keepLoans = true;
+                    default -> throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            if (desks < 1 || rate <= 0 || duration < 1 || warmup < 0 || skew < 0 || maxInFlight < 1) {
+                throw new IllegalArgumentException("Desks, rate, duration and the in-flight limit must be positive.");
+            }
+            weights = Operation.parseMix(mix);
+        } catch (IllegalArgumentException invalidArgument) {
+            System.err.println(invalidArgument.getMessage());
+            System.err.println("Usage: DeskLoadTest [--desks=8] [--rate=50] [--duration=60] [--warmup=10]"
+                    + " [--mix=book:40,reader:20,checkout:15,return:15,stats:10] [--skew=1.0] [--seed=1]"
+                    + " [--max-in-flight=2000] [--keep-loans]");
+            System.exit(2);
+            return;
+        }
+
+        DeskLoadTest loadTest = new DeskLoadTest(desks, rate, duration, warmup, weights, skew, seed, maxInFlight);
+        try {
+            loadTest.run(keepLoans);
+        } catch (SQLException sqlException) {
+            System.err.println("Load test failed: " + sqlException.getMessage());
+            System.exit(1);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Runs the load test and prints the report.
+     *
+     * @param keepLoans true to leave the loans made by the test in the database
+     * @throws SQLException if the IDs or the consistency of the data cannot be read
+     * @throws InterruptedException if interrupted while waiting for the desks
+     */
+    public void run(boolean keepLoans) throws SQLException, InterruptedException {
+        int[] bookIds = loadIds("books");
+        int[] readerIds = loadIds("readers");
+        if (bookIds.length == 0 || readerIds.length == 0) {
+            throw new SQLException("The database needs at least one book and one reader.");
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        shuffle(bookIds, random);
+        ZipfDistribution bookPopularity = skew > 0 ? new ZipfDistribution(bookIds.length, skew) : null;
+        Operation[] operations = Operation.weighted(mix);
+
+        Consistency before = checkConsistency();
+        System.out.printf(Locale.ROOT, "%d desks, %.1f requests/s, %d books, %d readers, pool of %d connections%n",
+                desks, rate, bookIds.length, readerIds.length, DatabaseConnector.getInstance().getPoolSize());
+
+        List<ExecutorService> deskExecutors = new ArrayList<>(desks);
+        for (int desk = 0; desk < desks; desk++) {
+            deskExecutors.add(Executors.newCachedThreadPool(deskThreadFactory(desk + 1)));
+        }
+
+        long start = System.nanoTime();
+        measureFrom = start + warmupNanos;
+        long end = measureFrom + durationNanos;
+        long nextArrival = start;
+        long nextReport = measureFrom + TimeUnit.SECONDS.toNanos(10);
+        while (nextArrival < end) {
+            long wait = nextArrival - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+
+            Operation operation = operations[random.nextInt(operations.length)];
+            int bookId = bookPopularity != null ? bookIds[bookPopularity.sample(random) - 1] : bookIds[random.nextInt(bookIds.length)];
+            int readerId = readerIds[random.nextInt(readerIds.length)];
+            ExecutorService desk = deskExecutors.get(random.nextInt(desks));
+            long dueAt = nextArrival;
+
+            if (inFlight.get() >= maxInFlight) {
+                if (dueAt >= measureFrom) {
+                    dropped.increment();
+                }
+            } else {
+                peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                desk.execute(() -> serve(operation, bookId, readerId, dueAt));
+            }
+
+            nextArrival += (long) (-Math.log(1 - random.nextDouble()) / rate * 1e9);
+            if (nextArrival >= nextReport) {
+                System.out.printf(Locale.ROOT, "%ds: %d requests in flight%n",
+                        TimeUnit.NANOSECONDS.toSeconds(nextReport - measureFrom), inFlight.get());
+                nextReport += TimeUnit.SECONDS.toNanos(10);
+            }
+        }
+
+        for (ExecutorService deskExecutor : deskExecutors) {
+            deskExecutor.shutdown();
+        }
+        for (ExecutorService deskExecutor : deskExecutors) {
+            deskExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        long measuredNanos = Math.max(1, Math.min(System.nanoTime(), end) - measureFrom);
+
+        printReport(measuredNanos);
+        if (!keepLoans) {
+            returnOpenLoans();
+        }
+        Consistency after = checkConsistency();
+        printAnomalies(before, after);
+    }
+
+    /**
+     * A kind of request.
+     */
+    public enum Operation {
+        /** Looks up a book. */
+        BOOK("book"),
+        /** Looks up a reader. */
+        READER("reader"),
+        /** Lends a book. */
+        CHECKOUT("checkout"),
+        /** Returns a lent book. */
+        RETURN("return"),
+        /** Polls the library statistics. */
+        STATS("stats");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Parses a mix such as "book:40,checkout:15". Kinds that are not listed do not run.
+         *
+         * @param mix the weights by label
+         * @return the weights
+         * @throws IllegalArgumentException if the mix is malformed
+         */
+        static Map<Operation, Integer> parseMix(String mix) {
+            Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+            for (String part : mix.split(",")) {
+                String[] labelAndWeight = part.trim().split(":");
+                Operation operation = null;
+                for (Operation candidate : values()) {
+                    if (candidate.label.equals(labelAndWeight[0])) {
+                        operation = candidate;
+                    }
+                }
+                if (operation == null || labelAndWeight.length != 2) {
+                    throw new IllegalArgumentException("Unknown request '" + part + "' in the mix.");
+                }
+                weights.put(operation, Integer.parseInt(labelAndWeight[1]));
+            }
+            if (weights.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+                throw new IllegalArgumentException("The mix needs a positive weight.");
+            }
+            return weights;
+        }
+
+        /**
+         * Expands weights into a table to draw from, every kind as often as its weight.
+         *
+         * @param weights the weights
+         * @return the table
+         */
+        static Operation[] weighted(Map<Operation, Integer> weights) {
+            List<Operation> table = new ArrayList<>();
+            weights.forEach((operation, weight) -> {
+                for (int index = 0; index < weight; index++) {
+                    table.add(operation);
+                }
+            });
+            return table.toArray(new Operation[0]);
+        }
+    }
+
+    /**
+     * How a request ended.
+     */
+    private enum Outcome {
+        /** The request succeeded. */
+        OK,
+        /** The book was lent out by another desk between the lookup and the checkout. */
+        CONFLICT,
+        /** Nothing to do: the row did not exist, the book was not available or no loan was open. */
+        MISS,
+        /** The request failed. */
+        ERROR
+    }
+
+    /**
+     * The measurements of one kind of request.
+     */
+    private static final class OperationStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder[] outcomes = new LongAdder[Outcome.values().length];
+
+        OperationStats() {
+            for (int index = 0; index < outcomes.length; index++) {
+                outcomes[index] = new LongAdder();
+            }
+        }
+
+        long count(Outcome outcome) {
+            return outcomes[outcome.ordinal()].sum();
+        }
+    }
+
+    /**
+     * Counts of data that breaks the rules of lending, in the whole database.
+     *
+     * @param doubleLentBooks books with more than one open loan
+     * @param lentButAvailable books with an open loan that are marked available
+     * @param unavailableWithoutLoan books marked unavailable without an open loan
+     */
+    private record Consistency(long doubleLentBooks, long lentButAvailable, long unavailableWithoutLoan) {}
+
+    /**
+     * Serves one request on a desk thread and records it if it was due after the warm-up.
+     *
+     * @param operation the kind of request
+     * @param bookId the book of a lookup or checkout
+     * @param readerId the reader of a lookup or checkout
+     * @param dueAt when the request arrived, from {@link System#nanoTime()}
+     */
+    private void serve(Operation operation, int bookId, int readerId, long dueAt) {
+        Outcome outcome;
+        try {
+            outcome = switch (operation) {
+                case BOOK -> bookDAO.getById(bookId).isPresent() ? Outcome.OK : Outcome.MISS;
+                case READER -> readerDAO.getById(readerId).isPresent() ? Outcome.OK : Outcome.MISS;
+                case CHECKOUT -> checkout(bookId, readerId);
+                case RETURN -> returnLoan();
+                case STATS -> libraryStatisticsDAO.getLibraryStatistics().isPresent() ? Outcome.OK : Outcome.MISS;
+            };
+        } catch (LoanConflictException loanConflictException) {
+            outcome = Outcome.CONFLICT;
+        } catch (RuntimeException exception) {
+            outcome = Outcome.ERROR;
+        } finally {
+            inFlight.decrementAndGet();
+        }
+
+        if (dueAt >= measureFrom) {
+            OperationStats operationStats = stats.get(operation);
+            operationStats.latency.record(System.nanoTime() - dueAt);
+            operationStats.outcomes[outcome.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Looks up a book and a reader as the loan dialog does and lends the book if it is available.
+     *
+     * @param bookId the book
+     * @param readerId the reader
+     * @return the outcome
+     * @throws LoanConflictException if another desk lent the book first
+     */
+    private Outcome checkout(int bookId, int readerId) {
+        Optional<Book> book = bookDAO.getById(bookId);
+        Optional<Reader> reader = readerDAO.getById(readerId);
+        if (book.isEmpty() || reader.isEmpty() || !book.get().isAvailable()) {
+            return Outcome.MISS;
+        }
+
+        LocalDate today = LocalDate.now();
+        Loan loan = new Loan(null, book.get(), reader.get(), today, today.plusDays(LOAN_DAYS));
+        loanDAO.save(loan);
+        if (lentByTest.computeIfAbsent(bookId, ignored -> new AtomicInteger()).incrementAndGet() > 1) {
+            doubleLends.increment();
+        }
+        openLoans.add(loan);
+        return Outcome.OK;
+    }
+
+    /**
+     * Returns the oldest loan this test made. The book is counted as given back before the return,
+     * so a checkout racing with it is not mistaken for a double lend.
+     *
+     * @return the outcome
+     */
+    private Outcome returnLoan() {
+        Loan loan = openLoans.poll();
+        if (loan == null) {
+            return Outcome.MISS;
+        }
+        AtomicInteger lent = lentByTest.get(loan.getBook().getId());
+        lent.decrementAndGet();
+        try {
+            if (!loanDAO.returnBook(loan.getId())) {
+                vanishedLoans.increment();
+            }
+            return Outcome.OK;
+        } catch (RuntimeException exception) {
+            lent.incrementAndGet();
+            openLoans.add(loan);
+            throw exception;
+        }
+    }
+
+    /**
+     * Returns the loans this test made that are still open.
+     */
+    private void returnOpenLoans() {
+        int returned = 0;
+        Loan loan;
+        while ((loan = openLoans.poll()) != null) {
+            try {
+                if (loanDAO.returnBook(loan.getId())) {
+                    returned++;
+                } else {
+                    vanishedLoans.increment();
+                }
+            } catch (RuntimeException exception) {
+                System.err.println("Could not return loan " + loan.getId() + ": " + exception.getMessage());
+            }
+        }
+        System.out.println("Returned the " + returned + " loans still open.");
+    }
+
+    /**
+     * Prints throughput, latency and outcomes of every kind of request.
+     *
+     * @param measuredNanos how long requests were measured
+     */
+    private void printReport(long measuredNanos) {
+        double seconds = measuredNanos / 1e9;
+        System.out.printf(Locale.ROOT, "%n%-9s %9s %9s %8s %8s %8s %8s %9s %9s %9s %9s %9s%n",
+                "Request", "Count", "Per s", "OK", "Conflict", "Miss", "Error",
+                "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+        long total = 0;
+        long errors = 0;
+        LatencyHistogram all = new LatencyHistogram();
+        for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+            OperationStats operationStats = entry.getValue();
+            LatencyHistogram.Snapshot latency = operationStats.latency.snapshot();
+            if (latency.getCount() == 0) {
+                continue;
+            }
+            total += latency.getCount();
+            errors += operationStats.count(Outcome.ERROR);
+            System.out.printf(Locale.ROOT, "%-9s %9d %9.1f %8d %8d %8d %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey().label, latency.getCount(), latency.getCount() / seconds,
+                    operationStats.count(Outcome.OK), operationStats.count(Outcome.CONFLICT),
+                    operationStats.count(Outcome.MISS), operationStats.count(Outcome.ERROR),
+                    millis(latency.getValueAtQuantile(0.5)), millis(latency.getValueAtQuantile(0.9)),
+                    millis(latency.getValueAtQuantile(0.99)), millis(latency.getValueAtQuantile(0.999)),
+                    millis(latency.getMax()));
+        }
+
+        System.out.printf(Locale.ROOT, "%nOffered %.1f requests/s, served %.1f/s over %.0f s; %d errors, %d dropped"
+                        + " over the limit of %d in flight (peak %d).%n",
+                rate, total / seconds, seconds, errors, dropped.sum(), maxInFlight, peakInFlight.get());
+    }
+
+    /**
+     * Prints the anomalies seen during the run and the change in consistency of the database.
+     *
+     * @param before the consistency before the run
+     * @param after the consistency after the run
+     */
+    private void printAnomalies(Consistency before, Consistency after) {
+        System.out.println("\nAnomalies:");
+        System.out.println("  books lent twice at once by this test:      " + doubleLends.sum());
+        System.out.println("  loans gone before this test returned them:  " + vanishedLoans.sum());
+        System.out.printf(Locale.ROOT, "  books with several open loans:              %d (before: %d)%n",
+                after.doubleLentBooks(), before.doubleLentBooks());
+        System.out.printf(Locale.ROOT, "  lent books marked available (lost update):  %d (before: %d)%n",
+                after.lentButAvailable(), before.lentButAvailable());
+        System.out.printf(Locale.ROOT, "  unavailable books without loan (lost update): %d (before: %d)%n",
+                after.unavailableWithoutLoan(), before.unavailableWithoutLoan());
+    }
+
+    /**
+     * Counts the data that breaks the rules of lending.
+     *
+     * @return the counts
+     * @throws SQLException if a query fails
+     */
+    private static Consistency checkConsistency() throws SQLException {
+        return new Consistency(
+                count("select count(*) from (select books_id from loans group by books_id having count(*) > 1) lent_twice"),
+                count("select count(*) from books join loans on loans.books_id = books.id where books.available = 1"),
+                count("select count(*) from books where available = 0"
+                        + " and not exists (select 1 from loans where loans.books_id = books.id)"));
+    }
+
+    /**
+     * Runs a counting query.
+     *
+     * @param query the query returning one number
+     * @return the number
+     * @throws SQLException if the query fails
+     */
+    private static long count(String query) throws SQLException {
+        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    /**
+     * Reads all IDs of a table.
+     *
+     * @param table the table
+     * @return the IDs
+     * @throws SQLException if the query fails
+     */
+    private static int[] loadIds(String table) throws SQLException {
+        try (Connection connection = DatabaseConnector.getInstance().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select id from " + table)) {
+            int[] ids = new int[1024];
+            int size = 0;
+            while (resultSet.next()) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                }
+                ids[size++] = resultSet.getInt(1);
+            }
+            return Arrays.copyOf(ids, size);
+        }
+    }
+
+    /**
+     * Shuffles IDs, so that the popular books are spread over the table.
+     *
+     * @param ids the IDs
+     * @param random the random generator
+     */
+    private static void shuffle(int[] ids, SplittableRandom random) {
+        for (int index = ids.length - 1; index > 0; index--) {
+            int other = random.nextInt(index + 1);
+            int swapped = ids[index];
+            ids[index] = ids[other];
+            ids[other] = swapped;
+        }
+    }
+
+    /**
+     * Names the threads of a desk, so they can be told apart in a thread dump.
+     *
+     * @param desk the number of the desk from 1
+     * @return the thread factory
+     */
+    private static ThreadFactory deskThreadFactory(int desk) {
+        AtomicLong threadNumber = new AtomicLong();
+        return task -> {
+            Thread thread = new Thread(task, "desk-" + desk + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
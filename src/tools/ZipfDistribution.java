@@ -0,0 +1,137 @@
+package tools;
+
+import java.util.SplittableRandom;
+
+/**
+ * A Zipf distribution over the ranks 1 to n: rank k is drawn with a probability proportional to 1 / k^exponent.
+ * Sampling uses rejection-inversion (Hörmann and Derflinger, 1996), which needs constant time and memory
+ * regardless of n, so it works for millions of ranks. Instances are immutable and can be shared between threads;
+ * every thread passes its own random generator.
+ */
+public final class ZipfDistribution {
+
+    private final int numberOfElements;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralNumberOfElements;
+    private final double squeeze;
+
+    /**
+     * Creates the distribution.
+     *
+     * @param numberOfElements the highest rank, at least 1
+     * @param exponent the skew, greater than 0; 1 is the classic Zipf law
+     */
+    public ZipfDistribution(int numberOfElements, double exponent) {
+        if (numberOfElements < 1 || exponent <= 0) {
+            throw new IllegalArgumentException("A Zipf distribution needs at least one element and a positive exponent.");
+        }
+        this.numberOfElements = numberOfElements;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1;
+        this.hIntegralNumberOfElements = hIntegral(numberOfElements + 0.5);
+        this.squeeze = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    /**
+     * Draws a rank.
+     *
+     * @param random the random generator of the calling thread
+     * @return the rank, from 1 to the number of elements
+     */
+    public int sample(SplittableRandom random) {
+        while (true) {
+            double u = hIntegralNumberOfElements + random.nextDouble() * (hIntegralX1 - hIntegralNumberOfElements);
+            double x = hIntegralInverse(u);
+            int k = (int) (x + 0.5);
+            if (k < 1) {
+                k = 1;
+            } else if (k > numberOfElements) {
+                k = numberOfElements;
+            }
+            if (k - x <= squeeze || u >= hIntegral(k + 0.5) - h(k)) {
+                return k;
+            }
+        }
+    }
+
+    /**
+     * Returns the scale c for which the expected number of ranks drawn when every rank k is taken
+     * independently with the probability min(1, c / k^exponent) is the given target.
+     * This spreads a fixed number of picks, such as books on loan, with Zipf skew and without repetition.
+     *
+     * @param numberOfElements the highest rank
+     * @param exponent the skew, greater than 0
+     * @param expected the expected number of picks, from 0 to the number of elements
+     * @return the scale c
+     */
+    public static double scaleForExpectedPicks(int numberOfElements, double exponent, double expected) {
+        double low = 0;
+        double high = Math.pow(numberOfElements, exponent);
+        for (int iteration = 0; iteration < 100; iteration++) {
+            double middle = (low + high) / 2;
+            if (expectedPicks(numberOfElements, exponent, middle) < expected) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Approximates the expected number of picks for a scale, summing the capped ranks exactly
+     * and the others with the midpoint rule.
+     *
+     * @param numberOfElements the highest rank
+     * @param exponent the skew
+     * @param scale the scale c
+     * @return the expected number of picks
+     */
+    private static double expectedPicks(int numberOfElements, double exponent, double scale) {
+        double cappedRanks = Math.min(numberOfElements, Math.floor(Math.pow(scale, 1 / exponent)));
+        if (cappedRanks >= numberOfElements) {
+            return numberOfElements;
+        }
+        double from = cappedRanks + 0.5;
+        double to = numberOfElements + 0.5;
+        double integral = exponent == 1
+                ? Math.log(to / from)
+                : (Math.pow(to, 1 - exponent) - Math.pow(from, 1 - exponent)) / (1 - exponent);
+        return cappedRanks + scale * integral;
+    }
+
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return expm1OverX((1 - exponent) * logX) * logX;
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = Math.max(-1, x * (1 - exponent));
+        return Math.exp(log1pOverX(t) * x);
+    }
+
+    /**
+     * Computes log(1 + x) / x, also for x close to 0.
+     */
+    private static double log1pOverX(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.log1p(x) / x;
+        }
+        return 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    /**
+     * Computes (exp(x) - 1) / x, also for x close to 0.
+     */
+    private static double expm1OverX(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.expm1(x) / x;
+        }
+        return 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+    }
+}
@@ -0,0 +1,72 @@
+package ui;
+
+import conn.CircuitBreaker;
+import conn.DatabaseConnector;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Status bar at the bottom of the main window showing whether the database can be reached.
+ * While the connection circuit breaker is open, it shows the last connection error and when the next
+ * reconnection attempt is made, so the librarian knows why actions fail. It refreshes itself every half second.
+ */
+public class DatabaseStatusBar extends JPanel {
+
+    private static final int REFRESH_MILLIS = 500;
+    private static final Color UNAVAILABLE_COLOR = new Color(0xF8D7DA);
+    private static final Color RECONNECTING_COLOR = new Color(0xFFF3CD);
+
+    private final JLabel statusLabel = new JLabel(" ");
+    private final Color defaultColor;
+
+    /**
+     * Constructs the status bar and starts refreshing it.
+     */
+    public DatabaseStatusBar() {
+        setLayout(new BorderLayout());
+        setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createMatteBorder(1, 0, 0, 0, Color.LIGHT_GRAY),
+                BorderFactory.createEmptyBorder(2, 6, 2, 6)));
+        add(statusLabel, BorderLayout.WEST);
+        defaultColor = getBackground();
+
+        refresh();
+        new Timer(REFRESH_MILLIS, actionEvent -> refresh()).start();
+    }
+
+    /**
+     * Shows the current state of the circuit breaker.
+     */
+    private void refresh() {
+        DatabaseConnector connector = DatabaseConnector.getInstance();
+        if (connector == null) {
+            show("Database: configuration could not be loaded.", UNAVAILABLE_COLOR, null);
+            return;
+        }
+
+        CircuitBreaker circuitBreaker = connector.getCircuitBreaker();
+        switch (circuitBreaker.getState()) {
+            case OPEN -> show(String.format("Database unreachable – reconnecting in %d s. Changes cannot be saved until then.",
+                            Math.max(1, (circuitBreaker.getRetryInMillis() + 999) / 1000)),
+                    UNAVAILABLE_COLOR, circuitBreaker.getLastFailure());
+            case HALF_OPEN -> show("Database: reconnected, checking the connection…", RECONNECTING_COLOR, null);
+            case CLOSED -> show(connector.getReplicaCount() > 0
+                    ? "Database: connected (" + connector.getReplicaCount() + " read replicas)"
+                    : "Database: connected", defaultColor, null);
+        }
+    }
+
+    /**
+     * Updates the text and color of the bar.
+     *
+     * @param text the status text
+     * @param background the background color
+     * @param tooltip the details shown on hover, or null
+     */
+    private void show(String text, Color background, String tooltip) {
+        statusLabel.setText(text);
+        statusLabel.setToolTipText(tooltip);
+        setBackground(background);
+    }
+}
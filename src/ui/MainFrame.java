@@ -1,22 +1,37 @@
 package ui;
 
+import metrics.EdtWatchdog;
+import metrics.ImportMetrics;
+import services.DataExporter;
 import services.DataImporter;
+import services.SnapshotService;
 import ui.authors.AuthorPanel;
 import ui.books.BookPanel;
 import ui.genres.GenrePanel;
+import ui.json.ImportProgressPanel;
+import ui.json.LogOutput;
 import ui.loans.LoanPanel;
+import ui.performance.PerformancePanel;
+import ui.performance.StallPanel;
 import ui.readers.ReaderPanel;
 import ui.statistics.StatisticsPanel;
 
 import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
- * The main application window containing the navigation tabs and the menu bar.
+ * The main application window containing the navigation tabs, the menu bar and the database status bar.
  * This frame serves as the primary container for all application modules.
  */
 public class MainFrame extends JFrame {
 
+    private static final String SNAPSHOT_EXTENSION = "libsnap";
+
     /**
      * Constructs the MainFrame, sets up the window properties, menu bar, and tabbed panes.
      */
@@ -35,8 +50,13 @@ public class MainFrame extends JFrame {
         tabbedPane.addTab("Readers", new ReaderPanel());
         tabbedPane.addTab("Loans", new LoanPanel());
         tabbedPane.addTab("Statistics", new StatisticsPanel());
+        tabbedPane.addTab("Performance", new PerformancePanel());
+        if (EdtWatchdog.get() != null) {
+            tabbedPane.addTab("UI Stalls", new StallPanel(EdtWatchdog.get()));
+        }
 
-        add(tabbedPane);
+        add(tabbedPane, BorderLayout.CENTER);
+        add(new DatabaseStatusBar(), BorderLayout.SOUTH);
     }
 
     /**
@@ -48,13 +68,34 @@ public class MainFrame extends JFrame {
         JMenuBar menuBar = new JMenuBar();
         JMenu fileMenu = new JMenu("File");
 
-        JMenuItem importItem = new JMenuItem("Import JSON...");
-        importItem.addActionListener(actionEvent -> performImport());
+        JMenuItem importItem = new JMenuItem("Import Books...");
+        importItem.addActionListener(actionEvent -> performImport(DataImporter.ImportMode.INSERT));
+
+        JMenuItem upsertItem = new JMenuItem("Import Books (Update Existing)...");
+        upsertItem.addActionListener(actionEvent -> performImport(DataImporter.ImportMode.UPSERT));
+
+        JMenuItem dryRunItem = new JMenuItem("Check Import File...");
+        dryRunItem.addActionListener(actionEvent -> performDryRun());
+
+        JMenuItem exportItem = new JMenuItem("Export Data...");
+        exportItem.addActionListener(actionEvent -> performExport());
+
+        JMenuItem exportSnapshotItem = new JMenuItem("Export Snapshot...");
+        exportSnapshotItem.addActionListener(actionEvent -> performSnapshotExport());
+
+        JMenuItem restoreSnapshotItem = new JMenuItem("Restore Snapshot...");
+        restoreSnapshotItem.addActionListener(actionEvent -> performSnapshotRestore());
 
         JMenuItem exitItem = new JMenuItem("Exit");
         exitItem.addActionListener(actionEvent -> System.exit(0));
 
         fileMenu.add(importItem);
+        fileMenu.add(upsertItem);
+        fileMenu.add(dryRunItem);
+        fileMenu.add(exportItem);
+        fileMenu.addSeparator();
+        fileMenu.add(exportSnapshotItem);
+        fileMenu.add(restoreSnapshotItem);
         fileMenu.addSeparator();
         fileMenu.add(exitItem);
         menuBar.add(fileMenu);
@@ -63,44 +104,208 @@ public class MainFrame extends JFrame {
     }
 
     /**
-     * Handles the logic for importing data from a JSON file.
+     * Handles the logic for importing data from a JSON, NDJSON or CSV file.
      * Opens a file chooser, sets up a progress dialog, and runs the import in a separate thread.
+     * For line-delimited files, the user may choose the line to start from to resume an interrupted import.
+     *
+     * @param mode whether books are always inserted or matched against existing books and updated
      */
-    private void performImport() {
+    private void performImport(DataImporter.ImportMode mode) {
         JFileChooser fileChooser = new JFileChooser();
-        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("JSON Files", "json"));
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("JSON, NDJSON and CSV Files", "json", "ndjson", "jsonl", "csv", "gz"));
 
         int result = fileChooser.showOpenDialog(this);
 
         if (result == JFileChooser.APPROVE_OPTION) {
             File selectedFile = fileChooser.getSelectedFile();
+            DataImporter.LineFormat lineFormat = DataImporter.lineFormatOf(selectedFile.getName());
+            DataImporter importer = new DataImporter(mode);
+
+            if (lineFormat == null) {
+                runWithLogDialog("Import Progress",
+                        logOutput -> importer.importBooksFromJson(selectedFile.getAbsolutePath(), logOutput),
+                        "Import finished! Please refresh tables manually.",
+                        "Import FAILED! Please check the log for details.",
+                        importer::getMetrics);
+                return;
+            }
+
+            String startLineText = JOptionPane.showInputDialog(this, "Start import at line (1 = whole file):", "1");
+            if (startLineText == null) {
+                return;
+            }
+
+            long startLine;
+            try {
+                startLine = Math.max(1, Long.parseLong(startLineText.trim()));
+            } catch (NumberFormatException numberFormatException) {
+                JOptionPane.showMessageDialog(this, "Start line must be a number.", "Validation Error", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+
+            runWithLogDialog("Import Progress",
+                    logOutput -> importer.importBooksFromLines(selectedFile.getAbsolutePath(), lineFormat, startLine, logOutput),
+                    "Import finished! Please refresh tables manually.",
+                    "Import FAILED! Please check the log for details.",
+                    importer::getMetrics);
+        }
+    }
+
+    /**
+     * Checks a JSON, NDJSON or CSV file without importing it.
+     * The problems found are written into a CSV report next to the checked file.
+     */
+    private void performDryRun() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("JSON, NDJSON and CSV Files", "json", "ndjson", "jsonl", "csv", "gz"));
+
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            File selectedFile = fileChooser.getSelectedFile();
+            String reportPath = selectedFile.getAbsolutePath() + ".report.csv";
 
-            JDialog logDialog = new JDialog(this, "Import Progress", false);
-            logDialog.setSize(600, 400);
-            logDialog.setLocationRelativeTo(this);
+            runWithLogDialog("Check Progress",
+                    logOutput -> new DataImporter().dryRun(selectedFile.getAbsolutePath(), reportPath, logOutput),
+                    "Check finished! See the report for details:\n" + reportPath,
+                    "Check FAILED! Please check the log for details.");
+        }
+    }
 
-            JTextArea logArea = new JTextArea();
-            logArea.setEditable(false);
-            logDialog.add(new JScrollPane(logArea));
-            logDialog.setVisible(true);
+    /**
+     * Handles exporting books, readers or loans into a CSV or NDJSON file.
+     * The format is chosen by the file extension; a ".gz" suffix compresses the file.
+     */
+    private void performExport() {
+        DataExporter.ExportEntity entity = (DataExporter.ExportEntity) JOptionPane.showInputDialog(this,
+                "What do you want to export?",
+                "Export Data",
+                JOptionPane.QUESTION_MESSAGE,
+                null,
+                DataExporter.ExportEntity.values(),
+                DataExporter.ExportEntity.BOOKS);
 
-            new Thread(() -> {
-                DataImporter importer = new DataImporter();
+        if (entity == null) {
+            return;
+        }
 
-                boolean isSuccess = importer.importBooksFromJson(selectedFile.getAbsolutePath(), text -> {
-                    SwingUtilities.invokeLater(() -> logArea.append(text));
-                });
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.addChoosableFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV Files", "csv"));
+        fileChooser.addChoosableFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("NDJSON Files", "ndjson", "jsonl"));
+        fileChooser.addChoosableFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Compressed Files (.csv.gz, .ndjson.gz)", "gz"));
 
-                SwingUtilities.invokeLater(() -> {
-                    logArea.append("\n--- DONE ---\nYou can close this window.");
+        if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            String filePath = fileChooser.getSelectedFile().getAbsolutePath();
+            if (!fileChooser.getSelectedFile().getName().contains(".")) {
+                filePath += ".csv";
+            }
+            String exportPath = filePath;
 
-                    if (isSuccess) {
-                        JOptionPane.showMessageDialog(logDialog, "Import finished! Please refresh tables manually.", "Success", JOptionPane.INFORMATION_MESSAGE);
-                    } else {
-                        JOptionPane.showMessageDialog(logDialog, "Import FAILED! Please check the log for details.", "Import Error", JOptionPane.ERROR_MESSAGE);
-                    }
-                });
-            }).start();
+            runWithLogDialog("Export Progress",
+                    logOutput -> new DataExporter().export(entity, exportPath, logOutput),
+                    "Export finished.",
+                    "Export FAILED! Please check the log for details.");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Handles exporting the whole catalog into a binary snapshot file.
+     */
+    private void performSnapshotExport() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Library Snapshots", SNAPSHOT_EXTENSION));
+
+        if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            String filePath = fileChooser.getSelectedFile().getAbsolutePath();
+            if (!filePath.endsWith("." + SNAPSHOT_EXTENSION)) {
+                filePath += "." + SNAPSHOT_EXTENSION;
+            }
+            String snapshotPath = filePath;
+
+            runWithLogDialog("Snapshot Export",
+                    logOutput -> new SnapshotService().exportSnapshot(snapshotPath, logOutput),
+                    "Snapshot exported.",
+                    "Snapshot export FAILED! Please check the log for details.");
+        }
+    }
+
+    /**
+     * Handles restoring a binary snapshot file into an empty database.
+     */
+    private void performSnapshotRestore() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Library Snapshots", SNAPSHOT_EXTENSION));
+
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            String snapshotPath = fileChooser.getSelectedFile().getAbsolutePath();
+
+            runWithLogDialog("Snapshot Restore",
+                    logOutput -> new SnapshotService().restoreSnapshot(snapshotPath, logOutput),
+                    "Snapshot restored! Please refresh tables manually.",
+                    "Snapshot restore FAILED! Please check the log for details.");
+        }
+    }
+
+    /**
+     * Opens a progress dialog and runs a long operation in a separate thread, logging into the dialog.
+     *
+     * @param title the title of the progress dialog
+     * @param task the operation to run; returns true on success
+     * @param successMessage the message shown when the operation succeeds
+     * @param failureMessage the message shown when the operation fails
+     */
+    private void runWithLogDialog(String title, Function<LogOutput, Boolean> task, String successMessage, String failureMessage) {
+        runWithLogDialog(title, task, successMessage, failureMessage, null);
+    }
+
+    /**
+     * Opens a progress dialog and runs a long operation in a separate thread, logging into the dialog.
+     * If the operation is an import, the dialog also shows its live metrics.
+     *
+     * @param title the title of the progress dialog
+     * @param task the operation to run; returns true on success
+     * @param successMessage the message shown when the operation succeeds
+     * @param failureMessage the message shown when the operation fails
+     * @param importMetrics supplies the metrics of the import, or null if the operation is not an import
+     */
+    private void runWithLogDialog(String title, Function<LogOutput, Boolean> task, String successMessage, String failureMessage,
+                                  Supplier<ImportMetrics> importMetrics) {
+        JDialog logDialog = new JDialog(this, title, false);
+        logDialog.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+        logDialog.setSize(600, importMetrics != null ? 600 : 400);
+        logDialog.setLocationRelativeTo(this);
+
+        JTextArea logArea = new JTextArea();
+        logArea.setEditable(false);
+        logDialog.add(new JScrollPane(logArea), BorderLayout.CENTER);
+
+        ImportProgressPanel progressPanel = importMetrics != null ? new ImportProgressPanel(importMetrics) : null;
+        if (progressPanel != null) {
+            logDialog.add(progressPanel, BorderLayout.NORTH);
+            logDialog.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosed(WindowEvent windowEvent) {
+                    progressPanel.stop();
+                }
+            });
+        }
+        logDialog.setVisible(true);
+
+        new Thread(() -> {
+            boolean isSuccess = task.apply(text -> {
+                SwingUtilities.invokeLater(() -> logArea.append(text));
+            });
+
+            SwingUtilities.invokeLater(() -> {
+                if (progressPanel != null) {
+                    progressPanel.stop();
+                }
+                logArea.append("\n--- DONE ---\nYou can close this window.");
+
+                if (isSuccess) {
+                    JOptionPane.showMessageDialog(logDialog, successMessage, "Success", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(logDialog, failureMessage, "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            });
+        }).start();
+    }
+}
@@ -2,6 +2,8 @@ package ui.authors;
 
 import dao.AuthorDAO;
 import exceptions.DbException;
+import metrics.PanelRefreshEvent;
+import metrics.QueryAnalyzer;
 import models.Author;
 
 import javax.swing.*;
@@ -77,13 +79,16 @@ public class AuthorPanel extends JPanel {
      * from the database and updating the table model.
      */
     private void refreshData() {
+        PanelRefreshEvent refreshEvent = PanelRefreshEvent.start("Authors");
         tableModel.setRowCount(0);
         try {
-            List<Author> authors = authorDAO.getAll();
+            List<Author> authors = QueryAnalyzer.analyze("Authors refresh", authorDAO::getAll);
             for (Author author : authors) {
                 tableModel.addRow(new Object[]{author.getId(), author.getFirstName(), author.getLastName()});
             }
+            refreshEvent.finish(tableModel.getRowCount(), false);
         } catch (DbException dbException) {
+            refreshEvent.finish(0, true);
             JOptionPane.showMessageDialog(this, "Error loading authors: " + dbException.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
@@ -1,23 +1,34 @@
 package ui.books;
 
+import dao.AsyncDAO;
 import dao.BookDAO;
 import exceptions.DbException;
+import metrics.PanelRefreshEvent;
+import metrics.QueryAnalyzer;
 import models.Book;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Panel for displaying and managing books.
  * Shows a table of books and provides buttons for adding, editing, and deleting them.
+ * The table loads in the background; Cancel (or another Refresh) stops a running load on the server.
  */
 public class BookPanel extends JPanel {
 
     private final BookDAO bookDAO = new BookDAO();
+    private final AsyncDAO asyncDAO = AsyncDAO.getInstance();
     private final JTable bookTable;
     private final DefaultTableModel tableModel;
+    private final JButton cancelButton = new JButton("Cancel");
+    private CompletableFuture<List<Book>> pendingLoad;
 
     /**
      * Constructs the BookPanel and initializes the table and buttons.
@@ -65,11 +76,14 @@ public class BookPanel extends JPanel {
         editButton.addActionListener(actionEvent -> openEditBookDialog());
         deleteButton.addActionListener(actionEvent -> deleteSelectedBook());
         refreshButton.addActionListener(actionEvent -> refreshTableData());
+        cancelButton.addActionListener(actionEvent -> cancelRefresh());
+        cancelButton.setEnabled(false);
 
         buttonPanel.add(addButton);
         buttonPanel.add(editButton);
         buttonPanel.add(deleteButton);
         buttonPanel.add(refreshButton);
+        buttonPanel.add(cancelButton);
 
         for(Component button : buttonPanel.getComponents()){
             button.setFocusable(false);
@@ -80,28 +94,73 @@ public class BookPanel extends JPanel {
 
     /**
      * Refreshes the table data by fetching the latest list of books from the database.
+     * The books are loaded in the background; a load that is still running is cancelled first.
      */
     private void refreshTableData() {
-        tableModel.setRowCount(0);
+        cancelRefresh();
+        PanelRefreshEvent refreshEvent = PanelRefreshEvent.start("Books");
+        QueryAnalyzer.Scope analyzerScope = QueryAnalyzer.open("Books refresh");
+
+        CompletableFuture<List<Book>> load = analyzerScope.run(asyncDAO::getAllBooks);
+        pendingLoad = load;
+        cancelButton.setEnabled(true);
+
+        load.whenComplete((books, throwable) -> {
+            analyzerScope.close();
+            SwingUtilities.invokeLater(() -> showBooks(load, books, throwable, refreshEvent));
+        });
+    }
 
-        try {
-            List<Book> books = bookDAO.getAll();
-
-            for (Book book : books) {
-                Object[] rowData = {
-                        book.getId(),
-                        book.getTitle(),
-                        book.getAuthor().getLastName(),
-                        book.getGenre().getName(),
-                        book.getPrice(),
-                        book.getCondition(),
-                        book.isAvailable() ? "Yes" : "No"
-                };
-                tableModel.addRow(rowData);
+    /**
+     * Cancels the running load, if any. The statement is cancelled on the server and the table keeps its rows.
+     */
+    private void cancelRefresh() {
+        if (pendingLoad != null) {
+            pendingLoad.cancel(true);
+        }
+    }
+
+    /**
+     * Displays the loaded books in the table, unless a newer load has been started since.
+     *
+     * @param load the load that completed
+     * @param books the loaded books, or null if loading failed
+     * @param throwable the failure, or null if loading succeeded
+     * @param refreshEvent the event measuring the refresh
+     */
+    private void showBooks(CompletableFuture<List<Book>> load, List<Book> books, Throwable throwable, PanelRefreshEvent refreshEvent) {
+        if (load != pendingLoad) {
+            refreshEvent.finish(0, true);
+            return;
+        }
+        pendingLoad = null;
+        cancelButton.setEnabled(false);
+
+        if (throwable != null) {
+            refreshEvent.finish(0, true);
+            Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            if (cause instanceof TimeoutException) {
+                JOptionPane.showMessageDialog(this, "Loading books took too long and was stopped.", "Error", JOptionPane.ERROR_MESSAGE);
+            } else if (!(cause instanceof CancellationException)) {
+                JOptionPane.showMessageDialog(this, "Error loading books: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
-        } catch (DbException dbException) {
-            JOptionPane.showMessageDialog(this, "Error loading books: " + dbException.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        tableModel.setRowCount(0);
+        for (Book book : books) {
+            Object[] rowData = {
+                    book.getId(),
+                    book.getTitle(),
+                    book.getAuthor().getLastName(),
+                    book.getGenre().getName(),
+                    book.getPrice(),
+                    book.getCondition(),
+                    book.isAvailable() ? "Yes" : "No"
+            };
+            tableModel.addRow(rowData);
         }
+        refreshEvent.finish(tableModel.getRowCount(), false);
     }
 
     /**
@@ -2,6 +2,8 @@ package ui.genres;
 
 import dao.GenreDAO;
 import exceptions.DbException;
+import metrics.PanelRefreshEvent;
+import metrics.QueryAnalyzer;
 import models.Genre;
 
 import javax.swing.*;
@@ -63,13 +65,16 @@ public class GenrePanel extends JPanel {
      * Refreshes the list of genres.
      */
     private void refreshData() {
+        PanelRefreshEvent refreshEvent = PanelRefreshEvent.start("Genres");
         tableModel.setRowCount(0);
         try {
-            List<Genre> genres = genreDAO.getAll();
+            List<Genre> genres = QueryAnalyzer.analyze("Genres refresh", genreDAO::getAll);
             for (Genre genre : genres) {
                 tableModel.addRow(new Object[]{genre.getId(), genre.getName()});
             }
+            refreshEvent.finish(tableModel.getRowCount(), false);
         } catch (DbException dbException) {
+            refreshEvent.finish(0, true);
             JOptionPane.showMessageDialog(this, dbException.getMessage());
         }
     }
@@ -0,0 +1,95 @@
+package ui.json;
+
+import metrics.ImportMetrics;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.function.Supplier;
+
+/**
+ * Panel showing the live measurements of a running import: throughput and share of time per stage,
+ * queue depths and the latency of the database batches. It refreshes itself twice a second until stopped.
+ */
+public class ImportProgressPanel extends JPanel {
+
+    private static final int REFRESH_MILLIS = 500;
+
+    private final Supplier<ImportMetrics> metricsSource;
+    private final DefaultTableModel tableModel;
+    private final JLabel summaryLabel = new JLabel(" ");
+    private final JLabel queueLabel = new JLabel(" ");
+    private final JLabel batchLabel = new JLabel(" ");
+    private final Timer timer;
+
+    /**
+     * Constructs the panel and starts refreshing it.
+     *
+     * @param metricsSource supplies the metrics of the running import, or null before it starts
+     */
+    public ImportProgressPanel(Supplier<ImportMetrics> metricsSource) {
+        this.metricsSource = metricsSource;
+        setLayout(new BorderLayout());
+        setBorder(BorderFactory.createTitledBorder("Progress"));
+
+        String[] columnNames = {"Stage", "Records", "Records/s per thread", "Share of time"};
+        tableModel = new DefaultTableModel(columnNames, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        for (ImportMetrics.Stage stage : ImportMetrics.Stage.values()) {
+            tableModel.addRow(new Object[]{stage, 0L, "-", "-"});
+        }
+
+        JTable table = new JTable(tableModel);
+        table.setFocusable(false);
+        table.setPreferredScrollableViewportSize(new Dimension(table.getPreferredSize().width, table.getRowHeight() * tableModel.getRowCount()));
+        add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JPanel labels = new JPanel(new GridLayout(3, 1));
+        labels.add(summaryLabel);
+        labels.add(queueLabel);
+        labels.add(batchLabel);
+        add(labels, BorderLayout.SOUTH);
+
+        timer = new Timer(REFRESH_MILLIS, actionEvent -> refresh());
+        timer.start();
+    }
+
+    /**
+     * Shows the final values and stops refreshing.
+     */
+    public void stop() {
+        timer.stop();
+        refresh();
+    }
+
+    /**
+     * Reads the current metrics and updates the table and labels.
+     */
+    private void refresh() {
+        ImportMetrics metrics = metricsSource.get();
+        if (metrics == null) {
+            return;
+        }
+
+        ImportMetrics.Snapshot snapshot = metrics.snapshot();
+        for (ImportMetrics.StageSnapshot stage : snapshot.stages()) {
+            int row = stage.stage().ordinal();
+            tableModel.setValueAt(stage.records(), row, 1);
+            tableModel.setValueAt(stage.busyNanos() == 0 ? "-" : String.format("%,.0f", stage.recordsPerSecond()), row, 2);
+            tableModel.setValueAt(stage.busyNanos() == 0 ? "-" : String.format("%.0f %%", stage.shareOfTime() * 100), row, 3);
+        }
+
+        summaryLabel.setText(String.format("%s %.1f s, %,.0f records/s stored",
+                snapshot.finished() ? "Finished in" : "Running for", snapshot.elapsedNanos() / 1e9, snapshot.recordsPerSecond()));
+        queueLabel.setText("Batches waiting: " + snapshot.queuedBatches() + ", being processed: " + snapshot.activeBatches());
+        batchLabel.setText(String.format("Database batches: %d, p50 %.1f ms, p99 %.1f ms, max %.1f ms",
+                snapshot.batchLatency().getCount(),
+                snapshot.batchLatency().getValueAtQuantile(0.5) / 1e6,
+                snapshot.batchLatency().getValueAtQuantile(0.99) / 1e6,
+                snapshot.batchLatency().getMax() / 1e6));
+    }
+}
@@ -4,6 +4,7 @@ import dao.BookDAO;
 import dao.LoanDAO;
 import dao.ReaderDAO;
 import exceptions.DbException;
+import exceptions.LoanConflictException;
 import models.Book;
 import models.Loan;
 import models.Reader;
@@ -166,6 +167,9 @@ public class LoanFormDialog extends JDialog {
 
         } catch (DateTimeParseException dateTimeParseException) {
             JOptionPane.showMessageDialog(this, "Invalid date format. Use YYYY-MM-DD.", "Validation Error", JOptionPane.WARNING_MESSAGE);
+        } catch (LoanConflictException loanConflictException) {
+            bookBox.removeItem(selectedBook);
+            JOptionPane.showMessageDialog(this, loanConflictException.getMessage(), "Book Unavailable", JOptionPane.WARNING_MESSAGE);
         } catch (DbException dbException) {
             JOptionPane.showMessageDialog(this, dbException.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
         }
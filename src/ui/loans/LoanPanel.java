@@ -1,23 +1,34 @@
 package ui.loans;
 
+import dao.AsyncDAO;
 import dao.LoanDAO;
 import exceptions.DbException;
+import metrics.PanelRefreshEvent;
+import metrics.QueryAnalyzer;
 import models.Loan;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Panel for displaying and managing loan records.
  * Allows creating new loans, returning books (deleting loans), and refreshing the list.
+ * The list loads in the background; Cancel (or another Refresh) stops a running load on the server.
  */
 public class LoanPanel extends JPanel {
 
     private final LoanDAO loanDAO = new LoanDAO();
+    private final AsyncDAO asyncDAO = AsyncDAO.getInstance();
     private final JTable loanTable;
     private final DefaultTableModel tableModel;
+    private final JButton cancelButton = new JButton("Cancel");
+    private CompletableFuture<List<Loan>> pendingLoad;
 
     /**
      * Constructs the LoanPanel and initializes the table and control buttons.
@@ -49,10 +60,13 @@ public class LoanPanel extends JPanel {
         newLoanButton.addActionListener(actionEvent -> openNewLoanDialog());
         returnBookButton.addActionListener(actionEvent -> returnSelectedBook());
         refreshButton.addActionListener(actionEvent -> refreshData());
+        cancelButton.addActionListener(actionEvent -> cancelRefresh());
+        cancelButton.setEnabled(false);
 
         buttonPanel.add(newLoanButton);
         buttonPanel.add(returnBookButton);
         buttonPanel.add(refreshButton);
+        buttonPanel.add(cancelButton);
 
         for(Component button : buttonPanel.getComponents()){
             button.setFocusable(false);
@@ -65,23 +79,70 @@ public class LoanPanel extends JPanel {
 
     /**
      * Refreshes the loan data in the table from the database.
+     * The loans are loaded in the background; a load that is still running is cancelled first.
      */
     private void refreshData() {
-        tableModel.setRowCount(0);
-        try {
-            List<Loan> loans = loanDAO.getAll();
-            for (Loan loan : loans) {
-                tableModel.addRow(new Object[]{
-                        loan.getId(),
-                        loan.getBook().getTitle(),
-                        loan.getReader().getFirstName() + " " + loan.getReader().getLastName(),
-                        loan.getLoanDate(),
-                        loan.getReturnDate()
-                });
+        cancelRefresh();
+        PanelRefreshEvent refreshEvent = PanelRefreshEvent.start("Loans");
+        QueryAnalyzer.Scope analyzerScope = QueryAnalyzer.open("Loans refresh");
+
+        CompletableFuture<List<Loan>> load = analyzerScope.run(asyncDAO::getAllLoans);
+        pendingLoad = load;
+        cancelButton.setEnabled(true);
+
+        load.whenComplete((loans, throwable) -> {
+            analyzerScope.close();
+            SwingUtilities.invokeLater(() -> showLoans(load, loans, throwable, refreshEvent));
+        });
+    }
+
+    /**
+     * Cancels the running load, if any. The statement is cancelled on the server and the table keeps its rows.
+     */
+    private void cancelRefresh() {
+        if (pendingLoad != null) {
+            pendingLoad.cancel(true);
+        }
+    }
+
+    /**
+     * Displays the loaded loans in the table, unless a newer load has been started since.
+     *
+     * @param load the load that completed
+     * @param loans the loaded loans, or null if loading failed
+     * @param throwable the failure, or null if loading succeeded
+     * @param refreshEvent the event measuring the refresh
+     */
+    private void showLoans(CompletableFuture<List<Loan>> load, List<Loan> loans, Throwable throwable, PanelRefreshEvent refreshEvent) {
+        if (load != pendingLoad) {
+            refreshEvent.finish(0, true);
+            return;
+        }
+        pendingLoad = null;
+        cancelButton.setEnabled(false);
+
+        if (throwable != null) {
+            refreshEvent.finish(0, true);
+            Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            if (cause instanceof TimeoutException) {
+                JOptionPane.showMessageDialog(this, "Loading loans took too long and was stopped.", "Error", JOptionPane.ERROR_MESSAGE);
+            } else if (!(cause instanceof CancellationException)) {
+                JOptionPane.showMessageDialog(this, "Error loading loans: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
-        } catch (DbException dbException) {
-            JOptionPane.showMessageDialog(this, "Error loading loans: " + dbException.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        tableModel.setRowCount(0);
+        for (Loan loan : loans) {
+            tableModel.addRow(new Object[]{
+                    loan.getId(),
+                    loan.getBook().getTitle(),
+                    loan.getReader().getFirstName() + " " + loan.getReader().getLastName(),
+                    loan.getLoanDate(),
+                    loan.getReturnDate()
+            });
         }
+        refreshEvent.finish(tableModel.getRowCount(), false);
     }
 
     /**
@@ -0,0 +1,113 @@
+package ui.performance;
+
+import conn.DatabaseConnector;
+import metrics.LatencyHistogram;
+import metrics.QueryMetrics;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Panel showing where the application spends its database time.
+ * Lists the queries run through the connection pool, the most expensive in total first, with the DAO method
+ * that ran them, and shows how long callers waited for a free connection.
+ */
+public class PerformancePanel extends JPanel {
+
+    private static final int MAX_ROWS = 50;
+
+    private final QueryMetrics queryMetrics = QueryMetrics.shared();
+
+    private final JLabel poolLabel = new JLabel(" ");
+    private final DefaultTableModel tableModel;
+
+    /**
+     * Constructs the PerformancePanel and initializes the UI components.
+     */
+    public PerformancePanel() {
+        setLayout(new BorderLayout());
+
+        poolLabel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        add(poolLabel, BorderLayout.NORTH);
+
+        String[] columnNames = {"Method", "Query", "Calls", "Total (ms)", "Mean (ms)", "p50 (ms)", "p99 (ms)", "Max (ms)", "Rows", "Errors"};
+        tableModel = new DefaultTableModel(columnNames, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+
+            @Override
+            public Class<?> getColumnClass(int columnIndex) {
+                if (columnIndex == 2 || columnIndex == 8 || columnIndex == 9) return Long.class;
+                if (columnIndex >= 3 && columnIndex <= 7) return Double.class;
+                return super.getColumnClass(columnIndex);
+            }
+        };
+
+        JTable table = new JTable(tableModel);
+        table.setAutoCreateRowSorter(true);
+        table.getColumnModel().getColumn(0).setPreferredWidth(150);
+        table.getColumnModel().getColumn(1).setPreferredWidth(400);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JButton refreshButton = new JButton("Refresh");
+        refreshButton.addActionListener(actionEvent -> refreshData());
+        refreshButton.setFocusable(false);
+
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(actionEvent -> {
+            queryMetrics.reset();
+            refreshData();
+        });
+        resetButton.setFocusable(false);
+
+        JPanel bottomPanel = new JPanel();
+        bottomPanel.add(refreshButton);
+        bottomPanel.add(resetButton);
+        add(bottomPanel, BorderLayout.SOUTH);
+
+        refreshData();
+    }
+
+    /**
+     * Reloads the measurements. They are kept in memory, so this runs directly on the Event Dispatch Thread.
+     */
+    private void refreshData() {
+        DatabaseConnector connector = DatabaseConnector.getInstance();
+        LatencyHistogram.Snapshot acquire = queryMetrics.acquireSnapshot();
+        poolLabel.setText(String.format("Connections in use: %d of %d    Waiting for a connection: %d times, p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                connector.getActiveConnections(), connector.getPoolSize(), acquire.getCount(),
+                toMillis(acquire.getValueAtQuantile(0.5)), toMillis(acquire.getValueAtQuantile(0.99)), toMillis(acquire.getMax())));
+
+        tableModel.setRowCount(0);
+        List<QueryMetrics.QuerySnapshot> queries = queryMetrics.snapshot();
+        for (QueryMetrics.QuerySnapshot query : queries.subList(0, Math.min(MAX_ROWS, queries.size()))) {
+            LatencyHistogram.Snapshot latency = query.latency();
+            tableModel.addRow(new Object[]{
+                    query.caller(),
+                    query.template(),
+                    query.executions(),
+                    toMillis(latency.getSum()),
+                    toMillis((long) latency.getMean()),
+                    toMillis(latency.getValueAtQuantile(0.5)),
+                    toMillis(latency.getValueAtQuantile(0.99)),
+                    toMillis(latency.getMax()),
+                    query.rows(),
+                    query.errors()
+            });
+        }
+    }
+
+    /**
+     * Converts nanoseconds to milliseconds rounded to two decimals.
+     *
+     * @param nanos the duration in nanoseconds
+     * @return the duration in milliseconds
+     */
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+}
@@ -0,0 +1,115 @@
+package ui.performance;
+
+import metrics.EdtWatchdog;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Panel listing the moments the user interface froze, as reported by the {@link EdtWatchdog}.
+ * Every row is a blocking call and the UI method that made it on the Event Dispatch Thread;
+ * selecting a row shows the stack of the last such stall.
+ */
+public class StallPanel extends JPanel {
+
+    private final EdtWatchdog watchdog;
+    private final DefaultTableModel tableModel;
+    private final JTextArea stackArea = new JTextArea();
+    private List<EdtWatchdog.StallSummary> stalls = List.of();
+
+    /**
+     * Constructs the StallPanel and initializes the UI components.
+     *
+     * @param watchdog the running watchdog
+     */
+    public StallPanel(EdtWatchdog watchdog) {
+        this.watchdog = watchdog;
+        setLayout(new BorderLayout());
+
+        String[] columnNames = {"Blocking Call", "Called From", "Stalls", "Total (ms)", "Longest (ms)", "Last"};
+        tableModel = new DefaultTableModel(columnNames, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+
+            @Override
+            public Class<?> getColumnClass(int columnIndex) {
+                if (columnIndex >= 2 && columnIndex <= 4) return Long.class;
+                return super.getColumnClass(columnIndex);
+            }
+        };
+
+        JTable table = new JTable(tableModel);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getSelectionModel().addListSelectionListener(selectionEvent -> {
+            int row = table.getSelectedRow();
+            stackArea.setText(row >= 0 && row < stalls.size() ? stalls.get(row).stack() : "");
+            stackArea.setCaretPosition(0);
+        });
+
+        stackArea.setEditable(false);
+        stackArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(table), new JScrollPane(stackArea));
+        splitPane.setResizeWeight(0.6);
+        add(splitPane, BorderLayout.CENTER);
+
+        JButton refreshButton = new JButton("Refresh");
+        refreshButton.addActionListener(actionEvent -> refreshData());
+        refreshButton.setFocusable(false);
+
+        JButton dumpButton = new JButton("Dump to File");
+        dumpButton.addActionListener(actionEvent -> dumpReport());
+        dumpButton.setFocusable(false);
+
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(actionEvent -> {
+            watchdog.reset();
+            refreshData();
+        });
+        resetButton.setFocusable(false);
+
+        JPanel bottomPanel = new JPanel();
+        bottomPanel.add(refreshButton);
+        bottomPanel.add(dumpButton);
+        bottomPanel.add(resetButton);
+        add(bottomPanel, BorderLayout.SOUTH);
+
+        refreshData();
+    }
+
+    /**
+     * Reloads the aggregated stalls from the watchdog.
+     */
+    private void refreshData() {
+        stalls = watchdog.getStalls();
+        tableModel.setRowCount(0);
+        stackArea.setText("");
+        for (EdtWatchdog.StallSummary stall : stalls) {
+            tableModel.addRow(new Object[]{
+                    stall.blockingCall(),
+                    stall.uiCaller(),
+                    stall.count(),
+                    stall.totalMillis(),
+                    stall.maxMillis(),
+                    stall.lastSeen()
+            });
+        }
+    }
+
+    /**
+     * Writes the aggregated stalls to the report file of the watchdog.
+     */
+    private void dumpReport() {
+        try {
+            watchdog.dump();
+            JOptionPane.showMessageDialog(this, "Report written to " + watchdog.getReportFile().toAbsolutePath());
+        } catch (IOException ioException) {
+            JOptionPane.showMessageDialog(this, "Error writing report: " + ioException.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package ui.readers;
 
 import dao.ReaderDAO;
 import exceptions.DbException;
+import exceptions.DuplicatePhoneNumberException;
 import models.Reader;
 
 import javax.swing.*;
@@ -143,6 +144,9 @@ public class ReaderFormDialog extends JDialog {
             }
             success = true;
             dispose();
+        } catch (DuplicatePhoneNumberException duplicatePhoneNumberException) {
+            JOptionPane.showMessageDialog(this, duplicatePhoneNumberException.getMessage(), "Validation Error", JOptionPane.WARNING_MESSAGE);
+            phoneField.requestFocusInWindow();
         } catch (DbException dbException) {
             JOptionPane.showMessageDialog(this, dbException.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
         }
@@ -2,6 +2,8 @@ package ui.readers;
 
 import dao.ReaderDAO;
 import exceptions.DbException;
+import metrics.PanelRefreshEvent;
+import metrics.QueryAnalyzer;
 import models.Reader;
 
 import javax.swing.*;
@@ -77,9 +79,10 @@ public class ReaderPanel extends JPanel {
      * from the database and updating the table model.
      */
     private void refreshData() {
+        PanelRefreshEvent refreshEvent = PanelRefreshEvent.start("Readers");
         tableModel.setRowCount(0);
         try {
-            List<Reader> readers = readerDAO.getAll();
+            List<Reader> readers = QueryAnalyzer.analyze("Readers refresh", readerDAO::getAll);
             for (Reader reader : readers) {
                 tableModel.addRow(new Object[]{
                         reader.getId(),
@@ -88,7 +91,9 @@ public class ReaderPanel extends JPanel {
                         reader.getPhoneNumber()
                 });
             }
+            refreshEvent.finish(tableModel.getRowCount(), false);
         } catch (DbException dbException) {
+            refreshEvent.finish(0, true);
             JOptionPane.showMessageDialog(this, "Error loading readers: " + dbException.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
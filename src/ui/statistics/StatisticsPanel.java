@@ -1,15 +1,20 @@
 package ui.statistics;
 
-import dao.ActiveLoansDAO;
-import dao.LibraryStatisticsDAO;
-import exceptions.DbException;
+import dao.AsyncDAO;
+import metrics.PanelRefreshEvent;
+import metrics.QueryAnalyzer;
 import models.ActiveLoans;
+import models.LibraryStatistics;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Panel responsible for displaying library statistics and a dashboard of overdue loans.
@@ -17,8 +22,7 @@ import java.util.List;
  */
 public class StatisticsPanel extends JPanel {
 
-    private final LibraryStatisticsDAO statisticsDAO = new LibraryStatisticsDAO();
-    private final ActiveLoansDAO activeLoansDAO = new ActiveLoansDAO();
+    private final AsyncDAO asyncDAO = AsyncDAO.getInstance();
 
     private final JLabel totalBooksLabel;
     private final JLabel availableBooksLabel;
@@ -27,6 +31,9 @@ public class StatisticsPanel extends JPanel {
     private final JLabel inventoryValueLabel;
 
     private final DefaultTableModel tableModel;
+    private final JButton cancelButton = new JButton("Cancel");
+    private CompletableFuture<?> pendingStatistics;
+    private CompletableFuture<?> pendingLoans;
 
     /**
      * Constructs the StatisticsPanel and initializes the UI components.
@@ -76,9 +83,13 @@ public class StatisticsPanel extends JPanel {
         JButton refreshButton = new JButton("Refresh");
         refreshButton.addActionListener(actionEvent -> refreshData());
         refreshButton.setFocusable(false);
+        cancelButton.addActionListener(actionEvent -> cancelRefresh());
+        cancelButton.setFocusable(false);
+        cancelButton.setEnabled(false);
 
         JPanel bottomPanel = new JPanel();
         bottomPanel.add(refreshButton);
+        bottomPanel.add(cancelButton);
         add(bottomPanel, BorderLayout.SOUTH);
 
         refreshData();
@@ -117,36 +128,112 @@ public class StatisticsPanel extends JPanel {
 
     /**
      * Refreshes the statistics and the loan table data from the database.
-     * Handles exceptions by displaying error messages in the UI.
+     * Both queries run in parallel in the background; the UI is updated on the Event Dispatch Thread
+     * as each of them completes. Handles exceptions by displaying error messages in the UI.
+     * A refresh that is still running is cancelled first.
      */
     private void refreshData() {
-        try {
-            statisticsDAO.getLibraryStatistics().ifPresent(stats -> {
-                totalBooksLabel.setText(String.valueOf(stats.totalBooks()));
-                availableBooksLabel.setText(String.valueOf(stats.availableBooks()));
-                totalReadersLabel.setText(String.valueOf(stats.totalReaders()));
-                overdueLoansLabel.setText(String.valueOf(stats.overdueLoans()));
-                inventoryValueLabel.setText(stats.totalInventoryValue().toString());
+        cancelRefresh();
+        PanelRefreshEvent refreshEvent = PanelRefreshEvent.start("Statistics");
+        QueryAnalyzer.Scope analyzerScope = QueryAnalyzer.open("Statistics refresh");
+
+        CompletableFuture<Optional<LibraryStatistics>> statisticsLoad = analyzerScope.run(asyncDAO::getLibraryStatistics);
+        CompletableFuture<List<ActiveLoans>> loansLoad = analyzerScope.run(asyncDAO::getActiveLoansDetails);
+        pendingStatistics = statisticsLoad;
+        pendingLoans = loansLoad;
+        cancelButton.setEnabled(true);
+
+        CompletableFuture<?> statisticsShown = statisticsLoad.whenComplete((statistics, throwable) ->
+                SwingUtilities.invokeLater(() -> showStatistics(statisticsLoad, statistics, throwable)));
+
+        CompletableFuture<?> loansShown = loansLoad.whenComplete((loans, throwable) ->
+                SwingUtilities.invokeLater(() -> showActiveLoans(loansLoad, loans, throwable)));
+
+        CompletableFuture.allOf(statisticsShown, loansShown).whenComplete((ignored, throwable) -> {
+            analyzerScope.close();
+            SwingUtilities.invokeLater(() -> {
+                if (pendingStatistics == statisticsLoad) {
+                    cancelButton.setEnabled(false);
+                }
+                refreshEvent.finish(tableModel.getRowCount(), throwable != null);
             });
-        } catch (DbException dbException) {
+        });
+    }
+
+    /**
+     * Cancels the running queries, if any. The statements are cancelled on the server and the panel keeps its data.
+     */
+    private void cancelRefresh() {
+        if (pendingStatistics != null) {
+            pendingStatistics.cancel(true);
+            pendingLoans.cancel(true);
+        }
+    }
+
+    /**
+     * Displays the loaded statistics in the cards, unless a newer refresh has been started since.
+     *
+     * @param load the query that completed
+     * @param statistics the loaded statistics, or null if loading failed
+     * @param throwable the failure, or null if loading succeeded
+     */
+    private void showStatistics(CompletableFuture<?> load, Optional<LibraryStatistics> statistics, Throwable throwable) {
+        if (load != pendingStatistics || isCancellation(throwable)) {
+            return;
+        }
+        if (throwable != null) {
             totalBooksLabel.setText("Err");
+            return;
         }
 
+        statistics.ifPresent(stats -> {
+            totalBooksLabel.setText(String.valueOf(stats.totalBooks()));
+            availableBooksLabel.setText(String.valueOf(stats.availableBooks()));
+            totalReadersLabel.setText(String.valueOf(stats.totalReaders()));
+            overdueLoansLabel.setText(String.valueOf(stats.overdueLoans()));
+            inventoryValueLabel.setText(stats.totalInventoryValue().toString());
+        });
+    }
+
+    /**
+     * Displays the loaded active loans in the table, unless a newer refresh has been started since.
+     *
+     * @param load the query that completed
+     * @param loans the loaded loans, or null if loading failed
+     * @param throwable the failure, or null if loading succeeded
+     */
+    private void showActiveLoans(CompletableFuture<?> load, List<ActiveLoans> loans, Throwable throwable) {
+        if (load != pendingLoans || isCancellation(throwable)) {
+            return;
+        }
         tableModel.setRowCount(0);
-        try {
-            List<ActiveLoans> loans = activeLoansDAO.getActiveLoansDetails();
-            for (ActiveLoans activeLoans : loans) {
-                tableModel.addRow(new Object[]{
-                        activeLoans.loanId(),
-                        activeLoans.bookTitle(),
-                        activeLoans.readerName(),
-                        activeLoans.returnDate(),
-                        activeLoans.daysOverdue()
-                });
-            }
-        } catch (DbException dbException) {
-            JOptionPane.showMessageDialog(this, "Error loading details: " + dbException.getMessage());
+
+        if (throwable != null) {
+            Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            JOptionPane.showMessageDialog(this, "Error loading details: " + cause.getMessage());
+            return;
         }
+
+        for (ActiveLoans activeLoans : loans) {
+            tableModel.addRow(new Object[]{
+                    activeLoans.loanId(),
+                    activeLoans.bookTitle(),
+                    activeLoans.readerName(),
+                    activeLoans.returnDate(),
+                    activeLoans.daysOverdue()
+            });
+        }
+    }
+
+    /**
+     * Tells whether a query failed because it was cancelled by the user.
+     *
+     * @param throwable the failure, or null
+     * @return true if the query was cancelled
+     */
+    private static boolean isCancellation(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+        return cause instanceof CancellationException;
     }
 
     /**